@@ -16,7 +16,10 @@
 
 package se.pitch.oss.fedpro.client_common;
 
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.UnsafeByteOperations;
 import hla.rti1516_2025.fedpro.*;
 import net.jcip.annotations.GuardedBy;
 import se.pitch.oss.fedpro.client.*;
@@ -31,6 +34,10 @@ import se.pitch.oss.fedpro.common.session.LogUtil;
 import se.pitch.oss.fedpro.common.session.MovingStats;
 import se.pitch.oss.fedpro.common.session.StandAloneMovingStats;
 import se.pitch.oss.fedpro.common.session.MovingStatsNoOp;
+import se.pitch.oss.fedpro.common.session.SessionThreads;
+import se.pitch.oss.fedpro.common.session.SharedTimer;
+import se.pitch.oss.fedpro.common.session.buffers.FramedPayload;
+import se.pitch.oss.fedpro.common.session.buffers.PayloadBuffer;
 
 import java.io.IOException;
 import java.time.Duration;
@@ -51,18 +58,13 @@ public abstract class RTIambassadorClientGenericBase {
 
    protected static final String SETTING_NAME_CRC_ADDRESS = "crcAddress";
 
-   private final ScheduledExecutorService _statPrintingExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
-      Thread thread = Executors.defaultThreadFactory().newThread(r);
-      thread.setName("FedPro Client Stat printing");
-      thread.setDaemon(true);
-      return thread;
-   });
-
    protected class ClientSession
    {
       protected final PersistentSession _persistentSession;
       final Thread _callbackThread;
       final BlockingQueue<QueuedCallback> _callbackQueue = new LinkedBlockingQueue<>();
+      // Set when the callback thread has stopped, after which queued callbacks are released instead of dispatched.
+      private volatile boolean _isCallbackQueueDiscarded = false;
 
       @GuardedBy("this")
       boolean _callbackInProgress = false;
@@ -85,9 +87,11 @@ public abstract class RTIambassadorClientGenericBase {
                clientSettings,
                resumeStrategy);
          if (createCallbackThread) {
-            _callbackThread = new Thread(this::callbackLoop);
-            _callbackThread.setDaemon(true);
-
+            // Named when started, once the session ID is known.
+            _callbackThread = SessionThreads.newThread(
+                  this::callbackLoop,
+                  "FedPro Client Callback Thread",
+                  clientSettings.getBoolean(SETTING_NAME_VIRTUAL_THREADS, SessionSettings.DEFAULT_VIRTUAL_THREADS));
          } else {
             _callbackThread = null;
          }
@@ -107,7 +111,7 @@ public abstract class RTIambassadorClientGenericBase {
          }
       }
 
-      private void stopCallbackThread()
+      void stopCallbackThread()
       {
          try {
             // Poison pill ends up last in callback queue.
@@ -130,6 +134,21 @@ public abstract class RTIambassadorClientGenericBase {
             }
          } catch (InterruptedException ignored) {
          }
+         _isCallbackQueueDiscarded = true;
+         releaseQueuedCallbacks();
+      }
+
+      /**
+       * Release the pooled buffers of the callbacks that will never be dispatched.
+       */
+      private void releaseQueuedCallbacks()
+      {
+         QueuedCallback queuedCallback;
+         while ((queuedCallback = _callbackQueue.poll()) != null) {
+            if (queuedCallback.encodedCallbackRequest != null) {
+               queuedCallback.encodedCallbackRequest.release();
+            }
+         }
       }
 
       private void callbackLoop()
@@ -169,12 +188,11 @@ public abstract class RTIambassadorClientGenericBase {
       }
 
       protected void startStatPrinting(
-            ScheduledExecutorService statPrintingExecutor,
             Runnable printStatsRunnable,
             int printStatsIntervalMillis)
       {
          stopStatPrinting();
-         _statPrintingFuture = statPrintingExecutor.scheduleAtFixedRate(
+         _statPrintingFuture = SharedTimer.getInstance().scheduleAtFixedRate(
                printStatsRunnable,
                printStatsIntervalMillis,
                printStatsIntervalMillis,
@@ -209,26 +227,27 @@ public abstract class RTIambassadorClientGenericBase {
       }
 
       private void hlaCallbackRequest(
-            int sequenceNumber, byte[] hlaCallback)
+            int sequenceNumber, PayloadBuffer hlaCallback)
       {
+         // Parsed when dispatched, to keep the session reader thread free for heartbeats and call responses.
+         hlaCallback.retain();
          try {
-            CallbackRequest callback = CallbackRequest.parseFrom(hlaCallback);
-            _callbackQueue.put(new QueuedCallback(callback, sequenceNumber, true));
-         } catch (InvalidProtocolBufferException e) {
-            LOGGER.warning(() -> String.format(
-                  "Failed to parse callback request with sequence number %d: %s",
-                  sequenceNumber,
-                  e));
-            sendHlaCallbackErrorResponse(_persistentSession, sequenceNumber, e);
+            _callbackQueue.put(new QueuedCallback(hlaCallback, sequenceNumber));
+            if (_isCallbackQueueDiscarded) {
+               // Received while the session was being cleaned up, after the queue was emptied.
+               releaseQueuedCallbacks();
+            }
          } catch (InterruptedException e) {
             // Time to leave
+            hlaCallback.release();
             sendHlaCallbackErrorResponse(_persistentSession, sequenceNumber, e);
          }
       }
    }
 
+   // Only written under _connectionStateLock. Volatile, so that HLA calls can read it without taking the lock.
    @GuardedBy("_connectionStateLock")
-   protected ClientSession _clientSession = null;
+   protected volatile ClientSession _clientSession = null;
    private final AtomicReference<Thread> _callbackInProgressThread = new AtomicReference<>();
 
    // Protect connect and disconnect calls here at the top level, to simplify some code.
@@ -256,8 +275,10 @@ public abstract class RTIambassadorClientGenericBase {
    protected boolean _printStats;
    protected int _printStatsIntervalMillis;
 
-   private static class QueuedCallback {
+   static class QueuedCallback {
       final CallbackRequest callbackRequest;
+      // Set instead of callbackRequest for callbacks received from the server, which are parsed when dispatched.
+      final PayloadBuffer encodedCallbackRequest;
       final int sequenceNumber;
       final boolean needsResponse;
 
@@ -265,9 +286,19 @@ public abstract class RTIambassadorClientGenericBase {
             CallbackRequest callbackRequest, int sequenceNumber, boolean needsResponse)
       {
          this.callbackRequest = callbackRequest;
+         this.encodedCallbackRequest = null;
          this.sequenceNumber = sequenceNumber;
          this.needsResponse = needsResponse;
       }
+
+      public QueuedCallback(
+            PayloadBuffer encodedCallbackRequest, int sequenceNumber)
+      {
+         this.callbackRequest = null;
+         this.encodedCallbackRequest = encodedCallbackRequest;
+         this.sequenceNumber = sequenceNumber;
+         this.needsResponse = true;
+      }
    }
 
    private static final QueuedCallback POISON = new QueuedCallback(null, 0, false);
@@ -409,11 +440,39 @@ public abstract class RTIambassadorClientGenericBase {
       }
    }
 
-   private void dispatchCallback(QueuedCallback queuedCallback, PersistentSession session)
+   void dispatchCallback(QueuedCallback queuedCallback, PersistentSession session)
+   {
+      PayloadBuffer encodedCallbackRequest = queuedCallback.encodedCallbackRequest;
+      try {
+         CallbackRequest callbackRequest;
+         if (encodedCallbackRequest != null) {
+            try {
+               callbackRequest = parseCallbackRequest(encodedCallbackRequest);
+            } catch (InvalidProtocolBufferException e) {
+               LOGGER.warning(() -> String.format(
+                     "Failed to parse callback request with sequence number %d: %s",
+                     queuedCallback.sequenceNumber,
+                     e));
+               sendHlaCallbackErrorResponse(session, queuedCallback.sequenceNumber, e);
+               return;
+            }
+         } else {
+            callbackRequest = queuedCallback.callbackRequest;
+         }
+         dispatchCallback(queuedCallback, callbackRequest, session);
+      } finally {
+         if (encodedCallbackRequest != null) {
+            encodedCallbackRequest.release();
+         }
+      }
+   }
+
+   private void dispatchCallback(
+         QueuedCallback queuedCallback, CallbackRequest callbackRequest, PersistentSession session)
    {
       try {
          _callbackInProgressThread.set(Thread.currentThread());
-         dispatchHlaVersionSpecificCallback(queuedCallback.callbackRequest);
+         dispatchHlaVersionSpecificCallback(callbackRequest);
          _callbackInProgressThread.set(null);
 
          if (session != null && queuedCallback.needsResponse) {
@@ -435,6 +494,22 @@ public abstract class RTIambassadorClientGenericBase {
       }
    }
 
+   /**
+    * Parse with aliasing, so that bytes fields such as attribute values reference the received buffer instead of being
+    * copied. The request must not be used after the buffer is released. The converters copy what the federate gets.
+    * <p>
+    * Protobuf only aliases input that it considers immutable, so the buffer is wrapped without copying first.
+    */
+   private static CallbackRequest parseCallbackRequest(PayloadBuffer encodedCallbackRequest)
+   throws InvalidProtocolBufferException
+   {
+      CodedInputStream input = UnsafeByteOperations
+            .unsafeWrap(encodedCallbackRequest.array(), 0, encodedCallbackRequest.length())
+            .newCodedInput();
+      input.enableAliasing(true);
+      return CallbackRequest.parser().parseFrom(input);
+   }
+
    protected abstract void dispatchHlaVersionSpecificCallback(CallbackRequest callbackRequest)
    throws FedProFederateInternalError, FedProRtiInternalError;
 
@@ -490,9 +565,7 @@ public abstract class RTIambassadorClientGenericBase {
 
    ClientSession getClientSession()
    {
-      synchronized (_connectionStateLock) {
-         return _clientSession;
-      }
+      return _clientSession;
    }
 
    protected CallResponse decodeHlaCallResponse(byte[] encodedResponse)
@@ -505,6 +578,21 @@ public abstract class RTIambassadorClientGenericBase {
       return callResponse;
    }
 
+   private CallResponse decodeHlaCallResponse(PayloadBuffer encodedResponse)
+   throws IOException, FedProRtiInternalError
+   {
+      CallResponse callResponse;
+      try {
+         callResponse = CallResponse.parseFrom(encodedResponse.asByteBuffer());
+      } finally {
+         encodedResponse.release();
+      }
+
+      throwOnException(callResponse);
+
+      return callResponse;
+   }
+
    protected CallResponse doHlaCallBase(CallRequest callRequest)
    throws FedProRtiInternalError, FedProNotConnected
    {
@@ -520,10 +608,10 @@ public abstract class RTIambassadorClientGenericBase {
             throw new FedProNotConnected("Federate is not connected");
          }
          long sendtime = MovingStats.validTimeMillis();
-         CompletableFuture<byte[]> call = session.sendHlaCallRequest(callRequest.toByteArray());
+         CompletableFuture<PayloadBuffer> call = session.sendHlaCallRequestWithPooledResponse(encodeFramed(callRequest));
 
          try {
-            byte[] response = call.join();
+            PayloadBuffer response = call.join();
             _hlaCallTimeStats.sample((int) (MovingStats.validTimeMillis() - sendtime));
 
             return decodeHlaCallResponse(response);
@@ -561,7 +649,7 @@ public abstract class RTIambassadorClientGenericBase {
          }
 
          long sendtime = MovingStats.validTimeMillis();
-         return session.sendHlaCallRequest(callRequest.toByteArray()).thenApply(bytes -> {
+         return session.sendHlaCallRequest(encodeFramed(callRequest)).thenApply(bytes -> {
             _hlaCallTimeStats.sample((int) (MovingStats.validTimeMillis() - sendtime));
             return bytes;
          });
@@ -570,6 +658,24 @@ public abstract class RTIambassadorClientGenericBase {
       }
    }
 
+   /**
+    * Serialize the request once, directly into the array that the message will be sent from.
+    */
+   private static FramedPayload encodeFramed(CallRequest callRequest)
+   {
+      FramedPayload payload = FramedPayload.allocate(callRequest.getSerializedSize());
+      CodedOutputStream output =
+            CodedOutputStream.newInstance(payload.array(), payload.payloadOffset(), payload.payloadSize());
+      try {
+         callRequest.writeTo(output);
+         output.checkNoSpaceLeft();
+      } catch (IOException e) {
+         // Only thrown if the serialized size was wrong.
+         throw new IllegalStateException("Failed to encode HLA call", e);
+      }
+      return payload;
+   }
+
    // Derived classes sneakily throw API-specific RTIexception
    protected abstract void throwOnException(CallResponse callResponse)
    throws FedProRtiInternalError;
@@ -604,7 +710,7 @@ public abstract class RTIambassadorClientGenericBase {
             createTransportConfiguration(settings),
             this::sessionTerminated,
             settings,
-            new SimpleResumeStrategy(settings),
+            createResumeStrategy(settings),
             createCallbackThread);
 
       TypedProperties allServiceSettingsUsed = new TypedProperties();
@@ -635,6 +741,14 @@ public abstract class RTIambassadorClientGenericBase {
       return _clientSession._persistentSession;
    }
 
+   private static ResumeStrategy createResumeStrategy(TypedProperties settings)
+   {
+      if (settings.getBoolean(SETTING_NAME_RESUME_BACKOFF, SessionSettings.DEFAULT_RESUME_BACKOFF)) {
+         return new BackoffResumeStrategy(settings);
+      }
+      return new SimpleResumeStrategy(settings);
+   }
+
    private Transport createTransportConfiguration(TypedProperties settings)
    throws FedProRtiInternalError
    {
@@ -648,6 +762,10 @@ public abstract class RTIambassadorClientGenericBase {
             return TransportFactory.createWebSocketSecureTransport(settings);
          case Protocol.TCP:
             return TransportFactory.createTcpTransport(settings);
+         case Protocol.UDS:
+            return TransportFactory.createUdsTransport(settings);
+         case Protocol.SHM:
+            return TransportFactory.createShmTransport(settings);
          default:
             throw new FedProRtiInternalError(String.format("Invalid network protocol '%s' in settings", _protocol));
       }
@@ -661,7 +779,8 @@ public abstract class RTIambassadorClientGenericBase {
          throw new FedProRtiInternalError("Cannot start session before initialization");
       }
       try {
-         _clientSession._persistentSession.start(_clientSession::hlaCallbackRequest);
+         Session.PooledHlaCallbackRequestListener callbackRequestListener = _clientSession::hlaCallbackRequest;
+         _clientSession._persistentSession.start(callbackRequestListener);
       } catch (SessionLost | SessionIllegalState e) {
          // There's no point keeping the session if it failed to initialize
          _clientSession = null;
@@ -743,7 +862,7 @@ public abstract class RTIambassadorClientGenericBase {
    protected void startSessionThreads(ClientSession clientSession)
    {
       if (_printStats) {
-         clientSession.startStatPrinting(_statPrintingExecutor, this::printStats, _printStatsIntervalMillis);
+         clientSession.startStatPrinting(this::printStats, _printStatsIntervalMillis);
       }
       clientSession.startCallbackThread();
    }
@@ -141,6 +141,13 @@ public class SettingsParser {
          case SETTING_NAME_RATE_LIMIT_ENABLED:
          case SETTING_NAME_PRINT_STATS:
          case SETTING_NAME_WARN_ON_LATE_STATE_LISTENER_SHUTDOWN:
+         case SETTING_NAME_CONNECTION_EVENT_LOOP:
+         case SETTING_NAME_BATCH_WRITES_ENABLED:
+         case SETTING_NAME_HISTORY_OFF_HEAP:
+         case SETTING_NAME_HISTORY_SPILL:
+         case SETTING_NAME_VIRTUAL_THREADS:
+         case SETTING_NAME_WEBSOCKET_COMPRESSION:
+         case SETTING_NAME_RESUME_BACKOFF:
             parseBoolean(settings, key, value);
             break;
          case SETTING_NAME_CONNECTION_PORT:
@@ -149,12 +156,29 @@ public class SettingsParser {
          case SETTING_NAME_CONNECTION_PROTOCOL:
             parseProtocol(settings, value);
             break;
+         case SETTING_NAME_RESPONSE_COMPLETION:
+            parseOneOf(settings, key, value, ALLOWED_RESPONSE_COMPLETIONS);
+            break;
+         case SETTING_NAME_RATE_LIMIT_ALGORITHM:
+            parseOneOf(settings, key, value, ALLOWED_RATE_LIMIT_ALGORITHMS);
+            break;
          case SETTING_NAME_KEYSTORE_PATH:
+         case SETTING_NAME_HISTORY_SPILL_PATH:
+         case SETTING_NAME_CONNECTION_PATH:
             parsePath(settings, key, value);
             break;
          case SETTING_NAME_CONNECTION_MAX_RETRY_ATTEMPTS:
          case SETTING_NAME_RESUME_RETRY_DELAY_MILLIS:
          case SETTING_NAME_MESSAGE_QUEUE_SIZE:
+         case SETTING_NAME_CONNECTION_EVENT_LOOP_THREADS:
+         case SETTING_NAME_BATCH_MAX_BYTES:
+         case SETTING_NAME_MESSAGE_QUEUE_MAX_BYTES:
+         case SETTING_NAME_HISTORY_MAX_BYTES:
+         case SETTING_NAME_HISTORY_SPILL_MAX_BYTES:
+         case SETTING_NAME_WEBSOCKET_FRAME_MAX_BYTES:
+         case SETTING_NAME_WEBSOCKET_COMPRESSION_THRESHOLD:
+         case SETTING_NAME_WEBSOCKET_COMPRESSION_LEVEL:
+         case SETTING_NAME_SHM_RING_BYTES:
             parseUnsignedInt32(settings, key, value);
             break;
          case SETTING_NAME_CONNECTION_HOST:
@@ -225,6 +249,20 @@ public class SettingsParser {
       settings.setString(SETTING_NAME_CONNECTION_PROTOCOL, protocol.toLowerCase());
    }
 
+   private static void parseOneOf(
+         TypedProperties settings,
+         String settingName,
+         String value,
+         String[] allowedValues)
+   throws InvalidSetting
+   {
+      if (Arrays.stream(allowedValues).noneMatch(value::equalsIgnoreCase)) {
+         throw new InvalidSetting("'" + value + "' is not a valid value for " + settingName + ", valid values are " +
+               String.join(", ", allowedValues) + ".");
+      }
+      settings.setString(settingName, value.toLowerCase());
+   }
+
    private static void parseUnsignedInt16(
          TypedProperties settings,
          String settingName,
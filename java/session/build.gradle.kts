@@ -36,6 +36,20 @@ sourceSets {
             setSrcDirs(listOf("src"))
         }
     }
+    // Classes that replace their Java 11 versions when running on Java 16 or 21 or later, see the Multi-Release jar
+    // below.
+    create("java16") {
+        java {
+            setSrcDirs(listOf("src-java16"))
+        }
+        compileClasspath += sourceSets["main"].output
+    }
+    create("java21") {
+        java {
+            setSrcDirs(listOf("src-java21"))
+        }
+        compileClasspath += sourceSets["main"].output
+    }
 }
 
 java {
@@ -45,6 +59,32 @@ java {
     }
 }
 
+tasks.named<JavaCompile>("compileJava16Java") {
+    javaCompiler = javaToolchains.compilerFor {
+        languageVersion = JavaLanguageVersion.of(17)
+    }
+    options.release = 16
+}
+
+tasks.named<JavaCompile>("compileJava21Java") {
+    javaCompiler = javaToolchains.compilerFor {
+        languageVersion = JavaLanguageVersion.of(21)
+    }
+    options.release = 21
+}
+
+tasks.jar {
+    into("META-INF/versions/16") {
+        from(sourceSets["java16"].output)
+    }
+    into("META-INF/versions/21") {
+        from(sourceSets["java21"].output)
+    }
+    manifest {
+        attributes("Multi-Release" to "true")
+    }
+}
+
 mavenPublishing {
     coordinates("se.pitch.oss.fedpro", "fedpro-session", libs.versions.fed.pro.client.get())
 
@@ -0,0 +1,93 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.pitch.oss.fedpro.client;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static se.pitch.oss.fedpro.client.Settings.SETTING_NAME_RECONNECT_LIMIT;
+import static se.pitch.oss.fedpro.client.Settings.SETTING_NAME_RESUME_RETRY_DELAY_MILLIS;
+import static se.pitch.oss.fedpro.client.session.SessionSettings.*;
+
+/**
+ * This resume strategy retries quickly after a dropped session, then backs off exponentially up to a maximum delay.
+ * Each delay is randomized, so that many clients that lost their connections at the same time do not all try to
+ * resume at the same time.
+ * <p>
+ * The delay before an attempt is a random value between half of, and the whole of, the time since the disconnect,
+ * but no shorter than the initial delay and no longer than the maximum delay. Since each delay is about as long as
+ * all previous delays together, the delays roughly double until the maximum is reached.
+ */
+public class BackoffResumeStrategy implements ResumeStrategy {
+
+   private final long _initialDelayMillis;
+   private final long _maxDelayMillis;
+   private final long _reconnectLimitMillis;
+
+   public BackoffResumeStrategy()
+   {
+      this(null);
+   }
+
+   /**
+    * The maximum delay is taken from the same setting as the fixed delay of {@link SimpleResumeStrategy}.
+    */
+   public BackoffResumeStrategy(TypedProperties settings)
+   {
+      _initialDelayMillis = getDefaultBackoffInitialDelayMillis();
+      if (settings != null) {
+         _reconnectLimitMillis = settings.getDuration(
+                     SETTING_NAME_RECONNECT_LIMIT, Duration.ofMillis(getDefaultReconnectLimitMillis()))
+               .toMillis();
+         _maxDelayMillis = settings.getInt(SETTING_NAME_RESUME_RETRY_DELAY_MILLIS,
+               (int) getDefaultReconnectDelayMillis());
+      } else {
+         _reconnectLimitMillis = getDefaultReconnectLimitMillis();
+         _maxDelayMillis = getDefaultReconnectDelayMillis();
+      }
+   }
+
+   public BackoffResumeStrategy(
+         long initialDelayMillis,
+         long maxDelayMillis,
+         long reconnectLimitMillis)
+   {
+      _initialDelayMillis = initialDelayMillis;
+      _maxDelayMillis = maxDelayMillis;
+      _reconnectLimitMillis = reconnectLimitMillis;
+   }
+
+   @Override
+   public boolean shouldRetry(long timeSinceDisconnectMillis)
+   {
+      return timeSinceDisconnectMillis < _reconnectLimitMillis;
+   }
+
+   @Override
+   public long getRetryDelay(long timeSinceDisconnectMillis)
+   {
+      long ceiling = Math.min(_maxDelayMillis, Math.max(_initialDelayMillis, timeSinceDisconnectMillis));
+      return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling - ceiling / 2 + 1);
+   }
+
+   @Override
+   public long getRetryLimitMillis()
+   {
+      return _reconnectLimitMillis;
+   }
+}
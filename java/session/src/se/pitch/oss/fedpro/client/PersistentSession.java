@@ -19,6 +19,8 @@ package se.pitch.oss.fedpro.client;
 import se.pitch.oss.fedpro.common.exceptions.SessionAlreadyTerminated;
 import se.pitch.oss.fedpro.common.exceptions.SessionIllegalState;
 import se.pitch.oss.fedpro.common.exceptions.SessionLost;
+import se.pitch.oss.fedpro.common.session.buffers.FramedPayload;
+import se.pitch.oss.fedpro.common.session.buffers.PayloadBuffer;
 
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
@@ -102,6 +104,45 @@ public interface PersistentSession {
    CompletableFuture<byte[]> sendHlaCallRequest(byte[] encodedHlaCall)
    throws SessionIllegalState;
 
+   /**
+    * Send an HLA call to the server, like {@link #sendHlaCallRequest(byte[])}, with the call already encoded into a
+    * frame. The frame is sent without copying it and must not be modified afterwards.
+    *
+    * @param encodedHlaCall The encoded HLA call.
+    * @return A future that will be completed with the response to the HLA call, or, if
+    *       the connection is terminated before the call can be completed, with an exception.
+    * @throws SessionAlreadyTerminated If the session is already terminated.
+    * @throws SessionIllegalState      If the operation is not allowed in this state.
+    */
+   CompletableFuture<byte[]> sendHlaCallRequest(FramedPayload encodedHlaCall)
+   throws SessionIllegalState;
+
+   /**
+    * Send an HLA call to the server, like {@link #sendHlaCallRequest(byte[])}, with the response delivered in a
+    * pooled buffer. The caller must call {@link PayloadBuffer#release()} on the response once it is no longer used.
+    *
+    * @param encodedHlaCall The encoded HLA call.
+    * @return A future that will be completed with the response to the HLA call, or, if
+    *       the connection is terminated before the call can be completed, with an exception.
+    * @throws SessionAlreadyTerminated If the session is already terminated.
+    * @throws SessionIllegalState      If the operation is not allowed in this state.
+    */
+   CompletableFuture<PayloadBuffer> sendHlaCallRequestWithPooledResponse(byte[] encodedHlaCall)
+   throws SessionIllegalState;
+
+   /**
+    * Send an HLA call to the server, like {@link #sendHlaCallRequestWithPooledResponse(byte[])}, with the call already
+    * encoded into a frame. The frame is sent without copying it and must not be modified afterwards.
+    *
+    * @param encodedHlaCall The encoded HLA call.
+    * @return A future that will be completed with the response to the HLA call, or, if
+    *       the connection is terminated before the call can be completed, with an exception.
+    * @throws SessionAlreadyTerminated If the session is already terminated.
+    * @throws SessionIllegalState      If the operation is not allowed in this state.
+    */
+   CompletableFuture<PayloadBuffer> sendHlaCallRequestWithPooledResponse(FramedPayload encodedHlaCall)
+   throws SessionIllegalState;
+
    /**
     * Send a response to an HLA callback received from the server.
     *
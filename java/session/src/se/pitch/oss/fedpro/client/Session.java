@@ -19,6 +19,8 @@ package se.pitch.oss.fedpro.client;
 import se.pitch.oss.fedpro.common.exceptions.SessionIllegalState;
 import se.pitch.oss.fedpro.common.exceptions.SessionAlreadyTerminated;
 import se.pitch.oss.fedpro.common.exceptions.SessionLost;
+import se.pitch.oss.fedpro.common.session.buffers.FramedPayload;
+import se.pitch.oss.fedpro.common.session.buffers.PayloadBuffer;
 
 import java.io.IOException;
 import java.util.concurrent.CompletableFuture;
@@ -81,6 +83,34 @@ public interface Session {
             byte[] hlaCallback);
    }
 
+   /**
+    * A callback request listener that receives callbacks in pooled buffers, to avoid allocating an array for every
+    * received callback. Pass it to start in place of a {@link HlaCallbackRequestListener}.
+    */
+   @FunctionalInterface
+   interface PooledHlaCallbackRequestListener extends HlaCallbackRequestListener {
+      /**
+       * Handler for callback request, HLA_CALLBACK_REQUEST, messages.
+       * <p>
+       * The session releases the buffer when this method returns. To use the buffer after that, call
+       * {@link PayloadBuffer#retain()} before returning, and {@link PayloadBuffer#release()} when done.
+       *
+       * @param sequenceNumber Sequence number of the callback request.
+       * @param hlaCallback    Encoded callback request.
+       */
+      void onHlaCallbackRequest(
+            int sequenceNumber,
+            PayloadBuffer hlaCallback);
+
+      @Override
+      default void onHlaCallbackRequest(
+            int sequenceNumber,
+            byte[] hlaCallback)
+      {
+         onHlaCallbackRequest(sequenceNumber, PayloadBuffer.wrap(hlaCallback));
+      }
+   }
+
    @FunctionalInterface
    interface StateListener {
       /**
@@ -220,6 +250,41 @@ public interface Session {
    CompletableFuture<byte[]> sendHlaCallRequest(byte[] encodedHlaCall)
    throws SessionIllegalState;
 
+   /**
+    * Send an HLA call message (HLA_CALL_REQUEST), with the call already encoded into a frame that has space reserved
+    * for the message header. The frame is sent without copying it and must not be modified afterwards.
+    *
+    * @return A completable future for the HLA call response message.
+    * @throws SessionAlreadyTerminated If the session is already terminated.
+    * @throws SessionIllegalState      If the operation is not allowed in this state.
+    */
+   CompletableFuture<byte[]> sendHlaCallRequest(FramedPayload encodedHlaCall)
+   throws SessionIllegalState;
+
+   /**
+    * Send an HLA call message (HLA_CALL_REQUEST), with the response delivered in a pooled buffer.
+    * <p>
+    * The caller must call {@link PayloadBuffer#release()} on the response once it is no longer used.
+    *
+    * @return A completable future for the HLA call response message.
+    * @throws SessionAlreadyTerminated If the session is already terminated.
+    * @throws SessionIllegalState      If the operation is not allowed in this state.
+    */
+   CompletableFuture<PayloadBuffer> sendHlaCallRequestWithPooledResponse(byte[] encodedHlaCall)
+   throws SessionIllegalState;
+
+   /**
+    * Send an HLA call message (HLA_CALL_REQUEST) that is already encoded into a frame, with the response delivered in
+    * a pooled buffer. See {@link #sendHlaCallRequest(FramedPayload)} and
+    * {@link #sendHlaCallRequestWithPooledResponse(byte[])}.
+    *
+    * @return A completable future for the HLA call response message.
+    * @throws SessionAlreadyTerminated If the session is already terminated.
+    * @throws SessionIllegalState      If the operation is not allowed in this state.
+    */
+   CompletableFuture<PayloadBuffer> sendHlaCallRequestWithPooledResponse(FramedPayload encodedHlaCall)
+   throws SessionIllegalState;
+
    /**
     * Send an HLA callback response message (HLA_CALLBACK_RESPONSE).
     *
@@ -19,6 +19,8 @@ package se.pitch.oss.fedpro.client;
 import se.pitch.oss.fedpro.client.session.PersistentSessionImpl;
 import se.pitch.oss.fedpro.client.session.SessionImpl;
 
+import java.util.concurrent.Executor;
+
 public class SessionFactory {
 
    /**
@@ -48,6 +50,25 @@ public class SessionFactory {
       return new SessionImpl(transportProtocol, settings);
    }
 
+   /**
+    * Create a new client session that completes the futures of HLA call requests on the specified executor.
+    *
+    * @param transportProtocol Client transport to be used for the new session.
+    * @param settings          The FedProProperties object instance which session
+    *                          layer settings will be loaded from.
+    *                          Unprovided settings will get default values and
+    *                          non-session settings will be ignored.
+    * @param responseExecutor  The executor on which responses are completed.
+    * @return A new Session instance.
+    */
+   public static Session createSession(
+         Transport transportProtocol,
+         TypedProperties settings,
+         Executor responseExecutor)
+   {
+      return new SessionImpl(transportProtocol, settings, responseExecutor);
+   }
+
    /**
     * Create a new persistent client session with default resume strategy.
     *
@@ -109,4 +130,39 @@ public class SessionFactory {
       return new PersistentSessionImpl(transportProtocol, connectionLostListener, sessionTerminatedListener, settings, resumeStrategy);
    }
 
+   /**
+    * Create a new persistent client session with a custom resume strategy, that completes the futures of HLA call
+    * requests on the specified executor.
+    *
+    * @param transportProtocol      The underlying transport protocol.
+    * @param connectionLostListener The listener to be invoked when the session is
+    *                               terminally lost due to connection issues.
+    * @param settings               The FedProProperties object instance which session
+    *                               layer settings will be loaded from.
+    *                               Unprovided settings will get default values and
+    *                               non-session settings will be ignored.
+    * @param resumeStrategy         A ResumeStrategy instance that will control when, how
+    *                               often and for how long reconnection attempts are made
+    *                               in case of a lost connection.
+    * @param responseExecutor       The executor on which responses are completed.
+    * @return A new PersistentSession instance.
+    * @throws NullPointerException If resumeStrategy is null.
+    */
+   public static PersistentSession createPersistentSession(
+         Transport transportProtocol,
+         PersistentSession.ConnectionLostListener connectionLostListener,
+         PersistentSession.SessionTerminatedListener sessionTerminatedListener,
+         TypedProperties settings,
+         ResumeStrategy resumeStrategy,
+         Executor responseExecutor)
+   {
+      return new PersistentSessionImpl(
+            transportProtocol,
+            connectionLostListener,
+            sessionTerminatedListener,
+            settings,
+            resumeStrategy,
+            responseExecutor);
+   }
+
 }
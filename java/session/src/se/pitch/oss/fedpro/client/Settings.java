@@ -49,21 +49,61 @@ public class Settings {
    public static final String SETTING_NAME_CONNECTION_HOST = "connect.hostname"; // Transport
    public static final String SETTING_NAME_CONNECTION_MAX_RETRY_ATTEMPTS = "connect.maxRetryAttempts"; // Session
    public static final String SETTING_NAME_RESUME_RETRY_DELAY_MILLIS = "resume.retryDelayMillis"; // Session
+   public static final String SETTING_NAME_RESUME_BACKOFF = "resume.backoff"; // Session
+   public static final String SETTING_NAME_RESPONSE_COMPLETION = "response.completion"; // Session
+   public static final String SETTING_NAME_VIRTUAL_THREADS = "threads.virtual"; // Session
    public static final String SETTING_NAME_CONNECTION_PORT = "connect.port"; // Transport // Service
+   public static final String SETTING_NAME_CONNECTION_PATH = "connect.path"; // Transport
    public static final String SETTING_NAME_CONNECTION_PROTOCOL = "connect.protocol";
    public static final String SETTING_NAME_CONNECTION_TIMEOUT = "connect.timeout"; // Session
+   public static final String SETTING_NAME_CONNECTION_EVENT_LOOP = "connect.eventLoop"; // Transport
+   public static final String SETTING_NAME_CONNECTION_EVENT_LOOP_THREADS = "connect.eventLoop.threads"; // Transport
    public static final String SETTING_NAME_KEYSTORE_ALGORITHM = "keystore.algorithm"; // Transport
    public static final String SETTING_NAME_KEYSTORE_PASSWORD_PATH = "keystore.password.path"; // Transport
    public static final String SETTING_NAME_KEYSTORE_PATH = "keystore.path"; // Transport
    public static final String SETTING_NAME_KEYSTORE_TYPE = "keystore.type"; // Transport
    public static final String SETTING_NAME_MESSAGE_QUEUE_SIZE = "messageQueue.size"; // Session
+   public static final String SETTING_NAME_MESSAGE_QUEUE_MAX_BYTES = "messageQueue.maxBytes"; // Session
    public static final String SETTING_NAME_RATE_LIMIT_ENABLED = "messageQueue.outgoing.limitedRate"; // Session
+   public static final String SETTING_NAME_RATE_LIMIT_ALGORITHM = "messageQueue.outgoing.limitedRate.algorithm"; // Session
+   public static final String SETTING_NAME_BATCH_WRITES_ENABLED = "messageQueue.outgoing.batchWrites"; // Session
+   public static final String SETTING_NAME_BATCH_MAX_BYTES = "messageQueue.outgoing.batchMaxBytes"; // Session
+   public static final String SETTING_NAME_HISTORY_OFF_HEAP = "messageQueue.history.offHeap"; // Session
+   public static final String SETTING_NAME_HISTORY_MAX_BYTES = "messageQueue.history.maxBytes"; // Session
+   public static final String SETTING_NAME_HISTORY_SPILL = "messageQueue.history.spill"; // Session
+   public static final String SETTING_NAME_HISTORY_SPILL_PATH = "messageQueue.history.spill.path"; // Session
+   public static final String SETTING_NAME_HISTORY_SPILL_MAX_BYTES = "messageQueue.history.spill.maxBytes"; // Session
    public static final String SETTING_NAME_TLS_MODE = "tls.mode"; // Transport
    public static final String SETTING_NAME_TLS_SNI = "tls.sniHostname"; // Transport
+   public static final String SETTING_NAME_WEBSOCKET_FRAME_MAX_BYTES = "websocket.frameMaxBytes"; // Transport
+   public static final String SETTING_NAME_WEBSOCKET_COMPRESSION = "websocket.compression"; // Transport
+   public static final String SETTING_NAME_WEBSOCKET_COMPRESSION_THRESHOLD = "websocket.compression.threshold"; // Transport
+   public static final String SETTING_NAME_WEBSOCKET_COMPRESSION_LEVEL = "websocket.compression.level"; // Transport
+   public static final String SETTING_NAME_SHM_RING_BYTES = "shm.ringBytes"; // Transport
    public static final String SETTING_NAME_PRINT_STATS = "log.stats"; // Session, Service
    public static final String SETTING_NAME_PRINT_STATS_INTERVAL = "log.stats.interval"; // Session, Service
    public static final String SETTING_NAME_HLA_API_VERSION = "API.version";
 
+   /**
+    * Values of SETTING_NAME_RESPONSE_COMPLETION.
+    */
+   public static final String RESPONSE_COMPLETION_ASYNC = "async";
+   public static final String RESPONSE_COMPLETION_DIRECT = "direct";
+   public static final String RESPONSE_COMPLETION_EXECUTOR = "executor";
+   public static final String[] ALLOWED_RESPONSE_COMPLETIONS = {
+         RESPONSE_COMPLETION_ASYNC,
+         RESPONSE_COMPLETION_DIRECT,
+         RESPONSE_COMPLETION_EXECUTOR};
+
+   /**
+    * Values of SETTING_NAME_RATE_LIMIT_ALGORITHM.
+    */
+   public static final String RATE_LIMIT_ALGORITHM_EXPONENTIAL = "exponential";
+   public static final String RATE_LIMIT_ALGORITHM_ADAPTIVE = "adaptive";
+   public static final String[] ALLOWED_RATE_LIMIT_ALGORITHMS = {
+         RATE_LIMIT_ALGORITHM_EXPONENTIAL,
+         RATE_LIMIT_ALGORITHM_ADAPTIVE};
+
    /**
     * Undocumented settings
     */
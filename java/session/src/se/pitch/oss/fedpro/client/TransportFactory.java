@@ -191,6 +191,56 @@ public class TransportFactory {
       return new WebSocketSecureTransport(context, settings);
    }
 
+   /**
+    * Create a new Unix domain socket specific transport instance with default settings. The path of the socket must be
+    * set with the connect.path setting, so this transport cannot connect.
+    *
+    * @return A new Transport instance.
+    */
+   public static Transport createUdsTransport()
+   {
+      return createUdsTransport(null);
+   }
+
+   /**
+    * Create a new Unix domain socket specific transport instance with specified settings. Requires Java 16 or later.
+    *
+    * @param settings The FedProProperties object instance which transport layer settings
+    *                 will be loaded from.
+    *                 Unprovided settings will get default values and non-transport
+    *                 settings will be ignored.
+    * @return A new Transport instance.
+    */
+   public static Transport createUdsTransport(TypedProperties settings)
+   {
+      return new UdsTransport(settings);
+   }
+
+   /**
+    * Create a new shared memory specific transport instance with default settings, that connects to a server on the
+    * same host which accepts connections in /dev/shm/fedpro.
+    *
+    * @return A new Transport instance.
+    */
+   public static Transport createShmTransport()
+   {
+      return createShmTransport(null);
+   }
+
+   /**
+    * Create a new shared memory specific transport instance with specified settings.
+    *
+    * @param settings The FedProProperties object instance which transport layer settings
+    *                 will be loaded from.
+    *                 Unprovided settings will get default values and non-transport
+    *                 settings will be ignored.
+    * @return A new Transport instance.
+    */
+   public static Transport createShmTransport(TypedProperties settings)
+   {
+      return new ShmTransport(settings);
+   }
+
    public static TlsKeys createTlsKeys()
    {
       return new TlsKeysImpl();
@@ -18,16 +18,16 @@ package se.pitch.oss.fedpro.client.session;
 
 import se.pitch.oss.fedpro.common.session.MessageType;
 import se.pitch.oss.fedpro.common.session.MessageWriter;
+import se.pitch.oss.fedpro.common.session.SequenceNumberMap;
 import se.pitch.oss.fedpro.common.session.SequenceNumber;
 import se.pitch.oss.fedpro.common.session.buffers.GenericBuffer;
 import se.pitch.oss.fedpro.client.session.msg.*;
 
-import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 import static se.pitch.oss.fedpro.client.session.msg.ByteInfo.INT32_SIZE;
 
-// Not thread-safe
+// Thread-safe if the message queue is, see MessageWriter.
 public class ClientMessageWriter extends MessageWriter {
 
    public ClientMessageWriter(
@@ -50,7 +50,7 @@ public class ClientMessageWriter extends MessageWriter {
 
    public CompletableFuture<byte[]> writeHeartbeatMessage(
          int lastReceivedSequenceNumber,
-         Map<Integer, CompletableFuture<byte[]>> futuresMap)
+         SequenceNumberMap<CompletableFuture<byte[]>> futuresMap)
    {
       return addRequest(lastReceivedSequenceNumber, MessageType.CTRL_HEARTBEAT, futuresMap);
    }
@@ -77,16 +77,30 @@ public class ClientMessageWriter extends MessageWriter {
    }
 
    public CompletableFuture<byte[]> writeHlaCallRequest(
-         byte[] hlaServiceCallWithParams,
+         HlaCallRequestMessage hlaServiceCallWithParams,
          int lastReceivedSequenceNumber,
-         Map<Integer, CompletableFuture<byte[]>> futuresMap)
+         SequenceNumberMap<CompletableFuture<byte[]>> futuresMap)
+   {
+      return writeHlaCallRequest(
+            hlaServiceCallWithParams,
+            lastReceivedSequenceNumber,
+            futuresMap,
+            new CompletableFuture<>());
+   }
+
+   public CompletableFuture<byte[]> writeHlaCallRequest(
+         HlaCallRequestMessage hlaServiceCallWithParams,
+         int lastReceivedSequenceNumber,
+         SequenceNumberMap<CompletableFuture<byte[]>> futuresMap,
+         CompletableFuture<byte[]> result)
    {
       return addRequest(
-            hlaServiceCallWithParams.length,
+            hlaServiceCallWithParams.payloadSize(),
             lastReceivedSequenceNumber,
             MessageType.HLA_CALL_REQUEST,
-            new HlaCallRequestMessage(hlaServiceCallWithParams),
-            futuresMap);
+            hlaServiceCallWithParams,
+            futuresMap,
+            result);
    }
 
    public void writeHlaCallbackResponse(
@@ -19,10 +19,13 @@ package se.pitch.oss.fedpro.client.session;
 import se.pitch.oss.fedpro.client.*;
 import se.pitch.oss.fedpro.common.exceptions.SessionIllegalState;
 import se.pitch.oss.fedpro.common.exceptions.SessionLost;
+import se.pitch.oss.fedpro.common.session.buffers.FramedPayload;
+import se.pitch.oss.fedpro.common.session.buffers.PayloadBuffer;
 
 import java.io.IOException;
 import java.time.Duration;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -62,6 +65,22 @@ public class PersistentSessionImpl implements PersistentSession {
          SessionTerminatedListener sessionTerminatedListener,
          TypedProperties settings,
          ResumeStrategy resumeStrategy)
+   {
+      this(transportProtocol, connectionLostListener, sessionTerminatedListener, settings, resumeStrategy, null);
+   }
+
+   /**
+    * @param responseExecutor If not null, HLA call responses are completed on this executor.
+    * @see #PersistentSessionImpl(Transport, ConnectionLostListener, SessionTerminatedListener, TypedProperties,
+    *       ResumeStrategy)
+    */
+   public PersistentSessionImpl(
+         Transport transportProtocol,
+         ConnectionLostListener connectionLostListener,
+         SessionTerminatedListener sessionTerminatedListener,
+         TypedProperties settings,
+         ResumeStrategy resumeStrategy,
+         Executor responseExecutor)
    {
       if (resumeStrategy == null) {
          throw new NullPointerException(logPrefix() + ": The passed resume strategy is null.");
@@ -76,7 +95,7 @@ public class PersistentSessionImpl implements PersistentSession {
          _heartbeatIntervalMillis = DEFAULT_HEARTBEAT_INTERVAL_MILLIS;
       }
 
-      _session = new SessionImpl(transportProtocol, settings);
+      _session = new SessionImpl(transportProtocol, settings, responseExecutor);
       _connectionLostListener = connectionLostListener;
       _sessionTerminatedListener = sessionTerminatedListener;
       _resumeStrategy = resumeStrategy;
@@ -121,7 +140,8 @@ public class PersistentSessionImpl implements PersistentSession {
    {
       _sendHeartbeatTimer = TimeoutTimer.createEagerTimeoutTimer(
             "FedPro Client Session Heartbeat Timer",
-            _heartbeatIntervalMillis);
+            _heartbeatIntervalMillis,
+            _session.usesVirtualThreads());
       _session.setMessageSentListener(_sendHeartbeatTimer::extend);
       _sendHeartbeatTimer.start(this::heartbeat);
    }
@@ -133,6 +153,27 @@ public class PersistentSessionImpl implements PersistentSession {
       return _session.sendHlaCallRequest(encodedHlaCall);
    }
 
+   @Override
+   public CompletableFuture<byte[]> sendHlaCallRequest(FramedPayload encodedHlaCall)
+   throws SessionIllegalState
+   {
+      return _session.sendHlaCallRequest(encodedHlaCall);
+   }
+
+   @Override
+   public CompletableFuture<PayloadBuffer> sendHlaCallRequestWithPooledResponse(byte[] encodedHlaCall)
+   throws SessionIllegalState
+   {
+      return _session.sendHlaCallRequestWithPooledResponse(encodedHlaCall);
+   }
+
+   @Override
+   public CompletableFuture<PayloadBuffer> sendHlaCallRequestWithPooledResponse(FramedPayload encodedHlaCall)
+   throws SessionIllegalState
+   {
+      return _session.sendHlaCallRequestWithPooledResponse(encodedHlaCall);
+   }
+
    @Override
    public void sendHlaCallbackResponse(
          int responseToSequenceNumber,
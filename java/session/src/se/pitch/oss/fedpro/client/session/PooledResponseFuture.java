@@ -0,0 +1,46 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.pitch.oss.fedpro.client.session;
+
+import se.pitch.oss.fedpro.common.session.buffers.PayloadBuffer;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The request future of an HLA call whose response is delivered in a pooled buffer.
+ * <p>
+ * It takes the place of an ordinary request future in the session's bookkeeping, so that it is failed together with
+ * all other requests. The response itself is delivered through {@link #pooledResult()}, never through this future.
+ */
+class PooledResponseFuture extends CompletableFuture<byte[]> {
+
+   private final CompletableFuture<PayloadBuffer> _pooledResult = new CompletableFuture<>();
+
+   PooledResponseFuture()
+   {
+      whenComplete((ignored, throwable) -> {
+         if (throwable != null) {
+            _pooledResult.completeExceptionally(throwable);
+         }
+      });
+   }
+
+   CompletableFuture<PayloadBuffer> pooledResult()
+   {
+      return _pooledResult;
+   }
+}
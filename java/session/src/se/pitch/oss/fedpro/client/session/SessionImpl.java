@@ -27,18 +27,35 @@ import se.pitch.oss.fedpro.common.exceptions.SessionAlreadyTerminated;
 import se.pitch.oss.fedpro.common.exceptions.SessionIllegalState;
 import se.pitch.oss.fedpro.common.exceptions.SessionLost;
 import se.pitch.oss.fedpro.common.session.*;
-import se.pitch.oss.fedpro.common.session.buffers.RoundRobinBuffer;
+import se.pitch.oss.fedpro.common.session.buffers.ArenaMessageHistory;
+import se.pitch.oss.fedpro.common.session.buffers.ConcurrentRoundRobinBuffer;
+import se.pitch.oss.fedpro.common.session.buffers.FramedPayload;
+import se.pitch.oss.fedpro.common.session.buffers.HeapMessageHistory;
+import se.pitch.oss.fedpro.common.session.buffers.MessageHistory;
+import se.pitch.oss.fedpro.common.session.buffers.PayloadBuffer;
+import se.pitch.oss.fedpro.common.session.buffers.PayloadBufferPool;
+import se.pitch.oss.fedpro.common.session.buffers.SpillingMessageHistory;
+import se.pitch.oss.fedpro.common.session.flowcontrol.AdaptiveRateLimiter;
 import se.pitch.oss.fedpro.common.session.flowcontrol.ExponentialRateLimiter;
 import se.pitch.oss.fedpro.common.session.flowcontrol.NullRateLimiter;
 import se.pitch.oss.fedpro.common.session.flowcontrol.RateLimiter;
+import se.pitch.oss.fedpro.common.transport.CompressingSocket;
+import se.pitch.oss.fedpro.common.transport.EventDrivenSocket;
 import se.pitch.oss.fedpro.common.transport.FedProSocket;
+import se.pitch.oss.fedpro.common.transport.FrameReader;
 
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
 
 import static java.util.Map.entry;
@@ -54,6 +71,13 @@ public class SessionImpl implements Session {
 
    // TODO: Consider turning this into a FedPro setting.
    private static final long STATE_LISTENER_TIMEOUT_MILLIS = 100;
+   private static final int INBOUND_BUFFER_SIZE = 64 * 1024;
+   // Pause reading from an event driven socket when this many received bytes wait to be handled.
+   private static final int INBOUND_HIGH_WATER_MARK = 1024 * 1024;
+   // Delays between the attempts to start a session, see connectRetryDelayMillis().
+   private static final long CONNECT_RETRY_INITIAL_DELAY_MILLIS = 300;
+   private static final long CONNECT_RETRY_MAX_DELAY_MILLIS = 5_000;
+   private static final long OPERATIONS_POLL_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
 
    private final TransportBase _transport;
    private ClientMessageWriter _messageWriter;
@@ -64,23 +88,44 @@ public class SessionImpl implements Session {
    // Session layer settings
    private final long _sessionTimeoutMillis;
    private final boolean _rateLimitEnabled;
+   private final String _rateLimitAlgorithm;
    private final int _maxRetryConnectAttempts;
    private final long _connectionTimeoutMillis;
    private final int _queueSize;
-
-   private final Object _sessionLock = new Object();
+   private final int _batchMaxBytes;
+   private final int _queueMaxBytes;
+   private final boolean _historyOffHeap;
+   private final int _historyMaxBytes;
+   private final boolean _historySpill;
+   private final String _historySpillPath;
+   private final int _historySpillMaxBytes;
+   private final String _responseCompletion;
+   // Null if responses are not completed through an executor.
+   private final Executor _responseExecutor;
+
+   // A lock rather than a monitor, so that virtual threads waiting for a state transition do not pin their carrier
+   // thread.
+   private final ReentrantLock _sessionLock = new ReentrantLock();
+   // Signalled on every successful compareAndSetState().
+   private final Condition _stateChanged = _sessionLock.newCondition();
+   // Only written under _sessionLock. Volatile, so that doSessionOperation() and getState() can read it without it.
    @GuardedBy("_sessionLock")
-   private State _state = State.NEW;
+   private volatile State _state = State.NEW;
+   // The number of doSessionOperation() calls that may be running their operation, see awaitOperationsCompleted().
+   private final AtomicInteger _operationsInProgress = new AtomicInteger();
    private FedProSocket _socket;
    private long _sessionId = MessageHeader.NO_SESSION_ID;
    private String _sessionIdString = LogUtil.formatSessionId(_sessionId);
    private final AtomicSequenceNumber _lastReceivedSequenceNumber =
          new AtomicSequenceNumber(SequenceNumber.NO_SEQUENCE_NUMBER);
+   // The last federate sequence number that the server has acknowledged. Only written by the current reader.
+   private volatile int _lastAcknowledgedSequenceNumber = SequenceNumber.NO_SEQUENCE_NUMBER;
 
    // TODO: Save the original Exception that caused session to drop, and relay its message to federate
    //   in the connectionLost callback when and if we fail to resume the session.
    private final CompletableFuture<Void> _sessionTerminatedFuture = new CompletableFuture<>();
-   private final Map<Integer, CompletableFuture<byte[]>> _requestFutures = new ConcurrentHashMap<>();
+   private final SequenceNumberMap<CompletableFuture<byte[]>> _requestFutures;
+   private final PayloadBufferPool _payloadBufferPool = PayloadBufferPool.getShared();
 
    private HlaCallbackRequestListener _hlaCallbackRequestListener;
    private final ExecutorService _stateListenerExecutor;
@@ -88,16 +133,30 @@ public class SessionImpl implements Session {
 
    private MessageSentListener _messageSentListener;
 
-   private RoundRobinBuffer<QueueableMessage> _roundRobinMessageQueue;
+   private ConcurrentRoundRobinBuffer<QueueableMessage> _roundRobinMessageQueue;
+   private RateLimiter _rateLimiter;
    private final MovingStats _hlaCallStats;
    private final MovingStats _hlaCallbackStats;
    private final MovingStats _resumeCount;
 
    private final boolean _warnOnLateStateListenerShutdown;
+   private final boolean _virtualThreads;
 
    public SessionImpl(
          Transport transport,
          TypedProperties settings)
+   {
+      this(transport, settings, null);
+   }
+
+   /**
+    * @param responseExecutor If not null, HLA call responses are completed on this executor, regardless of the
+    *                         response.completion setting.
+    */
+   public SessionImpl(
+         Transport transport,
+         TypedProperties settings,
+         Executor responseExecutor)
    {
       _transport = (TransportBase) transport;
 
@@ -107,13 +166,28 @@ public class SessionImpl implements Session {
                SETTING_NAME_RESPONSE_TIMEOUT,
                Duration.ofMillis(DEFAULT_RESPONSE_TIMEOUT_MILLIS)).toMillis();
          _rateLimitEnabled = settings.getBoolean(SETTING_NAME_RATE_LIMIT_ENABLED, DEFAULT_RATE_LIMIT_ENABLED);
+         _rateLimitAlgorithm = settings.getString(SETTING_NAME_RATE_LIMIT_ALGORITHM, DEFAULT_RATE_LIMIT_ALGORITHM);
          _maxRetryConnectAttempts = settings.getInt(
                SETTING_NAME_CONNECTION_MAX_RETRY_ATTEMPTS, DEFAULT_CONNECTION_MAX_RETRY_ATTEMPTS);
          _connectionTimeoutMillis = settings.getDuration(
                SETTING_NAME_CONNECTION_TIMEOUT, Duration.ofMillis(DEFAULT_CONNECTION_TIMEOUT_MILLIS)).toMillis();
          _queueSize = settings.getInt(SETTING_NAME_MESSAGE_QUEUE_SIZE, DEFAULT_MESSAGE_QUEUE_SIZE);
+         _batchMaxBytes = settings.getBoolean(SETTING_NAME_BATCH_WRITES_ENABLED, DEFAULT_BATCH_WRITES_ENABLED) ?
+               settings.getInt(SETTING_NAME_BATCH_MAX_BYTES, DEFAULT_BATCH_MAX_BYTES) : 0;
+         _queueMaxBytes = settings.getInt(SETTING_NAME_MESSAGE_QUEUE_MAX_BYTES, DEFAULT_MESSAGE_QUEUE_MAX_BYTES);
+         _historyOffHeap = settings.getBoolean(SETTING_NAME_HISTORY_OFF_HEAP, DEFAULT_HISTORY_OFF_HEAP);
+         _historyMaxBytes = settings.getInt(
+               SETTING_NAME_HISTORY_MAX_BYTES,
+               _historyOffHeap ? DEFAULT_OFF_HEAP_HISTORY_MAX_BYTES : DEFAULT_HISTORY_MAX_BYTES);
+         _historySpill = settings.getBoolean(SETTING_NAME_HISTORY_SPILL, DEFAULT_HISTORY_SPILL);
+         _historySpillPath = settings.getString(
+               SETTING_NAME_HISTORY_SPILL_PATH,
+               System.getProperty("java.io.tmpdir"));
+         _historySpillMaxBytes = settings.getInt(SETTING_NAME_HISTORY_SPILL_MAX_BYTES, DEFAULT_HISTORY_SPILL_MAX_BYTES);
+         _responseCompletion = settings.getString(SETTING_NAME_RESPONSE_COMPLETION, DEFAULT_RESPONSE_COMPLETION);
          boolean printStats = settings.getBoolean(SETTING_NAME_PRINT_STATS, false);
          _warnOnLateStateListenerShutdown = settings.getBoolean(SETTING_NAME_WARN_ON_LATE_STATE_LISTENER_SHUTDOWN, true);
+         _virtualThreads = settings.getBoolean(SETTING_NAME_VIRTUAL_THREADS, DEFAULT_VIRTUAL_THREADS);
          if (printStats) {
             int statsIntervalMillis = (int) settings.getDuration(
                   SETTING_NAME_PRINT_STATS_INTERVAL,
@@ -130,19 +204,53 @@ public class SessionImpl implements Session {
          // Initialize settings
          _sessionTimeoutMillis = DEFAULT_RESPONSE_TIMEOUT_MILLIS;
          _rateLimitEnabled = DEFAULT_RATE_LIMIT_ENABLED;
+         _rateLimitAlgorithm = DEFAULT_RATE_LIMIT_ALGORITHM;
          _maxRetryConnectAttempts = DEFAULT_CONNECTION_MAX_RETRY_ATTEMPTS;
          _connectionTimeoutMillis = DEFAULT_CONNECTION_TIMEOUT_MILLIS;
          _queueSize = DEFAULT_MESSAGE_QUEUE_SIZE;
+         _batchMaxBytes = 0;
+         _queueMaxBytes = DEFAULT_MESSAGE_QUEUE_MAX_BYTES;
+         _historyOffHeap = DEFAULT_HISTORY_OFF_HEAP;
+         _historyMaxBytes = DEFAULT_HISTORY_MAX_BYTES;
+         _historySpill = DEFAULT_HISTORY_SPILL;
+         _historySpillPath = System.getProperty("java.io.tmpdir");
+         _historySpillMaxBytes = DEFAULT_HISTORY_SPILL_MAX_BYTES;
+         _responseCompletion = DEFAULT_RESPONSE_COMPLETION;
          _hlaCallbackStats = new MovingStatsNoOp();
          _hlaCallStats = new MovingStatsNoOp();
          _resumeCount = new MovingStatsNoOp();
          _warnOnLateStateListenerShutdown = false;
+         _virtualThreads = DEFAULT_VIRTUAL_THREADS;
+      }
+      if (responseExecutor != null) {
+         _responseExecutor = responseExecutor;
+      } else {
+         if (RESPONSE_COMPLETION_EXECUTOR.equals(_responseCompletion)) {
+            LOGGER.warning(() -> String.format(
+                  "%s: %s is '%s' but no executor was provided, completing responses asynchronously.",
+                  logPrefix(),
+                  SETTING_NAME_RESPONSE_COMPLETION,
+                  _responseCompletion));
+         }
+         _responseExecutor = null;
+      }
+      // Room for a full message queue plus as many requests in flight. More outstanding requests are still handled.
+      _requestFutures = new SequenceNumberMap<>(2 * _queueSize);
+
+      if (_virtualThreads && !SessionThreads.isVirtualSupported()) {
+         LOGGER.warning(() -> String.format(
+               "%s: %s is true but virtual threads require Java 21 or later, using platform threads.",
+               logPrefix(),
+               SETTING_NAME_VIRTUAL_THREADS));
       }
 
       // Make the stateListenerExecutor tasks be daemons.
       _stateListenerExecutor = Executors.newFixedThreadPool(1, r -> {
          // This shouldn't be executed for each new queued runnable
          // See ThreadFactory javadoc for more information
+         if (_virtualThreads) {
+            return SessionThreads.newThread(r, "FedPro Client State Listener Thread", true);
+         }
          Thread t = Executors.defaultThreadFactory().newThread(r);
          t.setDaemon(true);
          t.setName("FedPro Client State Listener Thread - " + t.getName());
@@ -193,7 +301,7 @@ public class SessionImpl implements Session {
                try {
                   // Close the socket and wait before retrying
                   close(_socket);
-                  Thread.sleep(300L);
+                  Thread.sleep(connectRetryDelayMillis(attempt));
                } catch (InterruptedException ex) {
                   // We were interrupted while waiting.
                   throw lastException;
@@ -206,6 +314,18 @@ public class SessionImpl implements Session {
       }
    }
 
+   /**
+    * A delay that doubles with each attempt, up to a limit, and is randomized so that clients that are started at the
+    * same time spread out their retries.
+    */
+   private static long connectRetryDelayMillis(int attempt)
+   {
+      long ceiling = Math.min(
+            CONNECT_RETRY_MAX_DELAY_MILLIS,
+            CONNECT_RETRY_INITIAL_DELAY_MILLIS << Math.min(attempt, 16));
+      return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling - ceiling / 2 + 1);
+   }
+
    @Override
    public long getId()
    {
@@ -215,11 +335,7 @@ public class SessionImpl implements Session {
    @Override
    public State getState()
    {
-      State state;
-      synchronized (_sessionLock) {
-         state = _state;
-      }
-      return state;
+      return _state;
    }
 
    @Override
@@ -239,6 +355,7 @@ public class SessionImpl implements Session {
       MovingStats.Stats hlaCallStats = _hlaCallStats.getStats();
       MovingStats.Stats hlaCallBackStats = _hlaCallbackStats.getStats();
       MovingStats.Stats resumeStats = _resumeCount.getStats();
+      FedProSocket socket = _socket;
 
       // @formatter:off
       return "                                                      Average/s      Max/s      Min/s      Total   All time" + "\n" +
@@ -246,18 +363,31 @@ public class SessionImpl implements Session {
             "FedPro call request queue length:                   " + LogUtil.padStat(3) + LogUtil.printStatInt(_roundRobinMessageQueue.primarySize()) + "\n" +
             "FedPro callback response queue length:              " + LogUtil.padStat(3) + LogUtil.printStatInt(_roundRobinMessageQueue.alternateSize()) + "\n" +
             "FedPro call requests awaiting response:             " + LogUtil.padStat(3) + LogUtil.printStatInt(_requestFutures.size()) + "\n" +
+            (_rateLimiter instanceof AdaptiveRateLimiter ?
+            "FedPro call request allowed rate:                   " + LogUtil.padStat(3) + LogUtil.printStatLong(((AdaptiveRateLimiter) _rateLimiter).getAllowedRate()) + "\n" : "") +
+            (socket instanceof CompressingSocket ?
+            "FedPro compression ratio:                           " + LogUtil.padStat(3) + LogUtil.printStatFloat(compressionRatio((CompressingSocket) socket)) + "\n" : "") +
             "HLA call count:                                     " + LogUtil.printStatFloat(hlaCallStats.averageBucket) + LogUtil.printStatInt(hlaCallStats.maxBucket) + LogUtil.printStatInt(hlaCallStats.minBucket) + LogUtil.printStatInt(hlaCallStats.sum) + LogUtil.printStatLong(hlaCallStats.historicTotal) + "\n" +
             "HLA callback count:                                 " + LogUtil.printStatFloat(hlaCallBackStats.averageBucket) + LogUtil.printStatInt(hlaCallBackStats.maxBucket) + LogUtil.printStatInt(hlaCallBackStats.minBucket) + LogUtil.printStatInt(hlaCallBackStats.sum) + LogUtil.printStatLong(hlaCallBackStats.historicTotal);
       // @formatter:on
    }
 
+   private static float compressionRatio(CompressingSocket socket)
+   {
+      long compressedBytes = socket.getCompressedBytes();
+      return compressedBytes == 0 ? 1.0f : (float) socket.getUncompressedBytes() / compressedBytes;
+   }
+
    private void waitForState(State state)
    throws InterruptedException
    {
-      synchronized (_sessionLock) {
+      _sessionLock.lock();
+      try {
          while (_state != state) {
-            _sessionLock.wait();
+            _stateChanged.await();
          }
+      } finally {
+         _sessionLock.unlock();
       }
    }
 
@@ -268,13 +398,16 @@ public class SessionImpl implements Session {
    throws InterruptedException
    {
       final long endTime = System.currentTimeMillis() + TimeUnit.MILLISECONDS.convert(timeout, timeUnit);
-      synchronized (_sessionLock) {
+      _sessionLock.lock();
+      try {
          long timeLeft = endTime - System.currentTimeMillis();
          while (_state != state && timeLeft > 0) {
-            _sessionLock.wait(timeLeft);
+            _stateChanged.await(timeLeft, TimeUnit.MILLISECONDS);
             timeLeft = endTime - System.currentTimeMillis();
          }
          return _state;
+      } finally {
+         _sessionLock.unlock();
       }
    }
 
@@ -285,15 +418,17 @@ public class SessionImpl implements Session {
    throws InterruptedException
    {
       final long endTime = System.currentTimeMillis() + TimeUnit.MILLISECONDS.convert(timeout, timeUnit);
-      synchronized (_sessionLock) {
+      _sessionLock.lock();
+      try {
          long timeLeft = endTime - System.currentTimeMillis();
          List<State> anticipatedStatesList = Arrays.asList(anticipatedStates);
          while (!anticipatedStatesList.contains(_state) && timeLeft > 0) {
-            // The parameter of wait() is specified in milliseconds.
-            _sessionLock.wait(timeLeft);
+            _stateChanged.await(timeLeft, TimeUnit.MILLISECONDS);
             timeLeft = endTime - System.currentTimeMillis();
          }
          return _state;
+      } finally {
+         _sessionLock.unlock();
       }
    }
 
@@ -301,11 +436,14 @@ public class SessionImpl implements Session {
    throws InterruptedException
    {
       List<State> anticipatedStatesList = Arrays.asList(anticipatedStates);
-      synchronized (_sessionLock) {
+      _sessionLock.lock();
+      try {
          while (!anticipatedStatesList.contains(_state)) {
-            _sessionLock.wait();
+            _stateChanged.await();
          }
          return _state;
+      } finally {
+         _sessionLock.unlock();
       }
    }
 
@@ -313,7 +451,8 @@ public class SessionImpl implements Session {
          Map<State, State> transitions,
          String reason)
    {
-      synchronized (_sessionLock) {
+      _sessionLock.lock();
+      try {
          State oldState = _state;
          for (Map.Entry<State, State> entry : transitions.entrySet()) {
             compareAndSetState(entry.getKey(), entry.getValue(), reason);
@@ -322,6 +461,8 @@ public class SessionImpl implements Session {
             }
          }
          return oldState;
+      } finally {
+         _sessionLock.unlock();
       }
    }
 
@@ -332,8 +473,11 @@ public class SessionImpl implements Session {
 
    private State setState(State newState)
    {
-      synchronized (_sessionLock) {
+      _sessionLock.lock();
+      try {
          return compareAndSetState(_state, newState);
+      } finally {
+         _sessionLock.unlock();
       }
    }
 
@@ -349,7 +493,8 @@ public class SessionImpl implements Session {
          State newState,
          String reason)
    {
-      synchronized (_sessionLock) {
+      _sessionLock.lock();
+      try {
          State oldState = _state;
          if (_state == expectedState) {
             LOGGER.finer(() -> String.format("%s: %s -> %s", logPrefix(), oldState, newState));
@@ -361,9 +506,11 @@ public class SessionImpl implements Session {
                   requestListenerExecutorShutdown();
                }
             }
-            _sessionLock.notifyAll();
+            _stateChanged.signalAll();
          }
          return oldState;
+      } finally {
+         _sessionLock.unlock();
       }
    }
 
@@ -395,14 +542,16 @@ public class SessionImpl implements Session {
             break;
          }
          case RUNNING: {
-            // TODO: Since read and write threads are using non-interruptible streams (InputStream/OutputStream),
-            //   we have to close the socket in order to stop them. An alternative would be to look into using
-            //   Java NIO InterruptibleChannel and Selector
+            // With blocking sockets, read and write threads are using non-interruptible streams
+            //   (InputStream/OutputStream), so we have to close the socket in order to stop them. Event-driven
+            //   sockets (connect.eventLoop) have no reader thread, and their streams are interruptible.
             if (newState == State.DROPPED) {
                _sessionTimeoutTimer.pause();
                _socketWriterThread.interrupt();
                close(_socket);
                _socket = null;
+               // Look up the server while waiting to resume, so that the first attempt can connect right away.
+               _transport.resolveAhead();
             } else if (newState == State.TERMINATING) {
                // Handled in terminate()
             } else {
@@ -459,6 +608,9 @@ public class SessionImpl implements Session {
       _sessionTimeoutTimer.cancel();
       _socketWriterThread.interrupt();
       close(_socket);
+      _socketWriter.discardHistory();
+      // Producers blocked on a full queue would otherwise wait for a writer that no longer runs.
+      _roundRobinMessageQueue.close();
       // We can't wait for the socketWriterThread to terminate since it is using the same
       // sessionLock that we are guarded by here.
       failAllFuturesWhenTerminating();
@@ -468,7 +620,8 @@ public class SessionImpl implements Session {
    private void failAllFuturesWhenTerminating()
    {
       // The session State being terminated guarantees that no further doSessionOperation() call is possible, which
-      // means new messages cannot be added to _roundRobinMessageQueue via _messageWriter.write...Message() calls.
+      // means new messages cannot be added to _roundRobinMessageQueue via _messageWriter.write...Message() calls. An
+      // operation that was already running may still add one after this, it calls this method again when done.
       QueueableMessage queuedMessage;
       while ((queuedMessage = _roundRobinMessageQueue.poll()) != null) {
          CompletableFuture<byte[]> responseFuture = queuedMessage.removeResponseFuture();
@@ -477,8 +630,7 @@ public class SessionImpl implements Session {
          }
       }
 
-      _requestFutures.forEach((seqNum, future) -> failFutureWhenTerminating(future));
-      _requestFutures.clear();
+      _requestFutures.removeAll(this::failFutureWhenTerminating);
 
       failFutureWhenTerminating(_sessionTerminatedFuture);
    }
@@ -529,17 +681,19 @@ public class SessionImpl implements Session {
       // Now that the session state is STARTING, this thread will have exclusive right to the session. This is
       // guaranteed since the public methods that attempt to alter the session will throw in the wrong state.
 
-      RateLimiter limiter;
-      if (_rateLimitEnabled) {
-         limiter = new ExponentialRateLimiter(_queueSize);
+      if (!_rateLimitEnabled) {
+         _rateLimiter = new NullRateLimiter();
+      } else if (RATE_LIMIT_ALGORITHM_ADAPTIVE.equals(_rateLimitAlgorithm)) {
+         _rateLimiter = new AdaptiveRateLimiter(_queueSize);
       } else {
-         limiter = new NullRateLimiter();
+         _rateLimiter = new ExponentialRateLimiter(_queueSize);
       }
 
-      _roundRobinMessageQueue = new RoundRobinBuffer<>(
-            _sessionLock,
+      _roundRobinMessageQueue = new ConcurrentRoundRobinBuffer<>(
             _queueSize,
-            limiter,
+            _queueMaxBytes,
+            QueueableMessage::getPacketSize,
+            _rateLimiter,
             QueueableMessage::isHlaResponse);
 
       _hlaCallbackRequestListener = hlaCallbackRequestListener;
@@ -554,7 +708,9 @@ public class SessionImpl implements Session {
                   _roundRobinMessageQueue,
                   _socket,
                   true,
-                  SequenceNumber.INITIAL_SEQUENCE_NUMBER + 1);
+                  SequenceNumber.INITIAL_SEQUENCE_NUMBER + 1,
+                  _batchMaxBytes,
+                  createMessageHistory());
             // The first sequence number that socket writer will expect is not INITIAL_SEQUENCE_NUMBER, since the first
             // session message (CTRL_NEW_SESSION) will be sent directly to the socket and not stored in the message-sent
             // history.
@@ -564,7 +720,8 @@ public class SessionImpl implements Session {
             final long connectionTimeoutMillis = TimeUnit.MILLISECONDS.convert(connectionTimeout, connectionTimeoutUnit);
             final TimeoutTimer connectionTimeoutTimer = createLazyTimeoutTimer(
                   "FedPro Client Connection Timeout Timer",
-                  connectionTimeoutMillis);
+                  connectionTimeoutMillis,
+                  _virtualThreads);
             connectionTimeoutTimer.start(() -> doWhenTimedOut(connectionTimeoutTimer.getTimeoutDurationMillis()));
             try {
                _sessionId = readNewSessionStatus(_socket.getInputStream());
@@ -587,7 +744,10 @@ public class SessionImpl implements Session {
          throw e;
       }
 
-      _sessionTimeoutTimer = createLazyTimeoutTimer("FedPro Client Session Timeout Timer", _sessionTimeoutMillis);
+      _sessionTimeoutTimer = createLazyTimeoutTimer(
+            "FedPro Client Session Timeout Timer",
+            _sessionTimeoutMillis,
+            _virtualThreads);
       _sessionTimeoutTimer.start(() -> doWhenTimedOut(_sessionTimeoutTimer.getTimeoutDurationMillis()));
 
       compareAndSetState(State.STARTING, State.RUNNING);
@@ -602,6 +762,70 @@ public class SessionImpl implements Session {
       close(_socket);
    }
 
+   boolean usesVirtualThreads()
+   {
+      return _virtualThreads;
+   }
+
+   /**
+    * Complete the future of a request, as configured by the response.completion setting.
+    */
+   private <T> void completeResponse(
+         CompletableFuture<T> future,
+         T response)
+   {
+      if (_responseExecutor != null) {
+         future.completeAsync(() -> response, _responseExecutor);
+      } else if (RESPONSE_COMPLETION_DIRECT.equals(_responseCompletion)) {
+         // Dependent actions run on the reader thread, and must not block.
+         future.complete(response);
+      } else {
+         future.completeAsync(() -> response);
+      }
+   }
+
+   /**
+    * Complete the future of a request with a pooled buffer, like {@link #completeResponse}. The buffer is released if
+    * the future has already been completed, for example cancelled by the caller.
+    */
+   private void completePooledResponse(
+         CompletableFuture<PayloadBuffer> future,
+         PayloadBuffer response)
+   {
+      Runnable completion = () -> {
+         if (!future.complete(response)) {
+            response.release();
+         }
+      };
+      if (_responseExecutor != null) {
+         _responseExecutor.execute(completion);
+      } else if (RESPONSE_COMPLETION_DIRECT.equals(_responseCompletion)) {
+         completion.run();
+      } else {
+         CompletableFuture.runAsync(completion);
+      }
+   }
+
+   private MessageHistory createMessageHistory()
+   {
+      if (_historySpill) {
+         return new SpillingMessageHistory(
+               this::createMemoryHistory,
+               Paths.get(_historySpillPath),
+               _historySpillMaxBytes);
+      }
+      return createMemoryHistory(null);
+   }
+
+   private MessageHistory createMemoryHistory(MessageHistory.EvictionListener evictionListener)
+   {
+      if (_historyOffHeap || _historyMaxBytes > 0) {
+         int arenaBytes = _historyMaxBytes > 0 ? _historyMaxBytes : DEFAULT_OFF_HEAP_HISTORY_MAX_BYTES;
+         return new ArenaMessageHistory(_queueSize, arenaBytes, _historyOffHeap, evictionListener);
+      }
+      return new HeapMessageHistory(_queueSize, evictionListener);
+   }
+
    private SocketWriter.Listener getSocketWriterListener()
    {
       return new SocketWriter.Listener() {
@@ -730,16 +954,77 @@ public class SessionImpl implements Session {
    @Override
    public CompletableFuture<byte[]> sendHlaCallRequest(byte[] encodedHlaCall)
    throws SessionIllegalState
+   {
+      return sendHlaCallRequest(new HlaCallRequestMessage(encodedHlaCall));
+   }
+
+   @Override
+   public CompletableFuture<byte[]> sendHlaCallRequest(FramedPayload encodedHlaCall)
+   throws SessionIllegalState
+   {
+      return sendHlaCallRequest(new HlaCallRequestMessage(encodedHlaCall));
+   }
+
+   private CompletableFuture<byte[]> sendHlaCallRequest(HlaCallRequestMessage message)
+   throws SessionIllegalState
    {
       return doSessionOperation(() -> {
          _hlaCallStats.sample(1);
-         return _messageWriter.writeHlaCallRequest(
-               encodedHlaCall,
+         return sampleRoundTrip(_messageWriter.writeHlaCallRequest(
+               message,
                _lastReceivedSequenceNumber.get(),
-               _requestFutures);
+               _requestFutures));
       });
    }
 
+   @Override
+   public CompletableFuture<PayloadBuffer> sendHlaCallRequestWithPooledResponse(byte[] encodedHlaCall)
+   throws SessionIllegalState
+   {
+      return sendHlaCallRequestWithPooledResponse(new HlaCallRequestMessage(encodedHlaCall));
+   }
+
+   @Override
+   public CompletableFuture<PayloadBuffer> sendHlaCallRequestWithPooledResponse(FramedPayload encodedHlaCall)
+   throws SessionIllegalState
+   {
+      return sendHlaCallRequestWithPooledResponse(new HlaCallRequestMessage(encodedHlaCall));
+   }
+
+   private CompletableFuture<PayloadBuffer> sendHlaCallRequestWithPooledResponse(HlaCallRequestMessage message)
+   throws SessionIllegalState
+   {
+      PooledResponseFuture responseFuture = new PooledResponseFuture();
+      doSessionOperation(() -> {
+         _hlaCallStats.sample(1);
+         sampleRoundTrip(_messageWriter.writeHlaCallRequest(
+               message,
+               _lastReceivedSequenceNumber.get(),
+               _requestFutures,
+               responseFuture));
+      });
+      return responseFuture.pooledResult();
+   }
+
+   /**
+    * Let the rate limiter measure the round trip time of the request, if it asks for a sample.
+    */
+   private CompletableFuture<byte[]> sampleRoundTrip(CompletableFuture<byte[]> future)
+   {
+      RateLimiter rateLimiter = _rateLimiter;
+      if (rateLimiter.startRoundTripSample()) {
+         long sentNanos = System.nanoTime();
+         future.whenComplete((response, throwable) -> {
+            if (throwable == null) {
+               rateLimiter.roundTripCompleted(System.nanoTime() - sentNanos);
+            } else {
+               rateLimiter.roundTripFailed();
+            }
+         });
+      }
+      return future;
+   }
+
    @Override
    public void sendHlaCallbackResponse(
          int responseToSequenceNumber,
@@ -773,10 +1058,11 @@ public class SessionImpl implements Session {
    throws SessionLost, SessionIllegalState
    {
       State[] stateBeforeTerminating = new State[1];
-      synchronized (_sessionLock) {
+      _sessionLock.lock();
+      try {
          while (_state == State.RESUMING || _state == State.TERMINATING) {
             try {
-               _sessionLock.wait();
+               _stateChanged.await();
             } catch (InterruptedException ignored) {
                break;
             }
@@ -788,6 +1074,8 @@ public class SessionImpl implements Session {
             // Henceforth, the session state is TERMINATING and so this thread has exclusive right to the session. This is
             // guaranteed since the public methods that attempt to alter the session will throw in the wrong state.
          });
+      } finally {
+         _sessionLock.unlock();
       }
 
       if (getState() == State.TERMINATED) {
@@ -806,6 +1094,14 @@ public class SessionImpl implements Session {
          return;
       }
 
+      // Operations that started while RUNNING must have queued their messages before the termination message. They
+      // may be blocked on a full queue that the server does not drain, so the wait is bounded by the response timeout.
+      if (!awaitOperationsCompleted(responseTimeoutUnit.toNanos(responseTimeout))) {
+         compareAndSetState(State.TERMINATING, State.TERMINATED, "Timed out waiting for operations in progress.");
+         throw new SessionLost(logPrefix() + ": Timed out after " + responseTimeoutUnit.toMillis(responseTimeout) +
+                               " ms while waiting for operations in progress to queue their messages.");
+      }
+
       try {
          _messageWriter.writeTerminateMessage(_lastReceivedSequenceNumber.get());
       } catch (InterruptedException e) {
@@ -846,18 +1142,57 @@ public class SessionImpl implements Session {
    // All public methods that results in writing outgoing messages are thread-safe since they pass through this method,
    // which only executes the passed operation in state RUNNING, DROPPED or RESUMING. This helps ensure correct ordering
    // of messages.
+   //
+   // The operation runs without holding _sessionLock, so that concurrent callers only meet in the message queue, which
+   // is lock-free while it has room. Callers that find it full block on the queue's own lock until the writer makes
+   // room, or until the session terminates and closes the queue. The operation is counted before the state is read,
+   // and transitions that must not overlap with operations wait for the count to reach zero after changing the state.
+   // Either the operation sees the new state, or the transition sees the operation.
    private CompletableFuture<byte[]> doSessionOperation(AsyncSessionOperation operation)
    throws SessionIllegalState
    {
-      synchronized (_sessionLock) {
-         if (_state == State.RUNNING || _state == State.DROPPED || _state == State.RESUMING) {
+      _operationsInProgress.incrementAndGet();
+      State state = _state;
+      if (state == State.RUNNING || state == State.DROPPED || state == State.RESUMING) {
+         try {
             return operation.run();
-         } else if (_state == State.TERMINATED) {
-            throw new SessionAlreadyTerminated(logPrefix() + ": Session has terminated.");
-         } else {
-            throw new SessionIllegalState(logPrefix() + ": Session state is " + _state);
+         } finally {
+            _operationsInProgress.decrementAndGet();
+            if (_state == State.TERMINATED) {
+               // The session terminated while the operation ran, possibly after the queue was emptied.
+               _sessionLock.lock();
+               try {
+                  failAllFuturesWhenTerminating();
+               } finally {
+                  _sessionLock.unlock();
+               }
+            }
          }
       }
+      _operationsInProgress.decrementAndGet();
+      if (state == State.TERMINATED) {
+         throw new SessionAlreadyTerminated(logPrefix() + ": Session has terminated.");
+      } else {
+         throw new SessionIllegalState(logPrefix() + ": Session state is " + state);
+      }
+   }
+
+   /**
+    * Wait until the operations that started before the state left RUNNING have completed. State transitions are rare,
+    * so this polls instead of letting every operation check for a waiting thread.
+    *
+    * @return false if operations were still in progress when the timeout expired.
+    */
+   private boolean awaitOperationsCompleted(long timeoutNanos)
+   {
+      long deadline = System.nanoTime() + timeoutNanos;
+      while (_operationsInProgress.get() > 0) {
+         if (deadline - System.nanoTime() <= 0) {
+            return false;
+         }
+         LockSupport.parkNanos(OPERATIONS_POLL_NANOS);
+      }
+      return true;
    }
 
    private void close(FedProSocket socket)
@@ -875,20 +1210,30 @@ public class SessionImpl implements Session {
    private void startWriterThread()
    {
       _socketWriter.enableWriterLoop();
-      _socketWriterThread = new Thread(
+      _socketWriterThread = SessionThreads.newThread(
             _socketWriter::socketWriterLoop,
-            "FedPro Client Session " + _sessionIdString + " Writer Thread.");
-      _socketWriterThread.setDaemon(true);
+            "FedPro Client Session " + _sessionIdString + " Writer Thread.",
+            _virtualThreads);
       _socketWriterThread.start();
    }
 
    @GuardedBy("_sessionLock")
    private void startReaderThread()
    {
-      Thread readerThread = new Thread(
-            this::runMessageReaderLoop,
-            "FedPro Client Session " + _sessionIdString + " Reader Thread.");
-      readerThread.setDaemon(true);
+      Runnable readerLoop;
+      if (_socket instanceof EventDrivenSocket) {
+         // The socket's event loop splits the received data into messages, which are handled on the reader thread.
+         EventDrivenSocket socket = (EventDrivenSocket) _socket;
+         EventDrivenReader reader = new EventDrivenReader(socket);
+         socket.setListener(reader);
+         readerLoop = reader::runHandlerLoop;
+      } else {
+         readerLoop = this::runMessageReaderLoop;
+      }
+      Thread readerThread = SessionThreads.newThread(
+            readerLoop,
+            "FedPro Client Session " + _sessionIdString + " Reader Thread.",
+            _virtualThreads);
       readerThread.start();
    }
 
@@ -901,108 +1246,293 @@ public class SessionImpl implements Session {
             throw new EOFException();
          }
          InputStream inputStream = socket.getInputStream();
+         // Streams that receive whole frames hand them over as they are, to be decoded in place.
+         FrameReader frameReader = inputStream instanceof FrameReader ? (FrameReader) inputStream : null;
+         InboundFrameDecoder decoder = new InboundFrameDecoder(INBOUND_BUFFER_SIZE);
 
          while (true) {
-            MessageHeader messageHeader = MessageHeader.decode(inputStream);
-            logReceivedMessage(messageHeader.messageType, messageHeader.sequenceNumber);
-
-            if (messageHeader.sessionId != _sessionId) {
-               throw new BadMessage(
-                     logPrefix() + ": Received wrong session ID " + LogUtil.formatSessionId(messageHeader.sessionId));
-            } else if (!SequenceNumber.isValidAsSequenceNumber(messageHeader.sequenceNumber)) {
-               throw new BadMessage(
-                     logPrefix() + ": Received invalid sequence number " + messageHeader.sequenceNumber);
+            while (decoder.next()) {
+               if (!handleReceivedMessage(decoder)) {
+                  return;
+               }
+            }
+            if (frameReader != null) {
+               decoder.append(frameReader.readFrame());
+            } else if (decoder.fill(inputStream) < 0) {
+               throw new EOFException("Connection closed by peer");
             }
+         }
+      } catch (IOException | BadMessage | RuntimeException e) {
+         handleReaderFailure(e);
+      }
+   }
 
-            switch (messageHeader.messageType) {
-               case CTRL_HEARTBEAT_RESPONSE: {
-                  HeartbeatResponseMessage message = HeartbeatResponseMessage.decode(inputStream);
-
-                  extendSessionTimer();
-                  CompletableFuture<byte[]> future = _requestFutures.remove(message.responseToSequenceNumber);
-                  if (future != null) {
-                     future.completeAsync(() -> null);
-                  } else {
-                     LOGGER.warning(() -> String.format(
-                           "%s: Received unexpected heartbeat response to sequence number %d.",
-                           logPrefix(),
-                           message.responseToSequenceNumber));
-                  }
-                  break;
-               }
+   /**
+    * Handle the current message of the decoder.
+    *
+    * @return false if this was the last message that can be received in this session.
+    */
+   private boolean handleReceivedMessage(InboundFrameDecoder decoder)
+   throws IOException, BadMessage
+   {
+      final int sequenceNumber = decoder.sequenceNumber();
+      final MessageType messageType = decoder.messageType();
+      logReceivedMessage(messageType, sequenceNumber);
 
-               case CTRL_SESSION_TERMINATED: {
-                  extendSessionTimer();
-                  LOGGER.finer(() -> String.format("%s: Received CTRL_SESSION_TERMINATED. Completing: %s", logPrefix(), _sessionTerminatedFuture));
-                  _sessionTerminatedFuture.completeAsync(() -> null);
+      if (decoder.sessionId() != _sessionId) {
+         throw new BadMessage(
+               logPrefix() + ": Received wrong session ID " + LogUtil.formatSessionId(decoder.sessionId()));
+      } else if (!SequenceNumber.isValidAsSequenceNumber(sequenceNumber)) {
+         throw new BadMessage(
+               logPrefix() + ": Received invalid sequence number " + sequenceNumber);
+      }
 
-                  // This is the last message we can receive, there's no point on listening for further messages
-                  return;
-               }
+      releaseAcknowledgedHistory(decoder.lastReceivedSequenceNumber());
 
-               case HLA_CALL_RESPONSE: {
-                  HlaCallResponseMessage message = HlaCallResponseMessage.decode(
-                        inputStream,
-                        messageHeader.getPayloadSize());
-
-                  trackHlaMessageReceived(messageHeader.sequenceNumber);
-                  CompletableFuture<byte[]> future = _requestFutures.remove(message.responseToSequenceNumber);
-                  if (future != null) {
-                     future.completeAsync(() -> message.hlaServiceReturnValueOrException);
-                  } else {
-                     // This can happen during shutdown. failAllFuturesWhenTerminating has already
-                     // called completeExceptionally on all futures.
-                     LOGGER.warning(() -> String.format(
-                           "%s: Received unexpected HLA call response to sequence number %d.",
-                           logPrefix(),
-                           message.responseToSequenceNumber));
-                  }
-                  break;
-               }
+      InputStream inputStream = decoder.payloadStream();
+      switch (messageType) {
+         case CTRL_HEARTBEAT_RESPONSE: {
+            HeartbeatResponseMessage message = HeartbeatResponseMessage.decode(inputStream);
 
-               case HLA_CALLBACK_REQUEST: {
-                  HlaCallbackRequestMessage message = HlaCallbackRequestMessage.decode(
-                        inputStream,
-                        messageHeader.getPayloadSize());
-                  // The _hlaCallbackRequestListener may call back into `this` to send a CallbackResponse
-                  // The _hlaCallbackRequestListener may block if the callback buffer becomes full
-
-                  _hlaCallbackStats.sample(1);
-                  _hlaCallbackRequestListener.onHlaCallbackRequest(
-                        messageHeader.sequenceNumber,
-                        message.hlaServiceCallbackWithParams);
-                  trackHlaMessageReceived(messageHeader.sequenceNumber);
-                  break;
-               }
+            extendSessionTimer();
+            CompletableFuture<byte[]> future = _requestFutures.remove(message.responseToSequenceNumber);
+            if (future != null) {
+               completeResponse(future, null);
+            } else {
+               LOGGER.warning(() -> String.format(
+                     "%s: Received unexpected heartbeat response to sequence number %d.",
+                     logPrefix(),
+                     message.responseToSequenceNumber));
+            }
+            break;
+         }
+
+         case CTRL_SESSION_TERMINATED: {
+            extendSessionTimer();
+            LOGGER.finer(() -> String.format("%s: Received CTRL_SESSION_TERMINATED. Completing: %s", logPrefix(), _sessionTerminatedFuture));
+            _sessionTerminatedFuture.completeAsync(() -> null);
+
+            // This is the last message we can receive, there's no point on listening for further messages
+            return false;
+         }
 
-               case CTRL_RESUME_REQUEST:
-               case CTRL_RESUME_STATUS:
-               case HLA_CALL_REQUEST:
-               case CTRL_NEW_SESSION:
-               case CTRL_NEW_SESSION_STATUS:
-               case CTRL_HEARTBEAT:
-               case CTRL_TERMINATE_SESSION:
-               case HLA_CALLBACK_RESPONSE:
-                  throw new BadMessage("Invalid MessageType received " + messageHeader.messageType);
+         case HLA_CALL_RESPONSE: {
+            int responseToSequenceNumber = HlaCallResponseMessage.decodeResponseToSequenceNumber(inputStream);
+
+            trackHlaMessageReceived(sequenceNumber);
+            CompletableFuture<byte[]> future = _requestFutures.remove(responseToSequenceNumber);
+            if (future instanceof PooledResponseFuture) {
+               PooledResponseFuture pooledFuture = (PooledResponseFuture) future;
+               completePooledResponse(
+                     pooledFuture.pooledResult(),
+                     HlaCallResponseMessage.decodeResult(inputStream, decoder.payloadSize(), _payloadBufferPool));
+               pooledFuture.complete(null);
+            } else if (future != null) {
+               completeResponse(future, HlaCallResponseMessage.decodeResult(inputStream, decoder.payloadSize()));
+            } else {
+               // This can happen during shutdown. failAllFuturesWhenTerminating has already
+               // called completeExceptionally on all futures.
+               LOGGER.warning(() -> String.format(
+                     "%s: Received unexpected HLA call response to sequence number %d.",
+                     logPrefix(),
+                     responseToSequenceNumber));
             }
+            break;
          }
-      } catch (EOFException e) {
-         // Socket was closed by server.
-         handleReadException(e);
-      } catch (IOException e) {
-         // Socket was closed locally.
-         handleReadException(e);
-      } catch (BadMessage e) {
+
+         case HLA_CALLBACK_REQUEST: {
+            // The _hlaCallbackRequestListener may call back into `this` to send a CallbackResponse
+            // The _hlaCallbackRequestListener may block if the callback buffer becomes full
+
+            _hlaCallbackStats.sample(1);
+            if (_hlaCallbackRequestListener instanceof PooledHlaCallbackRequestListener) {
+               PayloadBuffer callback = HlaCallbackRequestMessage.decodePooled(
+                     inputStream,
+                     decoder.payloadSize(),
+                     _payloadBufferPool);
+               try {
+                  ((PooledHlaCallbackRequestListener) _hlaCallbackRequestListener).onHlaCallbackRequest(
+                        sequenceNumber,
+                        callback);
+               } finally {
+                  callback.release();
+               }
+            } else {
+               HlaCallbackRequestMessage message = HlaCallbackRequestMessage.decode(
+                     inputStream,
+                     decoder.payloadSize());
+               _hlaCallbackRequestListener.onHlaCallbackRequest(
+                     sequenceNumber,
+                     message.hlaServiceCallbackWithParams);
+            }
+            trackHlaMessageReceived(sequenceNumber);
+            break;
+         }
+
+         case CTRL_RESUME_REQUEST:
+         case CTRL_RESUME_STATUS:
+         case HLA_CALL_REQUEST:
+         case CTRL_NEW_SESSION:
+         case CTRL_NEW_SESSION_STATUS:
+         case CTRL_HEARTBEAT:
+         case CTRL_TERMINATE_SESSION:
+         case HLA_CALLBACK_RESPONSE:
+            throw new BadMessage("Invalid MessageType received " + messageType);
+      }
+      return true;
+   }
+
+   private void handleReaderFailure(Exception e)
+   {
+      if (e instanceof BadMessage) {
          // 12.13.4.4 requires entering a fatal state when receiving a bad message, so schedule termination.
          // Scheduling to better match the C++ client behavior.
          scheduleBestEffortTerminate();
          LOGGER.severe(() -> String.format("%s: Received invalid message! %s", logPrefix(), e));
-      } catch (RuntimeException e) {
+      } else if (e instanceof RuntimeException) {
          handleReadException(e);
          LOGGER.severe(() -> String.format(
                "%s: Got unexpected exception in message reader thread: %s",
                logPrefix(),
                e));
+      } else {
+         // EOFException if the socket was closed by server, other IOExceptions if it was closed locally.
+         handleReadException(e);
+      }
+   }
+
+   /**
+    * Splits the data received by an {@link EventDrivenSocket} into messages on its event loop, and hands them over to
+    * the reader thread. The event loop is shared with other sessions, so it must not run the listeners, which may
+    * block. Reading from the socket is paused while the reader thread is behind.
+    */
+   private class EventDrivenReader implements EventDrivenSocket.Listener {
+
+      private final EventDrivenSocket _readerSocket;
+      // Only accessed on the event loop thread.
+      private final InboundFrameDecoder _frameDecoder = new InboundFrameDecoder(INBOUND_BUFFER_SIZE);
+      // Only accessed on the reader thread.
+      private final InboundFrameDecoder _messageDecoder = new InboundFrameDecoder(INBOUND_BUFFER_SIZE);
+      private final BlockingQueue<ReceivedMessage> _received = new LinkedBlockingQueue<>();
+      private final ReentrantLock _pauseLock = new ReentrantLock();
+      @GuardedBy("_pauseLock")
+      private long _receivedBytes = 0;
+      @GuardedBy("_pauseLock")
+      private boolean _isPaused = false;
+      private volatile boolean _isDone = false;
+
+      EventDrivenReader(EventDrivenSocket socket)
+      {
+         _readerSocket = socket;
+      }
+
+      @Override
+      public void onDataReceived(ByteBuffer data)
+      {
+         if (_isDone) {
+            return;
+         }
+         try {
+            _frameDecoder.append(data);
+            while (_frameDecoder.next()) {
+               byte[] message = _frameDecoder.copyMessage();
+               _received.add(new ReceivedMessage(message, null));
+               _pauseLock.lock();
+               try {
+                  _receivedBytes += message.length;
+                  if (_receivedBytes > INBOUND_HIGH_WATER_MARK && !_isPaused) {
+                     _isPaused = true;
+                     _readerSocket.setReadPaused(true);
+                  }
+               } finally {
+                  _pauseLock.unlock();
+               }
+            }
+         } catch (BadMessage | RuntimeException e) {
+            _isDone = true;
+            _received.add(new ReceivedMessage(null, e));
+         }
+      }
+
+      @Override
+      public void onClosed(Exception cause)
+      {
+         if (!_isDone) {
+            _isDone = true;
+            _received.add(new ReceivedMessage(null, cause));
+         }
+      }
+
+      /**
+       * Handle the received messages until the last one of the session, or until the socket fails.
+       */
+      void runHandlerLoop()
+      {
+         try {
+            while (true) {
+               ReceivedMessage received = _received.take();
+               if (received._failure != null) {
+                  handleFailure(received._failure);
+                  return;
+               }
+               _pauseLock.lock();
+               try {
+                  _receivedBytes -= received._message.length;
+                  if (_receivedBytes < INBOUND_HIGH_WATER_MARK / 2 && _isPaused) {
+                     _isPaused = false;
+                     _readerSocket.setReadPaused(false);
+                  }
+               } finally {
+                  _pauseLock.unlock();
+               }
+               _messageDecoder.append(ByteBuffer.wrap(received._message));
+               while (_messageDecoder.next()) {
+                  if (!handleReceivedMessage(_messageDecoder)) {
+                     _isDone = true;
+                     return;
+                  }
+               }
+            }
+         } catch (IOException | BadMessage | RuntimeException e) {
+            _isDone = true;
+            handleReaderFailure(e);
+         } catch (InterruptedException e) {
+            _isDone = true;
+            handleReaderFailure(new IOException("Reader thread was interrupted", e));
+         }
+      }
+
+      private void handleFailure(Exception cause)
+      {
+         if (!(cause instanceof BadMessage)) {
+            _sessionLock.lock();
+            try {
+               if (_socket != null && _socket != _readerSocket) {
+                  // The session has already moved on to a new connection.
+                  return;
+               }
+            } finally {
+               _sessionLock.unlock();
+            }
+         }
+         handleReaderFailure(cause);
+      }
+   }
+
+   /**
+    * A message received by an {@link EventDrivenReader}, or the failure that ended the reading.
+    */
+   private static class ReceivedMessage {
+
+      private final byte[] _message;
+      private final Exception _failure;
+
+      ReceivedMessage(
+            byte[] message,
+            Exception failure)
+      {
+         _message = message;
+         _failure = failure;
       }
    }
 
@@ -1054,6 +1584,19 @@ public class SessionImpl implements Session {
       });
    }
 
+   /**
+    * Let the history of sent messages release the messages that the server has acknowledged, so that only the
+    * unacknowledged messages are held for resuming.
+    */
+   private void releaseAcknowledgedHistory(int acknowledgedSequenceNumber)
+   {
+      if (SequenceNumber.isValidAsSequenceNumber(acknowledgedSequenceNumber) &&
+            acknowledgedSequenceNumber != _lastAcknowledgedSequenceNumber) {
+         _lastAcknowledgedSequenceNumber = acknowledgedSequenceNumber;
+         _socketWriter.releaseAcknowledged(acknowledgedSequenceNumber);
+      }
+   }
+
    private void trackHlaMessageReceived(int sequenceNumber)
    {
       extendSessionTimer();
@@ -1139,7 +1682,24 @@ public class SessionImpl implements Session {
       settings.setInt(SETTING_NAME_CONNECTION_MAX_RETRY_ATTEMPTS, _maxRetryConnectAttempts);
       settings.setDuration(SETTING_NAME_CONNECTION_TIMEOUT, Duration.ofMillis(_connectionTimeoutMillis));
       settings.setBoolean(SETTING_NAME_RATE_LIMIT_ENABLED, _rateLimitEnabled);
+      settings.setString(SETTING_NAME_RATE_LIMIT_ALGORITHM, _rateLimitAlgorithm);
       settings.setInt(SETTING_NAME_MESSAGE_QUEUE_SIZE, _queueSize);
+      settings.setBoolean(SETTING_NAME_BATCH_WRITES_ENABLED, _batchMaxBytes > 0);
+      if (_batchMaxBytes > 0) {
+         settings.setInt(SETTING_NAME_BATCH_MAX_BYTES, _batchMaxBytes);
+      }
+      settings.setInt(SETTING_NAME_MESSAGE_QUEUE_MAX_BYTES, _queueMaxBytes);
+      settings.setBoolean(SETTING_NAME_HISTORY_OFF_HEAP, _historyOffHeap);
+      settings.setInt(SETTING_NAME_HISTORY_MAX_BYTES, _historyMaxBytes);
+      settings.setString(
+            SETTING_NAME_RESPONSE_COMPLETION,
+            _responseExecutor != null ? RESPONSE_COMPLETION_EXECUTOR : _responseCompletion);
+      settings.setBoolean(SETTING_NAME_HISTORY_SPILL, _historySpill);
+      settings.setBoolean(SETTING_NAME_VIRTUAL_THREADS, _virtualThreads);
+      if (_historySpill) {
+         settings.setString(SETTING_NAME_HISTORY_SPILL_PATH, _historySpillPath);
+         settings.setInt(SETTING_NAME_HISTORY_SPILL_MAX_BYTES, _historySpillMaxBytes);
+      }
       return settings;
    }
 
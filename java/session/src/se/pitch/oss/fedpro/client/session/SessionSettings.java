@@ -16,6 +16,9 @@
 
 package se.pitch.oss.fedpro.client.session;
 
+import static se.pitch.oss.fedpro.client.Settings.RATE_LIMIT_ALGORITHM_EXPONENTIAL;
+import static se.pitch.oss.fedpro.client.Settings.RESPONSE_COMPLETION_ASYNC;
+
 public class SessionSettings
 {
    // Default values
@@ -25,11 +28,24 @@ public class SessionSettings
    static final int DEFAULT_CONNECTION_MAX_RETRY_ATTEMPTS = 0;
    static final long DEFAULT_CONNECTION_TIMEOUT_MILLIS = DEFAULT_RESPONSE_TIMEOUT_MILLIS;
    static final int DEFAULT_MESSAGE_QUEUE_SIZE = 2000;
+   static final String DEFAULT_RESPONSE_COMPLETION = RESPONSE_COMPLETION_ASYNC;
+   static final int DEFAULT_MESSAGE_QUEUE_MAX_BYTES = 0;
    static final boolean DEFAULT_RATE_LIMIT_ENABLED = false;
+   static final String DEFAULT_RATE_LIMIT_ALGORITHM = RATE_LIMIT_ALGORITHM_EXPONENTIAL;
+   static final boolean DEFAULT_BATCH_WRITES_ENABLED = false;
+   static final int DEFAULT_BATCH_MAX_BYTES = 64 * 1024;
+   static final boolean DEFAULT_HISTORY_OFF_HEAP = false;
+   static final int DEFAULT_HISTORY_MAX_BYTES = 0;
+   static final int DEFAULT_OFF_HEAP_HISTORY_MAX_BYTES = 32 * 1024 * 1024;
+   static final boolean DEFAULT_HISTORY_SPILL = false;
+   static final int DEFAULT_HISTORY_SPILL_MAX_BYTES = 1024 * 1024 * 1024;
    public static final int DEFAULT_PRINT_STATS_INTERVAL_MILLIS =  60_000;
+   public static final boolean DEFAULT_VIRTUAL_THREADS = false;
+   public static final boolean DEFAULT_RESUME_BACKOFF = false;
 
    // Non settings related default values.
    static final long DEFAULT_RECONNECT_DELAY_MILLIS = 5_000L;
+   static final long DEFAULT_BACKOFF_INITIAL_DELAY_MILLIS = 100L;
 
    public static long getDefaultReconnectLimitMillis() {
       return DEFAULT_RECONNECT_LIMIT_MILLIS;
@@ -40,4 +56,8 @@ public class SessionSettings
       return DEFAULT_RECONNECT_DELAY_MILLIS;
    }
 
+   public static long getDefaultBackoffInitialDelayMillis() {
+      return DEFAULT_BACKOFF_INITIAL_DELAY_MILLIS;
+   }
+
 }
@@ -16,9 +16,11 @@
 
 package se.pitch.oss.fedpro.client.session;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import se.pitch.oss.fedpro.common.session.SharedTimer;
+
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -26,40 +28,59 @@ import java.util.concurrent.atomic.AtomicLong;
  * <p>
  * Upon destruction, this cancels any pending timer. If the task must be executed,
  * please ensure the corresponding timer is not destroyed before the timer expires.
+ * <p>
+ * All timers share the {@link SharedTimer}. A timer only has a check scheduled for its current deadline, and
+ * extending the timer does not reschedule that check. When the check finds that the deadline has been extended, it
+ * schedules a new check for the extended deadline.
  */
 public class TimeoutTimer {
 
-   private final ScheduledExecutorService _internalExecutorService;
+   // An eager timer expires this fraction of the duration early, to allow for scheduling delays.
+   private static final int EAGER_MARGIN_DIVISOR = 6;
+
+   private final String _timerName;
    private final long _timeoutDurationMillis;
    // Eager means the timeout may trigger early, but never late. Lazy is the opposite.
    private final boolean _eager;
+   private final boolean _virtualThread;
    private long _offsetTimeMillis;
    private final AtomicLong _timeoutTimestampMillis = new AtomicLong(Long.MAX_VALUE);
+   private final AtomicBoolean _isCheckScheduled = new AtomicBoolean(false);
+   private volatile Runnable _whenTimedOut;
+   private volatile ScheduledFuture<?> _scheduledCheck;
+   private volatile boolean _isCancelled = false;
 
    private TimeoutTimer(
          String timerName,
          long timeoutDurationMillis,
-         boolean eager)
+         boolean eager,
+         boolean virtualThread)
    {
+      _timerName = timerName;
       _timeoutDurationMillis = timeoutDurationMillis;
-      _internalExecutorService = Executors.newSingleThreadScheduledExecutor(r -> {
-         Thread thread = Executors.defaultThreadFactory().newThread(r);
-         thread.setName(timerName);
-         thread.setDaemon(true);
-         return thread;
-      });
       _eager = eager;
+      _virtualThread = virtualThread;
       _offsetTimeMillis = timeoutDurationMillis;
    }
 
    static TimeoutTimer createLazyTimeoutTimer(String timerName, long timeoutDurationMillis)
    {
-      return new TimeoutTimer(timerName, timeoutDurationMillis, false);
+      return createLazyTimeoutTimer(timerName, timeoutDurationMillis, false);
+   }
+
+   static TimeoutTimer createLazyTimeoutTimer(String timerName, long timeoutDurationMillis, boolean virtualThread)
+   {
+      return new TimeoutTimer(timerName, timeoutDurationMillis, false, virtualThread);
    }
 
    static TimeoutTimer createEagerTimeoutTimer(String timerName, long timeoutDurationMillis)
    {
-      return new TimeoutTimer(timerName, timeoutDurationMillis, true);
+      return createEagerTimeoutTimer(timerName, timeoutDurationMillis, false);
+   }
+
+   static TimeoutTimer createEagerTimeoutTimer(String timerName, long timeoutDurationMillis, boolean virtualThread)
+   {
+      return new TimeoutTimer(timerName, timeoutDurationMillis, true, virtualThread);
    }
 
    void start(Runnable whenTimedOut)
@@ -68,32 +89,53 @@ public class TimeoutTimer {
          // Do not timeout?
          return;
       }
-      final int wakeUpTimesPerInterval = 6;
-      long timeoutCheckIntervalMillis = _timeoutDurationMillis / wakeUpTimesPerInterval;
-      if (timeoutCheckIntervalMillis == 0) {
-         // Minimum time between checks
-         timeoutCheckIntervalMillis = 1;
+      if (_eager) {
+         _offsetTimeMillis = Math.max(1, _timeoutDurationMillis - _timeoutDurationMillis / EAGER_MARGIN_DIVISOR);
+      } else {
+         _offsetTimeMillis = _timeoutDurationMillis;
       }
-      _offsetTimeMillis = _eager ? timeoutCheckIntervalMillis * (wakeUpTimesPerInterval - 1) : _timeoutDurationMillis;
+      _whenTimedOut = whenTimedOut;
+      extend();
+   }
 
-      Runnable timerTask = () -> {
-         if (hasTimedOut(_timeoutTimestampMillis)) {
-            pause();
-            whenTimedOut.run();
-         }
-      };
+   private void scheduleCheck(long delayMillis)
+   {
+      if (!_isCancelled) {
+         _scheduledCheck = SharedTimer.getInstance().schedule(
+               this::check,
+               delayMillis,
+               TimeUnit.MILLISECONDS,
+               _virtualThread);
+      }
+   }
 
-      _internalExecutorService.scheduleAtFixedRate(
-            timerTask,
-            timeoutCheckIntervalMillis,
-            timeoutCheckIntervalMillis,
-            TimeUnit.MILLISECONDS);
-      extend();
+   private void check()
+   {
+      while (!_isCancelled) {
+         long timestampMillis = _timeoutTimestampMillis.get();
+         if (timestampMillis == Long.MAX_VALUE) {
+            // Paused, extend() schedules a new check. It may have seen this check as scheduled, in which case this
+            // check has to stay scheduled.
+            _isCheckScheduled.set(false);
+            if (_timeoutTimestampMillis.get() == Long.MAX_VALUE || !_isCheckScheduled.compareAndSet(false, true)) {
+               return;
+            }
+            continue;
+         }
+         long remainingMillis = timestampMillis - nowMillis();
+         if (remainingMillis > 0) {
+            scheduleCheck(remainingMillis);
+            return;
+         }
+         if (_timeoutTimestampMillis.compareAndSet(timestampMillis, Long.MAX_VALUE)) {
+            _whenTimedOut.run();
+         }
+      }
    }
 
-   private boolean hasTimedOut(AtomicLong timestampMillis)
+   private static long nowMillis()
    {
-      return TimeUnit.NANOSECONDS.toMillis(System.nanoTime()) >= timestampMillis.get();
+      return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
    }
 
    void pause()
@@ -109,16 +151,29 @@ public class TimeoutTimer {
    void extend()
    {
       // This method extends the time it takes for the timer to timeout.
-      _timeoutTimestampMillis.set(TimeUnit.NANOSECONDS.toMillis(System.nanoTime()) + _offsetTimeMillis);
+      _timeoutTimestampMillis.set(nowMillis() + _offsetTimeMillis);
+      if (_whenTimedOut != null && !_isCheckScheduled.get() && _isCheckScheduled.compareAndSet(false, true)) {
+         scheduleCheck(_offsetTimeMillis);
+      }
    }
 
    void cancel()
    {
-      _internalExecutorService.shutdownNow();
+      _isCancelled = true;
+      ScheduledFuture<?> scheduledCheck = _scheduledCheck;
+      if (scheduledCheck != null) {
+         scheduledCheck.cancel(false);
+      }
    }
 
    long getTimeoutDurationMillis()
    {
       return _timeoutDurationMillis;
    }
+
+   @Override
+   public String toString()
+   {
+      return "TimeoutTimer{" + _timerName + ", " + _timeoutDurationMillis + " ms, " + (_eager ? "eager" : "lazy") + "}";
+   }
 }
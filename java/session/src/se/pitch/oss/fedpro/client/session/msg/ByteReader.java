@@ -16,6 +16,9 @@
 
 package se.pitch.oss.fedpro.client.session.msg;
 
+import se.pitch.oss.fedpro.common.session.buffers.PayloadBuffer;
+import se.pitch.oss.fedpro.common.session.buffers.PayloadBufferPool;
+
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
@@ -29,19 +32,37 @@ class ByteReader {
    throws IOException
    {
       byte[] bytes = new byte[count];
+      readFully(input, bytes, count);
+      return bytes;
+   }
 
+   private static void readFully(InputStream input, byte[] bytes, int count)
+   throws IOException
+   {
       int readInTotal = 0;
       int bytesRead;
 
       // Blocks when there is nothing to read, unless there is an IOException or EOF is reached.
-      while ((bytesRead = input.read(bytes, readInTotal, bytes.length - readInTotal)) > 0) {
+      while (readInTotal < count && (bytesRead = input.read(bytes, readInTotal, count - readInTotal)) > 0) {
          readInTotal += bytesRead;
       }
 
       if (readInTotal < count) {
          throw new EOFException("Could only read " + readInTotal + " of " + count + " bytes");
       }
-      return bytes;
+   }
+
+   public static PayloadBuffer readPooled(InputStream input, int count, PayloadBufferPool pool)
+   throws IOException
+   {
+      PayloadBuffer buffer = pool.acquire(count);
+      try {
+         readFully(input, buffer.array(), count);
+      } catch (IOException e) {
+         buffer.release();
+         throw e;
+      }
+      return buffer;
    }
 
    public static ByteBuffer wrap(InputStream input, int count)
@@ -16,7 +16,18 @@
 
 package se.pitch.oss.fedpro.client.session.msg;
 
+import se.pitch.oss.fedpro.common.session.buffers.FramedPayload;
+
 public interface EncodableMessage {
 
    byte[] encode();
+
+   /**
+    * @return The payload, if it is already encoded into a frame with space reserved for the header, in which case
+    *       {@link #encode()} is not used when the message is sent. Otherwise null.
+    */
+   default FramedPayload framedPayload()
+   {
+      return null;
+   }
 }
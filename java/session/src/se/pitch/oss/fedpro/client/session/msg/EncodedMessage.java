@@ -16,29 +16,115 @@
 
 package se.pitch.oss.fedpro.client.session.msg;
 
-import java.nio.ByteBuffer;
+import se.pitch.oss.fedpro.common.session.buffers.FramedPayload;
 
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A message that is ready to be sent, consisting of a head followed by a body.
+ * <p>
+ * A message created from a header and an {@link EncodableMessage} has the encoded header as its head and references the
+ * encoded payload as its body, so the payload is never copied into a packet-sized array. If the payload is a
+ * {@link FramedPayload}, the header is written into the frame, which then becomes the head. A message that is wrapped
+ * from already encoded data has all of it in the head and an empty body.
+ */
 public class EncodedMessage {
 
+   private static final byte[] EMPTY = new byte[0];
+
    public final int sequenceNumber; // unsigned int
    public final boolean isControl;
-   public final byte[] data;
+   private final byte[] _head;
+   private final byte[] _body;
 
-   private EncodedMessage(int sequenceNumber, boolean isControl, byte[] data)
+   private EncodedMessage(int sequenceNumber, boolean isControl, byte[] head, byte[] body)
    {
       this.sequenceNumber = sequenceNumber;
       this.isControl = isControl;
-      this.data = data;
+      _head = head;
+      _body = body;
    }
 
    public static EncodedMessage create(MessageHeader header, EncodableMessage message)
    {
-      ByteBuffer buffer = ByteBuffer.allocate((int) header.packetSize);
-      buffer.put(header.encode());
-      if (message != null) {
-         buffer.put(message.encode());
+      FramedPayload framedPayload = message != null ? message.framedPayload() : null;
+      if (framedPayload != null) {
+         assert header.packetSize == framedPayload.array().length;
+         header.encodeInto(framedPayload.array(), 0);
+         return new EncodedMessage(
+               header.sequenceNumber,
+               header.messageType.isControl(),
+               framedPayload.array(),
+               EMPTY);
       }
 
-      return new EncodedMessage(header.sequenceNumber, header.messageType.isControl(), buffer.array());
+      byte[] payload = message != null ? message.encode() : EMPTY;
+      assert header.packetSize == MessageHeader.SIZE + payload.length;
+
+      return new EncodedMessage(header.sequenceNumber, header.messageType.isControl(), header.encode(), payload);
+   }
+
+   /**
+    * Create a message from data that is already encoded, such as a message read back from the message history.
+    */
+   public static EncodedMessage wrap(int sequenceNumber, boolean isControl, byte[] data)
+   {
+      return new EncodedMessage(sequenceNumber, isControl, data, EMPTY);
+   }
+
+   /**
+    * @return The total size of the encoded message, including the header.
+    */
+   public int length()
+   {
+      return _head.length + _body.length;
+   }
+
+   /**
+    * @return The first part of the encoded message, which always contains the complete header. Must not be modified.
+    */
+   public byte[] head()
+   {
+      return _head;
+   }
+
+   /**
+    * @return The rest of the encoded message after the head, possibly empty. Must not be modified.
+    */
+   public byte[] body()
+   {
+      return _body;
+   }
+
+   /**
+    * Copy the encoded message into the array, starting at the offset.
+    */
+   public void copyTo(byte[] destination, int offset)
+   {
+      System.arraycopy(_head, 0, destination, offset, _head.length);
+      System.arraycopy(_body, 0, destination, offset + _head.length, _body.length);
+   }
+
+   public void writeTo(OutputStream outputStream)
+   throws IOException
+   {
+      outputStream.write(_head);
+      if (_body.length > 0) {
+         outputStream.write(_body);
+      }
+   }
+
+   /**
+    * @return The encoded message in a single array. Copies the data unless the body is empty.
+    */
+   public byte[] toByteArray()
+   {
+      if (_body.length == 0) {
+         return _head;
+      }
+      byte[] data = new byte[length()];
+      copyTo(data, 0);
+      return data;
    }
 }
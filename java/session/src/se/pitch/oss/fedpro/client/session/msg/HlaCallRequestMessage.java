@@ -16,22 +16,47 @@
 
 package se.pitch.oss.fedpro.client.session.msg;
 
+import se.pitch.oss.fedpro.common.session.buffers.FramedPayload;
+
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 
 public class HlaCallRequestMessage implements EncodableMessage {
 
-   public final byte[] hlaServiceCallWithParams;
+   private final byte[] _hlaServiceCallWithParams;
+   private final FramedPayload _framedPayload;
 
    public HlaCallRequestMessage(byte[] hlaServiceCallWithParams)
    {
-      this.hlaServiceCallWithParams = hlaServiceCallWithParams;
+      _hlaServiceCallWithParams = hlaServiceCallWithParams;
+      _framedPayload = null;
+   }
+
+   public HlaCallRequestMessage(FramedPayload hlaServiceCallWithParams)
+   {
+      _hlaServiceCallWithParams = null;
+      _framedPayload = hlaServiceCallWithParams;
+   }
+
+   public int payloadSize()
+   {
+      return _framedPayload != null ? _framedPayload.payloadSize() : _hlaServiceCallWithParams.length;
    }
 
    @Override
    public byte[] encode()
    {
-      return hlaServiceCallWithParams;
+      if (_framedPayload != null) {
+         return Arrays.copyOfRange(_framedPayload.array(), _framedPayload.payloadOffset(), _framedPayload.array().length);
+      }
+      return _hlaServiceCallWithParams;
+   }
+
+   @Override
+   public FramedPayload framedPayload()
+   {
+      return _framedPayload;
    }
 
    public static HlaCallRequestMessage decode(InputStream inputStream, int length)
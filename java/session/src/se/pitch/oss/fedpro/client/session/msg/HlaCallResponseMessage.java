@@ -16,6 +16,9 @@
 
 package se.pitch.oss.fedpro.client.session.msg;
 
+import se.pitch.oss.fedpro.common.session.buffers.PayloadBuffer;
+import se.pitch.oss.fedpro.common.session.buffers.PayloadBufferPool;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
@@ -45,8 +48,30 @@ public class HlaCallResponseMessage implements EncodableMessage {
    public static HlaCallResponseMessage decode(InputStream inputStream, int length)
    throws IOException
    {
-      int responseToSequenceNumber = ByteReader.getInt32(inputStream);
-      byte[] hlaServiceReturnValueOrException = ByteReader.readNBytes(inputStream, length - INT32_SIZE);
+      int responseToSequenceNumber = decodeResponseToSequenceNumber(inputStream);
+      byte[] hlaServiceReturnValueOrException = decodeResult(inputStream, length);
       return new HlaCallResponseMessage(responseToSequenceNumber, hlaServiceReturnValueOrException);
    }
+
+   /**
+    * Decode a message in parts, so that the result can be decoded differently depending on the request.
+    * This must be called first, followed by one of the decodeResult methods.
+    */
+   public static int decodeResponseToSequenceNumber(InputStream inputStream)
+   throws IOException
+   {
+      return ByteReader.getInt32(inputStream);
+   }
+
+   public static byte[] decodeResult(InputStream inputStream, int length)
+   throws IOException
+   {
+      return ByteReader.readNBytes(inputStream, length - INT32_SIZE);
+   }
+
+   public static PayloadBuffer decodeResult(InputStream inputStream, int length, PayloadBufferPool pool)
+   throws IOException
+   {
+      return ByteReader.readPooled(inputStream, length - INT32_SIZE, pool);
+   }
 }
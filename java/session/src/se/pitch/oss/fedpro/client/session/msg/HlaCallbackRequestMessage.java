@@ -16,6 +16,9 @@
 
 package se.pitch.oss.fedpro.client.session.msg;
 
+import se.pitch.oss.fedpro.common.session.buffers.PayloadBuffer;
+import se.pitch.oss.fedpro.common.session.buffers.PayloadBufferPool;
+
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -40,4 +43,13 @@ public class HlaCallbackRequestMessage implements EncodableMessage {
       byte[] hlaServiceCallWithParams = ByteReader.readNBytes(inputStream, length);
       return new HlaCallbackRequestMessage(hlaServiceCallWithParams);
    }
+
+   /**
+    * Decode the encoded callback into a buffer from the pool, without creating a message object.
+    */
+   public static PayloadBuffer decodePooled(InputStream inputStream, int length, PayloadBufferPool pool)
+   throws IOException
+   {
+      return ByteReader.readPooled(inputStream, length, pool);
+   }
 }
@@ -0,0 +1,287 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.pitch.oss.fedpro.client.session.msg;
+
+import se.pitch.oss.fedpro.common.exceptions.BadMessage;
+import se.pitch.oss.fedpro.common.session.MessageType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Splits a stream of received bytes into complete FedPro messages, decoding the headers in place.
+ * <p>
+ * Bytes are either appended in arbitrary chunks, see {@link #append(ByteBuffer)}, or read from a stream into the
+ * internal buffer, see {@link #fill(InputStream)}. Decoding a header does not allocate, and the payload of the current
+ * message is read directly from the internal buffer. Appended chunks that start at a message boundary are decoded in
+ * place, without being copied into the internal buffer.
+ * <p>
+ * Not thread-safe, each instance is meant to be used by a single reader.
+ */
+public class InboundFrameDecoder {
+
+   // Field offsets within an encoded header, see MessageHeader.encode().
+   private static final int SEQUENCE_NUMBER_OFFSET = 4;
+   private static final int SESSION_ID_OFFSET = 8;
+   private static final int LAST_RECEIVED_SEQUENCE_NUMBER_OFFSET = 16;
+   private static final int MESSAGE_TYPE_OFFSET = 20;
+
+   private byte[] _buffer;
+   private ByteBuffer _view;
+   private int _start = 0;
+   private int _end = 0;
+
+   // The internal buffer, while _buffer refers to the array of appended data that is decoded in place.
+   private byte[] _ownBuffer;
+   private ByteBuffer _ownView;
+   private boolean _isBorrowed = false;
+
+   private final PayloadInputStream _payloadStream = new PayloadInputStream();
+
+   // Header of the current message
+   private int _sequenceNumber;
+   private long _sessionId;
+   private int _lastReceivedSequenceNumber;
+   private MessageType _messageType;
+   private int _messageOffset;
+   private int _payloadOffset;
+   private int _payloadSize;
+
+   public InboundFrameDecoder(int initialCapacity)
+   {
+      _buffer = new byte[Math.max(initialCapacity, MessageHeader.SIZE)];
+      _view = ByteBuffer.wrap(_buffer);
+      _ownBuffer = _buffer;
+      _ownView = _view;
+   }
+
+   /**
+    * Add received bytes to the decoder. The data must not be modified until {@link #next()} has returned false, after
+    * that the caller may reuse the buffer.
+    * <p>
+    * If nothing is buffered and the data has an accessible array, messages are decoded directly from that array, and
+    * only an incomplete message at the end is copied. Otherwise the data is copied right away.
+    */
+   public void append(ByteBuffer data)
+   {
+      if (_start == _end && !_isBorrowed && data.hasArray()) {
+         _buffer = data.array();
+         _view = ByteBuffer.wrap(_buffer);
+         _start = data.arrayOffset() + data.position();
+         _end = _start + data.remaining();
+         _isBorrowed = true;
+         data.position(data.limit());
+         return;
+      }
+      ensureWritable(data.remaining());
+      int length = data.remaining();
+      data.get(_buffer, _end, length);
+      _end += length;
+   }
+
+   /**
+    * Read as many bytes as the stream will provide in a single read, into the free part of the internal buffer.
+    *
+    * @return The number of bytes read, or -1 if the end of the stream has been reached.
+    */
+   public int fill(InputStream inputStream)
+   throws IOException
+   {
+      ensureWritable(1);
+      int bytesRead = inputStream.read(_buffer, _end, _buffer.length - _end);
+      if (bytesRead > 0) {
+         _end += bytesRead;
+      }
+      return bytesRead;
+   }
+
+   /**
+    * Move to the next complete message, if there is one.
+    *
+    * @return true if there was a complete message. Its header is available through the accessors of this decoder, and
+    *       its payload through {@link #payloadStream()}, until the next call to this method.
+    * @throws BadMessage If the buffered data does not start with a valid message header.
+    */
+   public boolean next()
+   throws BadMessage
+   {
+      int available = _end - _start;
+      if (available < MessageHeader.SIZE) {
+         if (_isBorrowed) {
+            returnBorrowed();
+         }
+         if (available == 0) {
+            _start = 0;
+            _end = 0;
+         } else {
+            ensureWritable(MessageHeader.SIZE - available);
+         }
+         return false;
+      }
+      long packetSize = MessageHeader.decodePacketSize(_view.getInt(_start));
+      if (available < packetSize) {
+         ensureWritable((int) packetSize - available);
+         return false;
+      }
+
+      int messageTypeInt = _view.getInt(_start + MESSAGE_TYPE_OFFSET);
+      MessageType messageType = MessageType.fromInt(messageTypeInt);
+      if (messageType == null) {
+         throw new BadMessage("Unknown MessageType " + messageTypeInt);
+      }
+      _sequenceNumber = _view.getInt(_start + SEQUENCE_NUMBER_OFFSET);
+      _sessionId = _view.getLong(_start + SESSION_ID_OFFSET);
+      _lastReceivedSequenceNumber = _view.getInt(_start + LAST_RECEIVED_SEQUENCE_NUMBER_OFFSET);
+      _messageType = messageType;
+      _messageOffset = _start;
+      _payloadOffset = _start + MessageHeader.SIZE;
+      _payloadSize = (int) packetSize - MessageHeader.SIZE;
+      _start += (int) packetSize;
+      return true;
+   }
+
+   public int sequenceNumber()
+   {
+      return _sequenceNumber;
+   }
+
+   public long sessionId()
+   {
+      return _sessionId;
+   }
+
+   public int lastReceivedSequenceNumber()
+   {
+      return _lastReceivedSequenceNumber;
+   }
+
+   public MessageType messageType()
+   {
+      return _messageType;
+   }
+
+   public int payloadSize()
+   {
+      return _payloadSize;
+   }
+
+   /**
+    * @return A stream over the payload of the current message. The same stream instance is reused for every message.
+    */
+   public InputStream payloadStream()
+   {
+      _payloadStream.reset(_payloadOffset, _payloadSize);
+      return _payloadStream;
+   }
+
+   /**
+    * @return A copy of the current message, header included, that another decoder can decode after it is appended.
+    */
+   public byte[] copyMessage()
+   {
+      return Arrays.copyOfRange(_buffer, _messageOffset, _payloadOffset + _payloadSize);
+   }
+
+   /**
+    * Stop decoding from the appended array, keeping what remains of it in the internal buffer.
+    */
+   private void returnBorrowed()
+   {
+      int remaining = _end - _start;
+      if (_ownBuffer.length < remaining) {
+         _ownBuffer = new byte[Math.max(_ownBuffer.length * 2, remaining)];
+         _ownView = ByteBuffer.wrap(_ownBuffer);
+      }
+      System.arraycopy(_buffer, _start, _ownBuffer, 0, remaining);
+      _buffer = _ownBuffer;
+      _view = _ownView;
+      _start = 0;
+      _end = remaining;
+      _isBorrowed = false;
+   }
+
+   private void ensureWritable(int length)
+   {
+      if (_isBorrowed) {
+         returnBorrowed();
+      }
+      if (_buffer.length - _end >= length) {
+         return;
+      }
+      int buffered = _end - _start;
+      if (_buffer.length - buffered >= length) {
+         // Enough space if already consumed messages are discarded.
+         System.arraycopy(_buffer, _start, _buffer, 0, buffered);
+      } else {
+         byte[] larger = new byte[Math.max(_buffer.length * 2, buffered + length)];
+         System.arraycopy(_buffer, _start, larger, 0, buffered);
+         _buffer = larger;
+         _view = ByteBuffer.wrap(_buffer);
+         _ownBuffer = _buffer;
+         _ownView = _view;
+      }
+      _start = 0;
+      _end = buffered;
+   }
+
+   private class PayloadInputStream extends InputStream {
+
+      private int _position;
+      private int _limit;
+
+      void reset(
+            int offset,
+            int length)
+      {
+         _position = offset;
+         _limit = offset + length;
+      }
+
+      @Override
+      public int read()
+      {
+         return _position < _limit ? _buffer[_position++] & 0xFF : -1;
+      }
+
+      @Override
+      public int read(
+            byte[] b,
+            int off,
+            int len)
+      {
+         if (len == 0) {
+            return 0;
+         }
+         int available = _limit - _position;
+         if (available <= 0) {
+            return -1;
+         }
+         int bytesRead = Math.min(len, available);
+         System.arraycopy(_buffer, _position, b, off, bytesRead);
+         _position += bytesRead;
+         return bytesRead;
+      }
+
+      @Override
+      public int available()
+      {
+         return _limit - _position;
+      }
+   }
+}
@@ -68,19 +68,47 @@ public class MessageHeader {
 
    public byte[] encode()
    {
-      return ByteBuffer.allocate(MessageHeader.SIZE)
+      byte[] encoded = new byte[MessageHeader.SIZE];
+      encodeInto(encoded, 0);
+      return encoded;
+   }
+
+   /**
+    * Encode the header into {@link #SIZE} bytes of the array, starting at the offset.
+    */
+   public void encodeInto(byte[] destination, int offset)
+   {
+      ByteBuffer.wrap(destination, offset, MessageHeader.SIZE)
             .putInt((int) packetSize)
             .putInt(sequenceNumber)
             .putLong(sessionId)
             .putInt(lastReceivedSequenceNumber)
-            .putInt(messageType.asInt())
-            .array();
+            .putInt(messageType.asInt());
    }
 
    public static MessageHeader decode(InputStream inputStream)
    throws BadMessage, IOException
    {
-      long packetSize = Integer.toUnsignedLong(ByteReader.getInt32(inputStream));
+      return decode(ByteReader.wrap(inputStream, SIZE));
+   }
+
+   /**
+    * Decode a header from a buffer that holds at least {@link #SIZE} bytes from its current position.
+    */
+   public static MessageHeader decode(ByteBuffer buffer)
+   throws BadMessage
+   {
+      long packetSize = decodePacketSize(buffer.getInt());
+      return decodeRemaining(packetSize, buffer);
+   }
+
+   /**
+    * Validate the leading packet size field of a header.
+    */
+   public static long decodePacketSize(int packetSizeField)
+   throws BadMessage
+   {
+      long packetSize = Integer.toUnsignedLong(packetSizeField);
       if (packetSize < SIZE) {
          throw new BadMessage("Invalid PacketSize " + packetSize);
       }
@@ -89,8 +117,14 @@ public class MessageHeader {
       if (remaining >= Integer.MAX_VALUE) {
          throw new BadMessage("Invalid PacketSize " + packetSize);
       }
-      ByteBuffer buffer = ByteReader.wrap(inputStream, SIZE - INT32_SIZE);
+      return packetSize;
+   }
 
+   private static MessageHeader decodeRemaining(
+         long packetSize,
+         ByteBuffer buffer)
+   throws BadMessage
+   {
       int sequenceNumber = buffer.getInt();
       long sessionId = buffer.getLong();
       int lastReceivedSequenceNumber = buffer.getInt();
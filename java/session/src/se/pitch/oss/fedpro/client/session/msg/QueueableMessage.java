@@ -19,8 +19,8 @@ package se.pitch.oss.fedpro.client.session.msg;
 import se.pitch.oss.fedpro.client.session.SessionImpl;
 import se.pitch.oss.fedpro.common.session.LogUtil;
 import se.pitch.oss.fedpro.common.session.MessageType;
+import se.pitch.oss.fedpro.common.session.SequenceNumberMap;
 
-import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.logging.Logger;
 
@@ -34,7 +34,7 @@ public class QueueableMessage {
    private final MessageType _messageType;
    private final EncodableMessage _message;
    private CompletableFuture<byte[]> _future;
-   private final Map<Integer, CompletableFuture<byte[]>> _futuresMap;
+   private final SequenceNumberMap<CompletableFuture<byte[]>> _futuresMap;
 
    public QueueableMessage(
          long payloadSize,
@@ -43,7 +43,7 @@ public class QueueableMessage {
          MessageType messageType,
          EncodableMessage message,
          CompletableFuture<byte[]> future,
-         Map<Integer, CompletableFuture<byte[]>> futuresMap)
+         SequenceNumberMap<CompletableFuture<byte[]>> futuresMap)
    {
       _payloadSize = payloadSize;
       _lastReceivedSequenceNumber = lastReceivedSequenceNumber;
@@ -59,6 +59,14 @@ public class QueueableMessage {
       return _messageType.isHlaResponse();
    }
 
+   /**
+    * @return The size of this message when encoded, header included.
+    */
+   public long getPacketSize()
+   {
+      return MessageHeader.SIZE + _payloadSize;
+   }
+
    public EncodedMessage createEncodedMessage(int nextSequenceNumber)
    {
       EncodedMessage msg = EncodedMessage.create(
@@ -23,13 +23,18 @@ import se.pitch.oss.fedpro.common.transport.TlsKeysImpl;
 
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManager;
+import java.io.File;
 import java.io.IOException;
 import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.UnrecoverableKeyException;
 import java.security.cert.CertificateException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 import static se.pitch.oss.fedpro.client.Settings.*;
@@ -40,6 +45,11 @@ public class SecurityUtil {
 
    private static final Logger LOGGER = Logger.getLogger(SecurityUtil.class.getName());
 
+   // Contexts loaded from settings, shared by all transports with the same settings. Besides not loading the keystore
+   // again, this lets a new connection resume a TLS session that was established by any of the transports, since the
+   // client session cache belongs to the context.
+   private static final Map<List<Object>, CachedSslContext> SSL_CONTEXTS = new ConcurrentHashMap<>();
+
    public static SSLContext provideClientSSLContext(
          TlsKeysImpl tlsKeys,
          TypedProperties settings)
@@ -71,6 +81,11 @@ public class SecurityUtil {
       }
    }
 
+   /**
+    * Get an SSL context for the specified settings. Contexts are cached, so all callers with the same settings get the
+    * same context. The keystore is loaded again, replacing the cached context, if the keystore or password file has
+    * been modified.
+    */
    public static SSLContext getSslContext(
          TlsMode tlsMode,
          String passwordPath,
@@ -78,6 +93,41 @@ public class SecurityUtil {
          String keyStoreType,
          String keyStoreAlgorithm,
          boolean useDefaultKeystore)
+   {
+      List<Object> key = Arrays.asList(
+            tlsMode,
+            passwordPath,
+            keystorePath,
+            keyStoreType,
+            keyStoreAlgorithm,
+            useDefaultKeystore);
+      long keystoreModified = lastModified(keystorePath);
+      long passwordModified = lastModified(passwordPath);
+      return SSL_CONTEXTS.compute(key, (k, cached) -> {
+         if (cached != null &&
+               cached._keystoreModified == keystoreModified &&
+               cached._passwordModified == passwordModified) {
+            return cached;
+         }
+         return new CachedSslContext(
+               loadSslContext(tlsMode, passwordPath, keystorePath, keyStoreType, keyStoreAlgorithm, useDefaultKeystore),
+               keystoreModified,
+               passwordModified);
+      })._context;
+   }
+
+   private static long lastModified(String path)
+   {
+      return path == null ? 0L : new File(path).lastModified();
+   }
+
+   private static SSLContext loadSslContext(
+         TlsMode tlsMode,
+         String passwordPath,
+         String keystorePath,
+         String keyStoreType,
+         String keyStoreAlgorithm,
+         boolean useDefaultKeystore)
    {
       try {
          if (tlsMode == TlsMode.ENCRYPTED || tlsMode == TlsMode.SERVER_AUTH) {
@@ -111,4 +161,21 @@ public class SecurityUtil {
          throw new IllegalArgumentException("Could not load SSL context", e);
       }
    }
+
+   private static final class CachedSslContext {
+
+      private final SSLContext _context;
+      private final long _keystoreModified;
+      private final long _passwordModified;
+
+      private CachedSslContext(
+            SSLContext context,
+            long keystoreModified,
+            long passwordModified)
+      {
+         _context = context;
+         _keystoreModified = keystoreModified;
+         _passwordModified = passwordModified;
+      }
+   }
 }
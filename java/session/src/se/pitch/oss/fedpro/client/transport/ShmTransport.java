@@ -0,0 +1,83 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.pitch.oss.fedpro.client.transport;
+
+import se.pitch.oss.fedpro.client.TypedProperties;
+import se.pitch.oss.fedpro.common.Protocol;
+import se.pitch.oss.fedpro.common.transport.FedProSocket;
+import se.pitch.oss.fedpro.common.transport.shm.ShmSocket;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import static se.pitch.oss.fedpro.client.Settings.*;
+import static se.pitch.oss.fedpro.client.transport.TransportSettings.*;
+
+/**
+ * Connects to a server on the same host through shared memory, see {@link ShmSocket}, bypassing the kernel for every
+ * message.
+ * <p>
+ * Waiting for data polls the shared memory, so a connection costs CPU time while there is traffic. Meant for a server
+ * that runs on the same host, where the latency of the loopback interface matters.
+ */
+public class ShmTransport extends TransportBase {
+
+   private static final long ACCEPT_TIMEOUT_MILLIS = 5000;
+
+   private final String _directory;
+   private final int _ringBytes;
+
+   public ShmTransport(TypedProperties settings)
+   {
+      // The host and port are not used.
+      super(DEFAULT_CONNECTION_HOST, 0);
+
+      _directory = settings == null ?
+            DEFAULT_SHM_DIRECTORY :
+            settings.getString(SETTING_NAME_CONNECTION_PATH, DEFAULT_SHM_DIRECTORY);
+      _ringBytes = settings == null ?
+            DEFAULT_SHM_RING_BYTES :
+            settings.getInt(SETTING_NAME_SHM_RING_BYTES, DEFAULT_SHM_RING_BYTES);
+
+      TypedProperties allTransportSettingsUsed = new TypedProperties();
+      allTransportSettingsUsed.setString(SETTING_NAME_CONNECTION_PATH, _directory);
+      allTransportSettingsUsed.setInt(SETTING_NAME_SHM_RING_BYTES, _ringBytes);
+      LOGGER.config(() -> String.format(
+            "Federate Protocol client transport layer settings used:\n%s",
+            allTransportSettingsUsed.toPrettyString()));
+   }
+
+   @Override
+   protected FedProSocket doConnect(String host, int port)
+   throws IOException
+   {
+      return ShmSocket.connect(Paths.get(_directory), _ringBytes, ACCEPT_TIMEOUT_MILLIS, Protocol.SHM);
+   }
+
+   @Override
+   protected String endpoint()
+   {
+      return _directory;
+   }
+
+   @Override
+   public void resolveAhead()
+   {
+      // No host name to resolve.
+   }
+}
@@ -20,8 +20,12 @@ import se.pitch.oss.fedpro.client.TypedProperties;
 import se.pitch.oss.fedpro.common.Protocol;
 import se.pitch.oss.fedpro.common.transport.FedProSocket;
 import se.pitch.oss.fedpro.common.transport.FedProSocketImpl;
+import se.pitch.oss.fedpro.common.transport.nio.NioEventLoopGroup;
+import se.pitch.oss.fedpro.common.transport.nio.NioSocket;
 
 import java.io.IOException;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
 
 import static se.pitch.oss.fedpro.client.Settings.*;
 import static se.pitch.oss.fedpro.client.transport.TransportSettings.*;
@@ -29,6 +33,9 @@ import static se.pitch.oss.fedpro.common.Ports.DEFAULT_PORT_TCP;
 
 public class TcpTransport extends TransportBase {
 
+   private final boolean _useEventLoop;
+   private final int _eventLoopThreads;
+
    public TcpTransport(TypedProperties settings)
    {
       super(
@@ -39,9 +46,18 @@ public class TcpTransport extends TransportBase {
                   DEFAULT_PORT_TCP :
                   settings.getInt(SETTING_NAME_CONNECTION_PORT, DEFAULT_PORT_TCP));
 
+      _useEventLoop = settings == null ?
+            DEFAULT_CONNECTION_EVENT_LOOP :
+            settings.getBoolean(SETTING_NAME_CONNECTION_EVENT_LOOP, DEFAULT_CONNECTION_EVENT_LOOP);
+      _eventLoopThreads = settings == null ?
+            DEFAULT_CONNECTION_EVENT_LOOP_THREADS :
+            settings.getInt(SETTING_NAME_CONNECTION_EVENT_LOOP_THREADS, DEFAULT_CONNECTION_EVENT_LOOP_THREADS);
+
       TypedProperties allTransportSettingsUsed = new TypedProperties();
       allTransportSettingsUsed.setString(SETTING_NAME_CONNECTION_HOST, _host);
       allTransportSettingsUsed.setInt(SETTING_NAME_CONNECTION_PORT, _port);
+      allTransportSettingsUsed.setBoolean(SETTING_NAME_CONNECTION_EVENT_LOOP, _useEventLoop);
+      allTransportSettingsUsed.setInt(SETTING_NAME_CONNECTION_EVENT_LOOP_THREADS, _eventLoopThreads);
       LOGGER.config(() -> String.format(
             "Federate Protocol client transport layer settings used:\n%s",
             allTransportSettingsUsed.toPrettyString()));
@@ -50,7 +66,12 @@ public class TcpTransport extends TransportBase {
    protected FedProSocket doConnect(String host, int port)
    throws IOException
    {
-      return new FedProSocketImpl(new java.net.Socket(host, port), Protocol.TCP);
+      if (_useEventLoop) {
+         SocketChannel channel = connectToAnyAddress(SocketChannel::open);
+         return NioSocket.connect(NioEventLoopGroup.getShared(_eventLoopThreads), channel, Protocol.TCP);
+      }
+      Socket socket = connectToAnyAddress(address -> new Socket(address.getAddress(), address.getPort()));
+      return new FedProSocketImpl(socket, Protocol.TCP);
    }
 
 }
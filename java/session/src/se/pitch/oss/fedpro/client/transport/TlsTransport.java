@@ -19,12 +19,18 @@ package se.pitch.oss.fedpro.client.transport;
 import se.pitch.oss.fedpro.client.TypedProperties;
 import se.pitch.oss.fedpro.common.Protocol;
 import se.pitch.oss.fedpro.common.transport.*;
+import se.pitch.oss.fedpro.common.transport.nio.NioEventLoopGroup;
+import se.pitch.oss.fedpro.common.transport.nio.NioTlsSocket;
 
 import javax.net.ssl.SNIHostName;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLParameters;
 import javax.net.ssl.SSLSocket;
 import java.io.IOException;
+import java.net.Socket;
+import java.time.Duration;
+import java.nio.channels.SocketChannel;
 import java.util.Collections;
 
 import static se.pitch.oss.fedpro.client.Settings.*;
@@ -42,6 +48,9 @@ public class TlsTransport extends TransportBase {
    private final String _keyStoreType;
    private final String _tlsModeString;
    private final String _sniHostName;
+   private final boolean _useEventLoop;
+   private final int _eventLoopThreads;
+   private final long _connectionTimeoutMillis;
 
    public TlsTransport(SSLContext sslContext, TypedProperties settings)
    {
@@ -63,6 +72,12 @@ public class TlsTransport extends TransportBase {
       _keyStoreType = settings.getString(SETTING_NAME_KEYSTORE_TYPE, DEFAULT_KEYSTORE_TYPE);
       _tlsModeString = settings.getString(SETTING_NAME_TLS_MODE, DEFAULT_TLS_MODE.name());
       _sniHostName = settings.getString(SETTING_NAME_TLS_SNI, DEFAULT_TLS_SNI);
+      _useEventLoop = settings.getBoolean(SETTING_NAME_CONNECTION_EVENT_LOOP, DEFAULT_CONNECTION_EVENT_LOOP);
+      _eventLoopThreads = settings.getInt(
+            SETTING_NAME_CONNECTION_EVENT_LOOP_THREADS,
+            DEFAULT_CONNECTION_EVENT_LOOP_THREADS);
+      _connectionTimeoutMillis = settings.getDuration(
+            SETTING_NAME_CONNECTION_TIMEOUT, Duration.ofMillis(DEFAULT_CONNECTION_TIMEOUT_MILLIS)).toMillis();
 
       if (sslContext != null) {
          _context = sslContext;
@@ -79,7 +94,19 @@ public class TlsTransport extends TransportBase {
    protected FedProSocket doConnect(String host, int port)
    throws IOException
    {
-      SSLSocket socket = (SSLSocket) _context.getSocketFactory().createSocket(host, port);
+      if (_useEventLoop) {
+         return connectEventLoopSocket(host, port);
+      }
+      // The context caches sessions by host and port, so reconnecting to resume a session makes an abbreviated
+      // handshake when the server allows it.
+      Socket plainSocket = connectToAnyAddress(address -> new Socket(address.getAddress(), address.getPort()));
+      SSLSocket socket;
+      try {
+         socket = (SSLSocket) _context.getSocketFactory().createSocket(plainSocket, host, port, true);
+      } catch (IOException | RuntimeException e) {
+         plainSocket.close();
+         throw e;
+      }
 
       /*
        * If we want to check the `host` name against the cert that we receive as
@@ -105,6 +132,27 @@ public class TlsTransport extends TransportBase {
       return new FedProSocketImpl(socket, Protocol.TLS);
    }
 
+   private FedProSocket connectEventLoopSocket(
+         String host,
+         int port)
+   throws IOException
+   {
+      SSLEngine engine = _context.createSSLEngine(host, port);
+      engine.setUseClientMode(true);
+      if (_sniHostName != null && !_sniHostName.isEmpty()) {
+         SSLParameters params = engine.getSSLParameters();
+         params.setServerNames(Collections.singletonList(new SNIHostName(_sniHostName)));
+         engine.setSSLParameters(params);
+      }
+      SocketChannel channel = connectToAnyAddress(SocketChannel::open);
+      return NioTlsSocket.connect(
+            NioEventLoopGroup.getShared(_eventLoopThreads),
+            channel,
+            engine,
+            _connectionTimeoutMillis,
+            Protocol.TLS);
+   }
+
    private void logSettings()
    {
       TypedProperties allTransportSettingsUsed = new TypedProperties();
@@ -114,6 +162,11 @@ public class TlsTransport extends TransportBase {
       allTransportSettingsUsed.setString(SETTING_NAME_KEYSTORE_TYPE, _keyStoreType);
       allTransportSettingsUsed.setString(SETTING_NAME_TLS_MODE, _tlsModeString);
       allTransportSettingsUsed.setString(SETTING_NAME_TLS_SNI, _sniHostName);
+      allTransportSettingsUsed.setBoolean(SETTING_NAME_CONNECTION_EVENT_LOOP, _useEventLoop);
+      allTransportSettingsUsed.setInt(SETTING_NAME_CONNECTION_EVENT_LOOP_THREADS, _eventLoopThreads);
+      allTransportSettingsUsed.setDuration(
+            SETTING_NAME_CONNECTION_TIMEOUT,
+            Duration.ofMillis(_connectionTimeoutMillis));
       LOGGER.config(() -> String.format(
             "Federate Protocol client transport layer settings used:\n%s",
             allTransportSettingsUsed.toPrettyString()));
@@ -17,10 +17,17 @@
 package se.pitch.oss.fedpro.client.transport;
 
 import se.pitch.oss.fedpro.client.Transport;
+import se.pitch.oss.fedpro.common.session.SessionThreads;
 import se.pitch.oss.fedpro.common.transport.FedProSocket;
+import se.pitch.oss.fedpro.common.transport.HappyEyeballs;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.logging.Logger;
 
 public abstract class TransportBase implements Transport {
@@ -31,12 +38,34 @@ public abstract class TransportBase implements Transport {
    protected final String _host;
    protected final int _port;
 
+   // Addresses looked up by resolveAhead(), taken by the next connect.
+   private volatile CompletableFuture<InetAddress[]> _pendingResolution;
+   // The addresses from the last successful lookup, used if the host cannot be resolved at the time of a connect.
+   private volatile InetAddress[] _lastResolvedAddresses;
+
    protected TransportBase(String host, int port)
    {
       _host = host;
       _port = port;
    }
 
+   /**
+    * Start looking up the addresses of the host in the background, so that the next connect does not have to wait for
+    * the name resolution. Called when a connection has been lost and is about to be resumed.
+    */
+   public void resolveAhead()
+   {
+      CompletableFuture<InetAddress[]> resolution = new CompletableFuture<>();
+      _pendingResolution = resolution;
+      SessionThreads.newThread(() -> {
+         try {
+            resolution.complete(InetAddress.getAllByName(hostName(_host)));
+         } catch (UnknownHostException | RuntimeException e) {
+            resolution.completeExceptionally(e);
+         }
+      }, "FedPro Resolve " + _host, false).start();
+   }
+
    /**
     * Establishes a connection with a server through the host IP address and port
     * specified as arguments to the constructor of transport this instance.
@@ -54,7 +83,7 @@ public abstract class TransportBase implements Transport {
          return socket;
       } catch (ConnectException e) {
          ConnectException connectException =
-               new ConnectException("Failed to connect to FedPro server at " + _host + ":" + _port + " (" + e + ")");
+               new ConnectException("Failed to connect to FedPro server at " + endpoint() + " (" + e + ")");
          connectException.initCause(e);
          throw connectException;
       }
@@ -63,4 +92,62 @@ public abstract class TransportBase implements Transport {
    protected abstract FedProSocket doConnect(String host, int port)
    throws IOException;
 
+   /**
+    * @return A description of the server address, for messages.
+    */
+   protected String endpoint()
+   {
+      return _host + ":" + _port;
+   }
+
+   /**
+    * Connect to whichever address of the host answers first, see {@link HappyEyeballs}.
+    */
+   protected <T extends Closeable> T connectToAnyAddress(HappyEyeballs.Connector<T> connector)
+   throws IOException
+   {
+      return HappyEyeballs.connect(resolve(), _port, HappyEyeballs.DEFAULT_ATTEMPT_DELAY_MILLIS, connector);
+   }
+
+   private InetAddress[] resolve()
+   throws UnknownHostException
+   {
+      CompletableFuture<InetAddress[]> pendingResolution = _pendingResolution;
+      _pendingResolution = null;
+      try {
+         InetAddress[] addresses = pendingResolution != null ?
+               pendingResolution.join() :
+               InetAddress.getAllByName(hostName(_host));
+         _lastResolvedAddresses = addresses;
+         return addresses;
+      } catch (UnknownHostException | CompletionException e) {
+         Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+         InetAddress[] lastResolvedAddresses = _lastResolvedAddresses;
+         if (lastResolvedAddresses == null) {
+            if (cause instanceof UnknownHostException) {
+               throw (UnknownHostException) cause;
+            }
+            throw unknownHost(_host, cause);
+         }
+         LOGGER.warning(() -> String.format(
+               "Failed to resolve %s, connecting to previously resolved addresses: %s",
+               _host,
+               cause));
+         return lastResolvedAddresses;
+      }
+   }
+
+   private static String hostName(String host)
+   {
+      // Like java.net.Socket, an empty host name means the loopback address.
+      return host.isEmpty() ? null : host;
+   }
+
+   private static UnknownHostException unknownHost(String host, Throwable cause)
+   {
+      UnknownHostException exception = new UnknownHostException(host);
+      exception.initCause(cause);
+      return exception;
+   }
+
 }
@@ -25,6 +25,7 @@ public class TransportSettings {
    // Default values
    static final String DEFAULT_CONNECTION_HOST = "localhost";
    static final int DEFAULT_CONNECTION_PORT = DEFAULT_PORT_TCP;
+   static final String DEFAULT_CONNECTION_PATH = null;
    static final String DEFAULT_KEYSTORE_ALGORITHM = "SunX509";
    static final String DEFAULT_KEYSTORE_PASSWORD_PATH = null;
    static final String DEFAULT_KEYSTORE_PATH = null;
@@ -32,5 +33,19 @@ public class TransportSettings {
    static final boolean DEFAULT_KEYSTORE_USE_DEFAULT = true;
    static final TlsMode DEFAULT_TLS_MODE = TlsMode.DEFAULT;
    static final String DEFAULT_TLS_SNI = null;
+   static final boolean DEFAULT_CONNECTION_EVENT_LOOP = false;
+   // Zero means that the number of threads is based on the number of available processors.
+   static final int DEFAULT_CONNECTION_EVENT_LOOP_THREADS = 0;
+   // Same default as the session, the TLS transport bounds its handshake with it.
+   static final long DEFAULT_CONNECTION_TIMEOUT_MILLIS = 180_000L;
+   static final int DEFAULT_WEBSOCKET_FRAME_MAX_BYTES = 64 * 1024;
+   static final boolean DEFAULT_WEBSOCKET_COMPRESSION = false;
+   // Frames with smaller payloads are sent uncompressed, same default as the WebSocket library.
+   static final int DEFAULT_WEBSOCKET_COMPRESSION_THRESHOLD = 1024;
+   // The level that Deflater.DEFAULT_COMPRESSION stands for.
+   static final int DEFAULT_WEBSOCKET_COMPRESSION_LEVEL = 6;
+   // Used by the shared memory transport when connect.path is not set.
+   static final String DEFAULT_SHM_DIRECTORY = "/dev/shm/fedpro";
+   static final int DEFAULT_SHM_RING_BYTES = 1024 * 1024;
 
 }
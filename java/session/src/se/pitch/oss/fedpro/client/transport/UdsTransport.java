@@ -0,0 +1,96 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.pitch.oss.fedpro.client.transport;
+
+import se.pitch.oss.fedpro.client.TypedProperties;
+import se.pitch.oss.fedpro.common.Protocol;
+import se.pitch.oss.fedpro.common.transport.FedProSocket;
+import se.pitch.oss.fedpro.common.transport.nio.NioEventLoopGroup;
+import se.pitch.oss.fedpro.common.transport.nio.NioSocket;
+import se.pitch.oss.fedpro.common.transport.nio.UnixDomainSockets;
+
+import java.io.IOException;
+
+import static se.pitch.oss.fedpro.client.Settings.*;
+import static se.pitch.oss.fedpro.client.transport.TransportSettings.*;
+
+/**
+ * Connects to a server on the same host through a Unix domain socket, bypassing the TCP/IP stack.
+ * <p>
+ * Unix domain socket channels cannot be used as {@link java.net.Socket}s, so connections are always served by the
+ * shared event loop threads, as with {@code connect.eventLoop} for TCP. Requires Java 16 or later.
+ */
+public class UdsTransport extends TransportBase {
+
+   private final String _path;
+   private final int _eventLoopThreads;
+
+   public UdsTransport(TypedProperties settings)
+   {
+      // The host and port are not used.
+      super(DEFAULT_CONNECTION_HOST, 0);
+
+      _path = settings == null ?
+            DEFAULT_CONNECTION_PATH :
+            settings.getString(SETTING_NAME_CONNECTION_PATH, DEFAULT_CONNECTION_PATH);
+      _eventLoopThreads = settings == null ?
+            DEFAULT_CONNECTION_EVENT_LOOP_THREADS :
+            settings.getInt(SETTING_NAME_CONNECTION_EVENT_LOOP_THREADS, DEFAULT_CONNECTION_EVENT_LOOP_THREADS);
+
+      if (!UnixDomainSockets.isSupported()) {
+         LOGGER.warning(() -> String.format(
+               "Protocol '%s' requires Java 16 or later, connecting will fail.",
+               Protocol.UDS));
+      }
+
+      TypedProperties allTransportSettingsUsed = new TypedProperties();
+      allTransportSettingsUsed.setString(SETTING_NAME_CONNECTION_PATH, _path);
+      allTransportSettingsUsed.setInt(SETTING_NAME_CONNECTION_EVENT_LOOP_THREADS, _eventLoopThreads);
+      LOGGER.config(() -> String.format(
+            "Federate Protocol client transport layer settings used:\n%s",
+            allTransportSettingsUsed.toPrettyString()));
+   }
+
+   @Override
+   protected FedProSocket doConnect(String host, int port)
+   throws IOException
+   {
+      if (_path == null || _path.isEmpty()) {
+         throw new IOException(String.format(
+               "Setting '%s' is required with protocol '%s'.",
+               SETTING_NAME_CONNECTION_PATH,
+               Protocol.UDS));
+      }
+      return NioSocket.connect(
+            NioEventLoopGroup.getShared(_eventLoopThreads),
+            UnixDomainSockets.openChannel(_path),
+            Protocol.UDS);
+   }
+
+   @Override
+   protected String endpoint()
+   {
+      return _path;
+   }
+
+   @Override
+   public void resolveAhead()
+   {
+      // No host name to resolve.
+   }
+}
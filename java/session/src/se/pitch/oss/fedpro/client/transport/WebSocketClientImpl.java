@@ -20,6 +20,7 @@ import se.pitch.oss.fedpro.common.transport.websockets.WebSocketInputStream;
 import se.pitch.oss.fedpro.common.transport.websockets.WebSocketSender;
 import org.java_websocket.WebSocket;
 import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.drafts.Draft;
 import org.java_websocket.handshake.ServerHandshake;
 
 import java.io.IOException;
@@ -41,6 +42,11 @@ class WebSocketClientImpl extends WebSocketClient implements WebSocketSender {
       super(serverUri);
    }
 
+   public WebSocketClientImpl(URI serverUri, Draft draft)
+   {
+      super(serverUri, draft);
+   }
+
    @Override
    public void onMessage(ByteBuffer bytes)
    {
@@ -18,6 +18,7 @@ package se.pitch.oss.fedpro.client.transport;
 
 import se.pitch.oss.fedpro.client.TypedProperties;
 import se.pitch.oss.fedpro.common.Protocol;
+import org.java_websocket.drafts.Draft;
 
 import javax.net.ssl.SSLContext;
 import java.net.URI;
@@ -47,7 +48,19 @@ public class WebSocketSecureTransport extends WebSocketTransport {
             settings == null ?
                   DEFAULT_PORT_WSS :
                   settings.getInt(SETTING_NAME_CONNECTION_PORT, DEFAULT_PORT_WSS),
-            Protocol.WSS);
+            Protocol.WSS,
+            settings == null ?
+                  DEFAULT_WEBSOCKET_FRAME_MAX_BYTES :
+                  settings.getInt(SETTING_NAME_WEBSOCKET_FRAME_MAX_BYTES, DEFAULT_WEBSOCKET_FRAME_MAX_BYTES),
+            settings == null ?
+                  DEFAULT_WEBSOCKET_COMPRESSION :
+                  settings.getBoolean(SETTING_NAME_WEBSOCKET_COMPRESSION, DEFAULT_WEBSOCKET_COMPRESSION),
+            settings == null ?
+                  DEFAULT_WEBSOCKET_COMPRESSION_THRESHOLD :
+                  settings.getInt(SETTING_NAME_WEBSOCKET_COMPRESSION_THRESHOLD, DEFAULT_WEBSOCKET_COMPRESSION_THRESHOLD),
+            settings == null ?
+                  DEFAULT_WEBSOCKET_COMPRESSION_LEVEL :
+                  settings.getInt(SETTING_NAME_WEBSOCKET_COMPRESSION_LEVEL, DEFAULT_WEBSOCKET_COMPRESSION_LEVEL));
 
       if (settings == null) {
          settings = new TypedProperties();
@@ -71,9 +84,9 @@ public class WebSocketSecureTransport extends WebSocketTransport {
    }
 
    @Override
-   WebSocketClientImpl createWebSocketClient(URI uri)
+   WebSocketClientImpl createWebSocketClient(URI uri, Draft draft)
    {
-      WebSocketClientImpl impl = super.createWebSocketClient(uri);
+      WebSocketClientImpl impl = super.createWebSocketClient(uri, draft);
       impl.setSocketFactory(_context.getSocketFactory());
       return impl;
    }
@@ -19,26 +19,62 @@ package se.pitch.oss.fedpro.client.transport;
 import se.pitch.oss.fedpro.client.TypedProperties;
 import se.pitch.oss.fedpro.common.Protocol;
 import se.pitch.oss.fedpro.common.transport.FedProSocket;
+import se.pitch.oss.fedpro.common.transport.websockets.CompressingWebSocketSocket;
+import se.pitch.oss.fedpro.common.transport.websockets.CountingPerMessageDeflateExtension;
 import se.pitch.oss.fedpro.common.transport.websockets.WebSocketSocket;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.drafts.Draft_6455;
 
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.UnknownHostException;
+import java.util.zip.Deflater;
 
 import static se.pitch.oss.fedpro.client.Settings.SETTING_NAME_CONNECTION_HOST;
 import static se.pitch.oss.fedpro.client.Settings.SETTING_NAME_CONNECTION_PORT;
+import static se.pitch.oss.fedpro.client.Settings.SETTING_NAME_WEBSOCKET_COMPRESSION;
+import static se.pitch.oss.fedpro.client.Settings.SETTING_NAME_WEBSOCKET_COMPRESSION_LEVEL;
+import static se.pitch.oss.fedpro.client.Settings.SETTING_NAME_WEBSOCKET_COMPRESSION_THRESHOLD;
+import static se.pitch.oss.fedpro.client.Settings.SETTING_NAME_WEBSOCKET_FRAME_MAX_BYTES;
 import static se.pitch.oss.fedpro.client.transport.TransportSettings.*;
 import static se.pitch.oss.fedpro.common.Ports.DEFAULT_PORT_WS;
 
 public class WebSocketTransport extends TransportBase {
 
    private final String _protocolName;
+   private final int _frameMaxBytes;
+   private final boolean _compression;
+   private final int _compressionThreshold;
+   private final int _compressionLevel;
 
    public WebSocketTransport(String host, int port, String protocolName)
+   {
+      this(
+            host,
+            port,
+            protocolName,
+            DEFAULT_WEBSOCKET_FRAME_MAX_BYTES,
+            DEFAULT_WEBSOCKET_COMPRESSION,
+            DEFAULT_WEBSOCKET_COMPRESSION_THRESHOLD,
+            DEFAULT_WEBSOCKET_COMPRESSION_LEVEL);
+   }
+
+   protected WebSocketTransport(
+         String host,
+         int port,
+         String protocolName,
+         int frameMaxBytes,
+         boolean compression,
+         int compressionThreshold,
+         int compressionLevel)
    {
       super(host, port);
       _protocolName = protocolName;
+      _frameMaxBytes = frameMaxBytes;
+      _compression = compression;
+      _compressionThreshold = compressionThreshold;
+      _compressionLevel = Math.min(compressionLevel, Deflater.BEST_COMPRESSION);
    }
 
    public WebSocketTransport(TypedProperties settings, String protocolName)
@@ -52,9 +88,27 @@ public class WebSocketTransport extends TransportBase {
                   settings.getInt(SETTING_NAME_CONNECTION_PORT, DEFAULT_PORT_WS));
 
       _protocolName = protocolName;
+      _frameMaxBytes = settings == null ?
+            DEFAULT_WEBSOCKET_FRAME_MAX_BYTES :
+            settings.getInt(SETTING_NAME_WEBSOCKET_FRAME_MAX_BYTES, DEFAULT_WEBSOCKET_FRAME_MAX_BYTES);
+      _compression = settings == null ?
+            DEFAULT_WEBSOCKET_COMPRESSION :
+            settings.getBoolean(SETTING_NAME_WEBSOCKET_COMPRESSION, DEFAULT_WEBSOCKET_COMPRESSION);
+      _compressionThreshold = settings == null ?
+            DEFAULT_WEBSOCKET_COMPRESSION_THRESHOLD :
+            settings.getInt(SETTING_NAME_WEBSOCKET_COMPRESSION_THRESHOLD, DEFAULT_WEBSOCKET_COMPRESSION_THRESHOLD);
+      _compressionLevel = Math.min(
+            settings == null ?
+                  DEFAULT_WEBSOCKET_COMPRESSION_LEVEL :
+                  settings.getInt(SETTING_NAME_WEBSOCKET_COMPRESSION_LEVEL, DEFAULT_WEBSOCKET_COMPRESSION_LEVEL),
+            Deflater.BEST_COMPRESSION);
       TypedProperties allTransportSettingsUsed = new TypedProperties();
       allTransportSettingsUsed.setString(SETTING_NAME_CONNECTION_HOST, _host);
       allTransportSettingsUsed.setInt(SETTING_NAME_CONNECTION_PORT, _port);
+      allTransportSettingsUsed.setInt(SETTING_NAME_WEBSOCKET_FRAME_MAX_BYTES, _frameMaxBytes);
+      allTransportSettingsUsed.setBoolean(SETTING_NAME_WEBSOCKET_COMPRESSION, _compression);
+      allTransportSettingsUsed.setInt(SETTING_NAME_WEBSOCKET_COMPRESSION_THRESHOLD, _compressionThreshold);
+      allTransportSettingsUsed.setInt(SETTING_NAME_WEBSOCKET_COMPRESSION_LEVEL, _compressionLevel);
       LOGGER.config(() -> String.format(
             "Federate Protocol client transport layer settings used:\n%s",
             allTransportSettingsUsed.toPrettyString()));
@@ -77,7 +131,13 @@ public class WebSocketTransport extends TransportBase {
          throw new UnknownHostException(String.format("Invalid address: '%s:%d'", host, port));
       }
 
-      WebSocketClientImpl impl = createWebSocketClient(uri);
+      // A new extension for every connection, so that the counters of a socket only cover its own connection.
+      CountingPerMessageDeflateExtension deflateExtension = _compression ?
+            new CountingPerMessageDeflateExtension(_compressionLevel, _compressionThreshold) :
+            null;
+      WebSocketClientImpl impl = createWebSocketClient(
+            uri,
+            deflateExtension == null ? new Draft_6455() : new Draft_6455(deflateExtension));
 
       // WebSockets requires TcpNoDelay to be either set or unset before connection is made.
       // See https://github.com/TooTallNate/Java-WebSocket/wiki/Enable-TCP_NODELAY
@@ -89,12 +149,15 @@ public class WebSocketTransport extends TransportBase {
          }
       } catch (InterruptedException ignore) {
       }
-      return new WebSocketSocket(impl, _protocolName);
+      if (deflateExtension != null) {
+         return new CompressingWebSocketSocket(impl, _protocolName, _frameMaxBytes, deflateExtension);
+      }
+      return new WebSocketSocket(impl, _protocolName, _frameMaxBytes);
    }
 
-   WebSocketClientImpl createWebSocketClient(URI uri)
+   WebSocketClientImpl createWebSocketClient(URI uri, Draft draft)
    {
-      return new WebSocketClientImpl(uri);
+      return new WebSocketClientImpl(uri, draft);
    }
 
    protected String addHostPrefix(String host)
@@ -27,7 +27,9 @@ public class Protocol {
    public static final String TLS = "tls";
    public static final String WS = "websocket";
    public static final String WSS = "websocketsecure";
+   public static final String UDS = "uds";
+   public static final String SHM = "shm";
 
-   public static final String[] ALLOWED_PROTOCOLS = new String[] {TCP, TLS, WS, WSS};
+   public static final String[] ALLOWED_PROTOCOLS = new String[] {TCP, TLS, WS, WSS, UDS, SHM};
 
 }
@@ -21,20 +21,18 @@ import se.pitch.oss.fedpro.client.session.msg.QueueableMessage;
 import se.pitch.oss.fedpro.common.exceptions.MessageQueueFull;
 import se.pitch.oss.fedpro.common.session.buffers.GenericBuffer;
 
-import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
-// Not thread-safe
+// Thread-safe if the message queue is. Its only other state is the session ID, which is volatile.
 public abstract class MessageWriter {
 
-   private long _sessionId;
+   private volatile long _sessionId;
 
    private final GenericBuffer<QueueableMessage> _messageQueue;
 
    /**
     * Constructs a MessageWriter object with the specified session ID and message queue.
-    * The MessageWriter object is not thread-safe in itself. To achieve thread-safety,
-    * make sure that the passed message queue is thread-safe.
+    * Messages may be written concurrently, as long as the passed message queue is thread-safe.
     *
     * @param sessionId    The session ID associated with the MessageWriter.
     * @param messageQueue The message queue to be used by the MessageWriter.
@@ -62,8 +60,14 @@ public abstract class MessageWriter {
          EncodableMessage message)
    throws InterruptedException
    {
-      CompletableFuture<byte[]> result =
-            addRequest(payloadSize, lastReceivedSequenceNumber, messageType, message, null, false);
+      CompletableFuture<byte[]> result = addRequest(
+            payloadSize,
+            lastReceivedSequenceNumber,
+            messageType,
+            message,
+            null,
+            false,
+            new CompletableFuture<>());
       if (result.isCompletedExceptionally()) {
          throw new InterruptedException();
       }
@@ -72,7 +76,7 @@ public abstract class MessageWriter {
    protected CompletableFuture<byte[]> addRequest(
          int lastReceivedSequenceNumber,
          MessageType messageType,
-         Map<Integer, CompletableFuture<byte[]>> futuresMap)
+         SequenceNumberMap<CompletableFuture<byte[]>> futuresMap)
    {
       return addRequest(0, lastReceivedSequenceNumber, messageType, null, futuresMap);
    }
@@ -82,9 +86,29 @@ public abstract class MessageWriter {
          int lastReceivedSequenceNumber,
          MessageType messageType,
          EncodableMessage message,
-         Map<Integer, CompletableFuture<byte[]>> futuresMap)
+         SequenceNumberMap<CompletableFuture<byte[]>> futuresMap)
+   {
+      return addRequest(
+            payloadSize,
+            lastReceivedSequenceNumber,
+            messageType,
+            message,
+            futuresMap,
+            new CompletableFuture<>());
+   }
+
+   /**
+    * Add a request that will be completed through the given future, which may be a subclass with extra behavior.
+    */
+   protected CompletableFuture<byte[]> addRequest(
+         long payloadSize,
+         int lastReceivedSequenceNumber,
+         MessageType messageType,
+         EncodableMessage message,
+         SequenceNumberMap<CompletableFuture<byte[]>> futuresMap,
+         CompletableFuture<byte[]> result)
    {
-      return addRequest(payloadSize, lastReceivedSequenceNumber, messageType, message, futuresMap, true);
+      return addRequest(payloadSize, lastReceivedSequenceNumber, messageType, message, futuresMap, true, result);
    }
 
    private CompletableFuture<byte[]> addRequest(
@@ -92,10 +116,10 @@ public abstract class MessageWriter {
          int lastReceivedSequenceNumber,
          MessageType messageType,
          EncodableMessage message,
-         Map<Integer, CompletableFuture<byte[]>> futuresMap,
-         boolean useFuturesMap)
+         SequenceNumberMap<CompletableFuture<byte[]>> futuresMap,
+         boolean useFuturesMap,
+         CompletableFuture<byte[]> result)
    {
-      CompletableFuture<byte[]> result = new CompletableFuture<>();
       QueueableMessage queueableMessage = new QueueableMessage(
             payloadSize,
             lastReceivedSequenceNumber,
@@ -106,10 +130,10 @@ public abstract class MessageWriter {
             useFuturesMap ? futuresMap : null);
       // With a rate-limiting strategy that always blocks on full queue, this insert should always succeed.
       // There is a theoretical exception when the writing thread gets interrupted while waiting to insert.
-      // (See UnboundedBuffer.insert())
+      // (See UnboundedBuffer.insert()) A ConcurrentRoundRobinBuffer also fails waiting inserts when it is closed.
       boolean successfulInsert = _messageQueue.insert(queueableMessage);
       if (!successfulInsert) {
-         result.completeExceptionally(new MessageQueueFull("The message queue is full."));
+         result.completeExceptionally(new MessageQueueFull("The message queue is full or closed."));
       }
       return result;
    }
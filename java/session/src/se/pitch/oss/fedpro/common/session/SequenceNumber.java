@@ -132,6 +132,21 @@ public class SequenceNumber {
       return !inInterval(candidate, oldest, newest);
    }
 
+   /**
+    * Compare two sequence numbers, allowing for wrap around. Numbers that are more than a quarter of the sequence
+    * number range apart are not considered to be ordered.
+    *
+    * @return true if candidate was allocated before other.
+    */
+   public static boolean isBefore(
+         int candidate,
+         int other)
+   {
+      validateArguments(candidate, other);
+      int distance = (other - candidate) & MAX_SEQUENCE_NUMBER;
+      return distance != 0 && distance < (1 << 29);
+   }
+
    @Override
    public String toString()
    {
@@ -0,0 +1,118 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.pitch.oss.fedpro.common.session;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A thread-safe map from sequence numbers to values, for correlating responses with outstanding requests.
+ * <p>
+ * Since sequence numbers are allocated in increasing order, the values are kept in a ring indexed by the sequence
+ * number, without boxing the keys or allocating entries. A sequence number whose slot is still taken by an older
+ * outstanding request, because more requests are outstanding than the ring can hold, is put in a
+ * {@link ConcurrentHashMap} instead.
+ * <p>
+ * Removing is lock-free. Putting takes a lock, but is expected to be done by one thread at a time.
+ *
+ * @param <V> The type of values in the map
+ */
+public class SequenceNumberMap<V> {
+
+   private final int _mask;
+   private final AtomicIntegerArray _keys;
+   private final AtomicReferenceArray<V> _values;
+   private final Map<Integer, V> _overflow = new ConcurrentHashMap<>();
+   private final Object _putLock = new Object();
+
+   /**
+    * @param expectedOutstanding The number of outstanding values that the ring should hold. Rounded up to a power of
+    *                            two.
+    */
+   public SequenceNumberMap(int expectedOutstanding)
+   {
+      int size = Integer.highestOneBit(Math.max(expectedOutstanding, 2) - 1) << 1;
+      _mask = size - 1;
+      _keys = new AtomicIntegerArray(size);
+      _values = new AtomicReferenceArray<>(size);
+   }
+
+   public void put(
+         int sequenceNumber,
+         V value)
+   {
+      int slot = sequenceNumber & _mask;
+      synchronized (_putLock) {
+         if (_values.get(slot) == null) {
+            // The key is written before the value, so a remover that sees the value also sees its key.
+            _keys.set(slot, sequenceNumber);
+            _values.set(slot, value);
+         } else {
+            _overflow.put(sequenceNumber, value);
+         }
+      }
+   }
+
+   /**
+    * @return The removed value, or null if there was no value for the sequence number.
+    */
+   public V remove(int sequenceNumber)
+   {
+      int slot = sequenceNumber & _mask;
+      V value = _values.get(slot);
+      if (value != null && _keys.get(slot) == sequenceNumber && _values.compareAndSet(slot, value, null)) {
+         return value;
+      }
+      return _overflow.isEmpty() ? null : _overflow.remove(sequenceNumber);
+   }
+
+   /**
+    * Remove all values, passing each to the given consumer.
+    */
+   public void removeAll(Consumer<V> consumer)
+   {
+      for (int slot = 0; slot < _values.length(); slot++) {
+         V value = _values.getAndSet(slot, null);
+         if (value != null) {
+            consumer.accept(value);
+         }
+      }
+      for (Integer sequenceNumber : _overflow.keySet()) {
+         V value = _overflow.remove(sequenceNumber);
+         if (value != null) {
+            consumer.accept(value);
+         }
+      }
+   }
+
+   /**
+    * @return The number of values in the map. Not atomic, and intended for statistics.
+    */
+   public int size()
+   {
+      int size = _overflow.size();
+      for (int slot = 0; slot < _values.length(); slot++) {
+         if (_values.get(slot) != null) {
+            size++;
+         }
+      }
+      return size;
+   }
+}
@@ -0,0 +1,56 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.pitch.oss.fedpro.common.session;
+
+/**
+ * Creates the threads that run the session loops, such as the reader, the writer and the timers.
+ * <p>
+ * This is the Java 11 version, which only creates platform threads. The multi-release jar contains a Java 21 version
+ * that creates virtual threads when requested.
+ */
+public final class SessionThreads {
+
+   private SessionThreads()
+   {
+   }
+
+   /**
+    * @return true if the running JVM supports virtual threads.
+    */
+   public static boolean isVirtualSupported()
+   {
+      return false;
+   }
+
+   /**
+    * Create an unstarted thread.
+    *
+    * @param task    The task that the thread runs.
+    * @param name    The name of the thread.
+    * @param virtual If true, and virtual threads are supported, a virtual thread is created. Otherwise a daemon
+    *                platform thread is created.
+    */
+   public static Thread newThread(
+         Runnable task,
+         String name,
+         boolean virtual)
+   {
+      Thread thread = new Thread(task, name);
+      thread.setDaemon(true);
+      return thread;
+   }
+}
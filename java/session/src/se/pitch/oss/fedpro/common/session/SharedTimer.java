@@ -0,0 +1,119 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.pitch.oss.fedpro.common.session;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A process-wide timer that all sessions share, instead of each timer having its own thread.
+ * <p>
+ * A single thread sleeps until the next deadline, so there are no periodic wakeups while nothing is due. Tasks do not
+ * run on that thread. They are handed to a pool of daemon threads that are created on demand and end when idle, so a
+ * task that blocks does not delay the timers of other sessions.
+ */
+public final class SharedTimer {
+
+   private static final SharedTimer INSTANCE = new SharedTimer();
+
+   private final ScheduledThreadPoolExecutor _scheduler;
+   private final ExecutorService _taskExecutor;
+
+   private SharedTimer()
+   {
+      _scheduler = new ScheduledThreadPoolExecutor(
+            1,
+            r -> SessionThreads.newThread(r, "FedPro Client Shared Timer", false));
+      _scheduler.setRemoveOnCancelPolicy(true);
+      _taskExecutor = Executors.newCachedThreadPool(r -> SessionThreads.newThread(r, "FedPro Client Timer Task", false));
+   }
+
+   public static SharedTimer getInstance()
+   {
+      return INSTANCE;
+   }
+
+   /**
+    * Run a task once, after the given delay.
+    */
+   public ScheduledFuture<?> schedule(
+         Runnable task,
+         long delay,
+         TimeUnit unit)
+   {
+      return schedule(task, delay, unit, false);
+   }
+
+   /**
+    * Run a task once, after the given delay.
+    *
+    * @param virtualThread If true, the task is run on a new virtual thread if they are supported, see
+    *                      {@link SessionThreads}.
+    */
+   public ScheduledFuture<?> schedule(
+         Runnable task,
+         long delay,
+         TimeUnit unit,
+         boolean virtualThread)
+   {
+      return _scheduler.schedule(() -> execute(task, virtualThread), delay, unit);
+   }
+
+   /**
+    * Run a task periodically, like {@link ScheduledThreadPoolExecutor#scheduleAtFixedRate}. A run is skipped if the
+    * previous run has not completed.
+    */
+   public ScheduledFuture<?> scheduleAtFixedRate(
+         Runnable task,
+         long initialDelay,
+         long period,
+         TimeUnit unit)
+   {
+      AtomicBoolean isRunning = new AtomicBoolean(false);
+      Runnable run = () -> {
+         try {
+            task.run();
+         } finally {
+            isRunning.set(false);
+         }
+      };
+      return _scheduler.scheduleAtFixedRate(
+            () -> {
+               if (isRunning.compareAndSet(false, true)) {
+                  _taskExecutor.execute(run);
+               }
+            },
+            initialDelay,
+            period,
+            unit);
+   }
+
+   private void execute(
+         Runnable task,
+         boolean virtualThread)
+   {
+      if (virtualThread && SessionThreads.isVirtualSupported()) {
+         SessionThreads.newThread(task, "FedPro Client Timer Task", true).start();
+      } else {
+         _taskExecutor.execute(task);
+      }
+   }
+}
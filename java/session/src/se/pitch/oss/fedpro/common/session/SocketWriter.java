@@ -21,11 +21,17 @@ import se.pitch.oss.fedpro.client.session.msg.MessageHeader;
 import se.pitch.oss.fedpro.client.session.msg.QueueableMessage;
 import se.pitch.oss.fedpro.common.exceptions.BadMessage;
 import se.pitch.oss.fedpro.common.session.buffers.BufferReader;
+import se.pitch.oss.fedpro.common.session.buffers.HeapMessageHistory;
 import se.pitch.oss.fedpro.common.session.buffers.HistoryBuffer;
+import se.pitch.oss.fedpro.common.session.buffers.MessageHistory;
 import se.pitch.oss.fedpro.common.transport.FedProSocket;
+import se.pitch.oss.fedpro.common.transport.GatheringSocket;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -33,6 +39,10 @@ public class SocketWriter {
 
    private static final Logger LOGGER = Logger.getLogger(SocketWriter.class.getName());
 
+   // On a socket without gathering writes, a message with a body up to this size is copied into one array, so that
+   // the header is not sent on its own. Larger bodies are written directly after the header instead.
+   private static final int MAX_COPIED_MESSAGE_SIZE = 16 * 1024;
+
    private String _sessionIdString;
    private final String _clientOrServer;
    private final Listener _listener;
@@ -40,6 +50,10 @@ public class SocketWriter {
    private FedProSocket _socket;
    private final SequenceNumber _expectedNextSequenceNumber;
    private int _lastSequenceNumber = SequenceNumber.NO_SEQUENCE_NUMBER;
+   private final int _batchMaxBytes;
+   private final List<EncodedMessage> _batch = new ArrayList<>();
+   private byte[] _batchBuffer;
+   private ByteBuffer[] _gatherBuffers = new ByteBuffer[2];
 
    private volatile boolean _run = false;
 
@@ -54,7 +68,7 @@ public class SocketWriter {
          FedProSocket socket,
          boolean isClient)
    {
-      return new SocketWriter(sessionId, null, null, socket, isClient, null);
+      return new SocketWriter(sessionId, null, null, socket, isClient, null, 0);
    }
 
    public static SocketWriter createSocketWriterForThread(
@@ -64,14 +78,63 @@ public class SocketWriter {
          FedProSocket socket,
          boolean isClient,
          int expectedNextSequenceNumber)
+   {
+      return createSocketWriterForThread(
+            sessionId,
+            listener,
+            messageQueue,
+            socket,
+            isClient,
+            expectedNextSequenceNumber,
+            0);
+   }
+
+   /**
+    * @param batchMaxBytes If greater than 0, all messages that are already queued are written to the socket in a
+    *                      single write, as long as the total size does not exceed this limit. A single message that
+    *                      is larger than the limit is still written, on its own.
+    */
+   public static SocketWriter createSocketWriterForThread(
+         long sessionId,
+         Listener listener,
+         BufferReader<QueueableMessage> messageQueue,
+         FedProSocket socket,
+         boolean isClient,
+         int expectedNextSequenceNumber,
+         int batchMaxBytes)
+   {
+      return createSocketWriterForThread(
+            sessionId,
+            listener,
+            messageQueue,
+            socket,
+            isClient,
+            expectedNextSequenceNumber,
+            batchMaxBytes,
+            new HeapMessageHistory(messageQueue.capacity()));
+   }
+
+   /**
+    * @param history Where sent messages are kept, so that they can be sent again when the session is resumed.
+    */
+   public static SocketWriter createSocketWriterForThread(
+         long sessionId,
+         Listener listener,
+         BufferReader<QueueableMessage> messageQueue,
+         FedProSocket socket,
+         boolean isClient,
+         int expectedNextSequenceNumber,
+         int batchMaxBytes,
+         MessageHistory history)
    {
       return new SocketWriter(
             sessionId,
             listener,
-            new HistoryBuffer(messageQueue, expectedNextSequenceNumber),
+            new HistoryBuffer(messageQueue, expectedNextSequenceNumber, history),
             socket,
             isClient,
-            new SequenceNumber(expectedNextSequenceNumber));
+            new SequenceNumber(expectedNextSequenceNumber),
+            batchMaxBytes);
    }
 
    private SocketWriter(
@@ -80,8 +143,10 @@ public class SocketWriter {
          HistoryBuffer historyBuffer,
          FedProSocket socket,
          boolean isClient,
-         SequenceNumber expectedNextSequenceNumber)
+         SequenceNumber expectedNextSequenceNumber,
+         int batchMaxBytes)
    {
+      _batchMaxBytes = batchMaxBytes;
       _sessionIdString = LogUtil.formatSessionId(sessionId);
       _listener = listener;
       _historyBuffer = historyBuffer;
@@ -138,6 +203,11 @@ public class SocketWriter {
    throws InterruptedException
    {
       assert !isDirectOnly();
+      int batchMaxBytes = batchMaxBytes();
+      if (batchMaxBytes > 0) {
+         writeNextBatch(batchMaxBytes);
+         return;
+      }
       EncodedMessage message = _historyBuffer.waitAndPeek();
 
       try {
@@ -152,6 +222,128 @@ public class SocketWriter {
          }
       }
 
+      updateSequenceNumber(message);
+
+      _historyBuffer.poll();
+      _listener.messageSent();
+   }
+
+   /**
+    * Write all messages that are available without waiting, up to the batch size limit, with a single write.
+    * <p>
+    * Messages are consumed from the history buffer as they are added to the batch. If the write fails, the session
+    * will be resumed by rewinding the history buffer, so nothing is lost by consuming them before writing.
+    */
+   private void writeNextBatch(int batchMaxBytes)
+   throws InterruptedException
+   {
+      _batch.clear();
+      EncodedMessage message = _historyBuffer.waitAndPeek();
+      int batchSize = 0;
+      do {
+         _historyBuffer.poll();
+         _batch.add(message);
+         batchSize += message.length();
+         message = _historyBuffer.peek();
+      } while (message != null && batchSize + message.length() <= batchMaxBytes);
+
+      try {
+         if (_batch.size() == 1) {
+            write(_batch.get(0));
+         } else if (_socket instanceof GatheringSocket) {
+            writeGathered(_batch);
+         } else {
+            _socket.getOutputStream().write(copyToBatchBuffer(_batch, batchSize), 0, batchSize);
+         }
+      } catch (IOException e) {
+         if (Thread.interrupted()) {
+            throw new InterruptedException();
+         } else {
+            _listener.exceptionOnWrite(e);
+            _run = false;
+            return;
+         }
+      }
+
+      for (EncodedMessage sentMessage : _batch) {
+         logSentMessage(sentMessage);
+         updateSequenceNumber(sentMessage);
+         _listener.messageSent();
+      }
+   }
+
+   /**
+    * @return The batch size limit of this writer, or the one requested by the socket if that is larger.
+    */
+   private int batchMaxBytes()
+   {
+      FedProSocket socket = _socket;
+      if (socket instanceof GatheringSocket) {
+         return Math.max(_batchMaxBytes, ((GatheringSocket) socket).preferredBatchMaxBytes());
+      }
+      return _batchMaxBytes;
+   }
+
+   private byte[] copyToBatchBuffer(
+         List<EncodedMessage> messages,
+         int batchSize)
+   {
+      if (_batchBuffer == null || _batchBuffer.length < batchSize) {
+         _batchBuffer = new byte[batchSize];
+      }
+      int offset = 0;
+      for (EncodedMessage message : messages) {
+         message.copyTo(_batchBuffer, offset);
+         offset += message.length();
+      }
+      return _batchBuffer;
+   }
+
+   /**
+    * Write the head and body of each message with a single gathering write, without copying them together.
+    */
+   private void writeGathered(List<EncodedMessage> messages)
+   throws IOException
+   {
+      if (_gatherBuffers.length < 2 * messages.size()) {
+         _gatherBuffers = new ByteBuffer[Math.max(2 * messages.size(), 2 * _gatherBuffers.length)];
+      }
+      int count = 0;
+      for (EncodedMessage message : messages) {
+         _gatherBuffers[count++] = ByteBuffer.wrap(message.head());
+         if (message.body().length > 0) {
+            _gatherBuffers[count++] = ByteBuffer.wrap(message.body());
+         }
+      }
+      try {
+         ((GatheringSocket) _socket).write(_gatherBuffers, 0, count);
+      } finally {
+         // Do not keep sent messages reachable.
+         for (int i = 0; i < count; i++) {
+            _gatherBuffers[i] = null;
+         }
+      }
+   }
+
+   private void write(EncodedMessage message)
+   throws IOException
+   {
+      // It's hard to find a definitive answer, but I think the write method may, if the outgoing buffer is full,
+      //   block indefinitely (until the socket/stream is closed).
+      OutputStream outputStream = _socket.getOutputStream();
+      if (message.body().length == 0) {
+         outputStream.write(message.head());
+      } else if (_socket instanceof GatheringSocket) {
+         writeGathered(List.of(message));
+      } else if (message.length() <= MAX_COPIED_MESSAGE_SIZE) {
+         outputStream.write(copyToBatchBuffer(List.of(message), message.length()), 0, message.length());
+      } else {
+         message.writeTo(outputStream);
+      }
+   }
+
+   private void updateSequenceNumber(EncodedMessage message)
+   {
       if (_expectedNextSequenceNumber.get() != message.sequenceNumber) {
          LOGGER.fine(() -> String.format(
                "%s: Use of non-sequential sequence number in outgoing message: %d after previous sequence number %s",
@@ -162,17 +354,12 @@ public class SocketWriter {
 
       _lastSequenceNumber = message.sequenceNumber;
       _expectedNextSequenceNumber.set(_lastSequenceNumber).increment();
-
-      _historyBuffer.poll();
-      _listener.messageSent();
    }
 
    private void writeMessage(EncodedMessage message)
    throws IOException
    {
-      // It's hard to find a definitive answer, but I think the write method may, if the outgoing buffer is full,
-      //   block indefinitely (until the socket/stream is closed).
-      _socket.getOutputStream().write(message.data);
+      write(message);
       logSentMessage(message);
    }
 
@@ -232,12 +419,31 @@ public class SocketWriter {
    private String decodeMessageType(EncodedMessage message)
    {
       try {
-         return MessageHeader.decode(new ByteArrayInputStream(message.data)).messageType.toString();
-      } catch (BadMessage | IOException e) {
+         return MessageHeader.decode(ByteBuffer.wrap(message.head())).messageType.toString();
+      } catch (BadMessage e) {
          return "<ENCODING ERROR>";
       }
    }
 
+   /**
+    * Release the resources held by the history of sent messages, once the session cannot be resumed anymore.
+    */
+   public void discardHistory()
+   {
+      assert !isDirectOnly();
+      _historyBuffer.close();
+   }
+
+   /**
+    * Release the messages in the history that were sent before the given sequence number, which the receiver has
+    * acknowledged, since they will not have to be resent when resuming.
+    */
+   public void releaseAcknowledged(int acknowledgedSequenceNumber)
+   {
+      assert !isDirectOnly();
+      _historyBuffer.releaseBefore(acknowledgedSequenceNumber);
+   }
+
    public int getOldestAddedSequenceNumber()
    {
       assert !isDirectOnly();
@@ -0,0 +1,330 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.pitch.oss.fedpro.common.session.buffers;
+
+import net.jcip.annotations.GuardedBy;
+import se.pitch.oss.fedpro.client.session.msg.EncodedMessage;
+import se.pitch.oss.fedpro.common.session.SequenceNumber;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link MessageHistory} that is bounded by the total size of the messages, as well as by their number.
+ * <p>
+ * Messages are appended to a fixed size ring of bytes, and a small index maps each message to its location. The oldest
+ * messages are overwritten when the ring is out of space, or when the index holds {@code capacity} messages. The ring
+ * is either a single heap array or direct memory outside the Java heap.
+ * <p>
+ * The inserted message is also referenced until it has been read the first time, so that sending it does not copy it
+ * back out of the ring. Only messages read again after a rewind are copied out of the ring.
+ * <p>
+ * A message that is larger than the whole ring replaces all older messages, and is kept on the heap.
+ */
+public class ArenaMessageHistory implements MessageHistory {
+
+   private static final String REWIND_ERROR_MESSAGE = "Tried to rewind past the bounds of the buffer.";
+
+   private final Object _lock = new Object();
+   private final int _capacity;
+   @GuardedBy("_lock")
+   private final ByteBuffer _arena;
+
+   // Index of the messages in the arena, circular with _first as the oldest message.
+   @GuardedBy("_lock")
+   private final int[] _sequenceNumbers;
+   @GuardedBy("_lock")
+   private final int[] _offsets;
+   @GuardedBy("_lock")
+   private final int[] _lengths;
+   @GuardedBy("_lock")
+   private final EncodedMessage[] _oversizedMessages;
+   // The inserted messages that have not been read yet.
+   @GuardedBy("_lock")
+   private final EncodedMessage[] _unreadMessages;
+   @GuardedBy("_lock")
+   private int _first = 0;
+   @GuardedBy("_lock")
+   private int _count = 0;
+   @GuardedBy("_lock")
+   private int _unreadCount = 0;
+   @GuardedBy("_lock")
+   private int _writeOffset = 0;
+   @GuardedBy("_lock")
+   private boolean _hasOverwritten = false;
+   @GuardedBy("_lock")
+   private EncodedMessage _peekedMessage;
+   private final EvictionListener _evictionListener;
+
+   /**
+    * @param capacity   The maximum number of messages to keep.
+    * @param arenaBytes The size of the ring that holds the messages.
+    * @param direct     If true, the ring is allocated outside the Java heap.
+    */
+   public ArenaMessageHistory(
+         int capacity,
+         int arenaBytes,
+         boolean direct)
+   {
+      this(capacity, arenaBytes, direct, null);
+   }
+
+   /**
+    * @param capacity         The maximum number of messages to keep.
+    * @param arenaBytes       The size of the ring that holds the messages.
+    * @param direct           If true, the ring is allocated outside the Java heap.
+    * @param evictionListener Called with each message that is overwritten, or null.
+    */
+   public ArenaMessageHistory(
+         int capacity,
+         int arenaBytes,
+         boolean direct,
+         EvictionListener evictionListener)
+   {
+      if (capacity <= 0) {
+         throw new IllegalArgumentException("Capacity must be positive");
+      }
+      _capacity = capacity;
+      _arena = direct ? ByteBuffer.allocateDirect(arenaBytes) : ByteBuffer.allocate(arenaBytes);
+      _sequenceNumbers = new int[capacity];
+      _offsets = new int[capacity];
+      _lengths = new int[capacity];
+      _oversizedMessages = new EncodedMessage[capacity];
+      _unreadMessages = new EncodedMessage[capacity];
+      _evictionListener = evictionListener;
+   }
+
+   @Override
+   public void insert(EncodedMessage message)
+   {
+      synchronized (_lock) {
+         _peekedMessage = null;
+         int length = message.length();
+         if (_count == _capacity) {
+            evictOldest();
+         }
+         int slot = slotOf(_count);
+         if (length > _arena.capacity()) {
+            while (_count > 0) {
+               evictOldest();
+            }
+            slot = slotOf(0);
+            _oversizedMessages[slot] = message;
+            _writeOffset = 0;
+         } else {
+            int offset = makeRoom(length);
+            _arena.position(offset);
+            _arena.put(message.head()).put(message.body());
+            _oversizedMessages[slot] = null;
+            _offsets[slot] = offset;
+            _writeOffset = offset + length;
+         }
+         _unreadMessages[slot] = message;
+         _sequenceNumbers[slot] = message.sequenceNumber;
+         _lengths[slot] = length;
+         _count++;
+         _unreadCount++;
+      }
+   }
+
+   /**
+    * Remove the oldest messages until there is room for the given number of bytes.
+    *
+    * @return The offset to write at.
+    */
+   @GuardedBy("_lock")
+   private int makeRoom(int length)
+   {
+      int offset = _writeOffset;
+      int skippedFrom = Integer.MAX_VALUE;
+      if (offset + length > _arena.capacity()) {
+         // Leave the end of the arena unused and continue from the start. Messages at the end are the oldest.
+         skippedFrom = offset;
+         offset = 0;
+      }
+      while (_count > 0) {
+         int oldest = slotOf(0);
+         boolean isOversized = _oversizedMessages[oldest] != null;
+         int oldestOffset = _offsets[oldest];
+         boolean overlaps = oldestOffset < offset + length && offset < oldestOffset + _lengths[oldest];
+         if (isOversized || oldestOffset >= skippedFrom || overlaps) {
+            evictOldest();
+         } else {
+            break;
+         }
+      }
+      return offset;
+   }
+
+   @GuardedBy("_lock")
+   private void evictOldest()
+   {
+      if (_evictionListener != null) {
+         _evictionListener.onEvicted(read(_first));
+      }
+      removeOldest();
+   }
+
+   @GuardedBy("_lock")
+   private void removeOldest()
+   {
+      _oversizedMessages[_first] = null;
+      _unreadMessages[_first] = null;
+      if (_unreadCount == _count) {
+         // Overwriting a message that has not been read, like CircularBuffer does.
+         _unreadCount--;
+      }
+      _first = (_first + 1) % _capacity;
+      _count--;
+      _hasOverwritten = true;
+   }
+
+   @GuardedBy("_lock")
+   private int slotOf(int position)
+   {
+      return (_first + position) % _capacity;
+   }
+
+   @Override
+   public EncodedMessage peek()
+   {
+      synchronized (_lock) {
+         if (_unreadCount == 0) {
+            return null;
+         }
+         if (_peekedMessage == null) {
+            _peekedMessage = read(slotOf(_count - _unreadCount));
+         }
+         return _peekedMessage;
+      }
+   }
+
+   @Override
+   public EncodedMessage poll()
+   {
+      synchronized (_lock) {
+         EncodedMessage message = peek();
+         if (message != null) {
+            _unreadMessages[slotOf(_count - _unreadCount)] = null;
+            _unreadCount--;
+            _peekedMessage = null;
+         }
+         return message;
+      }
+   }
+
+   @GuardedBy("_lock")
+   private EncodedMessage read(int slot)
+   {
+      EncodedMessage oversizedMessage = _oversizedMessages[slot];
+      if (oversizedMessage != null) {
+         return oversizedMessage;
+      }
+      EncodedMessage unreadMessage = _unreadMessages[slot];
+      if (unreadMessage != null) {
+         return unreadMessage;
+      }
+      byte[] data = new byte[_lengths[slot]];
+      _arena.position(_offsets[slot]);
+      _arena.get(data);
+      return EncodedMessage.wrap(_sequenceNumbers[slot], false, data);
+   }
+
+   @Override
+   public int size()
+   {
+      synchronized (_lock) {
+         return _unreadCount;
+      }
+   }
+
+   @Override
+   public boolean isEmpty()
+   {
+      return size() == 0;
+   }
+
+   @Override
+   public int capacity()
+   {
+      return _capacity;
+   }
+
+   @Override
+   public void rewindTo(int sequenceNumber)
+   {
+      synchronized (_lock) {
+         // Search backwards from the next message to read, sequence numbers wrap around so they are not ordered.
+         for (int position = Math.min(_count - _unreadCount, _count - 1); position >= 0; position--) {
+            if (_sequenceNumbers[slotOf(position)] == sequenceNumber) {
+               _unreadCount = _count - position;
+               _peekedMessage = null;
+               return;
+            }
+         }
+         throw new IllegalArgumentException(REWIND_ERROR_MESSAGE);
+      }
+   }
+
+   @Override
+   public void rewindToFirst()
+   {
+      synchronized (_lock) {
+         if (_hasOverwritten) {
+            throw new IllegalArgumentException(REWIND_ERROR_MESSAGE);
+         }
+         _unreadCount = _count;
+         _peekedMessage = null;
+      }
+   }
+
+   @Override
+   public void releaseBefore(int sequenceNumber)
+   {
+      synchronized (_lock) {
+         while (_count > _unreadCount && SequenceNumber.isBefore(_sequenceNumbers[_first], sequenceNumber)) {
+            removeOldest();
+         }
+      }
+   }
+
+   @Override
+   public int getOldestSequenceNumber()
+   {
+      synchronized (_lock) {
+         return _count > 0 ? _sequenceNumbers[slotOf(0)] : SequenceNumber.NO_SEQUENCE_NUMBER;
+      }
+   }
+
+   @Override
+   public int getNewestSequenceNumber()
+   {
+      synchronized (_lock) {
+         return _count > 0 ? _sequenceNumbers[slotOf(_count - 1)] : SequenceNumber.NO_SEQUENCE_NUMBER;
+      }
+   }
+
+   @Override
+   public String toString()
+   {
+      synchronized (_lock) {
+         return "ArenaMessageHistory {\n" + "\tCapacity = " + _capacity + ",\n\tArena bytes = " +
+               _arena.capacity() + ",\n\tDirect = " + _arena.isDirect() + ",\n\tCount = " + _count +
+               ",\n\tUnread = " + _unreadCount + ",\n\tOldest = " + getOldestSequenceNumber() + ",\n\tNewest = " +
+               getNewestSequenceNumber() + "\n}";
+      }
+   }
+}
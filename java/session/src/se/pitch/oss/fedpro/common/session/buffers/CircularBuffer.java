@@ -19,6 +19,9 @@ package se.pitch.oss.fedpro.common.session.buffers;
 import net.jcip.annotations.GuardedBy;
 
 import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * A thread-safe, circular buffer of objects.
@@ -30,7 +33,9 @@ import java.util.Arrays;
  */
 public class CircularBuffer<E> implements GenericBuffer<E> {
 
-   private final Object _lock = new Object();
+   // A lock rather than a monitor, so that waiting virtual threads do not pin their carrier thread.
+   private final ReentrantLock _lock = new ReentrantLock();
+   private final Condition _changed = _lock.newCondition();
    private final int _capacity;
    @GuardedBy("_lock")
    private final E[] _data;
@@ -38,6 +43,11 @@ public class CircularBuffer<E> implements GenericBuffer<E> {
    private int _writeIndex;
    @GuardedBy("_lock")
    private int _count;
+   // Number of elements kept in the buffer, both read and unread.
+   @GuardedBy("_lock")
+   private int _storedCount;
+   @GuardedBy("_lock")
+   private boolean _hasReleased = false;
    private boolean _hasRotated = false;
    private boolean _hasWrittenAfterRotate = false;
 
@@ -76,7 +86,8 @@ public class CircularBuffer<E> implements GenericBuffer<E> {
    @Override
    public boolean insert(E element)
    {
-      synchronized (_lock) {
+      _lock.lock();
+      try {
          int nextWriteIndex = inc(_writeIndex);
          _data[nextWriteIndex] = element;
          _writeIndex = nextWriteIndex;
@@ -89,31 +100,63 @@ public class CircularBuffer<E> implements GenericBuffer<E> {
          if (_count < _capacity) {
             _count++;
          }
-         _lock.notifyAll();
+         if (_storedCount < _capacity) {
+            _storedCount++;
+         }
+         _changed.signalAll();
+      } finally {
+         _lock.unlock();
       }
       return true;
    }
 
    public E peekOldest()
    {
-      // Returns null if buffer has always been empty
-      synchronized (_lock) {
-         return _data[oldestIndex()];
+      // Returns null if buffer has always been empty, or all elements have been released
+      _lock.lock();
+      try {
+         return _storedCount > 0 ? _data[oldestIndex()] : null;
+      } finally {
+         _lock.unlock();
       }
    }
 
    @GuardedBy("_lock")
    private int oldestIndex()
    {
-      return _hasRotated ? inc(_writeIndex) : 0;
+      int oldestIndex = _writeIndex - (_storedCount - 1);
+      return oldestIndex < 0 ? oldestIndex + _capacity : oldestIndex;
+   }
+
+   /**
+    * Remove the oldest elements that have already been read, as long as the predicate holds for them. The removed
+    * elements can no longer be rewound to, and are not referenced by the buffer anymore.
+    *
+    * @param isReleasable Whether an element may be removed.
+    */
+   public void releaseRead(ElementFinder<E> isReleasable)
+   {
+      _lock.lock();
+      try {
+         while (_storedCount > _count && isReleasable.isCorrectElement(_data[oldestIndex()])) {
+            _data[oldestIndex()] = null;
+            _storedCount--;
+            _hasReleased = true;
+         }
+      } finally {
+         _lock.unlock();
+      }
    }
 
    public E peekNewest()
    {
-      synchronized (_lock) {
+      _lock.lock();
+      try {
          if (_writeIndex > -1) {
             return _data[_writeIndex];
          }
+      } finally {
+         _lock.unlock();
       }
       return null;
    }
@@ -121,10 +164,13 @@ public class CircularBuffer<E> implements GenericBuffer<E> {
    @Override
    public E peek()
    {
-      synchronized (_lock) {
+      _lock.lock();
+      try {
          if (_count > 0) {
             return _data[readIndex()];
          }
+      } finally {
+         _lock.unlock();
       }
       return null;
    }
@@ -132,13 +178,16 @@ public class CircularBuffer<E> implements GenericBuffer<E> {
    @Override
    public E poll()
    {
-      synchronized (_lock) {
+      _lock.lock();
+      try {
          if (_count > 0) {
             E element = _data[readIndex()];
             _count--;
-            _lock.notifyAll();
+            _changed.signalAll();
             return element;
          }
+      } finally {
+         _lock.unlock();
       }
       return null;
    }
@@ -147,11 +196,14 @@ public class CircularBuffer<E> implements GenericBuffer<E> {
    public E waitAndPoll()
    throws InterruptedException
    {
-      synchronized (_lock) {
+      _lock.lock();
+      try {
          while (isEmpty()) {
-            _lock.wait();
+            _changed.await();
          }
          return poll();
+      } finally {
+         _lock.unlock();
       }
    }
 
@@ -160,18 +212,22 @@ public class CircularBuffer<E> implements GenericBuffer<E> {
    throws InterruptedException
    {
       // TODO: Find out why waitAndPeek sometimes returns null
-      synchronized (_lock) {
+      _lock.lock();
+      try {
          while (isEmpty()) {
-            _lock.wait();
+            _changed.await();
          }
          return peek();
+      } finally {
+         _lock.unlock();
       }
    }
 
    public void rewindToFirst()
    {
-      synchronized (_lock) {
-         if (_hasWrittenAfterRotate) {
+      _lock.lock();
+      try {
+         if (_hasWrittenAfterRotate || _hasReleased) {
             throw new IllegalArgumentException("Tried to rewind past the bounds of the buffer.");
          }
          if (_hasRotated) {
@@ -179,6 +235,8 @@ public class CircularBuffer<E> implements GenericBuffer<E> {
          } else {
             _count = _writeIndex + 1;
          }
+      } finally {
+         _lock.unlock();
       }
    }
 
@@ -188,7 +246,8 @@ public class CircularBuffer<E> implements GenericBuffer<E> {
       // It still requires sequence numbers to be incrementing.
       // There could be a case made to use a binary search to find the correct element.
       // But as this function will seldom be used, no such optimization has been done.
-      synchronized (_lock) {
+      _lock.lock();
+      try {
          int originalCount = _count;
          int highestValidIndex = _capacity;
 
@@ -214,6 +273,8 @@ public class CircularBuffer<E> implements GenericBuffer<E> {
                throw new IllegalArgumentException("Tried to rewind past the bounds of the buffer.");
             }
          }
+      } finally {
+         _lock.unlock();
       }
    }
 
@@ -226,8 +287,11 @@ public class CircularBuffer<E> implements GenericBuffer<E> {
    @Override
    public int size()
    {
-      synchronized (_lock) {
+      _lock.lock();
+      try {
          return _count;
+      } finally {
+         _lock.unlock();
       }
    }
 
@@ -236,21 +300,27 @@ public class CircularBuffer<E> implements GenericBuffer<E> {
    throws InterruptedException
    {
       if (timeoutMillis == 0) {
-         synchronized (_lock) {
+         _lock.lock();
+         try {
             while (!isEmpty()) {
-               _lock.wait();
+               _changed.await();
             }
             return isEmpty();
+         } finally {
+            _lock.unlock();
          }
       } else {
          long waitEnd = System.currentTimeMillis() + timeoutMillis;
-         synchronized (_lock) {
+         _lock.lock();
+         try {
             long timeLeft = waitEnd - System.currentTimeMillis();
             while (!isEmpty() && timeLeft > 0) {
-               _lock.wait(timeLeft);
+               _changed.await(timeLeft, TimeUnit.MILLISECONDS);
                timeLeft = waitEnd - System.currentTimeMillis();
             }
             return isEmpty();
+         } finally {
+            _lock.unlock();
          }
       }
    }
@@ -258,24 +328,33 @@ public class CircularBuffer<E> implements GenericBuffer<E> {
    @Override
    public boolean isEmpty()
    {
-      synchronized (_lock) {
+      _lock.lock();
+      try {
          return _count == 0;
+      } finally {
+         _lock.unlock();
       }
    }
 
    public boolean isFull()
    {
-      synchronized (_lock) {
+      _lock.lock();
+      try {
          return _count >= _capacity;
+      } finally {
+         _lock.unlock();
       }
    }
 
    @Override
    public String toString()
    {
-      synchronized (_lock) {
+      _lock.lock();
+      try {
          return "CircularBuffer {\n" + "\tCapacity = " + _capacity + ",\n\tData = " + Arrays.toString(_data) +
                ",\n\tWrite index = " + _writeIndex + ",\n\tCount = " + _count + ",\n\tRotated = " + _hasRotated + "\n}";
+      } finally {
+         _lock.unlock();
       }
    }
 }
@@ -0,0 +1,374 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.pitch.oss.fedpro.common.session.buffers;
+
+import net.jcip.annotations.GuardedBy;
+import se.pitch.oss.fedpro.common.session.flowcontrol.RateLimiter;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An alternative to {@link RoundRobinBuffer} for many producers and a single consumer, which is lock-free as long as
+ * the primary queue has room.
+ * <p>
+ * Like {@link RoundRobinBuffer}, elements are put in a bounded, rate-limited primary queue or an unbounded alternate
+ * queue, and the queues are read in round-robin order. Inserting does not take any lock as long as the primary queue
+ * has room, but producers that find it full block until the consumer makes room or the buffer is {@link #close()
+ * closed}. A consumer waiting for elements is parked, and only woken up by the producer that ends its wait.
+ * <p>
+ * The primary queue holds at most {@code capacity} elements and, optionally, at most {@code maxBytes} bytes as given
+ * by an {@link ElementSizer}. An element is always accepted into an empty primary queue, even if it is larger than the
+ * byte limit.
+ * <p>
+ * Producers that find the primary queue full wait on a condition of the buffer's own lock, which is also used for
+ * {@link #waitUntilEmpty(long)}. It is a {@link ReentrantLock} rather than a monitor, so that waiting virtual threads
+ * do not pin their carrier thread.
+ */
+public class ConcurrentRoundRobinBuffer<E> implements GenericBuffer<E> {
+
+   private final ReentrantLock _lock = new ReentrantLock();
+   private final Condition _polled = _lock.newCondition();
+   private final MpscArrayQueue<E> _primaryQueue;
+   private final Queue<E> _alternateQueue = new ConcurrentLinkedQueue<>();
+   private final AtomicInteger _alternateSize = new AtomicInteger();
+   private final RateLimiter _limiter;
+   private final QueueAlternator<E> _alternator;
+   private final ElementSizer<E> _sizer;
+   private final long _maxBytes;
+   private final AtomicLong _primaryBytes = new AtomicLong();
+
+   private final Object _consumerLock = new Object();
+   private final int _primaryFactor;
+   private final int _alternateFactor;
+   private final int _smallerFactorDoubled;
+   @GuardedBy("_consumerLock")
+   private int _alternatorIndex = 1;
+
+   private volatile Thread _waitingConsumer;
+   // Threads waiting on _polled for the primary queue to have room, or for the buffer to become empty.
+   private final AtomicInteger _lockWaiterCount = new AtomicInteger();
+   private volatile boolean _isClosed;
+
+   public ConcurrentRoundRobinBuffer(
+         int capacity,
+         RateLimiter limiter,
+         QueueAlternator<E> alternator)
+   {
+      this(capacity, limiter, alternator, 1, 1);
+   }
+
+   /**
+    * @param maxBytes The maximum total size of the elements in the primary queue, or 0 for no limit.
+    */
+   public ConcurrentRoundRobinBuffer(
+         int capacity,
+         long maxBytes,
+         ElementSizer<E> sizer,
+         RateLimiter limiter,
+         QueueAlternator<E> alternator)
+   {
+      this(capacity, maxBytes, sizer, limiter, alternator, 1, 1);
+   }
+
+   public ConcurrentRoundRobinBuffer(
+         int capacity,
+         RateLimiter limiter,
+         QueueAlternator<E> alternator,
+         int primaryFactor,
+         int alternateFactor)
+   {
+      this(capacity, 0, element -> 0, limiter, alternator, primaryFactor, alternateFactor);
+   }
+
+   public ConcurrentRoundRobinBuffer(
+         int capacity,
+         long maxBytes,
+         ElementSizer<E> sizer,
+         RateLimiter limiter,
+         QueueAlternator<E> alternator,
+         int primaryFactor,
+         int alternateFactor)
+   {
+      _maxBytes = maxBytes;
+      _sizer = sizer;
+      _primaryQueue = new MpscArrayQueue<>(capacity);
+      _limiter = limiter;
+      _alternator = alternator;
+      _primaryFactor = primaryFactor;
+      _alternateFactor = alternateFactor;
+      _smallerFactorDoubled = Math.min(_primaryFactor, _alternateFactor) * 2;
+   }
+
+   @Override
+   public boolean insert(E element)
+   {
+      if (_alternator.putInAlternateQueue(element)) {
+         _alternateQueue.add(element);
+         _alternateSize.incrementAndGet();
+      } else {
+         _limiter.preInsert(_primaryQueue.size());
+         long bytes = 0;
+         if (_maxBytes > 0) {
+            long elementBytes = _sizer.sizeOf(element);
+            if (!tryReservePrimaryBytes(elementBytes) && !waitUntil(() -> tryReservePrimaryBytes(elementBytes))) {
+               return false;
+            }
+            bytes = elementBytes;
+         }
+         if (!_primaryQueue.offer(element) && !waitUntil(() -> _primaryQueue.offer(element))) {
+            _primaryBytes.addAndGet(-bytes);
+            return false;
+         }
+         _limiter.postInsert(_primaryQueue.size());
+      }
+      Thread waitingConsumer = _waitingConsumer;
+      if (waitingConsumer != null) {
+         LockSupport.unpark(waitingConsumer);
+      }
+      return true;
+   }
+
+   private boolean tryReservePrimaryBytes(long bytes)
+   {
+      while (true) {
+         long current = _primaryBytes.get();
+         if (current > 0 && current + bytes > _maxBytes) {
+            return false;
+         }
+         if (_primaryBytes.compareAndSet(current, current + bytes)) {
+            return true;
+         }
+      }
+   }
+
+   /**
+    * Wait until the primary queue has room, as indicated by the attempt succeeding.
+    *
+    * @return false if the buffer was closed before the attempt succeeded.
+    */
+   private boolean waitUntil(BooleanSupplier attempt)
+   {
+      _lockWaiterCount.incrementAndGet();
+      _lock.lock();
+      try {
+         while (!attempt.getAsBoolean()) {
+            if (_isClosed) {
+               return false;
+            }
+            _polled.awaitUninterruptibly();
+         }
+         return true;
+      } finally {
+         _lock.unlock();
+         _lockWaiterCount.decrementAndGet();
+      }
+   }
+
+   /**
+    * Release the producers that are waiting for room in the primary queue, and let later producers that find it full
+    * fail instead of waiting. Their {@link #insert(Object)} returns false. The buffer can still be polled.
+    */
+   public void close()
+   {
+      _isClosed = true;
+      _lock.lock();
+      try {
+         _polled.signalAll();
+      } finally {
+         _lock.unlock();
+      }
+   }
+
+   @Override
+   public E waitAndPoll()
+   throws InterruptedException
+   {
+      waitUntilAvailable();
+      return poll();
+   }
+
+   @Override
+   public E waitAndPeek()
+   throws InterruptedException
+   {
+      waitUntilAvailable();
+      return peek();
+   }
+
+   private void waitUntilAvailable()
+   throws InterruptedException
+   {
+      if (peek() != null) {
+         return;
+      }
+      _waitingConsumer = Thread.currentThread();
+      try {
+         // Producers unpark the waiting consumer after inserting, so an insert after this check is not missed.
+         while (peek() == null) {
+            LockSupport.park(this);
+            if (Thread.interrupted()) {
+               throw new InterruptedException();
+            }
+         }
+      } finally {
+         _waitingConsumer = null;
+      }
+   }
+
+   @Override
+   public E poll()
+   {
+      E result;
+      synchronized (_consumerLock) {
+         if (selectPrimaryQueue()) {
+            result = _primaryQueue.poll();
+            if (result != null) {
+               if (_maxBytes > 0) {
+                  _primaryBytes.addAndGet(-_sizer.sizeOf(result));
+               }
+               _limiter.postPoll(_primaryQueue.size());
+            }
+         } else {
+            result = _alternateQueue.poll();
+            if (result != null) {
+               _alternateSize.decrementAndGet();
+            }
+         }
+         incrementAlternator();
+      }
+      if (result != null && _lockWaiterCount.get() > 0) {
+         _lock.lock();
+         try {
+            _polled.signalAll();
+         } finally {
+            _lock.unlock();
+         }
+      }
+      return result;
+   }
+
+   @Override
+   public E peek()
+   {
+      synchronized (_consumerLock) {
+         return selectPrimaryQueue() ? _primaryQueue.peek() : _alternateQueue.peek();
+      }
+   }
+
+   @GuardedBy("_consumerLock")
+   private void incrementAlternator()
+   {
+      _alternatorIndex++;
+      if (_alternatorIndex > _primaryFactor + _alternateFactor) {
+         _alternatorIndex = 1;
+      }
+   }
+
+   @GuardedBy("_consumerLock")
+   private boolean selectPrimaryQueue()
+   {
+      boolean preferPrimary;
+      if (_alternatorIndex <= _smallerFactorDoubled) {
+         preferPrimary = _alternatorIndex % 2 != 0;
+      } else {
+         preferPrimary = _primaryFactor > _alternateFactor;
+      }
+      if (preferPrimary) {
+         return _primaryQueue.peek() != null || _alternateQueue.peek() == null;
+      } else {
+         return _alternateQueue.peek() == null;
+      }
+   }
+
+   @Override
+   public int size()
+   {
+      return Math.max(primarySize(), alternateSize());
+   }
+
+   public int primarySize()
+   {
+      return _primaryQueue.size();
+   }
+
+   public int alternateSize()
+   {
+      return _alternateSize.get();
+   }
+
+   /**
+    * @return The total size of the elements in the primary queue, if there is a byte limit. Otherwise 0.
+    */
+   public long primaryBytes()
+   {
+      return _primaryBytes.get();
+   }
+
+   @Override
+   public boolean isEmpty()
+   {
+      return _primaryQueue.size() == 0 && _alternateSize.get() == 0;
+   }
+
+   @Override
+   public int capacity()
+   {
+      return _primaryQueue.capacity();
+   }
+
+   @Override
+   public boolean waitUntilEmpty(long timeoutMillis)
+   throws InterruptedException
+   {
+      _lockWaiterCount.incrementAndGet();
+      _lock.lock();
+      try {
+         long waitEnd = System.currentTimeMillis() + timeoutMillis;
+         while (!isEmpty()) {
+            if (timeoutMillis == 0) {
+               _polled.await();
+            } else {
+               long timeLeft = waitEnd - System.currentTimeMillis();
+               if (timeLeft <= 0) {
+                  break;
+               }
+               _polled.await(timeLeft, TimeUnit.MILLISECONDS);
+            }
+         }
+         return isEmpty();
+      } finally {
+         _lock.unlock();
+         _lockWaiterCount.decrementAndGet();
+      }
+   }
+
+   @Override
+   public String toString()
+   {
+      return "ConcurrentRoundRobinBuffer{\n" + "primarySize=" + primarySize() + "\nalternateSize=" + alternateSize() +
+            "\n_alternator=" + _alternator + "\n_primaryFactor=" + _primaryFactor + "\n_alternateFactor=" +
+            _alternateFactor + "\n}";
+   }
+}
@@ -0,0 +1,64 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.pitch.oss.fedpro.common.session.buffers;
+
+import se.pitch.oss.fedpro.client.session.msg.MessageHeader;
+
+/**
+ * A message payload that is encoded directly into the array it will be sent from, after space that is reserved for
+ * the message header.
+ * <p>
+ * The header is written into the reserved space when the message is given its sequence number, so the payload is
+ * never copied. The payload must be completely written before the frame is handed to the session, and the frame must
+ * not be modified or sent again after that.
+ */
+public final class FramedPayload {
+
+   private final byte[] _frame;
+
+   private FramedPayload(byte[] frame)
+   {
+      _frame = frame;
+   }
+
+   public static FramedPayload allocate(int payloadSize)
+   {
+      return new FramedPayload(new byte[MessageHeader.SIZE + payloadSize]);
+   }
+
+   /**
+    * @return The whole frame, starting with the space reserved for the header.
+    */
+   public byte[] array()
+   {
+      return _frame;
+   }
+
+   /**
+    * @return The offset in {@link #array()} where the payload starts.
+    */
+   public int payloadOffset()
+   {
+      return MessageHeader.SIZE;
+   }
+
+   public int payloadSize()
+   {
+      return _frame.length - MessageHeader.SIZE;
+   }
+}
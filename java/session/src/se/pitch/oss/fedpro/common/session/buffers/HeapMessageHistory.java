@@ -0,0 +1,128 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.pitch.oss.fedpro.common.session.buffers;
+
+import se.pitch.oss.fedpro.client.session.msg.EncodedMessage;
+import se.pitch.oss.fedpro.common.session.SequenceNumber;
+
+/**
+ * A {@link MessageHistory} that keeps the encoded messages on the heap, in a {@link CircularBuffer}.
+ */
+public class HeapMessageHistory implements MessageHistory {
+
+   private final CircularBuffer<EncodedMessage> _history;
+   private final EvictionListener _evictionListener;
+
+   public HeapMessageHistory(int capacity)
+   {
+      this(capacity, null);
+   }
+
+   /**
+    * @param evictionListener Called with each message that is overwritten, or null.
+    */
+   public HeapMessageHistory(
+         int capacity,
+         EvictionListener evictionListener)
+   {
+      _history = new CircularBuffer<>(capacity);
+      _evictionListener = evictionListener;
+   }
+
+   @Override
+   public void insert(EncodedMessage message)
+   {
+      if (_evictionListener == null) {
+         _history.insert(message);
+         return;
+      }
+      // Insertion only changes the oldest message when it overwrites it.
+      EncodedMessage oldest = _history.peekOldest();
+      _history.insert(message);
+      if (oldest != null && _history.peekOldest() != oldest) {
+         _evictionListener.onEvicted(oldest);
+      }
+   }
+
+   @Override
+   public EncodedMessage peek()
+   {
+      return _history.peek();
+   }
+
+   @Override
+   public EncodedMessage poll()
+   {
+      return _history.poll();
+   }
+
+   @Override
+   public int size()
+   {
+      return _history.size();
+   }
+
+   @Override
+   public boolean isEmpty()
+   {
+      return _history.isEmpty();
+   }
+
+   @Override
+   public int capacity()
+   {
+      return _history.capacity();
+   }
+
+   @Override
+   public void rewindTo(int sequenceNumber)
+   {
+      _history.rewindTo(object -> object != null && sequenceNumber == object.sequenceNumber);
+   }
+
+   @Override
+   public void rewindToFirst()
+   {
+      _history.rewindToFirst();
+   }
+
+   @Override
+   public void releaseBefore(int sequenceNumber)
+   {
+      _history.releaseRead(object -> SequenceNumber.isBefore(object.sequenceNumber, sequenceNumber));
+   }
+
+   @Override
+   public int getOldestSequenceNumber()
+   {
+      EncodedMessage message = _history.peekOldest();
+      return message != null ? message.sequenceNumber : SequenceNumber.NO_SEQUENCE_NUMBER;
+   }
+
+   @Override
+   public int getNewestSequenceNumber()
+   {
+      EncodedMessage message = _history.peekNewest();
+      return message != null ? message.sequenceNumber : SequenceNumber.NO_SEQUENCE_NUMBER;
+   }
+
+   @Override
+   public String toString()
+   {
+      return _history.toString();
+   }
+}
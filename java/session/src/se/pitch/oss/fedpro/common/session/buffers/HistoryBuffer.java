@@ -27,16 +27,24 @@ public class HistoryBuffer implements BufferReader<EncodedMessage> {
    @GuardedBy("_lock")
    private final SequenceNumber _sequenceNumberAllocator;
    private final BufferReader<QueueableMessage> _messageQueue;
-   private final CircularBuffer<EncodedMessage> _history;
+   private final MessageHistory _history;
    private EncodedMessage _currentControlMessage;
 
    public HistoryBuffer(
          BufferReader<QueueableMessage> messageQueue,
          int initialSequenceNumber)
+   {
+      this(messageQueue, initialSequenceNumber, new HeapMessageHistory(messageQueue.capacity()));
+   }
+
+   public HistoryBuffer(
+         BufferReader<QueueableMessage> messageQueue,
+         int initialSequenceNumber,
+         MessageHistory history)
    {
       _sequenceNumberAllocator = new SequenceNumber(initialSequenceNumber);
       _messageQueue = messageQueue;
-      _history = new CircularBuffer<>(_messageQueue.capacity());
+      _history = history;
    }
 
    @GuardedBy("_lock")
@@ -165,7 +173,7 @@ public class HistoryBuffer implements BufferReader<EncodedMessage> {
 
    public void rewindTo(SequenceNumber sequenceNumber)
    {
-      _history.rewindTo(object -> object != null && sequenceNumber.get() == object.sequenceNumber);
+      _history.rewindTo(sequenceNumber.get());
       _currentControlMessage = null;
    }
 
@@ -175,12 +183,20 @@ public class HistoryBuffer implements BufferReader<EncodedMessage> {
       _currentControlMessage = null;
    }
 
+   /**
+    * Release the sent messages before the given sequence number, which the receiver has acknowledged.
+    */
+   public void releaseBefore(int acknowledgedSequenceNumber)
+   {
+      // Not taking _lock, since the writer may hold it while waiting for the next message.
+      _history.releaseBefore(acknowledgedSequenceNumber);
+   }
+
    public int getOldestAddedSequenceNumber()
    {
       // Intentionally skipping control messages
       synchronized (_lock) {
-         EncodedMessage message = _history.peekOldest();
-         return message != null ? message.sequenceNumber : SequenceNumber.NO_SEQUENCE_NUMBER;
+         return _history.getOldestSequenceNumber();
       }
    }
 
@@ -188,11 +204,18 @@ public class HistoryBuffer implements BufferReader<EncodedMessage> {
    {
       // Intentionally skipping control messages
       synchronized (_lock) {
-         EncodedMessage message = _history.peekNewest();
-         return message != null ? message.sequenceNumber : SequenceNumber.NO_SEQUENCE_NUMBER;
+         return _history.getNewestSequenceNumber();
       }
    }
 
+   /**
+    * Release the resources held by the history of sent messages.
+    */
+   public void close()
+   {
+      _history.close();
+   }
+
    @Override
    public String toString()
    {
@@ -0,0 +1,268 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.pitch.oss.fedpro.common.session.buffers;
+
+import se.pitch.oss.fedpro.client.session.msg.EncodedMessage;
+import se.pitch.oss.fedpro.common.session.SequenceNumber;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An append-only log of encoded messages, stored in memory-mapped segment files.
+ * <p>
+ * Each record is the length of the message, its sequence number and the message data. When the total size of the
+ * segments exceeds the limit, the oldest segment is deleted.
+ * <p>
+ * Not thread-safe, the owner is responsible for locking.
+ */
+final class MappedSegmentLog {
+
+   private static final int RECORD_HEADER_SIZE = 8;
+
+   private final Path _directory;
+   private final long _maxBytes;
+   private final int _segmentBytes;
+   private final List<Segment> _segments = new ArrayList<>();
+   private long _totalBytes = 0;
+   // Segments are numbered from the first one ever added, so that cursors survive dropping the oldest segments.
+   private int _droppedSegmentCount = 0;
+
+   MappedSegmentLog(
+         Path directory,
+         long maxBytes,
+         int segmentBytes)
+   {
+      _directory = directory;
+      _maxBytes = maxBytes;
+      _segmentBytes = segmentBytes;
+   }
+
+   void append(EncodedMessage message)
+   throws IOException
+   {
+      int sequenceNumber = message.sequenceNumber;
+      int length = message.length();
+      int recordSize = RECORD_HEADER_SIZE + length;
+      Segment segment = _segments.isEmpty() ? null : _segments.get(_segments.size() - 1);
+      if (segment == null || segment._buffer.remaining() < recordSize) {
+         segment = addSegment(Math.max(_segmentBytes, recordSize));
+      }
+      segment._buffer.putInt(length);
+      segment._buffer.putInt(sequenceNumber);
+      segment._buffer.put(message.head()).put(message.body());
+      if (segment._recordCount == 0) {
+         segment._firstSequenceNumber = sequenceNumber;
+      }
+      segment._recordCount++;
+   }
+
+   private Segment addSegment(int size)
+   throws IOException
+   {
+      while (!_segments.isEmpty() && _totalBytes + size > _maxBytes) {
+         Segment oldest = _segments.remove(0);
+         _totalBytes -= oldest._buffer.capacity();
+         _droppedSegmentCount++;
+         oldest.delete();
+      }
+      Path path = Files.createTempFile(_directory, "fedpro-history-", ".seg");
+      MappedByteBuffer buffer;
+      try (FileChannel channel = FileChannel.open(
+            path,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.DELETE_ON_CLOSE)) {
+         // The mapping stays valid after the channel is closed, even where the file is deleted on close.
+         buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      }
+      Segment segment = new Segment(path, buffer);
+      _segments.add(segment);
+      _totalBytes += size;
+      return segment;
+   }
+
+   boolean isEmpty()
+   {
+      return _segments.isEmpty();
+   }
+
+   boolean hasDroppedRecords()
+   {
+      return _droppedSegmentCount > 0;
+   }
+
+   int getFirstSequenceNumber()
+   {
+      return _segments.get(0)._firstSequenceNumber;
+   }
+
+   /**
+    * @return A cursor at the oldest record, or null if the log is empty.
+    */
+   Cursor first()
+   {
+      return _segments.isEmpty() ? null : new Cursor(_droppedSegmentCount, 0);
+   }
+
+   /**
+    * @return A cursor at the oldest record with the given sequence number, or null if there is none.
+    */
+   Cursor find(int sequenceNumber)
+   {
+      Cursor cursor = first();
+      while (cursor != null && cursor.hasRecord()) {
+         if (cursor.sequenceNumber() == sequenceNumber) {
+            return cursor;
+         }
+         cursor.next();
+      }
+      return null;
+   }
+
+   /**
+    * Delete the oldest segments, as long as all their records are before the given sequence number.
+    */
+   void releaseBefore(int sequenceNumber)
+   {
+      while (_segments.size() > 1) {
+         int nextFirst = _segments.get(1)._firstSequenceNumber;
+         if (nextFirst != sequenceNumber && !SequenceNumber.isBefore(nextFirst, sequenceNumber)) {
+            return;
+         }
+         Segment oldest = _segments.remove(0);
+         _totalBytes -= oldest._buffer.capacity();
+         _droppedSegmentCount++;
+         oldest.delete();
+      }
+   }
+
+   void close()
+   {
+      for (Segment segment : _segments) {
+         segment.delete();
+      }
+      _segments.clear();
+      _totalBytes = 0;
+   }
+
+   /**
+    * A read position in the log. A cursor stays valid when records are appended, unless its record is dropped to make
+    * room for them.
+    */
+   final class Cursor {
+
+      private int _segmentNumber;
+      private int _offset;
+
+      private Cursor(
+            int segmentNumber,
+            int offset)
+      {
+         _segmentNumber = segmentNumber;
+         _offset = offset;
+         skipEndOfSegment();
+      }
+
+      Cursor copy()
+      {
+         return new Cursor(_segmentNumber, _offset);
+      }
+
+      /**
+       * @return false if the record at the cursor has been dropped.
+       */
+      boolean isValid()
+      {
+         return segmentIndex() >= 0;
+      }
+
+      boolean hasRecord()
+      {
+         int segmentIndex = segmentIndex();
+         return segmentIndex >= 0 && segmentIndex < _segments.size();
+      }
+
+      int sequenceNumber()
+      {
+         return segment()._buffer.getInt(_offset + 4);
+      }
+
+      EncodedMessage read()
+      {
+         MappedByteBuffer buffer = segment()._buffer;
+         byte[] data = new byte[buffer.getInt(_offset)];
+         buffer.duplicate().position(_offset + RECORD_HEADER_SIZE).get(data);
+         return EncodedMessage.wrap(sequenceNumber(), false, data);
+      }
+
+      void next()
+      {
+         _offset += RECORD_HEADER_SIZE + segment()._buffer.getInt(_offset);
+         skipEndOfSegment();
+      }
+
+      private int segmentIndex()
+      {
+         return _segmentNumber - _droppedSegmentCount;
+      }
+
+      private Segment segment()
+      {
+         return _segments.get(segmentIndex());
+      }
+
+      private void skipEndOfSegment()
+      {
+         while (hasRecord() && _offset >= segment()._buffer.position()) {
+            _segmentNumber++;
+            _offset = 0;
+         }
+      }
+   }
+
+   private static final class Segment {
+
+      private final Path _path;
+      private final MappedByteBuffer _buffer;
+      private int _firstSequenceNumber;
+      private int _recordCount = 0;
+
+      private Segment(
+            Path path,
+            MappedByteBuffer buffer)
+      {
+         _path = path;
+         _buffer = buffer;
+      }
+
+      private void delete()
+      {
+         try {
+            Files.deleteIfExists(_path);
+         } catch (IOException ignored) {
+            // Usually already deleted when its channel was closed.
+         }
+      }
+   }
+}
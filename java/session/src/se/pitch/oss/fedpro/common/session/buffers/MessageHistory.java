@@ -0,0 +1,95 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.pitch.oss.fedpro.common.session.buffers;
+
+import se.pitch.oss.fedpro.client.session.msg.EncodedMessage;
+
+/**
+ * Storage for the sent messages that a {@link HistoryBuffer} keeps, so that they can be sent again when a session is
+ * resumed.
+ * <p>
+ * Messages are read in the order they were inserted. Messages that have been read are kept until they are
+ * overwritten by newer messages, and reading can be rewound to them. Implementations must be thread-safe.
+ */
+public interface MessageHistory {
+
+   /**
+    * Receives the messages that {@link #insert} overwrites, before they are overwritten. Messages removed by
+    * {@link #releaseBefore} are not passed to the listener. The listener is called by the inserting thread.
+    * Implementations that support it take the listener as a constructor argument.
+    */
+   @FunctionalInterface
+   interface EvictionListener {
+      void onEvicted(EncodedMessage message);
+   }
+
+   /**
+    * Insert a message at the end of the history. This may overwrite the oldest messages.
+    */
+   void insert(EncodedMessage message);
+
+   EncodedMessage peek();
+
+   EncodedMessage poll();
+
+   /**
+    * @return The number of messages that have not been read yet.
+    */
+   int size();
+
+   boolean isEmpty();
+
+   int capacity();
+
+   /**
+    * Rewind reading so that the next message read is the one with the given sequence number.
+    *
+    * @throws IllegalArgumentException If the message is no longer in the history.
+    */
+   void rewindTo(int sequenceNumber);
+
+   /**
+    * Rewind reading to the first message ever inserted.
+    *
+    * @throws IllegalArgumentException If the first message has been overwritten.
+    */
+   void rewindToFirst();
+
+   /**
+    * @return The sequence number of the oldest message in the history, or {@code SequenceNumber.NO_SEQUENCE_NUMBER}.
+    */
+   int getOldestSequenceNumber();
+
+   /**
+    * @return The sequence number of the newest message in the history, or {@code SequenceNumber.NO_SEQUENCE_NUMBER}.
+    */
+   int getNewestSequenceNumber();
+
+   /**
+    * Release the messages that have been read and were sent before the message with the given sequence number, since
+    * the receiver has acknowledged them and they will not have to be sent again. The message with the given sequence
+    * number itself is kept, so that reading can still be rewound to it.
+    */
+   void releaseBefore(int sequenceNumber);
+
+   /**
+    * Release any resources held by the history, such as files. The history must not be used after this.
+    */
+   default void close()
+   {
+   }
+}
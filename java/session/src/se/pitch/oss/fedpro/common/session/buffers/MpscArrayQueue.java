@@ -0,0 +1,111 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.pitch.oss.fedpro.common.session.buffers;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free queue for many producers and a single consumer.
+ * <p>
+ * Producers claim a position by advancing the tail, store the element in the slot for that position and then publish
+ * it by writing the position to the slot's sequence. The consumer only reads a slot once it has been published, so
+ * an element that has been claimed but not yet published holds back the elements behind it.
+ * <p>
+ * {@link #offer(Object)} may be called concurrently from any thread. {@link #poll()} and {@link #peek()} must only be
+ * called by one thread at a time.
+ */
+final class MpscArrayQueue<E> {
+
+   private final int _capacity;
+   private final int _mask;
+   private final AtomicReferenceArray<E> _elements;
+   // For each slot, the position + 1 of the element that was last published in it.
+   private final AtomicLongArray _published;
+   private final AtomicLong _tail = new AtomicLong();
+   private volatile long _head = 0;
+
+   MpscArrayQueue(int capacity)
+   {
+      if (capacity < 1) {
+         throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+      }
+      int slotCount = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+      _capacity = capacity;
+      _mask = slotCount - 1;
+      _elements = new AtomicReferenceArray<>(slotCount);
+      _published = new AtomicLongArray(slotCount);
+   }
+
+   /**
+    * @return false if the queue was full.
+    */
+   boolean offer(E element)
+   {
+      long position;
+      do {
+         position = _tail.get();
+         if (position - _head >= _capacity) {
+            return false;
+         }
+      } while (!_tail.compareAndSet(position, position + 1));
+
+      int slot = (int) position & _mask;
+      _elements.lazySet(slot, element);
+      _published.set(slot, position + 1);
+      return true;
+   }
+
+   E poll()
+   {
+      long head = _head;
+      int slot = (int) head & _mask;
+      if (_published.get(slot) != head + 1) {
+         return null;
+      }
+      E element = _elements.get(slot);
+      _elements.lazySet(slot, null);
+      // Frees the slot for producers.
+      _head = head + 1;
+      return element;
+   }
+
+   E peek()
+   {
+      long head = _head;
+      int slot = (int) head & _mask;
+      if (_published.get(slot) != head + 1) {
+         return null;
+      }
+      return _elements.get(slot);
+   }
+
+   /**
+    * @return The number of claimed positions, including elements that are not yet published.
+    */
+   int size()
+   {
+      long head = _head;
+      return (int) Math.max(0, _tail.get() - head);
+   }
+
+   int capacity()
+   {
+      return _capacity;
+   }
+}
@@ -0,0 +1,111 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.pitch.oss.fedpro.common.session.buffers;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * A reference-counted message payload, possibly backed by an array from a {@link PayloadBufferPool}.
+ * <p>
+ * A buffer is created with one reference. Every holder must call {@link #release()} exactly once when it is done with
+ * the content, and anyone that wants to keep the buffer beyond the scope it was handed over in must first call
+ * {@link #retain()}. The content must not be accessed after the last reference has been released, since the backing
+ * array may then be reused for another payload.
+ */
+public final class PayloadBuffer {
+
+   private static final AtomicIntegerFieldUpdater<PayloadBuffer> REFERENCE_COUNT =
+         AtomicIntegerFieldUpdater.newUpdater(PayloadBuffer.class, "_referenceCount");
+
+   private final byte[] _array;
+   private final int _length;
+   private final PayloadBufferPool _pool;
+   private volatile int _referenceCount = 1;
+
+   PayloadBuffer(
+         byte[] array,
+         int length,
+         PayloadBufferPool pool)
+   {
+      _array = array;
+      _length = length;
+      _pool = pool;
+   }
+
+   /**
+    * Create a buffer that is not backed by a pool.
+    */
+   public static PayloadBuffer wrap(byte[] array)
+   {
+      return new PayloadBuffer(array, array.length, null);
+   }
+
+   /**
+    * @return The backing array. Only the first {@link #length()} bytes belong to the payload.
+    */
+   public byte[] array()
+   {
+      return _array;
+   }
+
+   public int length()
+   {
+      return _length;
+   }
+
+   /**
+    * @return A new buffer over the payload, sharing the backing array.
+    */
+   public ByteBuffer asByteBuffer()
+   {
+      return ByteBuffer.wrap(_array, 0, _length);
+   }
+
+   /**
+    * @return A copy of the payload, that remains valid after this buffer is released.
+    */
+   public byte[] toByteArray()
+   {
+      return Arrays.copyOf(_array, _length);
+   }
+
+   public PayloadBuffer retain()
+   {
+      int previous;
+      do {
+         previous = _referenceCount;
+         if (previous <= 0) {
+            throw new IllegalStateException("Payload buffer has already been released");
+         }
+      } while (!REFERENCE_COUNT.compareAndSet(this, previous, previous + 1));
+      return this;
+   }
+
+   public void release()
+   {
+      int remaining = REFERENCE_COUNT.decrementAndGet(this);
+      if (remaining == 0) {
+         if (_pool != null) {
+            _pool.recycle(_array);
+         }
+      } else if (remaining < 0) {
+         throw new IllegalStateException("Payload buffer released more times than it was retained");
+      }
+   }
+}
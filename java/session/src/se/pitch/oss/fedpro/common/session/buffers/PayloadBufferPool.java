@@ -0,0 +1,114 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.pitch.oss.fedpro.common.session.buffers;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of arrays for received payloads, in power-of-two size classes.
+ * <p>
+ * Payloads larger than the largest size class are allocated on demand and left to the garbage collector. Each size
+ * class keeps a bounded number of free arrays, arrays released beyond that are also left to the garbage collector.
+ * Thread-safe.
+ */
+public class PayloadBufferPool {
+
+   private static final int MIN_SIZE_SHIFT = 8;
+   private static final int MAX_SIZE_SHIFT = 16;
+   private static final int DEFAULT_MAX_FREE_PER_CLASS = 64;
+
+   private static final PayloadBufferPool SHARED = new PayloadBufferPool(DEFAULT_MAX_FREE_PER_CLASS);
+
+   private final SizeClass[] _sizeClasses = new SizeClass[MAX_SIZE_SHIFT - MIN_SIZE_SHIFT + 1];
+   private final int _maxFreePerClass;
+
+   public PayloadBufferPool(int maxFreePerClass)
+   {
+      _maxFreePerClass = maxFreePerClass;
+      for (int i = 0; i < _sizeClasses.length; i++) {
+         _sizeClasses[i] = new SizeClass(1 << (MIN_SIZE_SHIFT + i));
+      }
+   }
+
+   /**
+    * @return The pool shared by all sessions in this JVM.
+    */
+   public static PayloadBufferPool getShared()
+   {
+      return SHARED;
+   }
+
+   /**
+    * Get a buffer with room for a payload of the given length. The content of the buffer is undefined.
+    */
+   public PayloadBuffer acquire(int length)
+   {
+      SizeClass sizeClass = sizeClassFor(length);
+      if (sizeClass == null) {
+         return new PayloadBuffer(new byte[length], length, null);
+      }
+      byte[] array = sizeClass._free.poll();
+      if (array != null) {
+         sizeClass._freeCount.decrementAndGet();
+      } else {
+         array = new byte[sizeClass._arraySize];
+      }
+      return new PayloadBuffer(array, length, this);
+   }
+
+   void recycle(byte[] array)
+   {
+      SizeClass sizeClass = sizeClassFor(array.length);
+      if (sizeClass == null || sizeClass._arraySize != array.length) {
+         return;
+      }
+      if (sizeClass._freeCount.incrementAndGet() <= _maxFreePerClass) {
+         sizeClass._free.add(array);
+      } else {
+         sizeClass._freeCount.decrementAndGet();
+      }
+   }
+
+   int freeCount(int length)
+   {
+      SizeClass sizeClass = sizeClassFor(length);
+      return sizeClass == null ? 0 : sizeClass._freeCount.get();
+   }
+
+   private SizeClass sizeClassFor(int length)
+   {
+      if (length > 1 << MAX_SIZE_SHIFT) {
+         return null;
+      }
+      int shift = Math.max(MIN_SIZE_SHIFT, 32 - Integer.numberOfLeadingZeros(Math.max(length, 1) - 1));
+      return _sizeClasses[shift - MIN_SIZE_SHIFT];
+   }
+
+   private static class SizeClass {
+
+      final int _arraySize;
+      final Queue<byte[]> _free = new ConcurrentLinkedQueue<>();
+      final AtomicInteger _freeCount = new AtomicInteger();
+
+      SizeClass(int arraySize)
+      {
+         _arraySize = arraySize;
+      }
+   }
+}
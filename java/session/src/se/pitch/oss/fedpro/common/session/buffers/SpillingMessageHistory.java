@@ -0,0 +1,296 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.pitch.oss.fedpro.common.session.buffers;
+
+import net.jcip.annotations.GuardedBy;
+import se.pitch.oss.fedpro.client.session.msg.EncodedMessage;
+import se.pitch.oss.fedpro.common.session.SequenceNumber;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link MessageHistory} that extends an in-memory history with a memory-mapped log on disk.
+ * <p>
+ * Messages that are overwritten in memory are appended to the log, which is bounded by its own byte limit. When reading
+ * is rewound to messages that are no longer in memory, they are read from the log until the oldest message in memory
+ * is reached. As long as the in-memory history is large enough, nothing is written to disk.
+ * This allows a session to be resumed after a long outage, without keeping all sent messages on the heap.
+ * <p>
+ * If the log cannot be written, for example because the disk is full, it is abandoned and only the in-memory history
+ * is used.
+ */
+public class SpillingMessageHistory implements MessageHistory {
+
+   private static final Logger LOGGER = Logger.getLogger(SpillingMessageHistory.class.getName());
+
+   private static final int DEFAULT_SEGMENT_BYTES = 64 * 1024 * 1024;
+
+   private final Object _lock = new Object();
+   private final MessageHistory _memory;
+   @GuardedBy("_lock")
+   private MappedSegmentLog _spill;
+
+   // Messages to read from the log before continuing with the in-memory history.
+   @GuardedBy("_lock")
+   private MappedSegmentLog.Cursor _replayCursor;
+   @GuardedBy("_lock")
+   private int _replayCount = 0;
+   @GuardedBy("_lock")
+   private EncodedMessage _peekedMessage;
+
+   /**
+    * @param memoryFactory Creates the in-memory history, which keeps the most recent messages, with the given eviction
+    *                      listener.
+    * @param directory     Where the log files are created.
+    * @param maxBytes      The maximum size of the log files.
+    */
+   public SpillingMessageHistory(
+         Function<EvictionListener, MessageHistory> memoryFactory,
+         Path directory,
+         long maxBytes)
+   {
+      this(memoryFactory, directory, maxBytes, (int) Math.min(DEFAULT_SEGMENT_BYTES, maxBytes));
+   }
+
+   SpillingMessageHistory(
+         Function<EvictionListener, MessageHistory> memoryFactory,
+         Path directory,
+         long maxBytes,
+         int segmentBytes)
+   {
+      _spill = new MappedSegmentLog(directory, maxBytes, segmentBytes);
+      _memory = memoryFactory.apply(this::spill);
+   }
+
+   @Override
+   public void insert(EncodedMessage message)
+   {
+      synchronized (_lock) {
+         _memory.insert(message);
+      }
+   }
+
+   /**
+    * Called by the in-memory history, while inserting, with each message it overwrites.
+    */
+   @GuardedBy("_lock")
+   private void spill(EncodedMessage message)
+   {
+      if (_spill == null) {
+         return;
+      }
+      try {
+         _spill.append(message);
+      } catch (IOException e) {
+         LOGGER.log(Level.WARNING, e, () -> "Failed to write message history to disk, only keeping it in memory");
+         stopReplay();
+         _spill.close();
+         _spill = null;
+         return;
+      }
+      if (_replayCursor != null) {
+         if (_replayCursor.isValid()) {
+            // The message was waiting to be replayed from memory, and is now the last one to replay from the log.
+            _replayCount++;
+         } else {
+            LOGGER.warning("Message history on disk was full, dropped messages that had not been sent again");
+            stopReplay();
+         }
+      }
+   }
+
+   @Override
+   public EncodedMessage peek()
+   {
+      synchronized (_lock) {
+         if (_replayCount == 0) {
+            return _memory.peek();
+         }
+         if (_peekedMessage == null) {
+            _peekedMessage = _replayCursor.read();
+         }
+         return _peekedMessage;
+      }
+   }
+
+   @Override
+   public EncodedMessage poll()
+   {
+      synchronized (_lock) {
+         if (_replayCount == 0) {
+            return _memory.poll();
+         }
+         EncodedMessage message = peek();
+         _peekedMessage = null;
+         _replayCursor.next();
+         _replayCount--;
+         if (_replayCount == 0) {
+            _replayCursor = null;
+         }
+         return message;
+      }
+   }
+
+   @Override
+   public int size()
+   {
+      synchronized (_lock) {
+         return _replayCount + _memory.size();
+      }
+   }
+
+   @Override
+   public boolean isEmpty()
+   {
+      return size() == 0;
+   }
+
+   @Override
+   public int capacity()
+   {
+      return _memory.capacity();
+   }
+
+   @Override
+   public void rewindTo(int sequenceNumber)
+   {
+      synchronized (_lock) {
+         stopReplay();
+         try {
+            _memory.rewindTo(sequenceNumber);
+         } catch (IllegalArgumentException e) {
+            MappedSegmentLog.Cursor cursor = _spill != null ? _spill.find(sequenceNumber) : null;
+            if (cursor == null || !startReplay(cursor)) {
+               throw e;
+            }
+         }
+      }
+   }
+
+   @Override
+   public void rewindToFirst()
+   {
+      synchronized (_lock) {
+         stopReplay();
+         try {
+            _memory.rewindToFirst();
+         } catch (IllegalArgumentException e) {
+            if (_spill == null || _spill.hasDroppedRecords() || !startReplay(_spill.first())) {
+               throw e;
+            }
+         }
+      }
+   }
+
+   @GuardedBy("_lock")
+   private void stopReplay()
+   {
+      _replayCursor = null;
+      _replayCount = 0;
+      _peekedMessage = null;
+   }
+
+   /**
+    * Replay the rest of the log, and then all messages in memory.
+    *
+    * @return false if the messages from the cursor up to the oldest message in memory are not all in the log.
+    */
+   @GuardedBy("_lock")
+   private boolean startReplay(MappedSegmentLog.Cursor cursor)
+   {
+      if (cursor == null || !cursor.hasRecord()) {
+         return false;
+      }
+      MappedSegmentLog.Cursor counter = cursor.copy();
+      int count = 0;
+      int expectedSequenceNumber = counter.sequenceNumber();
+      while (counter.hasRecord()) {
+         if (counter.sequenceNumber() != expectedSequenceNumber) {
+            return false;
+         }
+         count++;
+         expectedSequenceNumber = SequenceNumber.nextAfter(expectedSequenceNumber);
+         counter.next();
+      }
+      int oldestInMemory = _memory.getOldestSequenceNumber();
+      if (oldestInMemory != SequenceNumber.NO_SEQUENCE_NUMBER) {
+         // Messages released from memory are never spilled, so the log may end before the oldest message in memory.
+         if (oldestInMemory != expectedSequenceNumber) {
+            return false;
+         }
+         _memory.rewindTo(oldestInMemory);
+      }
+      _replayCursor = cursor;
+      _replayCount = count;
+      return true;
+   }
+
+   @Override
+   public void releaseBefore(int sequenceNumber)
+   {
+      synchronized (_lock) {
+         _memory.releaseBefore(sequenceNumber);
+         // Segments are not released while replaying, since that would invalidate the replay cursor.
+         if (_spill != null && _replayCursor == null) {
+            _spill.releaseBefore(sequenceNumber);
+         }
+      }
+   }
+
+   @Override
+   public int getOldestSequenceNumber()
+   {
+      synchronized (_lock) {
+         if (_spill != null && !_spill.isEmpty()) {
+            return _spill.getFirstSequenceNumber();
+         }
+         return _memory.getOldestSequenceNumber();
+      }
+   }
+
+   @Override
+   public int getNewestSequenceNumber()
+   {
+      return _memory.getNewestSequenceNumber();
+   }
+
+   @Override
+   public void close()
+   {
+      synchronized (_lock) {
+         stopReplay();
+         if (_spill != null) {
+            _spill.close();
+            _spill = null;
+         }
+      }
+      _memory.close();
+   }
+
+   @Override
+   public String toString()
+   {
+      synchronized (_lock) {
+         return "SpillingMessageHistory {\n" + "\tMemory = " + _memory + ",\n\tReplay count = " + _replayCount +
+               ",\n\tSpilled = " + (_spill != null && !_spill.isEmpty()) + "\n}";
+      }
+   }
+}
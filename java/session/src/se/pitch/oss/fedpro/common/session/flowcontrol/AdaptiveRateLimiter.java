@@ -0,0 +1,231 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.pitch.oss.fedpro.common.session.flowcontrol;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * Paces producers to the rate at which the queue is actually drained, instead of sleeping based on the queue length
+ * alone.
+ * <p>
+ * The allowed rate is adjusted with additive increase and multiplicative decrease. It is decreased, relative to the
+ * measured drain rate, while the queue is beyond a cutoff and either grows or the round trip time of requests is
+ * inflated, and increased otherwise. The round trip time is compared to the minimum of the last 10 to 20 seconds, so
+ * that a lasting change of the network latency is not taken as congestion. While the queue is longer than the cutoff,
+ * each insert reserves a slot at the allowed rate and parks until that slot is due, which spreads the inserts evenly
+ * over time.
+ */
+public class AdaptiveRateLimiter implements RateLimiter {
+
+   static final long UPDATE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+   static final long MIN_RATE = 100;
+   static final long ROUND_TRIP_MIN_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+   private static final double DECREASE_FACTOR = 0.9;
+   private static final int INCREASE_DIVISOR = 10;
+   private static final int ROUND_TRIP_INFLATION_FACTOR = 2;
+   private static final long ROUND_TRIP_SAMPLE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+   private static final long NO_SAMPLE = Long.MIN_VALUE;
+
+   private final int _cutoff;
+   private final LongSupplier _nanoClock;
+
+   private final AtomicLong _polledCount = new AtomicLong();
+   // The state at the last update of the allowed rate. The thread that replaces it does the next update.
+   private final AtomicReference<UpdateState> _lastUpdate;
+   private final AtomicLong _nextPermitNanos;
+   private final AtomicLong _sampleStartNanos = new AtomicLong(NO_SAMPLE);
+
+   // Messages per second, or 0 before the queue has been congested.
+   private volatile long _allowedRate = 0;
+   private volatile long _smoothedRoundTripNanos = 0;
+
+   // Only one round trip is sampled at a time, so these are only written by one thread at a time.
+   private volatile long _roundTripWindowStartNanos;
+   private volatile long _windowMinRoundTripNanos = Long.MAX_VALUE;
+   private volatile long _previousWindowMinRoundTripNanos = Long.MAX_VALUE;
+
+   public AdaptiveRateLimiter(int queueSize)
+   {
+      this(queueSize, System::nanoTime);
+   }
+
+   AdaptiveRateLimiter(
+         int queueSize,
+         LongSupplier nanoClock)
+   {
+      _cutoff = queueSize / 20;
+      _nanoClock = nanoClock;
+      long now = nanoClock.getAsLong();
+      _lastUpdate = new AtomicReference<>(new UpdateState(now, 0, 0));
+      _nextPermitNanos = new AtomicLong(now);
+      _roundTripWindowStartNanos = now;
+   }
+
+   /**
+    * @return The number of messages per second that producers are currently paced to, or 0 if the queue has not
+    *       been congested yet.
+    */
+   public long getAllowedRate()
+   {
+      return _allowedRate;
+   }
+
+   /**
+    * @return The smoothed round trip time of sampled requests, or 0 if no request has been sampled.
+    */
+   public long getRoundTripNanos()
+   {
+      return _smoothedRoundTripNanos;
+   }
+
+   @Override
+   public void preInsert(int size)
+   {
+      long delayNanos = reservePermit(size);
+      if (delayNanos > 0) {
+         LockSupport.parkNanos(this, delayNanos);
+      }
+   }
+
+   @Override
+   public void postInsert(int size)
+   {
+      // No-op
+   }
+
+   @Override
+   public void postPoll(int size)
+   {
+      _polledCount.incrementAndGet();
+   }
+
+   @Override
+   public boolean startRoundTripSample()
+   {
+      long now = _nanoClock.getAsLong();
+      long sampleStart = _sampleStartNanos.get();
+      // A sample whose response never arrived is abandoned after a while.
+      if (sampleStart != NO_SAMPLE && now - sampleStart < ROUND_TRIP_SAMPLE_TIMEOUT_NANOS) {
+         return false;
+      }
+      return _sampleStartNanos.compareAndSet(sampleStart, now);
+   }
+
+   @Override
+   public void roundTripCompleted(long roundTripNanos)
+   {
+      long smoothed = _smoothedRoundTripNanos;
+      _smoothedRoundTripNanos = smoothed == 0 ? roundTripNanos : smoothed + (roundTripNanos - smoothed) / 8;
+      long now = _nanoClock.getAsLong();
+      if (now - _roundTripWindowStartNanos >= ROUND_TRIP_MIN_WINDOW_NANOS) {
+         _previousWindowMinRoundTripNanos = _windowMinRoundTripNanos;
+         _windowMinRoundTripNanos = Long.MAX_VALUE;
+         _roundTripWindowStartNanos = now;
+      }
+      _windowMinRoundTripNanos = Math.min(_windowMinRoundTripNanos, roundTripNanos);
+      _sampleStartNanos.set(NO_SAMPLE);
+   }
+
+   @Override
+   public void roundTripFailed()
+   {
+      _sampleStartNanos.set(NO_SAMPLE);
+   }
+
+   /**
+    * Update the allowed rate if it is due and reserve a slot for an insert.
+    *
+    * @return The number of nanoseconds to wait before inserting.
+    */
+   long reservePermit(int size)
+   {
+      long now = _nanoClock.getAsLong();
+      UpdateState lastUpdate = _lastUpdate.get();
+      if (now - lastUpdate._nanos >= UPDATE_INTERVAL_NANOS) {
+         UpdateState update = new UpdateState(now, _polledCount.get(), size);
+         if (_lastUpdate.compareAndSet(lastUpdate, update)) {
+            updateAllowedRate(lastUpdate, update);
+         }
+      }
+
+      long allowedRate = _allowedRate;
+      if (size <= _cutoff || allowedRate == 0) {
+         return 0;
+      }
+      long intervalNanos = TimeUnit.SECONDS.toNanos(1) / allowedRate;
+      while (true) {
+         long nextPermit = _nextPermitNanos.get();
+         long permit = Math.max(nextPermit, now);
+         if (_nextPermitNanos.compareAndSet(nextPermit, permit + intervalNanos)) {
+            return permit - now;
+         }
+      }
+   }
+
+   private void updateAllowedRate(
+         UpdateState lastUpdate,
+         UpdateState update)
+   {
+      long elapsedNanos = Math.max(1, update._nanos - lastUpdate._nanos);
+      long drainRate = (update._polledCount - lastUpdate._polledCount) * TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+      boolean growing = update._size > lastUpdate._size;
+
+      long allowedRate = _allowedRate;
+      if (update._size > _cutoff && (growing || isRoundTripInflated())) {
+         long base = allowedRate == 0 ? drainRate : Math.min(allowedRate, drainRate);
+         _allowedRate = Math.max(MIN_RATE, (long) (base * DECREASE_FACTOR));
+      } else if (allowedRate != 0) {
+         _allowedRate = allowedRate + Math.max(MIN_RATE, Math.max(allowedRate, drainRate) / INCREASE_DIVISOR);
+      }
+   }
+
+   private boolean isRoundTripInflated()
+   {
+      long minRoundTrip = Math.min(_windowMinRoundTripNanos, _previousWindowMinRoundTripNanos);
+      return minRoundTrip != Long.MAX_VALUE &&
+            _smoothedRoundTripNanos > ROUND_TRIP_INFLATION_FACTOR * minRoundTrip;
+   }
+
+   private static final class UpdateState {
+
+      private final long _nanos;
+      private final long _polledCount;
+      private final int _size;
+
+      private UpdateState(
+            long nanos,
+            long polledCount,
+            int size)
+      {
+         _nanos = nanos;
+         _polledCount = polledCount;
+         _size = size;
+      }
+   }
+
+   @Override
+   public String toString()
+   {
+      return "AdaptiveRateLimiter{allowedRate = " + _allowedRate +
+            ", roundTripNanos = " + _smoothedRoundTripNanos + "}";
+   }
+}
@@ -21,4 +21,40 @@ public interface RateLimiter {
    void preInsert(int size);
 
    void postInsert(int size);
+
+   /**
+    * Called after an element has been removed from the rate limited queue.
+    *
+    * @param size The number of elements remaining in the queue.
+    */
+   default void postPoll(int size)
+   {
+      // No-op
+   }
+
+   /**
+    * @return true if the caller should measure the round trip time of the request it is about to send, and report
+    *       it through {@link #roundTripCompleted(long)}.
+    */
+   default boolean startRoundTripSample()
+   {
+      return false;
+   }
+
+   /**
+    * Report the time from sending a request until its response was received, for a request where
+    * {@link #startRoundTripSample()} returned true.
+    */
+   default void roundTripCompleted(long roundTripNanos)
+   {
+      // No-op
+   }
+
+   /**
+    * Report that a request whose round trip time was being measured failed, so that another one can be sampled.
+    */
+   default void roundTripFailed()
+   {
+      // No-op
+   }
 }
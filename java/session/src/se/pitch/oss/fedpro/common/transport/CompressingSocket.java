@@ -0,0 +1,34 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.pitch.oss.fedpro.common.transport;
+
+/**
+ * A socket that compresses the data it sends and decompresses the data it receives.
+ */
+public interface CompressingSocket extends FedProSocket {
+
+   /**
+    * @return The number of bytes sent and received so far, as written by and delivered to the session.
+    */
+   long getUncompressedBytes();
+
+   /**
+    * @return The number of bytes that the data counted by {@link #getUncompressedBytes()} occupied on the connection.
+    */
+   long getCompressedBytes();
+}
@@ -0,0 +1,53 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.pitch.oss.fedpro.common.transport;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A socket that can push received data to a listener, so that the owner of the socket does not need a dedicated
+ * thread blocking on {@link #getInputStream()}.
+ * <p>
+ * Data that has been received but not yet read from the input stream when a listener is set is delivered to the
+ * listener before any new data.
+ */
+public interface EventDrivenSocket extends FedProSocket {
+
+   interface Listener {
+
+      /**
+       * Called when data has been received. The buffer is only valid during the call.
+       */
+      void onDataReceived(ByteBuffer data);
+
+      /**
+       * Called once when the socket has been closed, either locally or by the peer.
+       */
+      void onClosed(Exception cause);
+   }
+
+   /**
+    * Start delivering received data to the listener instead of the input stream.
+    */
+   void setListener(Listener listener);
+
+   /**
+    * Stop or resume reading from the connection, for a listener that hands the data on and has fallen behind. Data
+    * that has already been read may still be delivered after reading has been paused. May be called from any thread.
+    */
+   void setReadPaused(boolean isPaused);
+}
@@ -0,0 +1,37 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.pitch.oss.fedpro.common.transport;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * An input stream that receives data in whole frames, such as WebSocket messages, and can hand over each frame as it
+ * was received instead of copying it through {@link java.io.InputStream#read(byte[], int, int)}.
+ */
+public interface FrameReader {
+
+   /**
+    * Wait for the next received frame, or what is left of it if it has been partially read from the stream.
+    *
+    * @return The frame. It is owned by the caller, but should not be modified.
+    * @throws java.io.EOFException If the stream has been closed.
+    */
+   ByteBuffer readFrame()
+   throws IOException;
+}
@@ -0,0 +1,44 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.pitch.oss.fedpro.common.transport;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A socket that can write several buffers in one operation, so that a message that is kept in separate parts does not
+ * have to be copied into a single array before it is sent.
+ */
+public interface GatheringSocket extends FedProSocket {
+
+   /**
+    * Write the remaining bytes of the buffers, in order, as if they were one contiguous sequence. Blocks like a write
+    * to {@link #getOutputStream()} does. The positions of the buffers are advanced past the written bytes.
+    */
+   void write(ByteBuffer[] buffers, int offset, int length)
+   throws IOException;
+
+   /**
+    * @return The number of bytes that a writer should try to gather into each write, by including all messages that
+    *       are ready to be sent, even if it does not batch writes otherwise. 0 if there is no such preference.
+    */
+   default int preferredBatchMaxBytes()
+   {
+      return 0;
+   }
+}
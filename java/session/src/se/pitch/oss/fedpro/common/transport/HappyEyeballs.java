@@ -0,0 +1,214 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.pitch.oss.fedpro.common.transport;
+
+import net.jcip.annotations.GuardedBy;
+import se.pitch.oss.fedpro.common.session.SessionThreads;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connects to whichever of several addresses of a host answers first, in the manner of Happy Eyeballs (RFC 8305).
+ * <p>
+ * The addresses are tried in order, alternating between IPv6 and IPv4, and a new attempt is started when the previous
+ * one fails or has not completed within the attempt delay. Attempts that are still in progress continue after the
+ * first connection has been established, and close their connection when they complete.
+ */
+public class HappyEyeballs {
+
+   // Recommended by RFC 8305, section 5.
+   public static final long DEFAULT_ATTEMPT_DELAY_MILLIS = 250;
+
+   public interface Connector<T extends Closeable> {
+
+      /**
+       * Open a connection to the address, blocking until it has been established.
+       */
+      T connect(InetSocketAddress address)
+      throws IOException;
+   }
+
+   private HappyEyeballs()
+   {
+   }
+
+   /**
+    * @param addresses          The resolved addresses of a host, in the order returned by the resolver.
+    * @param attemptDelayMillis The time to wait for an attempt before the next one is started.
+    * @return The first connection that was established.
+    * @throws IOException The exception of the first attempt, if all attempts failed.
+    */
+   public static <T extends Closeable> T connect(
+         InetAddress[] addresses,
+         int port,
+         long attemptDelayMillis,
+         Connector<T> connector)
+   throws IOException
+   {
+      if (addresses.length == 0) {
+         throw new IllegalArgumentException("No address to connect to");
+      }
+      if (addresses.length == 1) {
+         return connector.connect(new InetSocketAddress(addresses[0], port));
+      }
+
+      List<InetAddress> ordered = interleaveFamilies(addresses);
+      Race<T> race = new Race<>(connector);
+      IOException firstException = null;
+      int started = 0;
+      int completed = 0;
+      try {
+         race.start(new InetSocketAddress(ordered.get(started++), port));
+         while (completed < ordered.size()) {
+            Attempt<T> attempt = started < ordered.size() ?
+                  race._completed.poll(attemptDelayMillis, TimeUnit.MILLISECONDS) :
+                  race._completed.take();
+            if (attempt == null) {
+               // The current attempt is slow, let the next address compete with it.
+               race.start(new InetSocketAddress(ordered.get(started++), port));
+               continue;
+            }
+            completed++;
+            if (attempt._connection != null) {
+               return race.finish(attempt._connection);
+            }
+            if (firstException == null) {
+               firstException = attempt._exception;
+            } else {
+               firstException.addSuppressed(attempt._exception);
+            }
+            if (started < ordered.size()) {
+               race.start(new InetSocketAddress(ordered.get(started++), port));
+            }
+         }
+      } catch (InterruptedException e) {
+         race.finish(null);
+         Thread.currentThread().interrupt();
+         throw new InterruptedIOException("Interrupted while connecting");
+      }
+      throw firstException;
+   }
+
+   static List<InetAddress> interleaveFamilies(InetAddress[] addresses)
+   {
+      boolean firstIsIpv6 = addresses[0] instanceof Inet6Address;
+      List<InetAddress> preferred = new ArrayList<>();
+      List<InetAddress> other = new ArrayList<>();
+      for (InetAddress address : addresses) {
+         if ((address instanceof Inet6Address) == firstIsIpv6) {
+            preferred.add(address);
+         } else {
+            other.add(address);
+         }
+      }
+      List<InetAddress> ordered = new ArrayList<>(addresses.length);
+      for (int i = 0; i < Math.max(preferred.size(), other.size()); i++) {
+         if (i < preferred.size()) {
+            ordered.add(preferred.get(i));
+         }
+         if (i < other.size()) {
+            ordered.add(other.get(i));
+         }
+      }
+      return ordered;
+   }
+
+   private static void closeQuietly(Closeable connection)
+   {
+      try {
+         connection.close();
+      } catch (IOException ignored) {
+      }
+   }
+
+   private static class Attempt<T> {
+
+      final T _connection;
+      final IOException _exception;
+
+      Attempt(T connection, IOException exception)
+      {
+         _connection = connection;
+         _exception = exception;
+      }
+   }
+
+   private static class Race<T extends Closeable> {
+
+      private final Connector<T> _connector;
+      private final LinkedBlockingQueue<Attempt<T>> _completed = new LinkedBlockingQueue<>();
+
+      @GuardedBy("this")
+      private boolean _isFinished = false;
+
+      Race(Connector<T> connector)
+      {
+         _connector = connector;
+      }
+
+      void start(InetSocketAddress address)
+      {
+         SessionThreads.newThread(() -> run(address), "FedPro Connect " + address, false).start();
+      }
+
+      private void run(InetSocketAddress address)
+      {
+         Attempt<T> attempt;
+         try {
+            attempt = new Attempt<>(_connector.connect(address), null);
+         } catch (IOException e) {
+            attempt = new Attempt<>(null, e);
+         } catch (RuntimeException e) {
+            attempt = new Attempt<>(null, new IOException(e));
+         }
+         synchronized (this) {
+            if (_isFinished) {
+               if (attempt._connection != null) {
+                  closeQuietly(attempt._connection);
+               }
+               return;
+            }
+            _completed.add(attempt);
+         }
+      }
+
+      /**
+       * Stop accepting attempts and close any connection that completed besides the winner.
+       */
+      synchronized T finish(T winner)
+      {
+         _isFinished = true;
+         for (Attempt<T> attempt : _completed) {
+            if (attempt._connection != null && attempt._connection != winner) {
+               closeQuietly(attempt._connection);
+            }
+         }
+         _completed.clear();
+         return winner;
+      }
+   }
+}
@@ -0,0 +1,140 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.pitch.oss.fedpro.common.transport.nio;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A single selector thread that performs all socket I/O for the channels registered with it.
+ */
+public class NioEventLoop {
+
+   private static final Logger LOGGER = Logger.getLogger(NioEventLoop.class.getName());
+
+   interface Handler {
+
+      void onReadable()
+      throws IOException;
+
+      void onWritable()
+      throws IOException;
+
+      void onFailure(IOException e);
+   }
+
+   private final Selector _selector;
+   private final Thread _thread;
+   private final Queue<Runnable> _tasks = new ConcurrentLinkedQueue<>();
+
+   NioEventLoop(String name)
+   throws IOException
+   {
+      _selector = Selector.open();
+      _thread = new Thread(this::runLoop, name);
+      _thread.setDaemon(true);
+      _thread.start();
+   }
+
+   public boolean inEventLoop()
+   {
+      return Thread.currentThread() == _thread;
+   }
+
+   /**
+    * Run a task on the event loop thread. Tasks must not block.
+    */
+   public void execute(Runnable task)
+   {
+      _tasks.add(task);
+      if (!inEventLoop()) {
+         _selector.wakeup();
+      }
+   }
+
+   SelectionKey register(
+         SocketChannel channel,
+         int interestOps,
+         Handler handler)
+   throws ClosedChannelException
+   {
+      assert inEventLoop();
+      return channel.register(_selector, interestOps, handler);
+   }
+
+   private void runLoop()
+   {
+      while (true) {
+         try {
+            // Tasks added by the loop itself, for example while handling a key, do not wake up the selector.
+            if (_tasks.isEmpty()) {
+               _selector.select();
+            } else {
+               _selector.selectNow();
+            }
+            runTasks();
+            handleSelectedKeys();
+         } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Unexpected exception in " + _thread.getName(), e);
+         }
+      }
+   }
+
+   private void runTasks()
+   {
+      Runnable task;
+      while ((task = _tasks.poll()) != null) {
+         try {
+            task.run();
+         } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Unexpected exception in task on " + _thread.getName(), e);
+         }
+      }
+   }
+
+   private void handleSelectedKeys()
+   {
+      Iterator<SelectionKey> selectedKeys = _selector.selectedKeys().iterator();
+      while (selectedKeys.hasNext()) {
+         SelectionKey key = selectedKeys.next();
+         selectedKeys.remove();
+         Handler handler = (Handler) key.attachment();
+         try {
+            int readyOps = key.readyOps();
+            if ((readyOps & SelectionKey.OP_WRITE) != 0) {
+               handler.onWritable();
+            }
+            if ((readyOps & SelectionKey.OP_READ) != 0) {
+               handler.onReadable();
+            }
+         } catch (CancelledKeyException e) {
+            handler.onFailure(new ClosedChannelException());
+         } catch (IOException e) {
+            handler.onFailure(e);
+         }
+      }
+   }
+}
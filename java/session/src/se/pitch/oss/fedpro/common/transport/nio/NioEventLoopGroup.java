@@ -0,0 +1,95 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.pitch.oss.fedpro.common.transport.nio;
+
+import net.jcip.annotations.GuardedBy;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * A fixed set of event loops that channels are distributed over in round-robin order.
+ * <p>
+ * A single shared group is normally used for all sessions in the JVM, see {@link #getShared(int)}.
+ */
+public class NioEventLoopGroup {
+
+   private static final Logger LOGGER = Logger.getLogger(NioEventLoopGroup.class.getName());
+
+   private static final Object SHARED_LOCK = new Object();
+   @GuardedBy("SHARED_LOCK")
+   private static NioEventLoopGroup _shared;
+
+   private final NioEventLoop[] _eventLoops;
+   private final AtomicInteger _next = new AtomicInteger();
+
+   public NioEventLoopGroup(
+         String name,
+         int threadCount)
+   throws IOException
+   {
+      if (threadCount < 1) {
+         throw new IllegalArgumentException("An event loop group needs at least one thread");
+      }
+      _eventLoops = new NioEventLoop[threadCount];
+      for (int i = 0; i < threadCount; i++) {
+         _eventLoops[i] = new NioEventLoop(name + " " + i);
+      }
+   }
+
+   /**
+    * Get the group shared by all sessions in this JVM, creating it on first use.
+    *
+    * @param threadCount Number of event loop threads to use if the group is created by this call.
+    *                    Use 0 to pick a default based on the number of available processors.
+    */
+   public static NioEventLoopGroup getShared(int threadCount)
+   {
+      synchronized (SHARED_LOCK) {
+         if (_shared == null) {
+            int actualThreadCount = threadCount > 0 ? threadCount : defaultThreadCount();
+            try {
+               _shared = new NioEventLoopGroup("FedPro Client Event Loop", actualThreadCount);
+            } catch (IOException e) {
+               throw new UncheckedIOException("Failed to open selector", e);
+            }
+            LOGGER.config(() -> "Started shared FedPro event loop group with " + actualThreadCount + " threads");
+         } else if (threadCount > 0 && threadCount != _shared.size()) {
+            LOGGER.fine(() -> "Shared FedPro event loop group already running with " + _shared.size() +
+                  " threads, ignoring requested thread count " + threadCount);
+         }
+         return _shared;
+      }
+   }
+
+   public NioEventLoop next()
+   {
+      return _eventLoops[Math.floorMod(_next.getAndIncrement(), _eventLoops.length)];
+   }
+
+   public int size()
+   {
+      return _eventLoops.length;
+   }
+
+   private static int defaultThreadCount()
+   {
+      return Math.min(4, Runtime.getRuntime().availableProcessors());
+   }
+}
@@ -0,0 +1,725 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.pitch.oss.fedpro.common.transport.nio;
+
+import net.jcip.annotations.GuardedBy;
+import se.pitch.oss.fedpro.common.transport.EventDrivenSocket;
+import se.pitch.oss.fedpro.common.transport.GatheringSocket;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * A socket backed by a non-blocking {@link SocketChannel} whose I/O is performed by an {@link NioEventLoop}.
+ * <p>
+ * Received data is either buffered for the input stream, or pushed to a {@link Listener} on the event loop thread.
+ * Writes to the output stream are attempted directly on the calling thread, and anything the channel does not accept
+ * right away is handed over to the event loop. Threads blocked on the streams can be interrupted without closing the
+ * socket.
+ */
+public class NioSocket implements EventDrivenSocket, GatheringSocket {
+
+   protected static final Logger LOGGER = Logger.getLogger(NioSocket.class.getName());
+
+   private static final int READ_BUFFER_SIZE = 64 * 1024;
+   // Stop reading from the channel when this many received bytes are waiting to be read from the input stream.
+   private static final int INBOUND_HIGH_WATER_MARK = 1024 * 1024;
+   // Block writers when this many bytes are waiting to be written to the channel.
+   private static final int OUTBOUND_HIGH_WATER_MARK = 1024 * 1024;
+
+   protected final SocketChannel _channel;
+   protected final NioEventLoop _eventLoop;
+   private final String _protocolName;
+   private final InputStream _inputStream = new NioInputStream();
+   private final OutputStream _outputStream = new NioOutputStream();
+   private final AtomicBoolean _isClosed = new AtomicBoolean(false);
+
+   // Only accessed on the event loop thread.
+   private SelectionKey _key;
+   private final ByteBuffer _readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+   // Locks rather than monitors, so that virtual threads waiting for data or for room do not pin their carrier thread.
+   private final ReentrantLock _inboundLock = new ReentrantLock();
+   private final Condition _inboundChanged = _inboundLock.newCondition();
+   @GuardedBy("_inboundLock")
+   private final Queue<ByteBuffer> _inbound = new ArrayDeque<>();
+   @GuardedBy("_inboundLock")
+   private int _inboundBytes = 0;
+   @GuardedBy("_inboundLock")
+   private boolean _isReadPaused = false;
+   @GuardedBy("_inboundLock")
+   private Listener _listener;
+   @GuardedBy("_inboundLock")
+   private Exception _closeCause;
+   @GuardedBy("_inboundLock")
+   private int _soTimeoutMillis = 0;
+
+   protected final ReentrantLock _outboundLock = new ReentrantLock();
+   private final Condition _outboundChanged = _outboundLock.newCondition();
+   @GuardedBy("_outboundLock")
+   private final Queue<ByteBuffer> _outbound = new ArrayDeque<>();
+   @GuardedBy("_outboundLock")
+   private int _outboundBytes = 0;
+   @GuardedBy("_outboundLock")
+   private boolean _isWriteInterestRequested = false;
+
+   protected NioSocket(
+         SocketChannel channel,
+         NioEventLoop eventLoop,
+         String protocolName)
+   throws IOException
+   {
+      _channel = channel;
+      _eventLoop = eventLoop;
+      _protocolName = protocolName;
+      _channel.configureBlocking(false);
+   }
+
+   /**
+    * Register the channel with the event loop. Called once the socket is fully constructed.
+    */
+   protected void start()
+   {
+      _eventLoop.execute(this::register);
+   }
+
+   /**
+    * Let an event loop from the group perform the I/O of a connected channel. The channel is closed if this fails.
+    */
+   public static NioSocket connect(
+         NioEventLoopGroup eventLoopGroup,
+         SocketChannel channel,
+         String protocolName)
+   throws IOException
+   {
+      try {
+         NioSocket socket = new NioSocket(channel, eventLoopGroup.next(), protocolName);
+         socket.start();
+         return socket;
+      } catch (IOException | RuntimeException e) {
+         closeQuietly(channel);
+         throw e;
+      }
+   }
+
+   static void closeQuietly(SocketChannel channel)
+   {
+      try {
+         channel.close();
+      } catch (IOException ignored) {
+      }
+   }
+
+   @Override
+   public InputStream getInputStream()
+   {
+      return _inputStream;
+   }
+
+   @Override
+   public OutputStream getOutputStream()
+   {
+      return _outputStream;
+   }
+
+   @Override
+   public void setListener(Listener listener)
+   {
+      _eventLoop.execute(() -> {
+         Queue<ByteBuffer> pending;
+         Exception closeCause;
+         _inboundLock.lock();
+         try {
+            _listener = listener;
+            pending = new ArrayDeque<>(_inbound);
+            _inbound.clear();
+            _inboundBytes = 0;
+            closeCause = _closeCause;
+            if (_isReadPaused) {
+               _isReadPaused = false;
+               setInterest(SelectionKey.OP_READ, true);
+            }
+         } finally {
+            _inboundLock.unlock();
+         }
+         for (ByteBuffer data : pending) {
+            listener.onDataReceived(data);
+         }
+         if (closeCause != null) {
+            listener.onClosed(closeCause);
+         }
+      });
+   }
+
+   @Override
+   public void setReadPaused(boolean isPaused)
+   {
+      _inboundLock.lock();
+      try {
+         if (_listener == null || _isReadPaused == isPaused) {
+            return;
+         }
+         _isReadPaused = isPaused;
+      } finally {
+         _inboundLock.unlock();
+      }
+      // Applied on the event loop from the current flag, so that pausing and resuming from different threads cannot
+      // leave the interest out of date.
+      _eventLoop.execute(() -> {
+         boolean isInterested;
+         _inboundLock.lock();
+         try {
+            isInterested = !_isReadPaused;
+         } finally {
+            _inboundLock.unlock();
+         }
+         setInterest(SelectionKey.OP_READ, isInterested);
+      });
+   }
+
+   @Override
+   public void close()
+   throws IOException
+   {
+      if (_isClosed.compareAndSet(false, true)) {
+         try {
+            beforeClose();
+            _channel.close();
+         } finally {
+            onClosed(new SocketException("Socket closed"));
+         }
+      }
+   }
+
+   /**
+    * Called once, on the thread closing the socket, before the channel is closed.
+    */
+   protected void beforeClose()
+   {
+   }
+
+   @Override
+   public SocketAddress getRemoteSocketAddress()
+   {
+      try {
+         return _channel.getRemoteAddress();
+      } catch (IOException e) {
+         return null;
+      }
+   }
+
+   @Override
+   public void setTcpNoDelay(boolean flag)
+   throws SocketException
+   {
+      // Channels that are not TCP, such as Unix domain socket channels, have no such option.
+      if (_channel.supportedOptions().contains(StandardSocketOptions.TCP_NODELAY)) {
+         _channel.socket().setTcpNoDelay(flag);
+      }
+   }
+
+   @Override
+   public void setSoTimeout(int socketTimeout)
+   {
+      _inboundLock.lock();
+      try {
+         _soTimeoutMillis = socketTimeout;
+      } finally {
+         _inboundLock.unlock();
+      }
+   }
+
+   @Override
+   public int getSoTimeout()
+   {
+      _inboundLock.lock();
+      try {
+         return _soTimeoutMillis;
+      } finally {
+         _inboundLock.unlock();
+      }
+   }
+
+   @Override
+   public String getProtocolName()
+   {
+      return _protocolName;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "NioSocket[" + getRemoteSocketAddress() + "]";
+   }
+
+   // Event loop side
+
+   private void register()
+   {
+      try {
+         _key = _eventLoop.register(_channel, SelectionKey.OP_READ, new NioEventLoop.Handler() {
+            @Override
+            public void onReadable()
+            throws IOException
+            {
+               processReadable();
+            }
+
+            @Override
+            public void onWritable()
+            throws IOException
+            {
+               processWritable();
+            }
+
+            @Override
+            public void onFailure(IOException e)
+            {
+               fail(e);
+            }
+         });
+         _outboundLock.lock();
+         try {
+            if (_isWriteInterestRequested) {
+               setInterest(SelectionKey.OP_WRITE, true);
+            }
+         } finally {
+            _outboundLock.unlock();
+         }
+      } catch (ClosedChannelException e) {
+         // Closed before it could be registered. The close has already been reported.
+      }
+   }
+
+   /**
+    * Read whatever the channel has available. Called on the event loop thread when the channel is readable.
+    */
+   protected void processReadable()
+   throws IOException
+   {
+      int bytesRead;
+      do {
+         bytesRead = _channel.read(_readBuffer);
+         if (bytesRead < 0) {
+            fail(new EOFException("Connection closed by peer"));
+            return;
+         }
+         _readBuffer.flip();
+         if (_readBuffer.hasRemaining()) {
+            deliver(_readBuffer);
+         }
+         _readBuffer.clear();
+         // Keep reading as long as the buffer was filled, as there is probably more to read.
+      } while (bytesRead == READ_BUFFER_SIZE && isReading());
+   }
+
+   private void processWritable()
+   throws IOException
+   {
+      _outboundLock.lock();
+      try {
+         ByteBuffer data;
+         while ((data = _outbound.peek()) != null) {
+            int bytesWritten = _channel.write(data);
+            _outboundBytes -= bytesWritten;
+            if (data.hasRemaining()) {
+               break;
+            }
+            _outbound.remove();
+         }
+         if (_outbound.isEmpty()) {
+            _isWriteInterestRequested = false;
+            setInterest(SelectionKey.OP_WRITE, false);
+         }
+         _outboundChanged.signalAll();
+      } finally {
+         _outboundLock.unlock();
+      }
+   }
+
+   /**
+    * Hand received data to the listener, or buffer it for the input stream. Must be called on the event loop thread.
+    */
+   protected final void deliver(ByteBuffer data)
+   {
+      Listener listener;
+      _inboundLock.lock();
+      try {
+         listener = _listener;
+         if (listener == null) {
+            ByteBuffer copy = ByteBuffer.allocate(data.remaining());
+            copy.put(data).flip();
+            _inbound.add(copy);
+            _inboundBytes += copy.remaining();
+            if (_inboundBytes > INBOUND_HIGH_WATER_MARK && !_isReadPaused) {
+               _isReadPaused = true;
+               setInterest(SelectionKey.OP_READ, false);
+            }
+            _inboundChanged.signalAll();
+            return;
+         }
+      } finally {
+         _inboundLock.unlock();
+      }
+      listener.onDataReceived(data);
+   }
+
+   private boolean isReading()
+   {
+      _inboundLock.lock();
+      try {
+         return !_isReadPaused && _closeCause == null;
+      } finally {
+         _inboundLock.unlock();
+      }
+   }
+
+   /**
+    * Close the socket because of an error, or because the peer closed the connection.
+    */
+   protected final void fail(Exception cause)
+   {
+      if (_isClosed.compareAndSet(false, true)) {
+         closeQuietly(_channel);
+         onClosed(cause);
+      }
+   }
+
+   private void onClosed(Exception cause)
+   {
+      _outboundLock.lock();
+      try {
+         _outboundChanged.signalAll();
+      } finally {
+         _outboundLock.unlock();
+      }
+      _inboundLock.lock();
+      try {
+         if (_closeCause != null) {
+            return;
+         }
+         _closeCause = cause;
+         _inboundChanged.signalAll();
+      } finally {
+         _inboundLock.unlock();
+      }
+      // The listener is always notified on the event loop thread, never on the thread that closed the socket.
+      _eventLoop.execute(() -> {
+         Listener listener;
+         _inboundLock.lock();
+         try {
+            listener = _listener;
+         } finally {
+            _inboundLock.unlock();
+         }
+         if (listener != null) {
+            listener.onClosed(cause);
+         }
+      });
+   }
+
+   private void setInterest(
+         int operation,
+         boolean isInterested)
+   {
+      if (!_eventLoop.inEventLoop()) {
+         _eventLoop.execute(() -> setInterest(operation, isInterested));
+         return;
+      }
+      if (_key != null && _key.isValid()) {
+         int interestOps = _key.interestOps();
+         _key.interestOps(isInterested ? interestOps | operation : interestOps & ~operation);
+      }
+   }
+
+   // Writing side
+
+   /**
+    * Write the data to the channel as far as possible without blocking, and queue the remainder for the event loop.
+    * The data is copied if it needs to be queued, so the caller may reuse the buffer afterwards.
+    */
+   @GuardedBy("_outboundLock")
+   protected final void writeOrQueue(ByteBuffer data)
+   throws IOException
+   {
+      if (_outbound.isEmpty()) {
+         _channel.write(data);
+      }
+      queueRemaining(data);
+   }
+
+   /**
+    * Like {@link #writeOrQueue(ByteBuffer)}, but with a single gathering write of all the buffers.
+    */
+   @GuardedBy("_outboundLock")
+   protected final void writeOrQueue(
+         ByteBuffer[] buffers,
+         int offset,
+         int length)
+   throws IOException
+   {
+      if (_outbound.isEmpty()) {
+         _channel.write(buffers, offset, length);
+      }
+      for (int i = offset; i < offset + length; i++) {
+         queueRemaining(buffers[i]);
+      }
+   }
+
+   @GuardedBy("_outboundLock")
+   private void queueRemaining(ByteBuffer data)
+   {
+      if (data.hasRemaining()) {
+         ByteBuffer copy = ByteBuffer.allocate(data.remaining());
+         copy.put(data).flip();
+         _outbound.add(copy);
+         _outboundBytes += copy.remaining();
+         if (!_isWriteInterestRequested) {
+            _isWriteInterestRequested = true;
+            setInterest(SelectionKey.OP_WRITE, true);
+         }
+      }
+   }
+
+   /**
+    * Send application data. Called with {@link #_outboundLock} held.
+    */
+   @GuardedBy("_outboundLock")
+   protected void send(
+         byte[] bytes,
+         int offset,
+         int length)
+   throws IOException
+   {
+      writeOrQueue(ByteBuffer.wrap(bytes, offset, length));
+   }
+
+   /**
+    * Send application data that is split over several buffers. Called with {@link #_outboundLock} held.
+    */
+   @GuardedBy("_outboundLock")
+   protected void send(
+         ByteBuffer[] buffers,
+         int offset,
+         int length)
+   throws IOException
+   {
+      writeOrQueue(buffers, offset, length);
+   }
+
+   private void write(
+         byte[] bytes,
+         int offset,
+         int length)
+   throws IOException
+   {
+      _outboundLock.lock();
+      try {
+         throwIfClosed();
+         send(bytes, offset, length);
+         awaitOutboundBelowHighWaterMark();
+      } finally {
+         _outboundLock.unlock();
+      }
+   }
+
+   @Override
+   public void write(
+         ByteBuffer[] buffers,
+         int offset,
+         int length)
+   throws IOException
+   {
+      _outboundLock.lock();
+      try {
+         throwIfClosed();
+         send(buffers, offset, length);
+         awaitOutboundBelowHighWaterMark();
+      } finally {
+         _outboundLock.unlock();
+      }
+   }
+
+   @GuardedBy("_outboundLock")
+   private void awaitOutboundBelowHighWaterMark()
+   throws IOException
+   {
+      try {
+         while (_outboundBytes > OUTBOUND_HIGH_WATER_MARK) {
+            _outboundChanged.await();
+            throwIfClosed();
+         }
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new InterruptedIOException("Interrupted while waiting for socket to become writable");
+      }
+   }
+
+   private void throwIfClosed()
+   throws IOException
+   {
+      if (_isClosed.get()) {
+         throw new SocketException("Socket closed");
+      }
+   }
+
+   // Reading side
+
+   private int read(
+         byte[] bytes,
+         int offset,
+         int length)
+   throws IOException
+   {
+      if (length == 0) {
+         return 0;
+      }
+      _inboundLock.lock();
+      try {
+         if (_listener != null) {
+            throw new IllegalStateException("Socket is delivering data to a listener");
+         }
+         long deadline = _soTimeoutMillis > 0 ? System.currentTimeMillis() + _soTimeoutMillis : 0;
+         while (_inbound.isEmpty()) {
+            if (_closeCause instanceof EOFException) {
+               return -1;
+            } else if (_closeCause != null) {
+               throw new SocketException(_closeCause.getMessage());
+            }
+            try {
+               if (deadline == 0) {
+                  _inboundChanged.await();
+               } else {
+                  long timeLeft = deadline - System.currentTimeMillis();
+                  if (timeLeft <= 0) {
+                     throw new SocketTimeoutException("Read timed out");
+                  }
+                  _inboundChanged.await(timeLeft, TimeUnit.MILLISECONDS);
+               }
+            } catch (InterruptedException e) {
+               Thread.currentThread().interrupt();
+               throw new InterruptedIOException("Interrupted while waiting for data");
+            }
+         }
+
+         ByteBuffer head = _inbound.peek();
+         int bytesRead = Math.min(length, head.remaining());
+         head.get(bytes, offset, bytesRead);
+         if (!head.hasRemaining()) {
+            _inbound.remove();
+         }
+         _inboundBytes -= bytesRead;
+         if (_isReadPaused && _inboundBytes < INBOUND_HIGH_WATER_MARK / 2) {
+            _isReadPaused = false;
+            setInterest(SelectionKey.OP_READ, true);
+         }
+         return bytesRead;
+      } finally {
+         _inboundLock.unlock();
+      }
+   }
+
+   private int available()
+   {
+      _inboundLock.lock();
+      try {
+         return _inboundBytes;
+      } finally {
+         _inboundLock.unlock();
+      }
+   }
+
+   private class NioInputStream extends InputStream {
+
+      @Override
+      public int read()
+      throws IOException
+      {
+         byte[] single = new byte[1];
+         int bytesRead = NioSocket.this.read(single, 0, 1);
+         return bytesRead < 0 ? -1 : single[0] & 0xFF;
+      }
+
+      @Override
+      public int read(
+            byte[] b,
+            int off,
+            int len)
+      throws IOException
+      {
+         return NioSocket.this.read(b, off, len);
+      }
+
+      @Override
+      public int available()
+      {
+         return NioSocket.this.available();
+      }
+
+      @Override
+      public void close()
+      throws IOException
+      {
+         NioSocket.this.close();
+      }
+   }
+
+   private class NioOutputStream extends OutputStream {
+
+      @Override
+      public void write(int b)
+      throws IOException
+      {
+         NioSocket.this.write(new byte[]{(byte) b}, 0, 1);
+      }
+
+      @Override
+      public void write(
+            byte[] b,
+            int off,
+            int len)
+      throws IOException
+      {
+         NioSocket.this.write(b, off, len);
+      }
+
+      @Override
+      public void close()
+      throws IOException
+      {
+         NioSocket.this.close();
+      }
+   }
+}
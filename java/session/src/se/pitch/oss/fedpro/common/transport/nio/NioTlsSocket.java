@@ -0,0 +1,421 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.pitch.oss.fedpro.common.transport.nio;
+
+import net.jcip.annotations.GuardedBy;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A {@link NioSocket} that encrypts its traffic with an {@link SSLEngine}.
+ * <p>
+ * The handshake is performed on the connecting thread, which waits for the channel with a selector of its own so that
+ * the handshake can time out. After that, records are wrapped on the writing thread
+ * and unwrapped on the event loop thread.
+ */
+public class NioTlsSocket extends NioSocket {
+
+   private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+   private final SSLEngine _engine;
+
+   // Only accessed on the event loop thread, after the handshake.
+   private ByteBuffer _netIn;
+   private ByteBuffer _appIn;
+
+   @GuardedBy("_outboundLock")
+   private ByteBuffer _netOut;
+
+   private NioTlsSocket(
+         SocketChannel channel,
+         NioEventLoop eventLoop,
+         String protocolName,
+         SSLEngine engine,
+         ByteBuffer netIn,
+         ByteBuffer appIn)
+   throws IOException
+   {
+      super(channel, eventLoop, protocolName);
+      _engine = engine;
+      _netIn = netIn;
+      _appIn = appIn;
+      _outboundLock.lock();
+      try {
+         _netOut = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+      } finally {
+         _outboundLock.unlock();
+      }
+   }
+
+   @Override
+   protected void start()
+   {
+      super.start();
+      // Process anything that arrived together with the last handshake message.
+      _eventLoop.execute(() -> {
+         if (_appIn.position() > 0) {
+            _appIn.flip();
+            deliver(_appIn);
+            _appIn.clear();
+         }
+         try {
+            unwrapReceived();
+         } catch (IOException e) {
+            fail(e);
+         }
+      });
+   }
+
+   /**
+    * Complete the TLS handshake over a connected channel and let an event loop from the group perform its I/O. The
+    * channel is closed if this fails.
+    *
+    * @param engine                 An engine in client mode, preferably created with the host and port to allow
+    *                               session reuse.
+    * @param handshakeTimeoutMillis The longest time the handshake may take.
+    */
+   public static NioTlsSocket connect(
+         NioEventLoopGroup eventLoopGroup,
+         SocketChannel channel,
+         SSLEngine engine,
+         long handshakeTimeoutMillis,
+         String protocolName)
+   throws IOException
+   {
+      try {
+         InboundBuffers inbound = new InboundBuffers(engine);
+         try {
+            handshake(channel, engine, inbound, handshakeTimeoutMillis);
+         } catch (IOException e) {
+            throw new IOException("Failed to initiate TLS handshake", e);
+         }
+         NioTlsSocket socket = new NioTlsSocket(
+               channel,
+               eventLoopGroup.next(),
+               protocolName,
+               engine,
+               inbound._netIn,
+               inbound._appIn);
+         socket.start();
+         return socket;
+      } catch (IOException | RuntimeException e) {
+         closeQuietly(channel);
+         throw e;
+      }
+   }
+
+   /**
+    * The inbound buffers of the handshake, which are handed over to the socket since they may already hold the start of
+    * the next record, or data that arrived with the last handshake message.
+    */
+   private static class InboundBuffers {
+
+      private ByteBuffer _netIn;
+      private ByteBuffer _appIn;
+
+      InboundBuffers(SSLEngine engine)
+      {
+         _netIn = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+         _appIn = ByteBuffer.allocate(engine.getSession().getApplicationBufferSize());
+      }
+   }
+
+   private static void handshake(
+         SocketChannel channel,
+         SSLEngine engine,
+         InboundBuffers inbound,
+         long timeoutMillis)
+   throws IOException
+   {
+      long deadline = System.currentTimeMillis() + timeoutMillis;
+      channel.configureBlocking(false);
+      try (Selector selector = Selector.open()) {
+         channel.register(selector, 0);
+         handshake(channel, engine, inbound, selector, deadline);
+      }
+   }
+
+   private static void handshake(
+         SocketChannel channel,
+         SSLEngine engine,
+         InboundBuffers inbound,
+         Selector selector,
+         long deadline)
+   throws IOException
+   {
+      ByteBuffer netOut = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+      engine.beginHandshake();
+      SSLEngineResult.HandshakeStatus status = engine.getHandshakeStatus();
+      while (status != SSLEngineResult.HandshakeStatus.FINISHED &&
+            status != SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING) {
+         switch (status) {
+            case NEED_WRAP: {
+               netOut.clear();
+               SSLEngineResult result = engine.wrap(EMPTY, netOut);
+               if (result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+                  netOut = enlarge(netOut, engine.getSession().getPacketBufferSize());
+                  break;
+               } else if (result.getStatus() == SSLEngineResult.Status.CLOSED) {
+                  throw new SSLException("Engine closed during handshake");
+               }
+               netOut.flip();
+               while (netOut.hasRemaining()) {
+                  if (channel.write(netOut) == 0) {
+                     await(channel, selector, SelectionKey.OP_WRITE, deadline);
+                  }
+               }
+               status = result.getHandshakeStatus();
+               break;
+            }
+            case NEED_UNWRAP:
+            case NEED_UNWRAP_AGAIN: {
+               inbound._netIn.flip();
+               SSLEngineResult result = engine.unwrap(inbound._netIn, inbound._appIn);
+               inbound._netIn.compact();
+               if (result.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW) {
+                  if (!inbound._netIn.hasRemaining()) {
+                     inbound._netIn = enlarge(inbound._netIn, engine.getSession().getPacketBufferSize());
+                  }
+                  int bytesRead = channel.read(inbound._netIn);
+                  if (bytesRead < 0) {
+                     throw new EOFException("Connection closed by peer during TLS handshake");
+                  } else if (bytesRead == 0) {
+                     await(channel, selector, SelectionKey.OP_READ, deadline);
+                  }
+               } else if (result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+                  inbound._appIn = enlarge(inbound._appIn, engine.getSession().getApplicationBufferSize());
+               } else if (result.getStatus() == SSLEngineResult.Status.CLOSED) {
+                  throw new SSLException("Engine closed during handshake");
+               }
+               status = engine.getHandshakeStatus();
+               break;
+            }
+            case NEED_TASK: {
+               runDelegatedTasks(engine);
+               status = engine.getHandshakeStatus();
+               break;
+            }
+            default:
+               throw new SSLException("Unexpected handshake status " + status);
+         }
+      }
+   }
+
+   /**
+    * Wait until the channel is ready for the operation, or throw if the deadline passes first.
+    */
+   private static void await(
+         SocketChannel channel,
+         Selector selector,
+         int operation,
+         long deadline)
+   throws IOException
+   {
+      long timeLeft = deadline - System.currentTimeMillis();
+      if (timeLeft <= 0) {
+         throw new SocketTimeoutException("TLS handshake timed out");
+      }
+      channel.keyFor(selector).interestOps(operation);
+      selector.select(timeLeft);
+      selector.selectedKeys().clear();
+   }
+
+   @Override
+   protected void processReadable()
+   throws IOException
+   {
+      if (!_netIn.hasRemaining()) {
+         _netIn = enlarge(_netIn, _engine.getSession().getPacketBufferSize());
+      }
+      int bytesRead = _channel.read(_netIn);
+      if (bytesRead < 0) {
+         fail(new EOFException("Connection closed by peer"));
+         return;
+      }
+      unwrapReceived();
+   }
+
+   private void unwrapReceived()
+   throws IOException
+   {
+      _netIn.flip();
+      try {
+         while (_netIn.hasRemaining()) {
+            SSLEngineResult result = _engine.unwrap(_netIn, _appIn);
+            switch (result.getStatus()) {
+               case BUFFER_UNDERFLOW:
+                  // Wait for the rest of the record.
+                  return;
+               case BUFFER_OVERFLOW:
+                  _appIn = enlarge(_appIn, _engine.getSession().getApplicationBufferSize());
+                  continue;
+               case CLOSED:
+                  fail(new EOFException("Connection closed by peer"));
+                  return;
+               case OK:
+                  break;
+            }
+            if (_appIn.position() > 0) {
+               _appIn.flip();
+               deliver(_appIn);
+               _appIn.clear();
+            }
+            handlePostHandshake(result.getHandshakeStatus());
+            if (result.bytesConsumed() == 0 && result.bytesProduced() == 0) {
+               return;
+            }
+         }
+      } finally {
+         _netIn.compact();
+      }
+   }
+
+   private void handlePostHandshake(SSLEngineResult.HandshakeStatus status)
+   throws IOException
+   {
+      // Messages such as key updates may require a response at any time.
+      while (true) {
+         if (status == SSLEngineResult.HandshakeStatus.NEED_TASK) {
+            runDelegatedTasks(_engine);
+         } else if (status == SSLEngineResult.HandshakeStatus.NEED_WRAP) {
+            _outboundLock.lock();
+            try {
+               wrap(EMPTY);
+            } finally {
+               _outboundLock.unlock();
+            }
+         } else {
+            return;
+         }
+         status = _engine.getHandshakeStatus();
+      }
+   }
+
+   @Override
+   @GuardedBy("_outboundLock")
+   protected void send(
+         byte[] bytes,
+         int offset,
+         int length)
+   throws IOException
+   {
+      send(new ByteBuffer[]{ByteBuffer.wrap(bytes, offset, length)}, 0, 1);
+   }
+
+   @Override
+   @GuardedBy("_outboundLock")
+   protected void send(
+         ByteBuffer[] buffers,
+         int offset,
+         int length)
+   throws IOException
+   {
+      // The engine fills each record from as many of the buffers as fit, so the parts are not copied together first.
+      while (hasRemaining(buffers, offset, length)) {
+         wrap(buffers, offset, length);
+      }
+   }
+
+   @GuardedBy("_outboundLock")
+   private void wrap(ByteBuffer data)
+   throws IOException
+   {
+      wrap(new ByteBuffer[]{data}, 0, 1);
+   }
+
+   @GuardedBy("_outboundLock")
+   private void wrap(
+         ByteBuffer[] buffers,
+         int offset,
+         int length)
+   throws IOException
+   {
+      while (true) {
+         _netOut.clear();
+         SSLEngineResult result = _engine.wrap(buffers, offset, length, _netOut);
+         if (result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+            _netOut = enlarge(_netOut, _engine.getSession().getPacketBufferSize());
+            continue;
+         } else if (result.getStatus() == SSLEngineResult.Status.CLOSED && result.bytesProduced() == 0) {
+            throw new SSLException("TLS engine is closed");
+         }
+         _netOut.flip();
+         writeOrQueue(_netOut);
+         if (result.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_TASK) {
+            runDelegatedTasks(_engine);
+         }
+         return;
+      }
+   }
+
+   @Override
+   protected void beforeClose()
+   {
+      _outboundLock.lock();
+      try {
+         try {
+            // Best effort close_notify.
+            _engine.closeOutbound();
+            wrap(EMPTY);
+         } catch (IOException ignored) {
+         }
+      } finally {
+         _outboundLock.unlock();
+      }
+   }
+
+   private static boolean hasRemaining(
+         ByteBuffer[] buffers,
+         int offset,
+         int length)
+   {
+      for (int i = offset; i < offset + length; i++) {
+         if (buffers[i].hasRemaining()) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   private static void runDelegatedTasks(SSLEngine engine)
+   {
+      Runnable task;
+      while ((task = engine.getDelegatedTask()) != null) {
+         task.run();
+      }
+   }
+
+   private static ByteBuffer enlarge(
+         ByteBuffer buffer,
+         int suggestedSize)
+   {
+      int newSize = Math.max(suggestedSize, buffer.capacity() * 2);
+      ByteBuffer larger = ByteBuffer.allocate(newSize);
+      buffer.flip();
+      larger.put(buffer);
+      return larger;
+   }
+}
@@ -0,0 +1,53 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.pitch.oss.fedpro.common.transport.nio;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Opens connections to Unix domain sockets.
+ * <p>
+ * This is the Java 11 version, which cannot open such connections. The multi-release jar contains a Java 16 version
+ * that can.
+ */
+public final class UnixDomainSockets {
+
+   private UnixDomainSockets()
+   {
+   }
+
+   /**
+    * @return true if the running JVM supports Unix domain socket channels.
+    */
+   public static boolean isSupported()
+   {
+      return false;
+   }
+
+   /**
+    * Open a connection to the Unix domain socket at the specified path, in blocking mode.
+    *
+    * @throws IOException If the connection could not be established, or Unix domain sockets are not supported.
+    */
+   public static SocketChannel openChannel(String path)
+   throws IOException
+   {
+      throw new IOException("Unix domain sockets require Java 16 or later");
+   }
+}
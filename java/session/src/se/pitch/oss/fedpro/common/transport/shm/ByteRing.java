@@ -0,0 +1,147 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.pitch.oss.fedpro.common.transport.shm;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A single-producer, single-consumer ring of bytes in a region of shared memory.
+ * <p>
+ * The region starts with a control block that holds the total number of bytes written and the total number of bytes
+ * read, each on its own cache line, followed by the data. The producer publishes data by storing the write position
+ * with release semantics after copying, and the consumer frees space the same way with the read position, so the two
+ * sides only need to agree on the layout.
+ * <p>
+ * Not thread-safe, there must be at most one producing and one consuming thread at a time.
+ */
+final class ByteRing {
+
+   static final int CONTROL_BLOCK_SIZE = 128;
+
+   private static final int WRITE_POSITION_OFFSET = 0;
+   private static final int READ_POSITION_OFFSET = 64;
+
+   private static final VarHandle LONG_VIEW =
+         MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+   private final ByteBuffer _region;
+   private final int _writePositionIndex;
+   private final int _readPositionIndex;
+   private final int _capacity;
+   private final int _mask;
+
+   // Separate views, so that the producer and the consumer do not share buffer positions.
+   private final ByteBuffer _producerData;
+   private final ByteBuffer _consumerData;
+
+   /**
+    * @param region   The shared memory, a direct buffer.
+    * @param offset   The start of the control block within the region, a multiple of 64.
+    * @param capacity The size of the data, a power of two.
+    */
+   ByteRing(
+         ByteBuffer region,
+         int offset,
+         int capacity)
+   {
+      _region = region;
+      _writePositionIndex = offset + WRITE_POSITION_OFFSET;
+      _readPositionIndex = offset + READ_POSITION_OFFSET;
+      _capacity = capacity;
+      _mask = capacity - 1;
+      ByteBuffer data = region.duplicate();
+      data.position(offset + CONTROL_BLOCK_SIZE);
+      data.limit(offset + CONTROL_BLOCK_SIZE + capacity);
+      _producerData = data.slice();
+      _consumerData = data.slice();
+   }
+
+   static int regionSize(int capacity)
+   {
+      return CONTROL_BLOCK_SIZE + capacity;
+   }
+
+   /**
+    * Copy as many bytes as there is space for into the ring.
+    *
+    * @return The number of bytes written, 0 if the ring is full.
+    */
+   int write(
+         byte[] bytes,
+         int offset,
+         int length)
+   {
+      long writePosition = (long) LONG_VIEW.getOpaque(_region, _writePositionIndex);
+      long readPosition = (long) LONG_VIEW.getAcquire(_region, _readPositionIndex);
+      int count = (int) Math.min(length, _capacity - (writePosition - readPosition));
+      if (count <= 0) {
+         return 0;
+      }
+      int index = (int) writePosition & _mask;
+      int firstPart = Math.min(count, _capacity - index);
+      _producerData.position(index);
+      _producerData.put(bytes, offset, firstPart);
+      if (firstPart < count) {
+         _producerData.position(0);
+         _producerData.put(bytes, offset + firstPart, count - firstPart);
+      }
+      LONG_VIEW.setRelease(_region, _writePositionIndex, writePosition + count);
+      return count;
+   }
+
+   /**
+    * Copy as many bytes as are available out of the ring.
+    *
+    * @return The number of bytes read, 0 if the ring is empty.
+    */
+   int read(
+         byte[] bytes,
+         int offset,
+         int length)
+   {
+      long readPosition = (long) LONG_VIEW.getOpaque(_region, _readPositionIndex);
+      long writePosition = (long) LONG_VIEW.getAcquire(_region, _writePositionIndex);
+      int count = (int) Math.min(length, writePosition - readPosition);
+      if (count <= 0) {
+         return 0;
+      }
+      int index = (int) readPosition & _mask;
+      int firstPart = Math.min(count, _capacity - index);
+      _consumerData.position(index);
+      _consumerData.get(bytes, offset, firstPart);
+      if (firstPart < count) {
+         _consumerData.position(0);
+         _consumerData.get(bytes, offset + firstPart, count - firstPart);
+      }
+      LONG_VIEW.setRelease(_region, _readPositionIndex, readPosition + count);
+      return count;
+   }
+
+   /**
+    * @return The number of bytes that can be read without waiting.
+    */
+   int available()
+   {
+      long readPosition = (long) LONG_VIEW.getOpaque(_region, _readPositionIndex);
+      long writePosition = (long) LONG_VIEW.getAcquire(_region, _writePositionIndex);
+      return (int) (writePosition - readPosition);
+   }
+}
@@ -0,0 +1,96 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.pitch.oss.fedpro.common.transport.shm;
+
+import se.pitch.oss.fedpro.common.transport.FedProSocket;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Accepts {@link ShmSocket} connections that clients offer in a directory, usually one under /dev/shm.
+ * <p>
+ * Meant for a server in the same process as the client, such as in tests, or in a process on the same host.
+ */
+public class ShmServerSocket implements Closeable {
+
+   private static final long POLL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+   private final Path _directory;
+   private final String _protocolName;
+
+   private volatile boolean _isClosed = false;
+
+   /**
+    * @param directory The directory to accept connections in, created if it does not exist.
+    */
+   public ShmServerSocket(
+         Path directory,
+         String protocolName)
+   throws IOException
+   {
+      _directory = Files.createDirectories(directory);
+      _protocolName = protocolName;
+   }
+
+   public Path getDirectory()
+   {
+      return _directory;
+   }
+
+   /**
+    * Wait for a client to offer a connection, and accept it.
+    *
+    * @throws SocketException If this server socket is closed.
+    */
+   public FedProSocket accept()
+   throws IOException
+   {
+      while (!_isClosed) {
+         try (DirectoryStream<Path> offers = Files.newDirectoryStream(
+               _directory,
+               "*" + ShmSocket.CONNECTION_FILE_SUFFIX)) {
+            for (Path offer : offers) {
+               ShmSocket socket = ShmSocket.accept(offer, _protocolName);
+               if (socket != null) {
+                  return socket;
+               }
+            }
+         }
+         if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Interrupted while waiting for a connection");
+         }
+         // Listing the directory is a system call, so this does not spin.
+         LockSupport.parkNanos(POLL_INTERVAL_NANOS);
+      }
+      throw new SocketException("Server socket closed");
+   }
+
+   @Override
+   public void close()
+   {
+      _isClosed = true;
+   }
+}
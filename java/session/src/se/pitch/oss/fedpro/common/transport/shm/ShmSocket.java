@@ -0,0 +1,417 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.pitch.oss.fedpro.common.transport.shm;
+
+import se.pitch.oss.fedpro.common.transport.FedProSocket;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.net.ConnectException;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A connection between two processes on the same host, through a pair of {@link ByteRing}s in a memory-mapped file.
+ * <p>
+ * The client creates the file in a directory that the server watches, see {@link ShmServerSocket}, and waits for the
+ * server to accept it. The file is deleted once both sides have mapped it, and the memory is released when both
+ * mappings have been garbage collected.
+ * <p>
+ * Neither side can wake up the other, so a blocked read or write waits by polling, see {@link SpinThenPark}. A peer
+ * that exits without closing the connection is not detected, it is left to the session timeouts.
+ */
+public class ShmSocket implements FedProSocket {
+
+   static final String CONNECTION_FILE_SUFFIX = ".fedpro";
+
+   private static final String OFFER_FILE_PREFIX = "connection-";
+   private static final String OFFER_FILE_SUFFIX = ".tmp";
+
+   // File layout: a header, the ring from client to server and the ring from server to client.
+   private static final int MAGIC = 0x46505348;
+   private static final int VERSION = 1;
+   private static final int MAGIC_OFFSET = 0;
+   private static final int VERSION_OFFSET = 4;
+   private static final int CAPACITY_OFFSET = 8;
+   private static final int STATE_OFFSET = 12;
+   private static final int CLIENT_CLOSED_OFFSET = 16;
+   private static final int SERVER_CLOSED_OFFSET = 20;
+   private static final int HEADER_SIZE = 64;
+
+   private static final int STATE_OFFERED = 1;
+   private static final int STATE_ACCEPTED = 2;
+   private static final int STATE_ABANDONED = 3;
+
+   private static final int MIN_RING_CAPACITY = 4 * 1024;
+   private static final int MAX_RING_CAPACITY = 256 * 1024 * 1024;
+
+   private static final VarHandle INT_VIEW = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+   private final MappedByteBuffer _mapping;
+   private final ByteRing _inbound;
+   private final ByteRing _outbound;
+   private final int _ownClosedOffset;
+   private final int _peerClosedOffset;
+   private final String _protocolName;
+
+   // Serialize callers on each side, since a ring has a single producer and a single consumer. Locks rather than
+   // monitors, since the holder parks while polling, and a virtual thread parked in a monitor pins its carrier thread.
+   private final ReentrantLock _readLock = new ReentrantLock();
+   private final ReentrantLock _writeLock = new ReentrantLock();
+
+   private final InputStream _inputStream = new ShmInputStream();
+   private final OutputStream _outputStream = new ShmOutputStream();
+
+   private volatile boolean _isClosed = false;
+   private volatile int _soTimeoutMillis = 0;
+
+   private ShmSocket(
+         MappedByteBuffer mapping,
+         int capacity,
+         boolean isServer,
+         String protocolName)
+   {
+      _mapping = mapping;
+      ByteRing clientToServer = new ByteRing(mapping, HEADER_SIZE, capacity);
+      ByteRing serverToClient = new ByteRing(mapping, HEADER_SIZE + ByteRing.regionSize(capacity), capacity);
+      _inbound = isServer ? clientToServer : serverToClient;
+      _outbound = isServer ? serverToClient : clientToServer;
+      _ownClosedOffset = isServer ? SERVER_CLOSED_OFFSET : CLIENT_CLOSED_OFFSET;
+      _peerClosedOffset = isServer ? CLIENT_CLOSED_OFFSET : SERVER_CLOSED_OFFSET;
+      _protocolName = protocolName;
+   }
+
+   /**
+    * Offer a connection to the server that watches the directory, and wait until it has been accepted.
+    *
+    * @param ringCapacity        The number of bytes that each direction can hold, rounded up to a power of two.
+    * @param acceptTimeoutMillis The time to wait for the server to accept the connection.
+    * @throws ConnectException If the directory does not exist, or no server accepted the connection in time.
+    */
+   public static ShmSocket connect(
+         Path directory,
+         int ringCapacity,
+         long acceptTimeoutMillis,
+         String protocolName)
+   throws IOException
+   {
+      if (!Files.isDirectory(directory)) {
+         throw new ConnectException("No shared memory directory " + directory);
+      }
+      int capacity = ringCapacity(ringCapacity);
+      Path offer = Files.createTempFile(directory, OFFER_FILE_PREFIX, OFFER_FILE_SUFFIX);
+      try {
+         MappedByteBuffer mapping;
+         try (RandomAccessFile file = new RandomAccessFile(offer.toFile(), "rw")) {
+            long size = fileSize(capacity);
+            file.setLength(size);
+            mapping = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+         }
+         mapping.order(ByteOrder.nativeOrder());
+         mapping.putInt(MAGIC_OFFSET, MAGIC);
+         mapping.putInt(VERSION_OFFSET, VERSION);
+         mapping.putInt(CAPACITY_OFFSET, capacity);
+         INT_VIEW.setRelease(mapping, STATE_OFFSET, STATE_OFFERED);
+
+         // The server only looks at complete files.
+         String offerName = offer.getFileName().toString();
+         Path connection = offer.resolveSibling(
+               offerName.substring(0, offerName.length() - OFFER_FILE_SUFFIX.length()) + CONNECTION_FILE_SUFFIX);
+         Files.move(offer, connection, StandardCopyOption.ATOMIC_MOVE);
+         offer = connection;
+
+         awaitAccepted(mapping, directory, acceptTimeoutMillis);
+         return new ShmSocket(mapping, capacity, false, protocolName);
+      } finally {
+         Files.deleteIfExists(offer);
+      }
+   }
+
+   private static void awaitAccepted(
+         MappedByteBuffer mapping,
+         Path directory,
+         long acceptTimeoutMillis)
+   throws IOException
+   {
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(acceptTimeoutMillis);
+      SpinThenPark waiter = new SpinThenPark();
+      while ((int) INT_VIEW.getAcquire(mapping, STATE_OFFSET) != STATE_ACCEPTED) {
+         if (Thread.currentThread().isInterrupted()) {
+            if (INT_VIEW.compareAndSet(mapping, STATE_OFFSET, STATE_OFFERED, STATE_ABANDONED)) {
+               throw new InterruptedIOException("Interrupted while waiting for the server to accept");
+            }
+         } else if (System.nanoTime() - deadline >= 0) {
+            if (INT_VIEW.compareAndSet(mapping, STATE_OFFSET, STATE_OFFERED, STATE_ABANDONED)) {
+               throw new ConnectException("No FedPro server accepted the connection in " + directory);
+            }
+         } else {
+            waiter.idle();
+         }
+      }
+   }
+
+   /**
+    * Accept a connection that a client has offered.
+    *
+    * @return The server side of the connection, or null if the client has given up, or the file is not an offer.
+    */
+   static ShmSocket accept(
+         Path connection,
+         String protocolName)
+   throws IOException
+   {
+      MappedByteBuffer mapping;
+      try (FileChannel channel = FileChannel.open(connection, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+         long size = channel.size();
+         if (size < HEADER_SIZE) {
+            return null;
+         }
+         mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      } catch (NoSuchFileException e) {
+         return null;
+      }
+      mapping.order(ByteOrder.nativeOrder());
+      int capacity = mapping.getInt(CAPACITY_OFFSET);
+      if (mapping.getInt(MAGIC_OFFSET) != MAGIC ||
+            mapping.getInt(VERSION_OFFSET) != VERSION ||
+            capacity != ringCapacity(capacity) ||
+            mapping.capacity() != fileSize(capacity)) {
+         return null;
+      }
+      boolean isAccepted = INT_VIEW.compareAndSet(mapping, STATE_OFFSET, STATE_OFFERED, STATE_ACCEPTED);
+      Files.deleteIfExists(connection);
+      return isAccepted ? new ShmSocket(mapping, capacity, true, protocolName) : null;
+   }
+
+   private static int ringCapacity(int requested)
+   {
+      int capacity = Math.max(MIN_RING_CAPACITY, Math.min(MAX_RING_CAPACITY, requested));
+      return Integer.highestOneBit(capacity - 1) << 1;
+   }
+
+   private static long fileSize(int capacity)
+   {
+      return HEADER_SIZE + 2L * ByteRing.regionSize(capacity);
+   }
+
+   @Override
+   public InputStream getInputStream()
+   {
+      return _inputStream;
+   }
+
+   @Override
+   public OutputStream getOutputStream()
+   {
+      return _outputStream;
+   }
+
+   @Override
+   public void close()
+   {
+      if (!_isClosed) {
+         _isClosed = true;
+         INT_VIEW.setRelease(_mapping, _ownClosedOffset, 1);
+      }
+   }
+
+   @Override
+   public SocketAddress getRemoteSocketAddress()
+   {
+      // Not a network connection.
+      return null;
+   }
+
+   @Override
+   public void setTcpNoDelay(boolean flag)
+   {
+      // No-op, written bytes are visible to the peer at once.
+   }
+
+   @Override
+   public void setSoTimeout(int socketTimeout)
+   {
+      _soTimeoutMillis = socketTimeout;
+   }
+
+   @Override
+   public int getSoTimeout()
+   {
+      return _soTimeoutMillis;
+   }
+
+   @Override
+   public String getProtocolName()
+   {
+      return _protocolName;
+   }
+
+   private boolean isPeerClosed()
+   {
+      return (int) INT_VIEW.getAcquire(_mapping, _peerClosedOffset) != 0;
+   }
+
+   private int read(
+         byte[] bytes,
+         int offset,
+         int length)
+   throws IOException
+   {
+      if (length == 0) {
+         return 0;
+      }
+      _readLock.lock();
+      try {
+         int soTimeoutMillis = _soTimeoutMillis;
+         long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(soTimeoutMillis);
+         SpinThenPark waiter = new SpinThenPark();
+         while (true) {
+            if (_isClosed) {
+               throw new SocketException("Socket closed");
+            }
+            int bytesRead = _inbound.read(bytes, offset, length);
+            if (bytesRead > 0) {
+               return bytesRead;
+            }
+            if (isPeerClosed()) {
+               // The peer may have written more right before closing.
+               bytesRead = _inbound.read(bytes, offset, length);
+               return bytesRead > 0 ? bytesRead : -1;
+            }
+            if (Thread.currentThread().isInterrupted()) {
+               throw new InterruptedIOException("Interrupted while waiting for data");
+            }
+            if (soTimeoutMillis > 0 && System.nanoTime() - deadline >= 0) {
+               throw new SocketTimeoutException("Read timed out");
+            }
+            waiter.idle();
+         }
+      } finally {
+         _readLock.unlock();
+      }
+   }
+
+   private void write(
+         byte[] bytes,
+         int offset,
+         int length)
+   throws IOException
+   {
+      _writeLock.lock();
+      try {
+         SpinThenPark waiter = new SpinThenPark();
+         while (length > 0) {
+            if (_isClosed) {
+               throw new SocketException("Socket closed");
+            }
+            if (isPeerClosed()) {
+               throw new SocketException("Connection closed by peer");
+            }
+            int bytesWritten = _outbound.write(bytes, offset, length);
+            if (bytesWritten > 0) {
+               offset += bytesWritten;
+               length -= bytesWritten;
+               waiter = new SpinThenPark();
+               continue;
+            }
+            if (Thread.currentThread().isInterrupted()) {
+               throw new InterruptedIOException("Interrupted while waiting for the peer to read");
+            }
+            waiter.idle();
+         }
+      } finally {
+         _writeLock.unlock();
+      }
+   }
+
+   private class ShmInputStream extends InputStream {
+
+      @Override
+      public int read()
+      throws IOException
+      {
+         byte[] single = new byte[1];
+         int bytesRead = ShmSocket.this.read(single, 0, 1);
+         return bytesRead < 0 ? -1 : single[0] & 0xFF;
+      }
+
+      @Override
+      public int read(
+            byte[] b,
+            int off,
+            int len)
+      throws IOException
+      {
+         return ShmSocket.this.read(b, off, len);
+      }
+
+      @Override
+      public int available()
+      {
+         return _inbound.available();
+      }
+
+      @Override
+      public void close()
+      {
+         ShmSocket.this.close();
+      }
+   }
+
+   private class ShmOutputStream extends OutputStream {
+
+      @Override
+      public void write(int b)
+      throws IOException
+      {
+         ShmSocket.this.write(new byte[]{(byte) b}, 0, 1);
+      }
+
+      @Override
+      public void write(
+            byte[] b,
+            int off,
+            int len)
+      throws IOException
+      {
+         ShmSocket.this.write(b, off, len);
+      }
+
+      @Override
+      public void close()
+      {
+         ShmSocket.this.close();
+      }
+   }
+}
@@ -0,0 +1,54 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.pitch.oss.fedpro.common.transport.shm;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Waits for the other side of shared memory, which cannot notify this process, by polling.
+ * <p>
+ * The first rounds busy-spin, which catches a response to a synchronous call within microseconds. After that the
+ * thread yields, and finally parks for times that grow up to a millisecond, so that an idle connection costs little
+ * CPU.
+ */
+final class SpinThenPark {
+
+   private static final int SPIN_ROUNDS = 10_000;
+   private static final int YIELD_ROUNDS = 100;
+   private static final long MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+   private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+   private int _rounds = 0;
+
+   /**
+    * Wait a little, longer the more rounds have passed since this instance was created.
+    */
+   void idle()
+   {
+      int rounds = _rounds++;
+      if (rounds < SPIN_ROUNDS) {
+         Thread.onSpinWait();
+      } else if (rounds < SPIN_ROUNDS + YIELD_ROUNDS) {
+         Thread.yield();
+      } else {
+         int parks = Math.min(rounds - SPIN_ROUNDS - YIELD_ROUNDS, 16);
+         LockSupport.parkNanos(Math.min(MAX_PARK_NANOS, MIN_PARK_NANOS << parks));
+      }
+   }
+}
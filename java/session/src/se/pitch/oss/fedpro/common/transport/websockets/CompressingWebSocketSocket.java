@@ -0,0 +1,51 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.pitch.oss.fedpro.common.transport.websockets;
+
+import se.pitch.oss.fedpro.common.transport.CompressingSocket;
+
+/**
+ * A {@link WebSocketSocket} over a connection that has offered the permessage-deflate extension. The counters stay at
+ * zero if the peer did not accept it.
+ */
+public class CompressingWebSocketSocket extends WebSocketSocket implements CompressingSocket {
+
+   private final CountingPerMessageDeflateExtension _extension;
+
+   public CompressingWebSocketSocket(
+         WebSocketSender webSocketSender,
+         String protocolName,
+         int frameMaxBytes,
+         CountingPerMessageDeflateExtension extension)
+   {
+      super(webSocketSender, protocolName, frameMaxBytes);
+      _extension = extension;
+   }
+
+   @Override
+   public long getUncompressedBytes()
+   {
+      return _extension.getUncompressedBytes();
+   }
+
+   @Override
+   public long getCompressedBytes()
+   {
+      return _extension.getCompressedBytes();
+   }
+}
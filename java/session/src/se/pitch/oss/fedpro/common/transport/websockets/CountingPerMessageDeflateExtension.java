@@ -0,0 +1,105 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.pitch.oss.fedpro.common.transport.websockets;
+
+import org.java_websocket.exceptions.InvalidDataException;
+import org.java_websocket.extensions.IExtension;
+import org.java_websocket.extensions.permessage_deflate.PerMessageDeflateExtension;
+import org.java_websocket.framing.DataFrame;
+import org.java_websocket.framing.Framedata;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A permessage-deflate extension that counts the payload bytes of data frames before and after compression.
+ * <p>
+ * The WebSocket library works on copies of the extension, see {@link #copyInstance()}. All copies share the counters
+ * of the instance they were copied from.
+ */
+public class CountingPerMessageDeflateExtension extends PerMessageDeflateExtension {
+
+   private final AtomicLong _uncompressedBytes;
+   private final AtomicLong _compressedBytes;
+
+   public CountingPerMessageDeflateExtension(int compressionLevel, int threshold)
+   {
+      this(compressionLevel, threshold, new AtomicLong(), new AtomicLong());
+   }
+
+   private CountingPerMessageDeflateExtension(
+         int compressionLevel,
+         int threshold,
+         AtomicLong uncompressedBytes,
+         AtomicLong compressedBytes)
+   {
+      super(compressionLevel);
+      setThreshold(threshold);
+      _uncompressedBytes = uncompressedBytes;
+      _compressedBytes = compressedBytes;
+   }
+
+   public long getUncompressedBytes()
+   {
+      return _uncompressedBytes.get();
+   }
+
+   public long getCompressedBytes()
+   {
+      return _compressedBytes.get();
+   }
+
+   @Override
+   public void encodeFrame(Framedata inputFrame)
+   {
+      if (!(inputFrame instanceof DataFrame)) {
+         super.encodeFrame(inputFrame);
+         return;
+      }
+      int uncompressedSize = inputFrame.getPayloadData().remaining();
+      super.encodeFrame(inputFrame);
+      _uncompressedBytes.addAndGet(uncompressedSize);
+      _compressedBytes.addAndGet(inputFrame.getPayloadData().remaining());
+   }
+
+   @Override
+   public void decodeFrame(Framedata inputFrame)
+   throws InvalidDataException
+   {
+      if (!(inputFrame instanceof DataFrame)) {
+         super.decodeFrame(inputFrame);
+         return;
+      }
+      int compressedSize = inputFrame.getPayloadData().remaining();
+      super.decodeFrame(inputFrame);
+      _compressedBytes.addAndGet(compressedSize);
+      _uncompressedBytes.addAndGet(inputFrame.getPayloadData().remaining());
+   }
+
+   @Override
+   public IExtension copyInstance()
+   {
+      CountingPerMessageDeflateExtension copy = new CountingPerMessageDeflateExtension(
+            getCompressionLevel(),
+            getThreshold(),
+            _uncompressedBytes,
+            _compressedBytes);
+      copy.setClientNoContextTakeover(isClientNoContextTakeover());
+      copy.setServerNoContextTakeover(isServerNoContextTakeover());
+      return copy;
+   }
+}
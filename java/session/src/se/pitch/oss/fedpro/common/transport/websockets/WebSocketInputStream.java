@@ -16,61 +16,90 @@
 
 package se.pitch.oss.fedpro.common.transport.websockets;
 
-import net.jcip.annotations.GuardedBy;
+import se.pitch.oss.fedpro.common.transport.FrameReader;
 
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
-import java.util.LinkedList;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Received WebSocket messages, added by the WebSocket thread and read by a single reader thread.
+ * <p>
+ * Frames are handed over through a non-blocking queue. The reader only parks when the queue is empty, so reading does
+ * not take a lock, and {@link #readFrame()} lets the reader take a whole frame at a time.
+ */
+public class WebSocketInputStream extends InputStream implements FrameReader {
 
-public class WebSocketInputStream extends InputStream {
-
-   private final Queue<ReadableByteBuffer> _inputStreams = new LinkedList<>();
+   private final Queue<ByteBuffer> _frames = new ConcurrentLinkedQueue<>();
+   private volatile Thread _waitingReader;
+   private volatile boolean _isClosed = false;
 
-   @GuardedBy("_inputStreams")
-   private boolean _isClosed = false;
+   // Only accessed by the reader thread.
+   private ByteBuffer _current;
 
    public void add(ByteBuffer byteBuffer)
    {
-      synchronized (_inputStreams) {
-         _inputStreams.add(new ReadableByteBuffer(byteBuffer));
-         _inputStreams.notifyAll();
+      _frames.add(byteBuffer);
+      Thread waitingReader = _waitingReader;
+      if (waitingReader != null) {
+         LockSupport.unpark(waitingReader);
       }
    }
 
-   @GuardedBy("_inputStreams")
-   private ReadableByteBuffer peekNextStream()
+   @Override
+   public ByteBuffer readFrame()
    throws IOException
    {
-      if (_isClosed) {
-         throw new EOFException("Closed");
+      ByteBuffer frame = _current;
+      _current = null;
+      if (frame != null && frame.hasRemaining()) {
+         return frame;
       }
-      ReadableByteBuffer stream;
-      while ((stream = _inputStreams.peek()) == null) {
-         try {
-            _inputStreams.wait();
-         } catch (InterruptedException ignore) {
-         }
+      return takeFrame();
+   }
+
+   private ByteBuffer takeFrame()
+   throws IOException
+   {
+      while (true) {
          if (_isClosed) {
             throw new EOFException("Closed");
          }
+         ByteBuffer frame = _frames.poll();
+         if (frame != null) {
+            return frame;
+         }
+         _waitingReader = Thread.currentThread();
+         // Check again, a frame may have been added before the producer could see the waiting reader.
+         if (_frames.isEmpty() && !_isClosed) {
+            LockSupport.park(this);
+         }
+         _waitingReader = null;
+         if (Thread.interrupted()) {
+            throw new InterruptedIOException("Interrupted while waiting for data");
+         }
       }
-      return stream;
+   }
+
+   private ByteBuffer currentFrame()
+   throws IOException
+   {
+      while (_current == null || !_current.hasRemaining()) {
+         _current = takeFrame();
+      }
+      return _current;
    }
 
    @Override
    public int read()
    throws IOException
    {
-      synchronized (_inputStreams) {
-         int returnValue = peekNextStream().read();
-         if (returnValue == -1) {
-            _inputStreams.remove();
-         }
-         return returnValue;
-      }
+      return currentFrame().get() & 0xFF;
    }
 
    @Override
@@ -80,13 +109,20 @@ public class WebSocketInputStream extends InputStream {
          int len)
    throws IOException
    {
-      synchronized (_inputStreams) {
-         int returnValue = peekNextStream().read(b, off, len);
-         if (returnValue == -1) {
-            _inputStreams.remove();
-         }
-         return returnValue;
+      if (len == 0) {
+         return 0;
       }
+      ByteBuffer frame = currentFrame();
+      int bytesRead = Math.min(len, frame.remaining());
+      frame.get(b, off, bytesRead);
+      return bytesRead;
+   }
+
+   @Override
+   public int available()
+   {
+      ByteBuffer frame = _current;
+      return frame != null ? frame.remaining() : 0;
    }
 
    @Override
@@ -94,41 +130,10 @@ public class WebSocketInputStream extends InputStream {
    throws IOException
    {
       super.close();
-      synchronized (_inputStreams) {
-         _isClosed = true;
-         _inputStreams.notifyAll();
-      }
-   }
-
-   private static class ReadableByteBuffer {
-
-      private final ByteBuffer _buf;
-
-      public ReadableByteBuffer(ByteBuffer buf)
-      {
-         _buf = buf;
-      }
-
-      public int read()
-      {
-         if (!_buf.hasRemaining()) {
-            return -1;
-         }
-         return _buf.get() & 0xFF;
-      }
-
-      public int read(
-            byte[] bytes,
-            int off,
-            int len)
-      {
-         if (!_buf.hasRemaining()) {
-            return -1;
-         }
-
-         len = Math.min(len, _buf.remaining());
-         _buf.get(bytes, off, len);
-         return len;
+      _isClosed = true;
+      Thread waitingReader = _waitingReader;
+      if (waitingReader != null) {
+         LockSupport.unpark(waitingReader);
       }
    }
 }
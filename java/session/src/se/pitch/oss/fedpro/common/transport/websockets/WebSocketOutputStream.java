@@ -22,6 +22,7 @@ import org.java_websocket.exceptions.WebsocketNotConnectedException;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -60,6 +61,20 @@ public class WebSocketOutputStream extends OutputStream {
       }
    }
 
+   @Override
+   public void write(
+         byte[] b,
+         int off,
+         int len)
+   throws IOException
+   {
+      if (off == 0 && len == b.length) {
+         write(b);
+      } else {
+         write(Arrays.copyOfRange(b, off, off + len));
+      }
+   }
+
    @Override
    public void close()
    throws IOException
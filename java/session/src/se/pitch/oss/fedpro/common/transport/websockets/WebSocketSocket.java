@@ -16,7 +16,7 @@
 
 package se.pitch.oss.fedpro.common.transport.websockets;
 
-import se.pitch.oss.fedpro.common.transport.FedProSocket;
+import se.pitch.oss.fedpro.common.transport.GatheringSocket;
 import org.java_websocket.WebSocket;
 
 import java.io.IOException;
@@ -24,31 +24,58 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.nio.ByteBuffer;
 
-public class WebSocketSocket implements FedProSocket {
+/**
+ * A socket over a WebSocket connection, where every write is sent as one binary frame.
+ * <p>
+ * Writing several buffers at once, see {@link #write(ByteBuffer[], int, int)}, packs them into a single frame. Since
+ * the FedPro stream is self-delimiting, the peer does not need the messages to be in separate frames.
+ */
+public class WebSocketSocket implements GatheringSocket {
 
    protected final WebSocketSender _webSocketSender;
    private final WebSocket _webSocket;
    private final InputStream _inputStream;
-   private final OutputStream _outputStream;
+   private final WebSocketOutputStream _outputStream;
    private InetSocketAddress _remoteSocketAddress;
    private final String _protocolName;
+   private final int _frameMaxBytes;
 
    public WebSocketSocket(WebSocketSender webSocketSender, String protocolName)
    {
       this(webSocketSender, null, protocolName);
    }
 
+   /**
+    * @param frameMaxBytes The size up to which writers should pack messages that are ready to be sent into one frame.
+    *                      0 for one frame per message, unless the writer batches writes anyway.
+    */
+   public WebSocketSocket(WebSocketSender webSocketSender, String protocolName, int frameMaxBytes)
+   {
+      this(webSocketSender, null, protocolName, frameMaxBytes);
+   }
+
    public WebSocketSocket(
          WebSocketSender webSocketSender,
          WebSocket webSocket,
          String protocolName)
+   {
+      this(webSocketSender, webSocket, protocolName, 0);
+   }
+
+   public WebSocketSocket(
+         WebSocketSender webSocketSender,
+         WebSocket webSocket,
+         String protocolName,
+         int frameMaxBytes)
    {
       _webSocketSender = webSocketSender;
       _webSocket = webSocket;
       _inputStream = _webSocketSender.getInputStream(webSocket);
       _outputStream = new WebSocketOutputStream(_webSocketSender, webSocket);
       _protocolName = protocolName;
+      _frameMaxBytes = frameMaxBytes;
    }
 
    @Override
@@ -65,6 +92,34 @@ public class WebSocketSocket implements FedProSocket {
       return _outputStream;
    }
 
+   @Override
+   public void write(
+         ByteBuffer[] buffers,
+         int offset,
+         int length)
+   throws IOException
+   {
+      int frameSize = 0;
+      for (int i = offset; i < offset + length; i++) {
+         frameSize += buffers[i].remaining();
+      }
+      // The frame is handed over to the WebSocket library, so it cannot be a reused buffer.
+      byte[] frame = new byte[frameSize];
+      int position = 0;
+      for (int i = offset; i < offset + length; i++) {
+         int remaining = buffers[i].remaining();
+         buffers[i].get(frame, position, remaining);
+         position += remaining;
+      }
+      _outputStream.write(frame);
+   }
+
+   @Override
+   public int preferredBatchMaxBytes()
+   {
+      return _frameMaxBytes;
+   }
+
    @Override
    public SocketAddress getRemoteSocketAddress()
    {
@@ -0,0 +1,81 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.pitch.oss.fedpro.client;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestBackoffResumeStrategy {
+
+   @Test
+   public void delayIsBetweenHalfAndWholeOfInitialDelay_When_JustDisconnected()
+   {
+      // Given
+      BackoffResumeStrategy strategy = new BackoffResumeStrategy(100, 5_000, 60_000);
+
+      for (int i = 0; i < 100; i++) {
+         // When
+         long delay = strategy.getRetryDelay(0);
+
+         // Then
+         assertTrue(delay >= 50 && delay <= 100);
+      }
+   }
+
+   @Test
+   public void delayGrowsWithTimeSinceDisconnect_When_BelowMaximum()
+   {
+      // Given
+      BackoffResumeStrategy strategy = new BackoffResumeStrategy(100, 5_000, 60_000);
+
+      for (int i = 0; i < 100; i++) {
+         // When
+         long delay = strategy.getRetryDelay(1_000);
+
+         // Then
+         assertTrue(delay >= 500 && delay <= 1_000);
+      }
+   }
+
+   @Test
+   public void delayIsLimited_When_LongTimeSinceDisconnect()
+   {
+      // Given
+      BackoffResumeStrategy strategy = new BackoffResumeStrategy(100, 5_000, 60_000);
+
+      for (int i = 0; i < 100; i++) {
+         // When
+         long delay = strategy.getRetryDelay(50_000);
+
+         // Then
+         assertTrue(delay >= 2_500 && delay <= 5_000);
+      }
+   }
+
+   @Test
+   public void retriesStop_When_LimitIsReached()
+   {
+      // Given
+      BackoffResumeStrategy strategy = new BackoffResumeStrategy(100, 5_000, 60_000);
+
+      // Then
+      assertTrue(strategy.shouldRetry(59_999));
+      assertFalse(strategy.shouldRetry(60_000));
+   }
+}
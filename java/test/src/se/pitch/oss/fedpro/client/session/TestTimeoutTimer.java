@@ -101,4 +101,45 @@ public class TestTimeoutTimer {
       }
    }
 
+   @Test
+   public void lazyTimerDoesNotExpireEarly_When_Extended()
+   throws InterruptedException
+   {
+      // Given
+      long timeoutDurationMs = 200;
+      CountDownLatch ding = new CountDownLatch(1);
+      TimeoutTimer timer = TimeoutTimer.createLazyTimeoutTimer("placeholder", timeoutDurationMs);
+      long startNanos = System.nanoTime();
+      timer.start(ding::countDown);
+
+      // When
+      Thread.sleep(100);
+      timer.extend();
+
+      // Then
+      assertTrue(ding.await(timeoutDurationMs + 1000, TimeUnit.MILLISECONDS));
+      assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) >= 100 + timeoutDurationMs);
+      timer.cancel();
+   }
+
+   @Test
+   public void timerExpiresAgain_When_ExtendedAfterExpiring()
+   throws InterruptedException
+   {
+      // Given
+      long timeoutDurationMs = 20;
+      CountDownLatch ding = new CountDownLatch(2);
+      TimeoutTimer timer = TimeoutTimer.createEagerTimeoutTimer("placeholder", timeoutDurationMs);
+      timer.start(ding::countDown);
+      while (ding.getCount() == 2) {
+         Thread.sleep(1);
+      }
+
+      // When
+      timer.extend();
+
+      // Then
+      assertTrue(ding.await(timeoutDurationMs + 1000, TimeUnit.MILLISECONDS));
+      timer.cancel();
+   }
 }
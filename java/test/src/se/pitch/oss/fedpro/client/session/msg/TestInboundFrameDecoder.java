@@ -0,0 +1,184 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.pitch.oss.fedpro.client.session.msg;
+
+import org.junit.Test;
+import se.pitch.oss.fedpro.common.exceptions.BadMessage;
+import se.pitch.oss.fedpro.common.session.MessageType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class TestInboundFrameDecoder {
+
+   @Test
+   public void allMessagesAreDecoded_When_StreamDeliversFewBytesAtATime()
+   throws Exception
+   {
+      // Given a stream that returns at most 5 bytes per read, and a buffer smaller than the second message
+      byte[] payload = new byte[100];
+      for (int i = 0; i < payload.length; i++) {
+         payload[i] = (byte) i;
+      }
+      ByteArrayOutputStream stream = new ByteArrayOutputStream();
+      stream.write(encode(1, MessageType.CTRL_HEARTBEAT_RESPONSE, new byte[4]));
+      stream.write(encode(2, MessageType.HLA_CALLBACK_REQUEST, payload));
+      InputStream inputStream = new ByteArrayInputStream(stream.toByteArray()) {
+         @Override
+         public synchronized int read(byte[] b, int off, int len)
+         {
+            return super.read(b, off, Math.min(len, 5));
+         }
+      };
+      InboundFrameDecoder decoder = new InboundFrameDecoder(MessageHeader.SIZE);
+
+      // When
+      nextMessage(decoder, inputStream);
+
+      // Then
+      assertEquals(1, decoder.sequenceNumber());
+      assertEquals(42, decoder.sessionId());
+      assertEquals(MessageType.CTRL_HEARTBEAT_RESPONSE, decoder.messageType());
+      assertEquals(4, decoder.payloadSize());
+
+      nextMessage(decoder, inputStream);
+      assertEquals(2, decoder.sequenceNumber());
+      assertEquals(MessageType.HLA_CALLBACK_REQUEST, decoder.messageType());
+      assertArrayEquals(payload, decoder.payloadStream().readAllBytes());
+
+      assertFalse(decoder.next());
+      assertEquals(-1, decoder.fill(inputStream));
+   }
+
+   @Test
+   public void messagesAreDecoded_When_AppendedInChunksAcrossBoundaries()
+   throws Exception
+   {
+      // Given
+      byte[] first = encode(7, MessageType.CTRL_HEARTBEAT_RESPONSE, new byte[]{0, 0, 0, 3});
+      byte[] second = encode(8, MessageType.CTRL_SESSION_TERMINATED, new byte[0]);
+      ByteBuffer data = ByteBuffer.allocate(first.length + second.length).put(first).put(second).flip();
+      InboundFrameDecoder decoder = new InboundFrameDecoder(16);
+
+      // When the data is split in the middle of the first header and the second header
+      decoder.append(data.duplicate().limit(10));
+      assertFalse(decoder.next());
+      decoder.append(data.duplicate().position(10).limit(first.length + 3));
+
+      // Then
+      assertTrue(decoder.next());
+      assertEquals(7, decoder.sequenceNumber());
+      assertEquals(3, HeartbeatResponseMessage.decode(decoder.payloadStream()).responseToSequenceNumber);
+      assertFalse(decoder.next());
+
+      decoder.append(data.duplicate().position(first.length + 3));
+      assertTrue(decoder.next());
+      assertEquals(8, decoder.sequenceNumber());
+      assertEquals(MessageType.CTRL_SESSION_TERMINATED, decoder.messageType());
+      assertFalse(decoder.next());
+   }
+
+   @Test
+   public void incompleteMessageIsKept_When_AppendedFrameIsReused()
+   throws Exception
+   {
+      // Given a frame with one complete message and the start of another
+      byte[] first = encode(7, MessageType.CTRL_HEARTBEAT_RESPONSE, new byte[]{0, 0, 0, 3});
+      byte[] second = encode(8, MessageType.CTRL_HEARTBEAT_RESPONSE, new byte[]{0, 0, 0, 4});
+      byte[] frame = new byte[first.length + 10];
+      System.arraycopy(first, 0, frame, 0, first.length);
+      System.arraycopy(second, 0, frame, first.length, 10);
+      InboundFrameDecoder decoder = new InboundFrameDecoder(16);
+
+      // When the frame is decoded and then overwritten
+      decoder.append(ByteBuffer.wrap(frame));
+      assertTrue(decoder.next());
+      assertEquals(3, HeartbeatResponseMessage.decode(decoder.payloadStream()).responseToSequenceNumber);
+      assertFalse(decoder.next());
+      Arrays.fill(frame, (byte) 0);
+      decoder.append(ByteBuffer.wrap(second, 10, second.length - 10));
+
+      // Then
+      assertTrue(decoder.next());
+      assertEquals(8, decoder.sequenceNumber());
+      assertEquals(4, HeartbeatResponseMessage.decode(decoder.payloadStream()).responseToSequenceNumber);
+      assertFalse(decoder.next());
+   }
+
+   @Test
+   public void copiedMessageIsDecodedByAnotherDecoder_When_OriginalBufferIsReused()
+   throws Exception
+   {
+      // Given
+      byte[] first = encode(7, MessageType.CTRL_HEARTBEAT_RESPONSE, new byte[]{0, 0, 0, 3});
+      byte[] second = encode(8, MessageType.HLA_CALLBACK_REQUEST, new byte[]{1, 2, 3, 4, 5});
+      ByteBuffer data = ByteBuffer.allocate(first.length + second.length).put(first).put(second).flip();
+      InboundFrameDecoder decoder = new InboundFrameDecoder(MessageHeader.SIZE);
+      decoder.append(data);
+      assertTrue(decoder.next());
+      assertTrue(decoder.next());
+
+      // When
+      byte[] copy = decoder.copyMessage();
+      Arrays.fill(data.array(), (byte) 0);
+      InboundFrameDecoder copyDecoder = new InboundFrameDecoder(MessageHeader.SIZE);
+      copyDecoder.append(ByteBuffer.wrap(copy));
+
+      // Then
+      assertArrayEquals(second, copy);
+      assertTrue(copyDecoder.next());
+      assertEquals(8, copyDecoder.sequenceNumber());
+      assertEquals(MessageType.HLA_CALLBACK_REQUEST, copyDecoder.messageType());
+      assertArrayEquals(new byte[]{1, 2, 3, 4, 5}, copyDecoder.payloadStream().readAllBytes());
+      assertFalse(copyDecoder.next());
+   }
+
+   @Test(expected = BadMessage.class)
+   public void nextThrows_When_PacketSizeIsInvalid()
+   throws BadMessage
+   {
+      InboundFrameDecoder decoder = new InboundFrameDecoder(64);
+      decoder.append(ByteBuffer.allocate(MessageHeader.SIZE).putInt(0, 3));
+
+      decoder.next();
+   }
+
+   private static void nextMessage(
+         InboundFrameDecoder decoder,
+         InputStream inputStream)
+   throws BadMessage, IOException
+   {
+      while (!decoder.next()) {
+         assertTrue(decoder.fill(inputStream) > 0);
+      }
+   }
+
+   private static byte[] encode(
+         int sequenceNumber,
+         MessageType messageType,
+         byte[] payload)
+   {
+      MessageHeader header = MessageHeader.with(payload.length, sequenceNumber, 42, 0, messageType);
+      return ByteBuffer.allocate((int) header.packetSize).put(header.encode()).put(payload).array();
+   }
+}
@@ -0,0 +1,144 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.pitch.oss.fedpro.client.transport;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import se.pitch.oss.fedpro.common.TlsMode;
+
+import javax.net.ssl.SSLContext;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+import static org.junit.Assert.*;
+
+public class TestSecurityUtil {
+
+   private static final String PASSWORD = "password";
+
+   @Rule
+   public TemporaryFolder _folder = new TemporaryFolder();
+
+   @Test
+   public void contextIsShared_When_SettingsAreEqual()
+   {
+      // Given
+      SSLContext first = SecurityUtil.getSslContext(TlsMode.SERVER_AUTH, null, null, "JKS", "SunX509", true);
+
+      // When
+      SSLContext second = SecurityUtil.getSslContext(TlsMode.SERVER_AUTH, null, null, "JKS", "SunX509", true);
+
+      // Then
+      assertSame(first, second);
+   }
+
+   @Test
+   public void contextIsNotShared_When_SettingsDiffer()
+   {
+      // Given
+      SSLContext serverAuth = SecurityUtil.getSslContext(TlsMode.SERVER_AUTH, null, null, "JKS", "SunX509", true);
+
+      // When
+      SSLContext encrypted = SecurityUtil.getSslContext(TlsMode.ENCRYPTED, null, null, "JKS", "SunX509", true);
+
+      // Then
+      assertNotSame(serverAuth, encrypted);
+   }
+
+   @Test
+   public void contextIsReloaded_When_KeystoreIsModified()
+   throws Exception
+   {
+      // Given
+      File passwordFile = createPasswordFile();
+      File keystoreFile = createKeystore(passwordFile);
+      SSLContext first = getKeystoreContext(passwordFile, keystoreFile);
+
+      // When
+      createKeystore(passwordFile);
+      touch(keystoreFile);
+      SSLContext second = getKeystoreContext(passwordFile, keystoreFile);
+
+      // Then
+      assertNotSame(first, second);
+      assertSame(second, getKeystoreContext(passwordFile, keystoreFile));
+   }
+
+   @Test
+   public void contextIsReloaded_When_PasswordFileIsModified()
+   throws Exception
+   {
+      // Given
+      File passwordFile = createPasswordFile();
+      File keystoreFile = createKeystore(passwordFile);
+      SSLContext first = getKeystoreContext(passwordFile, keystoreFile);
+
+      // When
+      touch(passwordFile);
+      SSLContext second = getKeystoreContext(passwordFile, keystoreFile);
+
+      // Then
+      assertNotSame(first, second);
+   }
+
+   private static SSLContext getKeystoreContext(
+         File passwordFile,
+         File keystoreFile)
+   {
+      return SecurityUtil.getSslContext(
+            TlsMode.SERVER_AUTH,
+            passwordFile.getPath(),
+            keystoreFile.getPath(),
+            "PKCS12",
+            "PKIX",
+            false);
+   }
+
+   private File createPasswordFile()
+   throws IOException
+   {
+      File passwordFile = _folder.newFile();
+      Files.write(passwordFile.toPath(), PASSWORD.getBytes(StandardCharsets.UTF_8));
+      return passwordFile;
+   }
+
+   private static File createKeystore(File passwordFile)
+   throws IOException, GeneralSecurityException
+   {
+      File keystoreFile = new File(passwordFile.getParentFile(), "keystore.p12");
+      KeyStore keyStore = KeyStore.getInstance("PKCS12");
+      keyStore.load(null, PASSWORD.toCharArray());
+      try (OutputStream out = new FileOutputStream(keystoreFile)) {
+         keyStore.store(out, PASSWORD.toCharArray());
+      }
+      return keystoreFile;
+   }
+
+   private static void touch(File file)
+   {
+      // Modification times may have a resolution of seconds
+      assertTrue(file.setLastModified(file.lastModified() + 2000));
+   }
+}
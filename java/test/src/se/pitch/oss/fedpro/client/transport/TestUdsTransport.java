@@ -0,0 +1,120 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.pitch.oss.fedpro.client.transport;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import se.pitch.oss.fedpro.client.Settings;
+import se.pitch.oss.fedpro.client.TypedProperties;
+import se.pitch.oss.fedpro.common.Protocol;
+import se.pitch.oss.fedpro.common.transport.FedProSocket;
+import se.pitch.oss.fedpro.common.transport.nio.UnixDomainSockets;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
+
+public class TestUdsTransport {
+
+   @Rule
+   public TemporaryFolder _folder = new TemporaryFolder();
+
+   @Test
+   public void dataIsTransferred_When_ServerListensOnPath()
+   throws Exception
+   {
+      // Given
+      assumeTrue(UnixDomainSockets.isSupported());
+      File path = new File(_folder.getRoot(), "fedpro.sock");
+      try (ServerSocketChannel server = openServer(path)) {
+         CompletableFuture<SocketChannel> accepted = CompletableFuture.supplyAsync(() -> {
+            try {
+               return server.accept();
+            } catch (IOException e) {
+               throw new RuntimeException(e);
+            }
+         });
+         UdsTransport transport = new UdsTransport(settingsWithPath(path));
+
+         // When
+         FedProSocket socket = transport.connect();
+         SocketChannel peer = accepted.get(4, TimeUnit.SECONDS);
+         try {
+            socket.getOutputStream().write(new byte[]{1, 2, 3});
+            ByteBuffer received = ByteBuffer.allocate(3);
+            while (received.hasRemaining()) {
+               peer.read(received);
+            }
+
+            // Then
+            assertArrayEquals(new byte[]{1, 2, 3}, received.array());
+            assertEquals(Protocol.UDS, socket.getProtocolName());
+         } finally {
+            socket.close();
+            peer.close();
+         }
+      }
+   }
+
+   @Test(expected = IOException.class)
+   public void connectThrows_When_UnixDomainSocketsAreNotSupported()
+   throws IOException
+   {
+      // Given
+      assumeFalse(UnixDomainSockets.isSupported());
+      UdsTransport transport = new UdsTransport(settingsWithPath(new File(_folder.getRoot(), "x")));
+
+      // When
+      transport.connect();
+   }
+
+   private static TypedProperties settingsWithPath(File path)
+   {
+      TypedProperties settings = new TypedProperties();
+      settings.setString(Settings.SETTING_NAME_CONNECTION_PATH, path.getPath());
+      return settings;
+   }
+
+   /**
+    * The tests are compiled for Java 11, so the Java 16 API for a listening Unix domain socket is used reflectively.
+    */
+   private static ServerSocketChannel openServer(File path)
+   throws Exception
+   {
+      ProtocolFamily unix = StandardProtocolFamily.valueOf("UNIX");
+      ServerSocketChannel server = (ServerSocketChannel) ServerSocketChannel.class
+            .getMethod("open", ProtocolFamily.class)
+            .invoke(null, unix);
+      SocketAddress address = (SocketAddress) Class.forName("java.net.UnixDomainSocketAddress")
+            .getMethod("of", String.class)
+            .invoke(null, path.getPath());
+      server.bind(address);
+      return server;
+   }
+}
@@ -16,17 +16,31 @@
 
 package se.pitch.oss.fedpro.client_common;
 
+import com.google.protobuf.ByteString;
+import hla.rti1516_2025.fedpro.CallResponse;
+import hla.rti1516_2025.fedpro.CallbackRequest;
+import hla.rti1516_2025.fedpro.ReflectAttributeValues;
 import org.junit.Assert;
 import org.junit.Test;
+import se.pitch.oss.fedpro.client.SimpleResumeStrategy;
 import se.pitch.oss.fedpro.client.TypedProperties;
+import se.pitch.oss.fedpro.client_common.exceptions.FedProFederateInternalError;
 import se.pitch.oss.fedpro.client_common.exceptions.InvalidSetting;
+import se.pitch.oss.fedpro.common.session.MovingStats;
+import se.pitch.oss.fedpro.common.session.buffers.PayloadBuffer;
+import se.pitch.oss.fedpro.common.session.buffers.PayloadBufferPool;
+import se.pitch.oss.fedpro.utility.SocketSupplierTransport;
 
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.fail;
 import static se.pitch.oss.fedpro.client_common.RTIambassadorClientGenericBase.splitFederateConnectSettings;
 
 public class TestClientGenericBase {
@@ -127,4 +141,148 @@ public class TestClientGenericBase {
             clientSettings.getDuration("FED_INT_HEART", Duration.ofSeconds(0)));
    }
 
+   @Test
+   public void parsedCallbackAliasesPooledBuffer_When_CallbackIsDispatched()
+   {
+      // Given
+      byte[] tag = "tag".getBytes();
+      PayloadBufferPool pool = new PayloadBufferPool(1);
+      PayloadBuffer encodedCallback = encodeReflect(pool, tag);
+      AtomicReference<ByteString> aliasedTag = new AtomicReference<>();
+      AtomicReference<byte[]> copiedTag = new AtomicReference<>();
+      CallbackClient client = new CallbackClient(callbackRequest -> {
+         ByteString userSuppliedTag = callbackRequest.getReflectAttributeValues().getUserSuppliedTag();
+         aliasedTag.set(userSuppliedTag);
+         copiedTag.set(userSuppliedTag.toByteArray());
+      });
+
+      // When
+      client.dispatchCallback(new RTIambassadorClientGenericBase.QueuedCallback(encodedCallback, 1), null);
+      overwriteRecycledBuffer(pool, encodedCallback.length());
+
+      // Then the parsed bytes referenced the buffer, but what the callback copied is still valid
+      assertNotEquals(ByteString.copyFrom(tag), aliasedTag.get());
+      assertArrayEquals(tag, copiedTag.get());
+      assertReleased(encodedCallback);
+   }
+
+   @Test
+   public void pooledBufferIsReleasedOnce_When_CallbackThrows()
+   {
+      // Given
+      PayloadBuffer encodedCallback = encodeReflect(new PayloadBufferPool(1), "tag".getBytes());
+      CallbackClient client = new CallbackClient(callbackRequest -> {
+         throw new FedProFederateInternalError(new RuntimeException("Callback failed"));
+      });
+
+      // When
+      client.dispatchCallback(new RTIambassadorClientGenericBase.QueuedCallback(encodedCallback, 1), null);
+
+      // Then
+      assertReleased(encodedCallback);
+   }
+
+   @Test
+   public void queuedCallbackIsReleased_When_SessionIsCleanedUpBeforeItIsEvoked()
+   {
+      // Given a session in evoked mode with a callback that is never evoked
+      CallbackClient client = new CallbackClient(callbackRequest -> fail("Callback was dispatched"));
+      RTIambassadorClientGenericBase.ClientSession clientSession = client.new ClientSession(
+            new SocketSupplierTransport(() -> null),
+            sessionId -> {},
+            new TypedProperties(),
+            new SimpleResumeStrategy(),
+            false);
+      PayloadBuffer encodedCallback = encodeReflect(new PayloadBufferPool(1), "tag".getBytes());
+      clientSession._callbackQueue.add(new RTIambassadorClientGenericBase.QueuedCallback(encodedCallback, 1));
+
+      // When
+      clientSession.stopCallbackThread();
+
+      // Then
+      assertReleased(encodedCallback);
+      Assert.assertTrue(clientSession._callbackQueue.isEmpty());
+   }
+
+   private static PayloadBuffer encodeReflect(
+         PayloadBufferPool pool,
+         byte[] tag)
+   {
+      byte[] encoded = CallbackRequest.newBuilder()
+            .setReflectAttributeValues(ReflectAttributeValues.newBuilder().setUserSuppliedTag(ByteString.copyFrom(tag)))
+            .build()
+            .toByteArray();
+      PayloadBuffer buffer = pool.acquire(encoded.length);
+      System.arraycopy(encoded, 0, buffer.array(), 0, encoded.length);
+      return buffer;
+   }
+
+   private static void overwriteRecycledBuffer(
+         PayloadBufferPool pool,
+         int length)
+   {
+      PayloadBuffer reused = pool.acquire(length);
+      Arrays.fill(reused.array(), (byte) 0);
+   }
+
+   private static void assertReleased(PayloadBuffer buffer)
+   {
+      // Releasing more than once would have thrown when dispatching
+      try {
+         buffer.retain();
+         fail("Payload buffer was not released");
+      } catch (IllegalStateException expected) {
+      }
+   }
+
+   private interface CallbackHandler {
+      void handle(CallbackRequest callbackRequest)
+      throws FedProFederateInternalError;
+   }
+
+   private static class CallbackClient extends RTIambassadorClientGenericBase {
+
+      private final CallbackHandler _handler;
+
+      CallbackClient(CallbackHandler handler)
+      {
+         _handler = handler;
+      }
+
+      @Override
+      protected void dispatchHlaVersionSpecificCallback(CallbackRequest callbackRequest)
+      throws FedProFederateInternalError
+      {
+         _handler.handle(callbackRequest);
+      }
+
+      @Override
+      protected void throwOnException(CallResponse callResponse)
+      {
+      }
+
+      @Override
+      protected MovingStats.Stats getReflectStats(long time)
+      {
+         return null;
+      }
+
+      @Override
+      protected MovingStats.Stats getReceivedInteractionStats(long time)
+      {
+         return null;
+      }
+
+      @Override
+      protected MovingStats.Stats getReceivedDirectedInteractionStats(long time)
+      {
+         return null;
+      }
+
+      @Override
+      protected MovingStats.Stats getCallbackTimeStats(long time)
+      {
+         return null;
+      }
+   }
 }
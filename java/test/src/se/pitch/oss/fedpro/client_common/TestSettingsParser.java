@@ -293,6 +293,39 @@ public class TestSettingsParser {
       assertEquals(Protocol.WS, settings.getString(SETTING_NAME_CONNECTION_PROTOCOL, placeholderString));
    }
 
+   @Test
+   public void virtualThreadsIsParsed_When_ProvidedThroughSettingsLine()
+   throws InvalidSetting
+   {
+      // Given
+      String settingsLine = "threads.virtual=true";
+      // When
+      TypedProperties settings = SettingsParser.parse(settingsLine);
+      // Then
+      assertTrue(settings.getBoolean(SETTING_NAME_VIRTUAL_THREADS, false));
+   }
+
+   @Test(expected = InvalidSetting.class)
+   public void parseThrows_When_VirtualThreadsIsNotBoolean()
+   throws InvalidSetting
+   {
+      // When
+      SettingsParser.parse("threads.virtual=sometimes");
+   }
+
+   @Test
+   public void pathIsParsed_When_UnixDomainSocketProtocolIsProvided()
+   throws InvalidSetting
+   {
+      // Given
+      String settingsLine = "connect.protocol=UDS,connect.path=/tmp/fedpro.sock";
+      // When
+      TypedProperties settings = SettingsParser.parse(settingsLine);
+      // Then
+      assertEquals(Protocol.UDS, settings.getString(SETTING_NAME_CONNECTION_PROTOCOL, placeholderString));
+      assertEquals("/tmp/fedpro.sock", settings.getString(SETTING_NAME_CONNECTION_PATH, placeholderString));
+   }
+
    @Test(expected = InvalidSetting.class)
    public void parseThrows_Given_UnknownProtocolInSettingsLine()
    throws Exception
@@ -306,6 +339,33 @@ public class TestSettingsParser {
       // Then throw
    }
 
+   @Test
+   public void responseCompletionIsLowerCase_When_ProvidedInAnyCase()
+   throws InvalidSetting
+   {
+      // Given
+      String settingsLine = "response.completion=DIRECT";
+
+      // When
+      TypedProperties settings = SettingsParser.parse(settingsLine);
+
+      // Then
+      assertEquals(RESPONSE_COMPLETION_DIRECT, settings.getString(SETTING_NAME_RESPONSE_COMPLETION, placeholderString));
+   }
+
+   @Test(expected = InvalidSetting.class)
+   public void parseThrows_Given_UnknownResponseCompletionInSettingsLine()
+   throws Exception
+   {
+      // Given
+      String settingsLine = "response.completion=later";
+
+      // When
+      SettingsParser.parse(settingsLine);
+
+      // Then throw
+   }
+
    // Java System Properties Tests
 
    @Test
@@ -19,6 +19,8 @@ package se.pitch.oss.fedpro.common.session;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static se.pitch.oss.fedpro.common.session.SequenceNumber.*;
 
 public class TestSequenceNumber {
@@ -196,4 +198,21 @@ public class TestSequenceNumber {
       // Then
       assertEquals(a + b, c);
    }
+
+   @Test
+   public void isBeforeWorks_When_Wrapping()
+   {
+      // Given
+      int a = MAX_SEQUENCE_NUMBER - 1;
+      int b = SequenceNumber.sum(a, 10);
+
+      // When
+      boolean aBeforeB = SequenceNumber.isBefore(a, b);
+      boolean bBeforeA = SequenceNumber.isBefore(b, a);
+
+      // Then
+      assertTrue(aBeforeB);
+      assertFalse(bBeforeA);
+      assertFalse(SequenceNumber.isBefore(a, a));
+   }
 }
@@ -0,0 +1,145 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.pitch.oss.fedpro.common.session;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestSequenceNumberMap {
+
+   @Test
+   public void removeReturnsValue_When_ValueWasPut()
+   {
+      // Given
+      SequenceNumberMap<String> map = new SequenceNumberMap<>(4);
+      map.put(7, "seven");
+
+      // When
+      String value = map.remove(7);
+
+      // Then
+      assertEquals("seven", value);
+      assertNull(map.remove(7));
+      assertEquals(0, map.size());
+   }
+
+   @Test
+   public void removeReturnsNull_When_OnlyAnotherSequenceNumberUsesTheSlot()
+   {
+      // Given
+      SequenceNumberMap<String> map = new SequenceNumberMap<>(4);
+      map.put(1, "one");
+
+      // When
+      String value = map.remove(5);
+
+      // Then
+      assertNull(value);
+      assertEquals("one", map.remove(1));
+   }
+
+   @Test
+   public void allValuesAreKept_When_MoreValuesThanRingSizeAreOutstanding()
+   {
+      // Given
+      SequenceNumberMap<Integer> map = new SequenceNumberMap<>(4);
+
+      // When
+      for (int i = 0; i < 10; i++) {
+         map.put(i, i);
+      }
+
+      // Then
+      assertEquals(10, map.size());
+      for (int i = 9; i >= 0; i--) {
+         assertEquals(Integer.valueOf(i), map.remove(i));
+      }
+      assertEquals(0, map.size());
+   }
+
+   @Test
+   public void sequenceNumbersWrapAround()
+   {
+      // Given
+      SequenceNumberMap<String> map = new SequenceNumberMap<>(4);
+      map.put(Integer.MAX_VALUE, "max");
+      map.put(Integer.MIN_VALUE, "min");
+      map.put(-1, "unsigned max");
+      map.put(0, "zero");
+
+      // Then
+      assertEquals("max", map.remove(Integer.MAX_VALUE));
+      assertEquals("min", map.remove(Integer.MIN_VALUE));
+      assertEquals("unsigned max", map.remove(-1));
+      assertEquals("zero", map.remove(0));
+   }
+
+   @Test
+   public void removeAllGivesEveryValue()
+   {
+      // Given
+      SequenceNumberMap<Integer> map = new SequenceNumberMap<>(2);
+      for (int i = 0; i < 5; i++) {
+         map.put(i, i);
+      }
+
+      // When
+      List<Integer> removed = new ArrayList<>();
+      map.removeAll(removed::add);
+
+      // Then
+      removed.sort(null);
+      assertEquals(List.of(0, 1, 2, 3, 4), removed);
+      assertEquals(0, map.size());
+   }
+
+   @Test
+   public void everyValueIsRemovedOnce_When_RemovingConcurrentlyWithPut()
+   throws InterruptedException
+   {
+      // Given
+      final int count = 200_000;
+      SequenceNumberMap<Integer> map = new SequenceNumberMap<>(64);
+      int[] removedCount = new int[1];
+      Thread remover = new Thread(() -> {
+         int next = 0;
+         while (next < count) {
+            Integer value = map.remove(next);
+            if (value != null) {
+               assertEquals(next, (int) value);
+               removedCount[0]++;
+               next++;
+            }
+         }
+      });
+
+      // When
+      remover.start();
+      for (int i = 0; i < count; i++) {
+         map.put(i, i);
+      }
+      remover.join(10_000);
+
+      // Then
+      assertEquals(count, removedCount[0]);
+      assertEquals(0, map.size());
+   }
+}
@@ -21,17 +21,30 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import se.pitch.oss.fedpro.client.*;
+import se.pitch.oss.fedpro.client.session.SessionImpl;
 import se.pitch.oss.fedpro.client.session.msg.HeartbeatResponseMessage;
 import se.pitch.oss.fedpro.client.session.msg.MessageHeader;
 import se.pitch.oss.fedpro.client.session.msg.NewSessionStatusMessage;
 import se.pitch.oss.fedpro.client_common.SettingsParser;
+import se.pitch.oss.fedpro.common.Protocol;
 import se.pitch.oss.fedpro.common.exceptions.SessionAlreadyTerminated;
 import se.pitch.oss.fedpro.common.exceptions.SessionIllegalState;
 import se.pitch.oss.fedpro.common.exceptions.SessionLost;
+import se.pitch.oss.fedpro.common.transport.FedProSocket;
+import se.pitch.oss.fedpro.common.transport.shm.ShmServerSocket;
 import se.pitch.oss.fedpro.utility.*;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -111,6 +124,27 @@ public class TestSession {
       Assert.assertTrue(connectionAttemptCount.get() > 1);
    }
 
+   @Test
+   public void stateListenerRunsOnSessionThread_When_VirtualThreadsAreEnabled()
+   throws Exception
+   {
+      // Given
+      _clientSettings.setBoolean(Settings.SETTING_NAME_VIRTUAL_THREADS, true);
+      MemorySocket socket = new MemorySocket();
+      socket.addInboundPacket(createNewSessionStatus(_fakeSessionId));
+      Session session = createSession(new SocketSupplierTransport(socket));
+      CompletableFuture<Thread> listenerThread = new CompletableFuture<>();
+      session.addStateListener((oldState, newState, reason) -> listenerThread.complete(Thread.currentThread()));
+
+      // When
+      session.start((sequenceNumber, hlaCallback) -> {});
+
+      // Then the thread comes from SessionThreads, which creates daemon platform threads before Java 21
+      Thread thread = listenerThread.get(4, TimeUnit.SECONDS);
+      Assert.assertEquals("FedPro Client State Listener Thread", thread.getName());
+      Assert.assertTrue(thread.isDaemon());
+   }
+
    @Test
    public void terminateSucceed_When_ConcurrentTerminateCalls()
    throws IOException, SessionLost, SessionIllegalState, InterruptedException
@@ -146,6 +180,277 @@ public class TestSession {
       Assert.assertTrue(threadPool.awaitTermination(16, TimeUnit.SECONDS));
    }
 
+   @Test
+   public void allRequestsComplete_When_TerminatedWhileOtherThreadsSend()
+   throws Exception
+   {
+      // Given a server that never responds, and threads that send heartbeats until the session terminates. Fewer than
+      // fit in the message queue, since the memory socket stops accepting writes when nobody reads them.
+      Transport transport = createMemoryTransport(createNewSessionStatus(_fakeSessionId));
+      Session session = createSession(transport);
+      session.start((sequenceNumber, hlaCallback) -> {});
+      Queue<CompletableFuture<byte[]>> futures = new ConcurrentLinkedQueue<>();
+      ExecutorService senders = Executors.newFixedThreadPool(4);
+      for (int i = 0; i < 4; ++i) {
+         senders.submit(() -> {
+            try {
+               for (int j = 0; j < 400; j++) {
+                  futures.add(session.sendHeartbeat());
+               }
+            } catch (SessionIllegalState ignored) {
+            }
+         });
+      }
+      while (futures.size() < 100) {
+         Thread.sleep(1);
+      }
+
+      // When
+      try {
+         session.terminate(1, TimeUnit.SECONDS);
+      } catch (SessionLost ignored) {
+         // No response to the termination request.
+      }
+
+      // Then
+      senders.shutdown();
+      Assert.assertTrue(senders.awaitTermination(4, TimeUnit.SECONDS));
+      for (CompletableFuture<byte[]> future : futures) {
+         Assert.assertTrue(future.isDone());
+      }
+   }
+
+   @Test
+   public void terminateTimesOutAndReleasesSenders_When_MessageQueueIsFull()
+   throws Exception
+   {
+      // Given a server that never reads, so that the message queue fills up and the senders block on it
+      _clientSettings.setInt(Settings.SETTING_NAME_MESSAGE_QUEUE_SIZE, 16);
+      Transport transport = createMemoryTransport(createNewSessionStatus(_fakeSessionId));
+      Session session = createSession(transport);
+      session.start((sequenceNumber, hlaCallback) -> {});
+      Queue<CompletableFuture<byte[]>> futures = new ConcurrentLinkedQueue<>();
+      ExecutorService senders = Executors.newFixedThreadPool(4);
+      for (int i = 0; i < 4; ++i) {
+         senders.submit(() -> {
+            try {
+               while (true) {
+                  futures.add(session.sendHeartbeat());
+               }
+            } catch (SessionIllegalState ignored) {
+            }
+         });
+      }
+      while (futures.size() < 16) {
+         Thread.sleep(1);
+      }
+
+      // When
+      long startNanos = System.nanoTime();
+      try {
+         session.terminate(1, TimeUnit.SECONDS);
+         Assert.fail("Expected terminate to time out");
+      } catch (SessionLost ignored) {
+      }
+
+      // Then
+      Assert.assertTrue(System.nanoTime() - startNanos < TimeUnit.SECONDS.toNanos(4));
+      Assert.assertEquals(Session.State.TERMINATED, session.getState());
+      senders.shutdown();
+      Assert.assertTrue(senders.awaitTermination(4, TimeUnit.SECONDS));
+      for (CompletableFuture<byte[]> future : futures) {
+         Assert.assertTrue(future.isCompletedExceptionally());
+      }
+   }
+
+   @Test
+   public void heartbeatCompletes_When_UsingEventLoopTransport()
+   throws Exception
+   {
+      try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+         // Given a server that accepts a session and responds to one heartbeat
+         startHeartbeatServer(serverSocket);
+
+         TypedProperties settings = new TypedProperties();
+         settings.setString(Settings.SETTING_NAME_CONNECTION_HOST, "localhost");
+         settings.setInt(Settings.SETTING_NAME_CONNECTION_PORT, serverSocket.getLocalPort());
+         settings.setBoolean(Settings.SETTING_NAME_CONNECTION_EVENT_LOOP, true);
+         Session session = createSession(TransportFactory.createTcpTransport(settings));
+
+         // When
+         session.start((sequenceNumber, hlaCallback) -> {});
+
+         // Then
+         Assert.assertEquals(
+               Session.State.RUNNING,
+               _stateWaiter.waitForState(Session.State.RUNNING, 4, TimeUnit.SECONDS));
+         Assert.assertNull(session.sendHeartbeat().get(4, TimeUnit.SECONDS));
+         ((SessionImpl) session).forceCloseConnection();
+      }
+   }
+
+   @Test
+   public void responseIsNotCompletedOnEventLoop_When_ResponseCompletionIsDirect()
+   throws Exception
+   {
+      try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+         // Given a server that accepts a session and responds to one heartbeat
+         startHeartbeatServer(serverSocket);
+
+         TypedProperties settings = new TypedProperties();
+         settings.setString(Settings.SETTING_NAME_CONNECTION_HOST, "localhost");
+         settings.setInt(Settings.SETTING_NAME_CONNECTION_PORT, serverSocket.getLocalPort());
+         settings.setBoolean(Settings.SETTING_NAME_CONNECTION_EVENT_LOOP, true);
+         _clientSettings.setString(Settings.SETTING_NAME_RESPONSE_COMPLETION, Settings.RESPONSE_COMPLETION_DIRECT);
+         Session session = createSession(TransportFactory.createTcpTransport(settings));
+         session.start((sequenceNumber, hlaCallback) -> {});
+         Assert.assertEquals(
+               Session.State.RUNNING,
+               _stateWaiter.waitForState(Session.State.RUNNING, 4, TimeUnit.SECONDS));
+
+         // When
+         CompletableFuture<Thread> completingThread = new CompletableFuture<>();
+         session.sendHeartbeat().whenComplete((response, e) -> completingThread.complete(Thread.currentThread()));
+
+         // Then
+         Assert.assertFalse(completingThread.get(4, TimeUnit.SECONDS).getName().startsWith("FedPro Client Event Loop"));
+         ((SessionImpl) session).forceCloseConnection();
+      }
+   }
+
+   @Test
+   public void otherSessionKeepsRunning_When_CallbackListenerBlocksWithEventLoopTransport()
+   throws Exception
+   {
+      try (ServerSocket callbackServerSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+           ServerSocket heartbeatServerSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+         // Given a session whose callback listener blocks, on a single event loop thread
+         startCallbackServer(callbackServerSocket);
+         startHeartbeatServer(heartbeatServerSocket);
+         CountDownLatch callbackReceived = new CountDownLatch(1);
+         CountDownLatch releaseCallback = new CountDownLatch(1);
+         Session blockedSession = createSession(createEventLoopTransport(callbackServerSocket));
+         blockedSession.start((sequenceNumber, hlaCallback) -> {
+            callbackReceived.countDown();
+            try {
+               releaseCallback.await();
+            } catch (InterruptedException ignored) {
+            }
+         });
+         Assert.assertTrue(callbackReceived.await(4, TimeUnit.SECONDS));
+
+         // When
+         Session session = createSession(createEventLoopTransport(heartbeatServerSocket));
+         session.start((sequenceNumber, hlaCallback) -> {});
+
+         // Then
+         try {
+            Assert.assertNull(session.sendHeartbeat().get(4, TimeUnit.SECONDS));
+         } finally {
+            releaseCallback.countDown();
+            ((SessionImpl) session).forceCloseConnection();
+            ((SessionImpl) blockedSession).forceCloseConnection();
+         }
+      }
+   }
+
+   @Test
+   public void heartbeatCompletes_When_UsingSharedMemoryTransport()
+   throws Exception
+   {
+      Path directory = Files.createTempDirectory("fedpro-shm");
+      try (ShmServerSocket serverSocket = new ShmServerSocket(directory, Protocol.SHM)) {
+         // Given a server that accepts a session and responds to one heartbeat
+         Thread serverThread = new Thread(() -> {
+            try (FedProSocket socket = serverSocket.accept()) {
+               InputStream inputStream = socket.getInputStream();
+               MessageHeader newSessionHeader = MessageHeader.decode(inputStream);
+               inputStream.readNBytes(newSessionHeader.getPayloadSize());
+               socket.getOutputStream().write(createNewSessionStatus(_fakeSessionId));
+
+               MessageHeader heartbeatHeader = MessageHeader.decode(inputStream);
+               inputStream.readNBytes(heartbeatHeader.getPayloadSize());
+               socket.getOutputStream().write(
+                     createHeartbeatResponse(_fakeSessionId, 1, heartbeatHeader.sequenceNumber));
+               // Wait for the client to close the connection.
+               while (inputStream.read() != -1) {
+               }
+            } catch (Exception ignored) {
+            }
+         });
+         serverThread.setDaemon(true);
+         serverThread.start();
+
+         TypedProperties settings = new TypedProperties();
+         settings.setString(Settings.SETTING_NAME_CONNECTION_PATH, directory.toString());
+         Session session = createSession(TransportFactory.createShmTransport(settings));
+
+         // When
+         session.start((sequenceNumber, hlaCallback) -> {});
+
+         // Then
+         Assert.assertEquals(
+               Session.State.RUNNING,
+               _stateWaiter.waitForState(Session.State.RUNNING, 4, TimeUnit.SECONDS));
+         Assert.assertNull(session.sendHeartbeat().get(4, TimeUnit.SECONDS));
+         ((SessionImpl) session).forceCloseConnection();
+      } finally {
+         Files.deleteIfExists(directory);
+      }
+   }
+
+   private void startHeartbeatServer(ServerSocket serverSocket)
+   {
+      Thread serverThread = new Thread(() -> {
+         try (java.net.Socket socket = serverSocket.accept()) {
+            InputStream inputStream = socket.getInputStream();
+            MessageHeader newSessionHeader = MessageHeader.decode(inputStream);
+            inputStream.readNBytes(newSessionHeader.getPayloadSize());
+            socket.getOutputStream().write(createNewSessionStatus(_fakeSessionId));
+
+            MessageHeader heartbeatHeader = MessageHeader.decode(inputStream);
+            inputStream.readNBytes(heartbeatHeader.getPayloadSize());
+            socket.getOutputStream().write(
+                  createHeartbeatResponse(_fakeSessionId, 1, heartbeatHeader.sequenceNumber));
+            // Wait for the client to close the connection.
+            while (inputStream.read() != -1) {
+            }
+         } catch (Exception ignored) {
+         }
+      });
+      serverThread.setDaemon(true);
+      serverThread.start();
+   }
+
+   private void startCallbackServer(ServerSocket serverSocket)
+   {
+      Thread serverThread = new Thread(() -> {
+         try (java.net.Socket socket = serverSocket.accept()) {
+            InputStream inputStream = socket.getInputStream();
+            MessageHeader newSessionHeader = MessageHeader.decode(inputStream);
+            inputStream.readNBytes(newSessionHeader.getPayloadSize());
+            socket.getOutputStream().write(createNewSessionStatus(_fakeSessionId));
+            socket.getOutputStream().write(createCallbackRequest(_fakeSessionId, 1, new byte[]{1, 2, 3}));
+            // Wait for the client to close the connection.
+            while (inputStream.read() != -1) {
+            }
+         } catch (Exception ignored) {
+         }
+      });
+      serverThread.setDaemon(true);
+      serverThread.start();
+   }
+
+   private static Transport createEventLoopTransport(ServerSocket serverSocket)
+   {
+      TypedProperties settings = new TypedProperties();
+      settings.setString(Settings.SETTING_NAME_CONNECTION_HOST, "localhost");
+      settings.setInt(Settings.SETTING_NAME_CONNECTION_PORT, serverSocket.getLocalPort());
+      settings.setBoolean(Settings.SETTING_NAME_CONNECTION_EVENT_LOOP, true);
+      settings.setInt(Settings.SETTING_NAME_CONNECTION_EVENT_LOOP_THREADS, 1);
+      return TransportFactory.createTcpTransport(settings);
+   }
+
    protected Session createSession(Transport transport)
    {
       return createSession(transport, _clientSettings);
@@ -190,6 +495,18 @@ public class TestSession {
       return outputStream.toByteArray();
    }
 
+   protected static byte[] createCallbackRequest(long sessionId, int sequenceNumber, byte[] callback)
+   throws IOException
+   {
+      MessageHeader header = MessageHeader.with(
+            callback.length, sequenceNumber, sessionId, 0, MessageType.HLA_CALLBACK_REQUEST);
+
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      outputStream.write(header.encode());
+      outputStream.write(callback);
+      return outputStream.toByteArray();
+   }
+
    protected static Transport createMemoryTransport(byte[] ... packets)
    throws IOException
    {
@@ -0,0 +1,46 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.pitch.oss.fedpro.common.session;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeFalse;
+
+public class TestSessionThreads {
+
+   @Test
+   public void newThreadCreatesDaemonPlatformThread_When_VirtualThreadsAreNotSupported()
+   throws InterruptedException
+   {
+      // Given
+      assumeFalse(SessionThreads.isVirtualSupported());
+      CountDownLatch taskRun = new CountDownLatch(1);
+
+      // When
+      Thread thread = SessionThreads.newThread(taskRun::countDown, "Test Thread", true);
+      thread.start();
+
+      // Then
+      assertEquals("Test Thread", thread.getName());
+      assertTrue(thread.isDaemon());
+      assertTrue(taskRun.await(4, TimeUnit.SECONDS));
+   }
+}
@@ -0,0 +1,345 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.pitch.oss.fedpro.common.session;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+import se.pitch.oss.fedpro.client.session.msg.HlaCallRequestMessage;
+import se.pitch.oss.fedpro.client.session.msg.MessageHeader;
+import se.pitch.oss.fedpro.client.session.msg.QueueableMessage;
+import se.pitch.oss.fedpro.common.exceptions.BadMessage;
+import se.pitch.oss.fedpro.common.session.buffers.FramedPayload;
+import se.pitch.oss.fedpro.common.session.buffers.GenericBuffer;
+import se.pitch.oss.fedpro.common.session.buffers.RateLimitedBuffer;
+import se.pitch.oss.fedpro.common.transport.FedProSocket;
+import se.pitch.oss.fedpro.common.transport.GatheringSocket;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TestSocketWriter {
+
+   private static final int FIRST_SEQUENCE_NUMBER = 1;
+
+   private final GenericBuffer<QueueableMessage> _messageQueue = new RateLimitedBuffer<>(10);
+   private final RecordingSocket _socket = new RecordingSocket();
+   private final AtomicInteger _sentCount = new AtomicInteger();
+
+   @Rule
+   public Timeout globalTimeout = new Timeout(10000);
+
+   @Test
+   public void queuedMessagesAreWrittenAtOnce_When_BatchingIsEnabled()
+   throws Exception
+   {
+      // Given
+      SocketWriter socketWriter = createSocketWriter(1024);
+      for (int i = 0; i < 5; i++) {
+         _messageQueue.insert(dummyMessage());
+      }
+
+      // When
+      socketWriter.writeNextMessage();
+
+      // Then
+      assertEquals(1, _socket.writeCount());
+      assertEquals(List.of(1, 2, 3, 4, 5), _socket.writtenSequenceNumbers());
+      assertEquals(5, _sentCount.get());
+   }
+
+   @Test
+   public void batchIsLimitedBySize_When_BatchingIsEnabled()
+   throws Exception
+   {
+      // Given a limit that fits two messages
+      SocketWriter socketWriter = createSocketWriter(2 * MessageHeader.SIZE);
+      for (int i = 0; i < 5; i++) {
+         _messageQueue.insert(dummyMessage());
+      }
+
+      // When
+      socketWriter.writeNextMessage();
+      socketWriter.writeNextMessage();
+      socketWriter.writeNextMessage();
+
+      // Then
+      assertEquals(3, _socket.writeCount());
+      assertEquals(List.of(1, 2, 3, 4, 5), _socket.writtenSequenceNumbers());
+      assertEquals(5, _sentCount.get());
+   }
+
+   @Test
+   public void oneMessageIsWrittenPerWrite_When_BatchingIsDisabled()
+   throws Exception
+   {
+      // Given
+      SocketWriter socketWriter = createSocketWriter(0);
+      _messageQueue.insert(dummyMessage());
+      _messageQueue.insert(dummyMessage());
+
+      // When
+      socketWriter.writeNextMessage();
+
+      // Then
+      assertEquals(1, _socket.writeCount());
+      assertEquals(List.of(1), _socket.writtenSequenceNumbers());
+   }
+
+   @Test
+   public void headerAndPayloadAreWrittenAtOnce_When_SocketCannotGather()
+   throws Exception
+   {
+      // Given
+      SocketWriter socketWriter = createSocketWriter(0);
+      byte[] payload = {1, 2, 3, 4, 5};
+      _messageQueue.insert(callRequest(payload));
+
+      // When
+      socketWriter.writeNextMessage();
+
+      // Then
+      assertEquals(1, _socket.writeCount());
+      assertEquals(List.of(1), _socket.writtenSequenceNumbers());
+      byte[] written = _socket.writtenBytes();
+      assertEquals(MessageHeader.SIZE + payload.length, written.length);
+      assertArrayEquals(payload, Arrays.copyOfRange(written, MessageHeader.SIZE, written.length));
+   }
+
+   @Test
+   public void headerIsWrittenIntoFrame_When_PayloadIsFramed()
+   throws Exception
+   {
+      // Given
+      SocketWriter socketWriter = createSocketWriter(0);
+      FramedPayload frame = FramedPayload.allocate(3);
+      System.arraycopy(new byte[]{7, 8, 9}, 0, frame.array(), frame.payloadOffset(), 3);
+      _messageQueue.insert(new QueueableMessage(
+            frame.payloadSize(),
+            0,
+            42,
+            MessageType.HLA_CALL_REQUEST,
+            new HlaCallRequestMessage(frame),
+            null,
+            null));
+
+      // When
+      socketWriter.writeNextMessage();
+
+      // Then the frame itself is sent, now starting with the header
+      assertEquals(1, _socket.writeCount());
+      assertEquals(List.of(1), _socket.writtenSequenceNumbers());
+      assertArrayEquals(frame.array(), _socket.writtenBytes());
+   }
+
+   @Test
+   public void queuedMessagesAreWrittenAtOnce_When_SocketPrefersBatches()
+   throws Exception
+   {
+      // Given a writer that does not batch by itself
+      GatheringRecordingSocket socket = new GatheringRecordingSocket(1024);
+      SocketWriter socketWriter = createSocketWriter(0, socket);
+      _messageQueue.insert(callRequest(new byte[]{1, 2, 3}));
+      _messageQueue.insert(dummyMessage());
+      _messageQueue.insert(callRequest(new byte[]{4, 5}));
+
+      // When
+      socketWriter.writeNextMessage();
+
+      // Then
+      assertEquals(1, socket.writeCount());
+      assertEquals(List.of(1, 2, 3), socket.writtenSequenceNumbers());
+      assertEquals(3, _sentCount.get());
+   }
+
+   private SocketWriter createSocketWriter(int batchMaxBytes)
+   {
+      return createSocketWriter(batchMaxBytes, _socket);
+   }
+
+   private SocketWriter createSocketWriter(int batchMaxBytes, FedProSocket socket)
+   {
+      SocketWriter socketWriter = SocketWriter.createSocketWriterForThread(
+            0,
+            new SocketWriter.Listener() {
+               @Override
+               public void exceptionOnWrite(Exception e)
+               {
+                  fail(e.toString());
+               }
+
+               @Override
+               public void messageSent()
+               {
+                  _sentCount.incrementAndGet();
+               }
+            },
+            _messageQueue,
+            socket,
+            true,
+            FIRST_SEQUENCE_NUMBER,
+            batchMaxBytes);
+      socketWriter.enableWriterLoop();
+      return socketWriter;
+   }
+
+   private static QueueableMessage dummyMessage()
+   {
+      return new QueueableMessage(0, 0, 42, MessageType.CTRL_HEARTBEAT, null, null, null);
+   }
+
+   private static QueueableMessage callRequest(byte[] payload)
+   {
+      return new QueueableMessage(
+            payload.length,
+            0,
+            42,
+            MessageType.HLA_CALL_REQUEST,
+            new HlaCallRequestMessage(payload),
+            null,
+            null);
+   }
+
+   private static class GatheringRecordingSocket extends RecordingSocket implements GatheringSocket {
+
+      private final int _preferredBatchMaxBytes;
+
+      GatheringRecordingSocket(int preferredBatchMaxBytes)
+      {
+         _preferredBatchMaxBytes = preferredBatchMaxBytes;
+      }
+
+      @Override
+      public void write(ByteBuffer[] buffers, int offset, int length)
+      {
+         _writeCount.incrementAndGet();
+         for (int i = offset; i < offset + length; i++) {
+            while (buffers[i].hasRemaining()) {
+               _written.write(buffers[i].get());
+            }
+         }
+      }
+
+      @Override
+      public int preferredBatchMaxBytes()
+      {
+         return _preferredBatchMaxBytes;
+      }
+   }
+
+   private static class RecordingSocket implements FedProSocket {
+
+      protected final ByteArrayOutputStream _written = new ByteArrayOutputStream();
+      protected final AtomicInteger _writeCount = new AtomicInteger();
+
+      int writeCount()
+      {
+         return _writeCount.get();
+      }
+
+      byte[] writtenBytes()
+      {
+         return _written.toByteArray();
+      }
+
+      List<Integer> writtenSequenceNumbers()
+      throws IOException, BadMessage
+      {
+         List<Integer> sequenceNumbers = new ArrayList<>();
+         InputStream inputStream = new ByteArrayInputStream(_written.toByteArray());
+         while (inputStream.available() > 0) {
+            MessageHeader header = MessageHeader.decode(inputStream);
+            inputStream.skip(header.getPayloadSize());
+            sequenceNumbers.add(header.sequenceNumber);
+         }
+         return sequenceNumbers;
+      }
+
+      @Override
+      public InputStream getInputStream()
+      {
+         return InputStream.nullInputStream();
+      }
+
+      @Override
+      public OutputStream getOutputStream()
+      {
+         return new OutputStream() {
+            @Override
+            public void write(int b)
+            {
+               write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(
+                  byte[] b,
+                  int off,
+                  int len)
+            {
+               _writeCount.incrementAndGet();
+               _written.write(b, off, len);
+            }
+         };
+      }
+
+      @Override
+      public void close()
+      {
+      }
+
+      @Override
+      public SocketAddress getRemoteSocketAddress()
+      {
+         return null;
+      }
+
+      @Override
+      public void setTcpNoDelay(boolean flag)
+      {
+      }
+
+      @Override
+      public void setSoTimeout(int socketTimeout)
+      {
+      }
+
+      @Override
+      public int getSoTimeout()
+      {
+         return 0;
+      }
+
+      @Override
+      public String getProtocolName()
+      {
+         return "None";
+      }
+   }
+}
@@ -0,0 +1,263 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.pitch.oss.fedpro.common.session.buffers;
+
+import se.pitch.oss.fedpro.client.session.msg.EncodedMessage;
+import org.junit.Test;
+
+import static se.pitch.oss.fedpro.common.session.SequenceNumber.NO_SEQUENCE_NUMBER;
+import static org.junit.Assert.*;
+
+public class TestArenaMessageHistory {
+
+   private static final int MESSAGE_SIZE = 100;
+
+   @Test
+   public void messagesArePolledInInsertOrder()
+   {
+      // Given
+      ArenaMessageHistory history = new ArenaMessageHistory(3, 10 * MESSAGE_SIZE, true);
+      history.insert(message(1));
+      history.insert(message(2));
+
+      // When
+      EncodedMessage first = history.poll();
+      EncodedMessage second = history.poll();
+
+      // Then
+      assertSameMessage(message(1), first);
+      assertSameMessage(message(2), second);
+      assertNull(history.poll());
+      assertTrue(history.isEmpty());
+   }
+
+   @Test
+   public void peekDoesNotConsumeMessage()
+   {
+      // Given
+      ArenaMessageHistory history = new ArenaMessageHistory(3, 10 * MESSAGE_SIZE, true);
+      history.insert(message(1));
+
+      // When
+      EncodedMessage peeked = history.peek();
+
+      // Then
+      assertSameMessage(message(1), peeked);
+      assertEquals(1, history.size());
+      assertSameMessage(message(1), history.poll());
+   }
+
+   @Test
+   public void insertedMessageIsReturnedUntilRead_When_ReadTheFirstTime()
+   {
+      // Given
+      ArenaMessageHistory history = new ArenaMessageHistory(3, 10 * MESSAGE_SIZE, true);
+      EncodedMessage inserted = message(1);
+      history.insert(inserted);
+
+      // When
+      EncodedMessage polled = history.poll();
+      history.rewindTo(1);
+
+      // Then the first read is not copied out of the arena, but a read after rewinding is
+      assertSame(inserted, polled);
+      EncodedMessage reread = history.poll();
+      assertNotSame(inserted, reread);
+      assertSameMessage(inserted, reread);
+   }
+
+   @Test
+   public void rewindToGivesMessageWithSequenceNumber_When_MessageIsInHistory()
+   {
+      // Given
+      ArenaMessageHistory history = new ArenaMessageHistory(4, 10 * MESSAGE_SIZE, true);
+      for (int i = 1; i <= 4; i++) {
+         history.insert(message(i));
+         history.poll();
+      }
+
+      // When
+      history.rewindTo(2);
+
+      // Then
+      assertEquals(3, history.size());
+      assertSameMessage(message(2), history.poll());
+      assertSameMessage(message(3), history.poll());
+      assertSameMessage(message(4), history.poll());
+   }
+
+   @Test
+   public void oldestMessagesAreOverwritten_When_ArenaIsFull()
+   {
+      // Given an arena that holds two and a half messages
+      ArenaMessageHistory history = new ArenaMessageHistory(10, MESSAGE_SIZE * 5 / 2, false);
+
+      // When
+      for (int i = 1; i <= 5; i++) {
+         history.insert(message(i));
+         history.poll();
+      }
+
+      // Then
+      assertEquals(4, history.getOldestSequenceNumber());
+      assertEquals(5, history.getNewestSequenceNumber());
+      history.rewindTo(4);
+      assertSameMessage(message(4), history.poll());
+      assertSameMessage(message(5), history.poll());
+   }
+
+   @Test
+   public void oldestMessagesAreOverwritten_When_CapacityIsReached()
+   {
+      // Given
+      ArenaMessageHistory history = new ArenaMessageHistory(2, 10 * MESSAGE_SIZE, false);
+
+      // When
+      for (int i = 1; i <= 3; i++) {
+         history.insert(message(i));
+         history.poll();
+      }
+
+      // Then
+      assertEquals(2, history.getOldestSequenceNumber());
+      assertEquals(3, history.getNewestSequenceNumber());
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void rewindToThrows_When_MessageHasBeenOverwritten()
+   {
+      // Given
+      ArenaMessageHistory history = new ArenaMessageHistory(2, 10 * MESSAGE_SIZE, true);
+      for (int i = 1; i <= 3; i++) {
+         history.insert(message(i));
+         history.poll();
+      }
+
+      // When
+      history.rewindTo(1);
+   }
+
+   @Test
+   public void rewindToFirstGivesAllMessages_When_NothingHasBeenOverwritten()
+   {
+      // Given
+      ArenaMessageHistory history = new ArenaMessageHistory(3, 10 * MESSAGE_SIZE, true);
+      history.insert(message(1));
+      history.poll();
+      history.insert(message(2));
+      history.poll();
+
+      // When
+      history.rewindToFirst();
+
+      // Then
+      assertEquals(2, history.size());
+      assertSameMessage(message(1), history.peek());
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void rewindToFirstThrows_When_FirstMessageHasBeenOverwritten()
+   {
+      // Given
+      ArenaMessageHistory history = new ArenaMessageHistory(1, 10 * MESSAGE_SIZE, true);
+      history.insert(message(1));
+      history.poll();
+      history.insert(message(2));
+
+      // When
+      history.rewindToFirst();
+   }
+
+   @Test
+   public void messageLargerThanArenaIsKept()
+   {
+      // Given
+      ArenaMessageHistory history = new ArenaMessageHistory(3, MESSAGE_SIZE / 2, true);
+
+      // When
+      history.insert(message(1));
+      history.poll();
+      history.insert(message(2));
+
+      // Then
+      assertEquals(2, history.getOldestSequenceNumber());
+      assertSameMessage(message(2), history.poll());
+   }
+
+   @Test
+   public void acknowledgedMessagesAreReleased_When_ReleaseBeforeIsCalled()
+   {
+      // Given
+      ArenaMessageHistory history = new ArenaMessageHistory(4, 10 * MESSAGE_SIZE, true);
+      for (int i = 1; i <= 3; i++) {
+         history.insert(message(i));
+         history.poll();
+      }
+      history.insert(message(4));
+
+      // When
+      history.releaseBefore(3);
+
+      // Then
+      assertEquals(3, history.getOldestSequenceNumber());
+      assertSameMessage(message(4), history.poll());
+      history.rewindTo(3);
+      assertSameMessage(message(3), history.poll());
+   }
+
+   @Test
+   public void unreadMessagesAreKept_When_ReleaseBeforeIsCalled()
+   {
+      // Given
+      ArenaMessageHistory history = new ArenaMessageHistory(4, 10 * MESSAGE_SIZE, true);
+      history.insert(message(1));
+      history.poll();
+      history.insert(message(2));
+      history.insert(message(3));
+
+      // When
+      history.releaseBefore(3);
+
+      // Then
+      assertEquals(2, history.getOldestSequenceNumber());
+      assertEquals(2, history.size());
+   }
+
+   @Test
+   public void sequenceNumbersAreNO_SEQUENCE_NUMBER_When_HistoryIsEmpty()
+   {
+      ArenaMessageHistory history = new ArenaMessageHistory(3, 10 * MESSAGE_SIZE, true);
+
+      assertEquals(NO_SEQUENCE_NUMBER, history.getOldestSequenceNumber());
+      assertEquals(NO_SEQUENCE_NUMBER, history.getNewestSequenceNumber());
+   }
+
+   private static EncodedMessage message(int sequenceNumber)
+   {
+      byte[] data = new byte[MESSAGE_SIZE];
+      for (int i = 0; i < data.length; i++) {
+         data[i] = (byte) (sequenceNumber * 31 + i);
+      }
+      return EncodedMessage.wrap(sequenceNumber, false, data);
+   }
+
+   private static void assertSameMessage(EncodedMessage expected, EncodedMessage actual)
+   {
+      assertEquals(expected.sequenceNumber, actual.sequenceNumber);
+      assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+   }
+}
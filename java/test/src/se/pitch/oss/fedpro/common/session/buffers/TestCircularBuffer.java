@@ -56,6 +56,42 @@ public class TestCircularBuffer {
       assertEquals(1, (int) _buf.peek());
    }
 
+   @Test
+   public void readElementsAreReleased_When_PredicateHolds()
+   {
+      // Given
+      _buf = new CircularBuffer<>(3);
+      _buf.insert(0);
+      _buf.insert(1);
+      _buf.insert(2);
+      _buf.poll();
+      _buf.poll();
+
+      // When
+      _buf.releaseRead(element -> element < 5);
+
+      // Then
+      assertEquals(2, (int) _buf.peekOldest());
+      assertEquals(2, (int) _buf.peek());
+      assertEquals(1, _buf.size());
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void rewindToFirstThrows_When_ElementsHaveBeenReleased()
+   {
+      // Given
+      _buf = new CircularBuffer<>(3);
+      _buf.insert(0);
+      _buf.insert(1);
+      _buf.poll();
+      _buf.releaseRead(element -> element < 1);
+
+      // When
+      _buf.rewindToFirst();
+
+      // Then throw
+   }
+
    @Test
    public void peekReturnsNull_When_BufferIsEmpty()
    {
@@ -0,0 +1,323 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.pitch.oss.fedpro.common.session.buffers;
+
+import se.pitch.oss.fedpro.common.session.flowcontrol.NullRateLimiter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class TestConcurrentRoundRobinBuffer {
+
+   @Rule
+   public Timeout globalTimeout = new Timeout(10000);
+
+   private static final int CAPACITY = 3;
+   private static final int PRIMARY_VALUE = 3;
+   private static final int ALTERNATE_VALUE = 1;
+
+   @Test
+   public void pollAlternates_When_BothQueuesAreUsed()
+   {
+      // Given
+      ConcurrentRoundRobinBuffer<Integer> buffer = createBuffer(CAPACITY);
+
+      buffer.insert(PRIMARY_VALUE);
+      buffer.insert(PRIMARY_VALUE);
+      buffer.insert(PRIMARY_VALUE);
+      buffer.insert(ALTERNATE_VALUE);
+
+      // When
+      int[] firstFourPolls = new int[] {buffer.poll(), buffer.poll(), buffer.poll(), buffer.poll()};
+
+      // Then
+      int[] expectedPollSequence = new int[] {PRIMARY_VALUE, ALTERNATE_VALUE, PRIMARY_VALUE, PRIMARY_VALUE};
+      assertArrayEquals(expectedPollSequence, firstFourPolls);
+      assertNull(buffer.poll());
+      assertTrue(buffer.isEmpty());
+   }
+
+   @Test
+   public void peekDoesNotAlterPollOrder()
+   {
+      // Given
+      ConcurrentRoundRobinBuffer<Integer> buffer = createBuffer(CAPACITY);
+      buffer.insert(ALTERNATE_VALUE);
+      buffer.insert(PRIMARY_VALUE);
+
+      // When
+      int peeked = buffer.peek();
+
+      // Then
+      assertEquals(PRIMARY_VALUE, peeked);
+      assertEquals(PRIMARY_VALUE, (int) buffer.poll());
+      assertEquals(1, buffer.alternateSize());
+      assertEquals(0, buffer.primarySize());
+   }
+
+   @Test
+   public void waitAndPollReturns_When_InsertedIntoAlternateQueue()
+   throws InterruptedException
+   {
+      // Given
+      ConcurrentRoundRobinBuffer<Integer> buffer = createBuffer(CAPACITY);
+
+      new Thread(() -> {
+         try {
+            Thread.sleep(200);
+         } catch (InterruptedException ignore) {
+         }
+         buffer.insert(ALTERNATE_VALUE);
+      }).start();
+
+      // When
+      int returnedValue = buffer.waitAndPoll();
+
+      // Then
+      assertEquals(ALTERNATE_VALUE, returnedValue);
+   }
+
+   @Test(expected = InterruptedException.class)
+   public void waitAndPollThrows_When_ConsumerIsInterrupted()
+   throws InterruptedException
+   {
+      // Given
+      ConcurrentRoundRobinBuffer<Integer> buffer = createBuffer(CAPACITY);
+      Thread consumer = Thread.currentThread();
+      new Thread(() -> {
+         try {
+            Thread.sleep(200);
+         } catch (InterruptedException ignore) {
+         }
+         consumer.interrupt();
+      }).start();
+
+      // When
+      buffer.waitAndPoll();
+   }
+
+   @Test
+   public void insertWaits_When_InsertingMoreElementsThanCapacity()
+   throws InterruptedException
+   {
+      // Given
+      ConcurrentRoundRobinBuffer<Integer> buffer = createBuffer(CAPACITY);
+
+      buffer.insert(PRIMARY_VALUE);
+      buffer.insert(PRIMARY_VALUE);
+      buffer.insert(PRIMARY_VALUE);
+
+      AtomicBoolean returnValue = new AtomicBoolean(false);
+      Thread insertThread = new Thread(() -> returnValue.set(buffer.insert(PRIMARY_VALUE)));
+
+      // When
+      insertThread.start();
+      while (!insertThread.getState().equals(Thread.State.WAITING)) {
+         Thread.yield();
+      }
+      assertFalse(returnValue.get());
+      buffer.poll();
+      insertThread.join();
+
+      // Then
+      assertTrue(returnValue.get());
+      assertEquals(3, buffer.size());
+   }
+
+   @Test
+   public void insertWaits_When_PrimaryQueueExceedsMaxBytes()
+   throws InterruptedException
+   {
+      // Given a byte limit that fits two elements, where each element's size is its value
+      ConcurrentRoundRobinBuffer<Integer> buffer = new ConcurrentRoundRobinBuffer<>(
+            100,
+            2 * PRIMARY_VALUE,
+            element -> element,
+            new NullRateLimiter(),
+            element -> element == ALTERNATE_VALUE);
+      buffer.insert(PRIMARY_VALUE);
+      buffer.insert(PRIMARY_VALUE);
+
+      AtomicBoolean returnValue = new AtomicBoolean(false);
+      Thread insertThread = new Thread(() -> returnValue.set(buffer.insert(PRIMARY_VALUE)));
+
+      // When
+      insertThread.start();
+      while (!insertThread.getState().equals(Thread.State.WAITING)) {
+         Thread.yield();
+      }
+      assertFalse(returnValue.get());
+      buffer.insert(ALTERNATE_VALUE);
+      assertFalse(returnValue.get());
+      buffer.poll();
+      insertThread.join();
+
+      // Then
+      assertTrue(returnValue.get());
+      assertEquals(2 * PRIMARY_VALUE, buffer.primaryBytes());
+   }
+
+   @Test
+   public void waitingInsertFails_When_BufferIsClosed()
+   throws InterruptedException
+   {
+      // Given a byte limit that fits two elements, and a producer waiting for room
+      ConcurrentRoundRobinBuffer<Integer> buffer = new ConcurrentRoundRobinBuffer<>(
+            100,
+            2 * PRIMARY_VALUE,
+            element -> element,
+            new NullRateLimiter(),
+            element -> element == ALTERNATE_VALUE);
+      buffer.insert(PRIMARY_VALUE);
+      buffer.insert(PRIMARY_VALUE);
+
+      AtomicBoolean returnValue = new AtomicBoolean(true);
+      Thread insertThread = new Thread(() -> returnValue.set(buffer.insert(PRIMARY_VALUE)));
+      insertThread.start();
+      while (!insertThread.getState().equals(Thread.State.WAITING)) {
+         Thread.yield();
+      }
+
+      // When
+      buffer.close();
+      insertThread.join();
+
+      // Then
+      assertFalse(returnValue.get());
+      assertEquals(2, buffer.primarySize());
+      assertEquals(2 * PRIMARY_VALUE, buffer.primaryBytes());
+   }
+
+   @Test
+   public void insertFailsWithoutWaiting_When_ClosedBufferIsFull()
+   {
+      // Given
+      ConcurrentRoundRobinBuffer<Integer> buffer = createBuffer(CAPACITY);
+      for (int i = 0; i < CAPACITY; i++) {
+         buffer.insert(PRIMARY_VALUE);
+      }
+      buffer.close();
+
+      // When
+      boolean primaryInserted = buffer.insert(PRIMARY_VALUE);
+      boolean alternateInserted = buffer.insert(ALTERNATE_VALUE);
+
+      // Then
+      assertFalse(primaryInserted);
+      assertTrue(alternateInserted);
+      assertEquals(CAPACITY, buffer.primarySize());
+   }
+
+   @Test
+   public void elementLargerThanMaxBytesIsInserted_When_PrimaryQueueIsEmpty()
+   {
+      // Given
+      ConcurrentRoundRobinBuffer<Integer> buffer = new ConcurrentRoundRobinBuffer<>(
+            100,
+            1,
+            element -> element,
+            new NullRateLimiter(),
+            element -> element == ALTERNATE_VALUE);
+
+      // When
+      buffer.insert(PRIMARY_VALUE);
+
+      // Then
+      assertEquals(PRIMARY_VALUE, (int) buffer.poll());
+      assertEquals(0, buffer.primaryBytes());
+   }
+
+   @Test
+   public void waitUntilEmptyReturns_When_ConsumerEmptiesBuffer()
+   throws InterruptedException
+   {
+      // Given
+      ConcurrentRoundRobinBuffer<Integer> buffer = createBuffer(CAPACITY);
+      buffer.insert(PRIMARY_VALUE);
+      buffer.insert(ALTERNATE_VALUE);
+
+      new Thread(() -> {
+         try {
+            Thread.sleep(200);
+            buffer.waitAndPoll();
+            buffer.waitAndPoll();
+         } catch (InterruptedException ignore) {
+         }
+      }).start();
+
+      // When
+      boolean empty = buffer.waitUntilEmpty(0);
+
+      // Then
+      assertTrue(empty);
+   }
+
+   @Test
+   public void elementsOfEachProducerArePolledInOrder_When_ManyProducersInsertConcurrently()
+   throws InterruptedException
+   {
+      // Given producers with even index using the alternate queue and odd index using the primary queue
+      final int producerCount = 4;
+      final int elementsPerProducer = 20_000;
+      ConcurrentRoundRobinBuffer<Integer> buffer = new ConcurrentRoundRobinBuffer<>(
+            64,
+            new NullRateLimiter(),
+            element -> element % 2 == 0);
+      List<Thread> producers = new ArrayList<>();
+      for (int producer = 0; producer < producerCount; producer++) {
+         final int producerIndex = producer;
+         producers.add(new Thread(() -> {
+            for (int i = 0; i < elementsPerProducer; i++) {
+               buffer.insert(i * producerCount + producerIndex);
+            }
+         }));
+      }
+
+      // When
+      producers.forEach(Thread::start);
+      int[] lastSequence = new int[producerCount];
+      Arrays.fill(lastSequence, -1);
+      for (int received = 0; received < producerCount * elementsPerProducer; received++) {
+         int element = buffer.waitAndPoll();
+         int producerIndex = element % producerCount;
+         int sequence = element / producerCount;
+
+         // Then
+         assertEquals(lastSequence[producerIndex] + 1, sequence);
+         lastSequence[producerIndex] = sequence;
+      }
+      for (Thread producer : producers) {
+         producer.join();
+      }
+      assertTrue(buffer.isEmpty());
+   }
+
+   private ConcurrentRoundRobinBuffer<Integer> createBuffer(int capacity)
+   {
+      return new ConcurrentRoundRobinBuffer<>(
+            capacity,
+            new NullRateLimiter(),
+            element -> element == ALTERNATE_VALUE);
+   }
+}
@@ -341,6 +341,6 @@ public class TestHistoryBuffer {
    public void assertSameMessage(QueueableMessage expectedMessage, EncodedMessage message)
    {
       EncodedMessage expected = expectedMessage.createEncodedMessage(message.sequenceNumber);
-      assertArrayEquals(expected.data, message.data);
+      assertArrayEquals(expected.toByteArray(), message.toByteArray());
    }
 }
@@ -0,0 +1,98 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.pitch.oss.fedpro.common.session.buffers;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestPayloadBufferPool {
+
+   private final PayloadBufferPool _pool = new PayloadBufferPool(2);
+
+   @Test
+   public void arrayIsReused_When_BufferIsReleased()
+   {
+      // Given
+      PayloadBuffer first = _pool.acquire(300);
+      byte[] array = first.array();
+
+      // When
+      first.release();
+      PayloadBuffer second = _pool.acquire(400);
+
+      // Then
+      assertSame(array, second.array());
+      assertEquals(512, array.length);
+      assertEquals(400, second.length());
+      assertEquals(400, second.asByteBuffer().remaining());
+   }
+
+   @Test
+   public void arrayIsNotReused_When_BufferIsStillRetained()
+   {
+      // Given
+      PayloadBuffer first = _pool.acquire(100);
+      first.retain();
+
+      // When
+      first.release();
+      PayloadBuffer second = _pool.acquire(100);
+
+      // Then
+      assertNotSame(first.array(), second.array());
+      first.release();
+      assertEquals(1, _pool.freeCount(100));
+   }
+
+   @Test
+   public void freeArraysAreBounded_When_ManyBuffersAreReleased()
+   {
+      // Given
+      PayloadBuffer[] buffers = new PayloadBuffer[5];
+      for (int i = 0; i < buffers.length; i++) {
+         buffers[i] = _pool.acquire(1000);
+      }
+
+      // When
+      for (PayloadBuffer buffer : buffers) {
+         buffer.release();
+      }
+
+      // Then
+      assertEquals(2, _pool.freeCount(1000));
+   }
+
+   @Test
+   public void largePayloadIsNotPooled_When_LargerThanLargestSizeClass()
+   {
+      PayloadBuffer buffer = _pool.acquire(1 << 20);
+
+      assertEquals(1 << 20, buffer.array().length);
+      buffer.release();
+      assertEquals(0, _pool.freeCount(1 << 20));
+   }
+
+   @Test(expected = IllegalStateException.class)
+   public void releaseThrows_When_AlreadyReleased()
+   {
+      PayloadBuffer buffer = _pool.acquire(10);
+      buffer.release();
+
+      buffer.release();
+   }
+}
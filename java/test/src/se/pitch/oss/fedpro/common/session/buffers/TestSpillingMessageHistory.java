@@ -0,0 +1,228 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.pitch.oss.fedpro.common.session.buffers;
+
+import se.pitch.oss.fedpro.client.session.msg.EncodedMessage;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class TestSpillingMessageHistory {
+
+   private static final int MESSAGE_SIZE = 100;
+   private static final int SEGMENT_BYTES = 4 * (MESSAGE_SIZE + 8);
+
+   @Rule
+   public TemporaryFolder _folder = new TemporaryFolder();
+
+   private File _directory;
+   private SpillingMessageHistory _history;
+
+   @After
+   public void tearDown()
+   {
+      if (_history != null) {
+         _history.close();
+      }
+   }
+
+   @Test
+   public void rewindToReplaysFromDisk_When_MessageIsNoLongerInMemory()
+   throws IOException
+   {
+      // Given
+      _history = createHistory(3, 100 * SEGMENT_BYTES);
+      insertAndPoll(1, 10);
+
+      // When
+      _history.rewindTo(2);
+
+      // Then
+      assertEquals(9, _history.size());
+      for (int i = 2; i <= 10; i++) {
+         assertSameMessage(message(i), _history.poll());
+      }
+      assertNull(_history.poll());
+   }
+
+   @Test
+   public void rewindToUsesMemory_When_MessageIsInMemory()
+   throws IOException
+   {
+      // Given
+      _history = createHistory(3, 100 * SEGMENT_BYTES);
+      insertAndPoll(1, 10);
+
+      // When
+      _history.rewindTo(9);
+
+      // Then
+      assertEquals(2, _history.size());
+      assertSameMessage(message(9), _history.poll());
+      assertSameMessage(message(10), _history.poll());
+   }
+
+   @Test
+   public void rewindToFirstReplaysFromDisk_When_FirstMessageIsNoLongerInMemory()
+   throws IOException
+   {
+      // Given
+      _history = createHistory(2, 100 * SEGMENT_BYTES);
+      insertAndPoll(1, 5);
+
+      // When
+      _history.rewindToFirst();
+
+      // Then
+      assertEquals(1, _history.getOldestSequenceNumber());
+      assertEquals(5, _history.size());
+      assertSameMessage(message(1), _history.peek());
+   }
+
+   @Test
+   public void nothingIsWrittenToDisk_When_MessagesFitInMemory()
+   throws IOException
+   {
+      // Given
+      _history = createHistory(10, 100 * SEGMENT_BYTES);
+
+      // When
+      insertAndPoll(1, 10);
+
+      // Then
+      assertArrayEquals(new String[0], _directory.list());
+   }
+
+   @Test
+   public void messagesEvictedDuringReplayAreReplayed_When_MessagesAreInsertedWhileReplaying()
+   throws IOException
+   {
+      // Given
+      _history = createHistory(3, 100 * SEGMENT_BYTES);
+      insertAndPoll(1, 10);
+      _history.rewindTo(2);
+      assertSameMessage(message(2), _history.poll());
+
+      // When
+      _history.insert(message(11));
+      _history.insert(message(12));
+
+      // Then
+      assertEquals(10, _history.size());
+      for (int i = 3; i <= 12; i++) {
+         assertSameMessage(message(i), _history.poll());
+      }
+      assertNull(_history.poll());
+   }
+
+   @Test
+   public void rewindToReplaysFromDisk_When_MemoryIsArena()
+   throws IOException
+   {
+      // Given
+      _directory = _folder.newFolder();
+      _history = new SpillingMessageHistory(
+            evictionListener -> new ArenaMessageHistory(10, 3 * MESSAGE_SIZE, false, evictionListener),
+            _directory.toPath(),
+            100 * SEGMENT_BYTES,
+            SEGMENT_BYTES);
+      insertAndPoll(1, 10);
+
+      // When
+      _history.rewindTo(1);
+
+      // Then
+      assertEquals(10, _history.size());
+      for (int i = 1; i <= 10; i++) {
+         assertSameMessage(message(i), _history.poll());
+      }
+      assertNull(_history.poll());
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void rewindToThrows_When_MessageIsNoLongerOnDisk()
+   throws IOException
+   {
+      // Given a log that holds two segments
+      _history = createHistory(2, 2 * SEGMENT_BYTES);
+      insertAndPoll(1, 20);
+
+      // When
+      _history.rewindTo(1);
+   }
+
+   @Test
+   public void filesAreDeleted_When_HistoryIsClosed()
+   throws IOException
+   {
+      // Given
+      _history = createHistory(2, 100 * SEGMENT_BYTES);
+      insertAndPoll(1, 20);
+
+      // When
+      _history.close();
+
+      // Then
+      assertArrayEquals(new String[0], _directory.list());
+   }
+
+   private SpillingMessageHistory createHistory(
+         int memoryCapacity,
+         long maxBytes)
+   throws IOException
+   {
+      _directory = _folder.newFolder();
+      return new SpillingMessageHistory(
+            evictionListener -> new HeapMessageHistory(memoryCapacity, evictionListener),
+            _directory.toPath(),
+            maxBytes,
+            SEGMENT_BYTES);
+   }
+
+   private void insertAndPoll(
+         int firstSequenceNumber,
+         int lastSequenceNumber)
+   {
+      for (int i = firstSequenceNumber; i <= lastSequenceNumber; i++) {
+         _history.insert(message(i));
+         _history.poll();
+      }
+   }
+
+   private static EncodedMessage message(int sequenceNumber)
+   {
+      byte[] data = new byte[MESSAGE_SIZE];
+      for (int i = 0; i < data.length; i++) {
+         data[i] = (byte) (sequenceNumber * 31 + i);
+      }
+      return EncodedMessage.wrap(sequenceNumber, false, data);
+   }
+
+   private static void assertSameMessage(
+         EncodedMessage expected,
+         EncodedMessage actual)
+   {
+      assertEquals(expected.sequenceNumber, actual.sequenceNumber);
+      assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+   }
+}
@@ -0,0 +1,214 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.pitch.oss.fedpro.common.session.flowcontrol;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TestAdaptiveRateLimiter {
+
+   private static final int QUEUE_SIZE = 2000;
+   private static final int CUTOFF = QUEUE_SIZE / 20;
+
+   private long _now = 0;
+   private final AdaptiveRateLimiter _limiter = new AdaptiveRateLimiter(QUEUE_SIZE, () -> _now);
+
+   @Test
+   public void insertsAreNotDelayed_When_QueueHasNotBeenCongested()
+   {
+      // Given
+      drainDuringInterval(1000);
+
+      // When
+      long delay = _limiter.reservePermit(CUTOFF);
+
+      // Then
+      assertEquals(0, delay);
+      assertEquals(0, _limiter.getAllowedRate());
+   }
+
+   @Test
+   public void allowedRateFollowsDrainRate_When_QueueGrowsBeyondCutoff()
+   {
+      // Given 20000 messages drained per second, while the queue grows
+      drainDuringInterval(1000);
+
+      // When
+      _limiter.reservePermit(CUTOFF + 1);
+
+      // Then
+      assertEquals(18000, _limiter.getAllowedRate());
+   }
+
+   @Test
+   public void insertsArePacedAtAllowedRate_When_QueueIsLongerThanCutoff()
+   {
+      // Given
+      drainDuringInterval(1000);
+      _limiter.reservePermit(CUTOFF + 1);
+      long intervalNanos = TimeUnit.SECONDS.toNanos(1) / _limiter.getAllowedRate();
+
+      // When
+      long first = _limiter.reservePermit(CUTOFF + 1);
+      long second = _limiter.reservePermit(CUTOFF + 1);
+      long third = _limiter.reservePermit(CUTOFF + 1);
+
+      // Then
+      assertEquals(intervalNanos, second - first);
+      assertEquals(intervalNanos, third - second);
+   }
+
+   @Test
+   public void insertsAreNotDelayed_When_QueueIsShorterThanCutoff()
+   {
+      // Given a congested queue
+      drainDuringInterval(1000);
+      _limiter.reservePermit(CUTOFF + 1);
+
+      // When
+      long delay = _limiter.reservePermit(CUTOFF);
+
+      // Then
+      assertEquals(0, delay);
+   }
+
+   @Test
+   public void allowedRateIncreases_When_QueueIsNoLongerGrowing()
+   {
+      // Given
+      drainDuringInterval(1000);
+      _limiter.reservePermit(CUTOFF + 2);
+      long congestedRate = _limiter.getAllowedRate();
+
+      // When
+      drainDuringInterval(1000);
+      _limiter.reservePermit(CUTOFF + 1);
+
+      // Then
+      assertTrue(_limiter.getAllowedRate() > congestedRate);
+   }
+
+   @Test
+   public void allowedRateDecreases_When_RoundTripIsInflated()
+   {
+      // Given
+      drainDuringInterval(1000);
+      _limiter.reservePermit(CUTOFF + 2);
+      long congestedRate = _limiter.getAllowedRate();
+      assertTrue(_limiter.startRoundTripSample());
+      _limiter.roundTripCompleted(TimeUnit.MILLISECONDS.toNanos(1));
+
+      // When
+      for (int i = 0; i < 20; i++) {
+         assertTrue(_limiter.startRoundTripSample());
+         _limiter.roundTripCompleted(TimeUnit.MILLISECONDS.toNanos(10));
+      }
+      drainDuringInterval(1000);
+      _limiter.reservePermit(CUTOFF + 1);
+
+      // Then
+      assertTrue(_limiter.getAllowedRate() < congestedRate);
+   }
+
+   @Test
+   public void allowedRateIncreases_When_RoundTripIsInflatedButQueueIsShorterThanCutoff()
+   {
+      // Given
+      drainDuringInterval(1000);
+      _limiter.reservePermit(CUTOFF + 2);
+      long congestedRate = _limiter.getAllowedRate();
+      sampleRoundTrips(1, TimeUnit.MILLISECONDS.toNanos(1));
+      sampleRoundTrips(20, TimeUnit.MILLISECONDS.toNanos(10));
+
+      // When
+      drainDuringInterval(1000);
+      _limiter.reservePermit(CUTOFF);
+
+      // Then
+      assertTrue(_limiter.getAllowedRate() > congestedRate);
+   }
+
+   @Test
+   public void allowedRateIncreases_When_RoundTripHasBeenHigherForTwoWindows()
+   {
+      // Given
+      drainDuringInterval(1000);
+      _limiter.reservePermit(CUTOFF + 2);
+      long congestedRate = _limiter.getAllowedRate();
+      sampleRoundTrips(1, TimeUnit.MILLISECONDS.toNanos(1));
+
+      // When the latency is higher for long enough that the old minimum is forgotten
+      for (int i = 0; i < 3; i++) {
+         _now += AdaptiveRateLimiter.ROUND_TRIP_MIN_WINDOW_NANOS;
+         sampleRoundTrips(20, TimeUnit.MILLISECONDS.toNanos(10));
+      }
+      drainDuringInterval(1000);
+      _limiter.reservePermit(CUTOFF + 1);
+
+      // Then
+      assertTrue(_limiter.getAllowedRate() > congestedRate);
+   }
+
+   @Test
+   public void anotherRoundTripIsSampled_When_SampledRequestFailed()
+   {
+      // Given
+      assertTrue(_limiter.startRoundTripSample());
+
+      // When
+      _limiter.roundTripFailed();
+
+      // Then
+      assertTrue(_limiter.startRoundTripSample());
+   }
+
+   @Test
+   public void onlyOneRoundTripIsSampled_When_SampleIsInProgress()
+   {
+      // Given
+      assertTrue(_limiter.startRoundTripSample());
+
+      // When
+      boolean secondSample = _limiter.startRoundTripSample();
+
+      // Then
+      assertFalse(secondSample);
+      _now += TimeUnit.MINUTES.toNanos(1);
+      assertTrue("An abandoned sample is replaced", _limiter.startRoundTripSample());
+   }
+
+   private void sampleRoundTrips(
+         int count,
+         long roundTripNanos)
+   {
+      for (int i = 0; i < count; i++) {
+         assertTrue(_limiter.startRoundTripSample());
+         _limiter.roundTripCompleted(roundTripNanos);
+      }
+   }
+
+   private void drainDuringInterval(int messageCount)
+   {
+      for (int i = 0; i < messageCount; i++) {
+         _limiter.postPoll(0);
+      }
+      _now += AdaptiveRateLimiter.UPDATE_INTERVAL_NANOS;
+   }
+}
@@ -0,0 +1,183 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.pitch.oss.fedpro.common.transport;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TestHappyEyeballs {
+
+   private static final InetAddress IPV4_A = address(127, 0, 0, 1);
+   private static final InetAddress IPV4_B = address(127, 0, 0, 2);
+   private static final InetAddress IPV6_A = address6(1);
+   private static final InetAddress IPV6_B = address6(2);
+
+   @Rule
+   public Timeout globalTimeout = new Timeout(10000);
+
+   @Test
+   public void familiesAreInterleaved_When_ResolverGroupsThem()
+   {
+      // When
+      List<InetAddress> ordered = HappyEyeballs.interleaveFamilies(new InetAddress[]{IPV6_A, IPV6_B, IPV4_A, IPV4_B});
+
+      // Then
+      assertEquals(List.of(IPV6_A, IPV4_A, IPV6_B, IPV4_B), ordered);
+   }
+
+   @Test
+   public void nextAddressIsTriedAtOnce_When_AttemptFails()
+   throws IOException
+   {
+      // Given an attempt delay longer than the test timeout
+      long attemptDelayMillis = 60_000;
+
+      // When
+      Connection connection = HappyEyeballs.connect(
+            new InetAddress[]{IPV4_A, IPV4_B},
+            4711,
+            attemptDelayMillis,
+            address -> {
+               if (address.getAddress().equals(IPV4_A)) {
+                  throw new ConnectException("Connection refused");
+               }
+               return new Connection(address);
+            });
+
+      // Then
+      assertEquals(IPV4_B, connection._address.getAddress());
+   }
+
+   @Test
+   public void fasterAddressWinsAndSlowerIsClosed_When_FirstAttemptIsSlow()
+   throws Exception
+   {
+      // Given
+      CountDownLatch releaseSlowAttempt = new CountDownLatch(1);
+      Connection[] slowConnection = new Connection[1];
+      CountDownLatch slowConnectionClosed = new CountDownLatch(1);
+
+      // When
+      Connection connection = HappyEyeballs.connect(
+            new InetAddress[]{IPV4_A, IPV4_B},
+            4711,
+            10,
+            address -> {
+               if (address.getAddress().equals(IPV4_A)) {
+                  awaitUninterruptibly(releaseSlowAttempt);
+                  slowConnection[0] = new Connection(address, slowConnectionClosed);
+                  return slowConnection[0];
+               }
+               return new Connection(address);
+            });
+      releaseSlowAttempt.countDown();
+
+      // Then
+      assertEquals(IPV4_B, connection._address.getAddress());
+      assertTrue(slowConnectionClosed.await(4, TimeUnit.SECONDS));
+      assertFalse(connection._isClosed);
+   }
+
+   @Test
+   public void firstExceptionIsThrown_When_AllAttemptsFail()
+   {
+      try {
+         // When
+         HappyEyeballs.connect(
+               new InetAddress[]{IPV4_A, IPV4_B},
+               4711,
+               60_000,
+               address -> {
+                  throw new ConnectException(address.getAddress().getHostAddress());
+               });
+         fail("Expected IOException");
+      } catch (IOException e) {
+         // Then
+         assertEquals("127.0.0.1", e.getMessage());
+         assertEquals(1, e.getSuppressed().length);
+      }
+   }
+
+   private static void awaitUninterruptibly(CountDownLatch latch)
+   {
+      while (true) {
+         try {
+            latch.await();
+            return;
+         } catch (InterruptedException ignored) {
+         }
+      }
+   }
+
+   private static InetAddress address(int... bytes)
+   {
+      byte[] address = new byte[bytes.length];
+      for (int i = 0; i < bytes.length; i++) {
+         address[i] = (byte) bytes[i];
+      }
+      try {
+         return InetAddress.getByAddress(address);
+      } catch (IOException e) {
+         throw new IllegalStateException(e);
+      }
+   }
+
+   private static InetAddress address6(int last)
+   {
+      int[] bytes = new int[16];
+      bytes[15] = last;
+      return address(bytes);
+   }
+
+   private static class Connection implements Closeable {
+
+      final InetSocketAddress _address;
+      final CountDownLatch _closed;
+      volatile boolean _isClosed = false;
+
+      Connection(InetSocketAddress address)
+      {
+         this(address, new CountDownLatch(1));
+      }
+
+      Connection(InetSocketAddress address, CountDownLatch closed)
+      {
+         _address = address;
+         _closed = closed;
+      }
+
+      @Override
+      public void close()
+      {
+         _isClosed = true;
+         _closed.countDown();
+      }
+   }
+}
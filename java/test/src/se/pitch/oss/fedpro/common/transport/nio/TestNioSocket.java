@@ -0,0 +1,245 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.pitch.oss.fedpro.common.transport.nio;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import se.pitch.oss.fedpro.common.transport.EventDrivenSocket;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TestNioSocket {
+
+   private static final NioEventLoopGroup EVENT_LOOP_GROUP = NioEventLoopGroup.getShared(1);
+
+   private ServerSocket _serverSocket;
+
+   @Before
+   public void setUp()
+   throws IOException
+   {
+      _serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+   }
+
+   @After
+   public void tearDown()
+   throws IOException
+   {
+      _serverSocket.close();
+   }
+
+   @Test
+   public void streamsTransferData_When_Connected()
+   throws IOException
+   {
+      // Given
+      NioSocket socket = connect();
+      try (Socket peer = _serverSocket.accept()) {
+         byte[] outbound = createData(300_000);
+
+         // When
+         socket.getOutputStream().write(outbound);
+         byte[] received = peer.getInputStream().readNBytes(outbound.length);
+         peer.getOutputStream().write(new byte[]{1, 2, 3});
+
+         // Then
+         assertArrayEquals(outbound, received);
+         assertArrayEquals(new byte[]{1, 2, 3}, socket.getInputStream().readNBytes(3));
+      } finally {
+         socket.close();
+      }
+   }
+
+   @Test
+   public void buffersAreWrittenInOrder_When_WrittenWithGatheringWrite()
+   throws IOException
+   {
+      // Given
+      NioSocket socket = connect();
+      try (Socket peer = _serverSocket.accept()) {
+         byte[] head = {1, 2, 3};
+         byte[] body = createData(300_000);
+         ByteBuffer[] buffers = {ByteBuffer.wrap(head), ByteBuffer.allocate(0), ByteBuffer.wrap(body)};
+
+         // When
+         socket.write(buffers, 0, buffers.length);
+         byte[] received = peer.getInputStream().readNBytes(head.length + body.length);
+
+         // Then
+         assertArrayEquals(head, Arrays.copyOfRange(received, 0, head.length));
+         assertArrayEquals(body, Arrays.copyOfRange(received, head.length, received.length));
+      } finally {
+         socket.close();
+      }
+   }
+
+   @Test
+   public void listenerReceivesBufferedDataThenClose_When_PeerClosesConnection()
+   throws Exception
+   {
+      // Given data that arrives before a listener is set
+      NioSocket socket = connect();
+      ByteArrayOutputStream received = new ByteArrayOutputStream();
+      CompletableFuture<Exception> closeCause = new CompletableFuture<>();
+      try (Socket peer = _serverSocket.accept()) {
+         peer.getOutputStream().write(new byte[]{1, 2, 3, 4});
+         assertEquals(1, socket.getInputStream().read());
+         peer.getOutputStream().write(new byte[]{5, 6});
+         Thread.sleep(100);
+
+         // When
+         socket.setListener(new EventDrivenSocket.Listener() {
+            @Override
+            public void onDataReceived(ByteBuffer data)
+            {
+               while (data.hasRemaining()) {
+                  received.write(data.get());
+               }
+            }
+
+            @Override
+            public void onClosed(Exception cause)
+            {
+               closeCause.complete(cause);
+            }
+         });
+      }
+
+      // Then
+      assertTrue(closeCause.get(4, TimeUnit.SECONDS) instanceof EOFException);
+      assertArrayEquals(new byte[]{2, 3, 4, 5, 6}, received.toByteArray());
+   }
+
+   @Test
+   public void listenerReceivesDataOnlyAfterResume_When_ReadIsPaused()
+   throws Exception
+   {
+      // Given a listener that pauses reading when it receives the first byte
+      NioSocket socket = connect();
+      ByteArrayOutputStream received = new ByteArrayOutputStream();
+      CountDownLatch firstReceived = new CountDownLatch(1);
+      CountDownLatch allReceived = new CountDownLatch(4);
+      try (Socket peer = _serverSocket.accept()) {
+         socket.setListener(new EventDrivenSocket.Listener() {
+            @Override
+            public void onDataReceived(ByteBuffer data)
+            {
+               while (data.hasRemaining()) {
+                  synchronized (received) {
+                     received.write(data.get());
+                  }
+                  allReceived.countDown();
+               }
+               socket.setReadPaused(true);
+               firstReceived.countDown();
+            }
+
+            @Override
+            public void onClosed(Exception cause)
+            {
+            }
+         });
+         peer.getOutputStream().write(1);
+         assertTrue(firstReceived.await(4, TimeUnit.SECONDS));
+         Thread.sleep(100);
+
+         // When
+         peer.getOutputStream().write(new byte[]{2, 3, 4});
+         Thread.sleep(200);
+         int receivedWhilePaused;
+         synchronized (received) {
+            receivedWhilePaused = received.size();
+         }
+         socket.setReadPaused(false);
+
+         // Then
+         assertEquals(1, receivedWhilePaused);
+         assertTrue(allReceived.await(4, TimeUnit.SECONDS));
+         synchronized (received) {
+            assertArrayEquals(new byte[]{1, 2, 3, 4}, received.toByteArray());
+         }
+      } finally {
+         socket.close();
+      }
+   }
+
+   @Test
+   public void blockedReadThrowsAndSocketStaysOpen_When_ReaderIsInterrupted()
+   throws Exception
+   {
+      // Given
+      NioSocket socket = connect();
+      try (Socket peer = _serverSocket.accept()) {
+         CountDownLatch interrupted = new CountDownLatch(1);
+         InputStream inputStream = socket.getInputStream();
+         Thread reader = new Thread(() -> {
+            try {
+               inputStream.read();
+            } catch (InterruptedIOException e) {
+               interrupted.countDown();
+            } catch (IOException ignored) {
+            }
+         });
+         reader.start();
+
+         // When
+         Thread.sleep(100);
+         reader.interrupt();
+
+         // Then
+         assertTrue(interrupted.await(4, TimeUnit.SECONDS));
+         peer.getOutputStream().write(42);
+         assertEquals(42, inputStream.read());
+      } finally {
+         socket.close();
+      }
+   }
+
+   private NioSocket connect()
+   throws IOException
+   {
+      SocketChannel channel = SocketChannel.open(
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), _serverSocket.getLocalPort()));
+      return NioSocket.connect(EVENT_LOOP_GROUP, channel, "tcp");
+   }
+
+   private static byte[] createData(int size)
+   {
+      byte[] data = new byte[size];
+      for (int i = 0; i < size; i++) {
+         data[i] = (byte) i;
+      }
+      return data;
+   }
+}
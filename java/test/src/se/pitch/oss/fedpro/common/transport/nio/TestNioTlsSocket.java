@@ -0,0 +1,67 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.pitch.oss.fedpro.common.transport.nio;
+
+import org.junit.Test;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TestNioTlsSocket {
+
+   private static final NioEventLoopGroup EVENT_LOOP_GROUP = NioEventLoopGroup.getShared(1);
+
+   @Test
+   public void connectThrowsAndClosesChannel_When_HandshakeTimesOut()
+   throws Exception
+   {
+      try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+         // Given a server that accepts the connection but never answers the handshake
+         SocketChannel channel = SocketChannel.open(
+               new InetSocketAddress(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort()));
+         SSLEngine engine = SSLContext.getDefault().createSSLEngine();
+         engine.setUseClientMode(true);
+         try (Socket ignored = serverSocket.accept()) {
+            long startNanos = System.nanoTime();
+
+            // When
+            IOException exception = null;
+            try {
+               NioTlsSocket.connect(EVENT_LOOP_GROUP, channel, engine, 200, "tls");
+            } catch (IOException e) {
+               exception = e;
+            }
+
+            // Then
+            assertNotNull(exception);
+            assertTrue(exception.getCause() instanceof SocketTimeoutException);
+            assertTrue(System.nanoTime() - startNanos < TimeUnit.SECONDS.toNanos(4));
+            assertFalse(channel.isOpen());
+         }
+      }
+   }
+}
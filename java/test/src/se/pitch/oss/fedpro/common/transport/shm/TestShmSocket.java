@@ -0,0 +1,215 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.pitch.oss.fedpro.common.transport.shm;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+import se.pitch.oss.fedpro.common.transport.FedProSocket;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TestShmSocket {
+
+   private static final int RING_CAPACITY = 4096;
+
+   private Path _directory;
+   private ShmServerSocket _serverSocket;
+
+   @Rule
+   public Timeout globalTimeout = new Timeout(10000);
+
+   @Before
+   public void setUp()
+   throws IOException
+   {
+      _directory = Files.createTempDirectory("fedpro-shm");
+      _serverSocket = new ShmServerSocket(_directory, "shm");
+   }
+
+   @After
+   public void tearDown()
+   throws IOException
+   {
+      _serverSocket.close();
+      Files.deleteIfExists(_directory);
+   }
+
+   @Test
+   public void streamsTransferDataBothWays_When_Connected()
+   throws Exception
+   {
+      // Given
+      CompletableFuture<FedProSocket> accepted = acceptAsync();
+      ShmSocket client = ShmSocket.connect(_directory, RING_CAPACITY, 4000, "shm");
+      try (FedProSocket server = accepted.get(4, TimeUnit.SECONDS)) {
+
+         // When
+         client.getOutputStream().write(new byte[]{1, 2, 3});
+         server.getOutputStream().write(new byte[]{4, 5});
+
+         // Then
+         assertArrayEquals(new byte[]{1, 2, 3}, server.getInputStream().readNBytes(3));
+         assertArrayEquals(new byte[]{4, 5}, client.getInputStream().readNBytes(2));
+         assertEquals("shm", client.getProtocolName());
+      } finally {
+         client.close();
+      }
+   }
+
+   @Test
+   public void allDataArrives_When_MoreIsWrittenThanTheRingHolds()
+   throws Exception
+   {
+      // Given
+      CompletableFuture<FedProSocket> accepted = acceptAsync();
+      ShmSocket client = ShmSocket.connect(_directory, RING_CAPACITY, 4000, "shm");
+      try (FedProSocket server = accepted.get(4, TimeUnit.SECONDS)) {
+         byte[] outbound = createData(10 * RING_CAPACITY + 7);
+
+         // When
+         CompletableFuture<byte[]> received = CompletableFuture.supplyAsync(() -> {
+            try {
+               return server.getInputStream().readNBytes(outbound.length);
+            } catch (IOException e) {
+               throw new RuntimeException(e);
+            }
+         });
+         client.getOutputStream().write(outbound);
+
+         // Then
+         assertArrayEquals(outbound, received.get(4, TimeUnit.SECONDS));
+      } finally {
+         client.close();
+      }
+   }
+
+   @Test
+   public void readReturnsEndOfStreamAfterData_When_PeerCloses()
+   throws Exception
+   {
+      // Given
+      CompletableFuture<FedProSocket> accepted = acceptAsync();
+      ShmSocket client = ShmSocket.connect(_directory, RING_CAPACITY, 4000, "shm");
+      FedProSocket server = accepted.get(4, TimeUnit.SECONDS);
+      server.getOutputStream().write(42);
+
+      // When
+      server.close();
+
+      // Then
+      assertEquals(42, client.getInputStream().read());
+      assertEquals(-1, client.getInputStream().read());
+      try {
+         client.getOutputStream().write(1);
+         fail("Expected IOException");
+      } catch (IOException expected) {
+      }
+      client.close();
+   }
+
+   @Test(expected = SocketTimeoutException.class)
+   public void readTimesOut_When_NoDataArrives()
+   throws Exception
+   {
+      // Given
+      CompletableFuture<FedProSocket> accepted = acceptAsync();
+      ShmSocket client = ShmSocket.connect(_directory, RING_CAPACITY, 4000, "shm");
+      FedProSocket server = accepted.get(4, TimeUnit.SECONDS);
+      try {
+         client.setSoTimeout(50);
+
+         // When
+         client.getInputStream().read();
+      } finally {
+         server.close();
+         client.close();
+      }
+   }
+
+   @Test
+   public void readReturnsData_When_EarlierReadTimedOut()
+   throws Exception
+   {
+      // Given
+      CompletableFuture<FedProSocket> accepted = acceptAsync();
+      ShmSocket client = ShmSocket.connect(_directory, RING_CAPACITY, 4000, "shm");
+      try (FedProSocket server = accepted.get(4, TimeUnit.SECONDS)) {
+         client.setSoTimeout(50);
+         try {
+            client.getInputStream().read();
+            fail("Expected SocketTimeoutException");
+         } catch (SocketTimeoutException expected) {
+         }
+         client.setSoTimeout(0);
+
+         // When
+         CompletableFuture<Integer> received = CompletableFuture.supplyAsync(() -> {
+            try {
+               return client.getInputStream().read();
+            } catch (IOException e) {
+               throw new RuntimeException(e);
+            }
+         });
+         server.getOutputStream().write(42);
+
+         // Then
+         assertEquals(42, (int) received.get(4, TimeUnit.SECONDS));
+      } finally {
+         client.close();
+      }
+   }
+
+   @Test(expected = ConnectException.class)
+   public void connectFails_When_NoServerAccepts()
+   throws Exception
+   {
+      // When
+      ShmSocket.connect(_directory, RING_CAPACITY, 50, "shm");
+   }
+
+   private CompletableFuture<FedProSocket> acceptAsync()
+   {
+      return CompletableFuture.supplyAsync(() -> {
+         try {
+            return _serverSocket.accept();
+         } catch (IOException e) {
+            throw new RuntimeException(e);
+         }
+      });
+   }
+
+   private static byte[] createData(int size)
+   {
+      byte[] data = new byte[size];
+      for (int i = 0; i < size; i++) {
+         data[i] = (byte) i;
+      }
+      return data;
+   }
+}
@@ -0,0 +1,80 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.pitch.oss.fedpro.common.transport.websockets;
+
+import org.java_websocket.framing.BinaryFrame;
+import org.java_websocket.framing.PingFrame;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class TestCountingPerMessageDeflateExtension {
+
+   @Test
+   public void bytesAreCountedBeforeAndAfterCompression_When_FrameIsEncodedAndDecoded()
+   throws Exception
+   {
+      // Given a repetitive payload above the threshold
+      CountingPerMessageDeflateExtension sender = new CountingPerMessageDeflateExtension(6, 100);
+      CountingPerMessageDeflateExtension receiver = new CountingPerMessageDeflateExtension(6, 100);
+      byte[] payload = new byte[4096];
+      Arrays.fill(payload, (byte) 42);
+      BinaryFrame frame = binaryFrame(payload);
+
+      // When
+      sender.encodeFrame(frame);
+      int compressedSize = frame.getPayloadData().remaining();
+      receiver.decodeFrame(frame);
+
+      // Then
+      assertTrue(compressedSize < payload.length);
+      assertEquals(payload.length, sender.getUncompressedBytes());
+      assertEquals(compressedSize, sender.getCompressedBytes());
+      assertEquals(payload.length, receiver.getUncompressedBytes());
+      assertEquals(compressedSize, receiver.getCompressedBytes());
+      assertEquals(ByteBuffer.wrap(payload), frame.getPayloadData());
+   }
+
+   @Test
+   public void copiesShareCounters_When_CopiedByTheLibrary()
+   {
+      // Given
+      CountingPerMessageDeflateExtension original = new CountingPerMessageDeflateExtension(6, 0);
+      CountingPerMessageDeflateExtension copy = (CountingPerMessageDeflateExtension) original.copyInstance();
+
+      // When
+      copy.encodeFrame(binaryFrame(new byte[100]));
+      copy.encodeFrame(new PingFrame());
+
+      // Then only the data frame is counted
+      assertEquals(100, original.getUncompressedBytes());
+      assertTrue(original.getCompressedBytes() > 0);
+      assertEquals(0, original.getThreshold());
+   }
+
+   private static BinaryFrame binaryFrame(byte[] payload)
+   {
+      BinaryFrame frame = new BinaryFrame();
+      frame.setPayload(ByteBuffer.wrap(payload));
+      frame.setFin(true);
+      return frame;
+   }
+}
@@ -0,0 +1,121 @@
+/*
+ *  Copyright (C) 2025 Pitch Technologies AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.pitch.oss.fedpro.common.transport.websockets;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TestWebSocketInputStream {
+
+   @Rule
+   public Timeout globalTimeout = new Timeout(10000);
+
+   @Test
+   public void bytesAreReadAcrossFrames_When_ReadingAsStream()
+   throws IOException
+   {
+      // Given
+      WebSocketInputStream inputStream = new WebSocketInputStream();
+      inputStream.add(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+      inputStream.add(ByteBuffer.wrap(new byte[]{4, 5}));
+
+      // When
+      byte[] bytes = inputStream.readNBytes(5);
+
+      // Then
+      assertArrayEquals(new byte[]{1, 2, 3, 4, 5}, bytes);
+   }
+
+   @Test
+   public void remainderOfFrameIsReturned_When_FrameIsPartiallyRead()
+   throws IOException
+   {
+      // Given
+      WebSocketInputStream inputStream = new WebSocketInputStream();
+      inputStream.add(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+      inputStream.add(ByteBuffer.wrap(new byte[]{4, 5}));
+      assertEquals(1, inputStream.read());
+
+      // When
+      ByteBuffer first = inputStream.readFrame();
+      ByteBuffer second = inputStream.readFrame();
+
+      // Then
+      assertEquals(ByteBuffer.wrap(new byte[]{2, 3}), first);
+      assertEquals(ByteBuffer.wrap(new byte[]{4, 5}), second);
+   }
+
+   @Test
+   public void waitingReaderGetsFrame_When_FrameIsAddedLater()
+   throws Exception
+   {
+      // Given
+      WebSocketInputStream inputStream = new WebSocketInputStream();
+      CompletableFuture<ByteBuffer> frame = CompletableFuture.supplyAsync(() -> {
+         try {
+            return inputStream.readFrame();
+         } catch (IOException e) {
+            throw new RuntimeException(e);
+         }
+      });
+      Thread.sleep(100);
+
+      // When
+      inputStream.add(ByteBuffer.wrap(new byte[]{42}));
+
+      // Then
+      assertEquals(ByteBuffer.wrap(new byte[]{42}), frame.get(4, TimeUnit.SECONDS));
+   }
+
+   @Test
+   public void waitingReaderGetsEof_When_StreamIsClosed()
+   throws Exception
+   {
+      // Given
+      WebSocketInputStream inputStream = new WebSocketInputStream();
+      CompletableFuture<Integer> read = CompletableFuture.supplyAsync(() -> {
+         try {
+            return inputStream.read();
+         } catch (IOException e) {
+            throw new RuntimeException(e);
+         }
+      });
+      Thread.sleep(100);
+
+      // When
+      inputStream.close();
+
+      // Then
+      try {
+         read.get(4, TimeUnit.SECONDS);
+         fail("Expected EOFException");
+      } catch (ExecutionException e) {
+         assertTrue(e.getCause().getCause() instanceof EOFException);
+      }
+   }
+}